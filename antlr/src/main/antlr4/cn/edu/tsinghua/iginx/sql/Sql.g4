@@ -27,7 +27,7 @@ statement
    : INSERT INTO insertFullPathSpec VALUES insertValuesSpec # insertStatement
    | LOAD DATA importFileClause INTO (path tagList? (SET KEY keyName = stringLiteral)? | insertFullPathSpec) (AT keyBase = INT)? # insertFromFileStatement
    | DELETE FROM path (COMMA path)* whereClause? withClause? # deleteStatement
-   | EXPLAIN? (LOGICAL | PHYSICAL)? cteClause? queryClause orderByClause? limitClause? exportFileClause? # selectStatement
+   | EXPLAIN? (LOGICAL | PHYSICAL | ANALYZE)? cteClause? queryClause orderByClause? limitClause? exportFileClause? # selectStatement
    | COUNT POINTS # countPointsStatement
    | DELETE COLUMNS path (COMMA path)* withClause? # deleteColumnsStatement
    | CLEAR DATA # clearDataStatement
@@ -52,6 +52,7 @@ statement
    | SET CONFIG configName = stringLiteral configValue = stringLiteral # setConfigStatement
    | SHOW CONFIG (configName = stringLiteral)? # showConfigStatement
    | SHOW SESSIONID # showSessionIDStatement
+   | SHOW QUERIES # showQueriesStatement
    | COMPACT # compactStatement
    | SHOW RULES # showRulesStatement
    | SET RULES ruleAssignment (COMMA ruleAssignment)* # setRulesStatement
@@ -576,9 +577,11 @@ keyWords
    | EXPLAIN
    | LOGICAL
    | PHYSICAL
+   | ANALYZE
    | SET
    | CONFIG
    | SESSIONID
+   | QUERIES
    | COLUMNS
    | INTERSECT
    | UNION
@@ -1045,6 +1048,10 @@ PHYSICAL
    : P H Y S I C A L
    ;
 
+ANALYZE
+   : A N A L Y Z E
+   ;
+
 EXISTS
    : E X I S T S
    ;
@@ -1073,6 +1080,10 @@ SESSIONID
    : S E S S I O N I D
    ;
 
+QUERIES
+   : Q U E R I E S
+   ;
+
 COLUMNS
    : C O L U M N S
    ;
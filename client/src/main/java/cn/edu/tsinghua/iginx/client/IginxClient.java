@@ -710,6 +710,7 @@ public class IginxClient {
             Arrays.asList("show", "cluster", "info"),
             Arrays.asList("show", "functions"),
             Arrays.asList("show", "sessionid"),
+            Arrays.asList("show", "queries"),
             Arrays.asList("show", "rules"),
             Arrays.asList("remove", "storageengine"));
     addArgumentCompleters(iginxCompleters, withoutNullCompleters, false);
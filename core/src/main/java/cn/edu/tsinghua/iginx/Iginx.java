@@ -21,6 +21,7 @@ package cn.edu.tsinghua.iginx;
 
 import cn.edu.tsinghua.iginx.conf.Config;
 import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.SpillUtils;
 import cn.edu.tsinghua.iginx.monitor.MonitorManager;
 import cn.edu.tsinghua.iginx.mqtt.MQTTService;
 import cn.edu.tsinghua.iginx.rest.RestServer;
@@ -41,6 +42,7 @@ public class Iginx {
   private static final Config config = ConfigDescriptor.getInstance().getConfig();
 
   public static void main(String[] args) throws Exception {
+    SpillUtils.cleanSpillDir();
     if (config.isEnableRestService()) {
       new Thread(new RestServer()).start();
     }
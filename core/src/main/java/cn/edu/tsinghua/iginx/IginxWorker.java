@@ -34,6 +34,8 @@ import cn.edu.tsinghua.iginx.conf.Config;
 import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.conf.Constants;
 import cn.edu.tsinghua.iginx.engine.ContextBuilder;
+import cn.edu.tsinghua.iginx.engine.InsertCoalescer;
+import cn.edu.tsinghua.iginx.engine.PlanCache;
 import cn.edu.tsinghua.iginx.engine.StatementExecutor;
 import cn.edu.tsinghua.iginx.engine.logical.optimizer.IRuleCollection;
 import cn.edu.tsinghua.iginx.engine.physical.PhysicalEngineImpl;
@@ -81,6 +83,8 @@ public class IginxWorker implements IService.Iface {
 
   private final ContextBuilder contextBuilder = ContextBuilder.getInstance();
 
+  private final InsertCoalescer insertCoalescer = InsertCoalescer.getInstance();
+
   private final StatementExecutor executor = StatementExecutor.getInstance();
 
   // to init scheduled jobs
@@ -192,6 +196,9 @@ public class IginxWorker implements IService.Iface {
       return RpcUtils.FAILURE;
     }
     RequestContext ctx = contextBuilder.build(req);
+    if (insertCoalescer.isEnabled()) {
+      return insertCoalescer.submit(ctx);
+    }
     executor.execute(ctx);
     return ctx.getResult().getStatus();
   }
@@ -206,6 +213,9 @@ public class IginxWorker implements IService.Iface {
       return RpcUtils.FAILURE;
     }
     RequestContext ctx = contextBuilder.build(req);
+    if (insertCoalescer.isEnabled()) {
+      return insertCoalescer.submit(ctx);
+    }
     executor.execute(ctx);
     return ctx.getResult().getStatus();
   }
@@ -220,6 +230,9 @@ public class IginxWorker implements IService.Iface {
       return RpcUtils.FAILURE;
     }
     RequestContext ctx = contextBuilder.build(req);
+    if (insertCoalescer.isEnabled()) {
+      return insertCoalescer.submit(ctx);
+    }
     executor.execute(ctx);
     return ctx.getResult().getStatus();
   }
@@ -234,6 +247,9 @@ public class IginxWorker implements IService.Iface {
       return RpcUtils.FAILURE;
     }
     RequestContext ctx = contextBuilder.build(req);
+    if (insertCoalescer.isEnabled()) {
+      return insertCoalescer.submit(ctx);
+    }
     executor.execute(ctx);
     return ctx.getResult().getStatus();
   }
@@ -891,6 +907,9 @@ public class IginxWorker implements IService.Iface {
     RequestContext ctx = contextBuilder.build(req);
     executor.execute(ctx);
     queryManager.registerQuery(ctx.getId(), ctx);
+    if (req.isSetDataSetFormat()) { // 后续 fetchResults 沿用本次协商的结果编码格式
+      ctx.getResult().setDataSetFormat(req.getDataSetFormat());
+    }
     return ctx.getResult().getExecuteStatementResp(req.getFetchSize());
   }
 
@@ -1424,6 +1443,8 @@ public class IginxWorker implements IService.Iface {
     Map<String, Boolean> rulesChange = req.getRulesChange();
     try {
       getRuleCollection().setRules(rulesChange);
+      // 优化规则变化后已缓存的查询计划失效
+      PlanCache.getInstance().invalidate();
       return RpcUtils.SUCCESS;
     } catch (Exception e) {
       LOGGER.error("set rules failed: ", e);
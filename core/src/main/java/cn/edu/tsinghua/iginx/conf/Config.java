@@ -79,6 +79,10 @@ public class Config {
 
   private long migrationBatchSize = 100;
 
+  private int migrationParallelism = 4;
+
+  private long migrationMaxPointsPerSecond = 0;
+
   private int maxReshardFragmentsNum = 3;
 
   private double maxTimeseriesLoadBalanceThreshold = 2;
@@ -129,7 +133,11 @@ public class Config {
 
   private int physicalTaskThreadPoolSizePerStorage = 100;
 
-  private int maxCachedPhysicalTaskPerStorage = 500;
+  private int storageTaskDispatcherThreadNum = 8;
+
+  private int maxConcurrentTaskPerStorage = 100;
+
+  private long physicalTaskQueueTimeout = 60000;
 
   private double cachedTimeseriesProb = 0.01;
 
@@ -149,6 +157,30 @@ public class Config {
 
   private boolean useStreamExecutor = true;
 
+  private boolean enableBatchExecution = false;
+
+  private int batchExecutionSize = 4096;
+
+  private boolean enableIncrementalAggregation = true;
+
+  private String spillDir = "spill";
+
+  private long sortMemoryBudget = 256 * 1024 * 1024L;
+
+  private long topNMaxSize = 100000;
+
+  private long joinMemoryBudget = 256 * 1024 * 1024L;
+
+  private long groupByMemoryBudget = 256 * 1024 * 1024L;
+
+  private int hashJoinPartitionNum = 16;
+
+  private long queryMemoryPoolSize = 0;
+
+  private long queryMemoryLimit = 0;
+
+  private long queryMemoryWaitTimeout = 10000;
+
   private boolean enableMemoryControl = true;
 
   private String systemResourceMetrics = "default";
@@ -188,7 +220,7 @@ public class Config {
   private int maxThriftWrokerThreadNum = 2147483647;
 
   private String ruleBasedOptimizer =
-      "NotFilterRemoveRule=on,FragmentPruningByFilterRule=on,ColumnPruningRule=on,FragmentPruningByPatternRule=on";
+      "NotFilterRemoveRule=on,FragmentPruningByFilterRule=on,ColumnPruningRule=on,FragmentPruningByPatternRule=on,TopNRule=on,LimitPushDownRule=on";
 
   //////////////
 
@@ -216,6 +248,26 @@ public class Config {
 
   private int batchSizeImportCsv = 10000;
 
+  private int parallelismImportCsv = 4;
+
+  /////////////
+
+  private boolean enableInsertCoalescing = false;
+
+  private long insertCoalescingWindowMs = 5;
+
+  private int insertCoalescingMaxPoints = 10000;
+
+  /////////////
+
+  private boolean enablePlanCache = false;
+
+  private int planCacheCapacity = 1000;
+
+  private boolean enableResultCache = false;
+
+  private long resultCacheMemoryBudget = 268435456L;
+
   /////////////
 
   private long initialReconnectInterval = 2;
@@ -430,6 +482,22 @@ public class Config {
     this.migrationBatchSize = migrationBatchSize;
   }
 
+  public int getMigrationParallelism() {
+    return migrationParallelism;
+  }
+
+  public void setMigrationParallelism(int migrationParallelism) {
+    this.migrationParallelism = migrationParallelism;
+  }
+
+  public long getMigrationMaxPointsPerSecond() {
+    return migrationMaxPointsPerSecond;
+  }
+
+  public void setMigrationMaxPointsPerSecond(long migrationMaxPointsPerSecond) {
+    this.migrationMaxPointsPerSecond = migrationMaxPointsPerSecond;
+  }
+
   public int getMaxReshardFragmentsNum() {
     return maxReshardFragmentsNum;
   }
@@ -630,12 +698,28 @@ public class Config {
     this.physicalTaskThreadPoolSizePerStorage = physicalTaskThreadPoolSizePerStorage;
   }
 
-  public int getMaxCachedPhysicalTaskPerStorage() {
-    return maxCachedPhysicalTaskPerStorage;
+  public int getStorageTaskDispatcherThreadNum() {
+    return storageTaskDispatcherThreadNum;
+  }
+
+  public void setStorageTaskDispatcherThreadNum(int storageTaskDispatcherThreadNum) {
+    this.storageTaskDispatcherThreadNum = storageTaskDispatcherThreadNum;
+  }
+
+  public int getMaxConcurrentTaskPerStorage() {
+    return maxConcurrentTaskPerStorage;
+  }
+
+  public void setMaxConcurrentTaskPerStorage(int maxConcurrentTaskPerStorage) {
+    this.maxConcurrentTaskPerStorage = maxConcurrentTaskPerStorage;
+  }
+
+  public long getPhysicalTaskQueueTimeout() {
+    return physicalTaskQueueTimeout;
   }
 
-  public void setMaxCachedPhysicalTaskPerStorage(int maxCachedPhysicalTaskPerStorage) {
-    this.maxCachedPhysicalTaskPerStorage = maxCachedPhysicalTaskPerStorage;
+  public void setPhysicalTaskQueueTimeout(long physicalTaskQueueTimeout) {
+    this.physicalTaskQueueTimeout = physicalTaskQueueTimeout;
   }
 
   public double getCachedTimeseriesProb() {
@@ -710,6 +794,102 @@ public class Config {
     this.useStreamExecutor = useStreamExecutor;
   }
 
+  public boolean isEnableBatchExecution() {
+    return enableBatchExecution;
+  }
+
+  public void setEnableBatchExecution(boolean enableBatchExecution) {
+    this.enableBatchExecution = enableBatchExecution;
+  }
+
+  public int getBatchExecutionSize() {
+    return batchExecutionSize;
+  }
+
+  public void setBatchExecutionSize(int batchExecutionSize) {
+    this.batchExecutionSize = batchExecutionSize;
+  }
+
+  public boolean isEnableIncrementalAggregation() {
+    return enableIncrementalAggregation;
+  }
+
+  public void setEnableIncrementalAggregation(boolean enableIncrementalAggregation) {
+    this.enableIncrementalAggregation = enableIncrementalAggregation;
+  }
+
+  public String getSpillDir() {
+    return spillDir;
+  }
+
+  public void setSpillDir(String spillDir) {
+    this.spillDir = spillDir;
+  }
+
+  public long getSortMemoryBudget() {
+    return sortMemoryBudget;
+  }
+
+  public void setSortMemoryBudget(long sortMemoryBudget) {
+    this.sortMemoryBudget = sortMemoryBudget;
+  }
+
+  public long getTopNMaxSize() {
+    return topNMaxSize;
+  }
+
+  public void setTopNMaxSize(long topNMaxSize) {
+    this.topNMaxSize = topNMaxSize;
+  }
+
+  public long getGroupByMemoryBudget() {
+    return groupByMemoryBudget;
+  }
+
+  public void setGroupByMemoryBudget(long groupByMemoryBudget) {
+    this.groupByMemoryBudget = groupByMemoryBudget;
+  }
+
+  public long getJoinMemoryBudget() {
+    return joinMemoryBudget;
+  }
+
+  public void setJoinMemoryBudget(long joinMemoryBudget) {
+    this.joinMemoryBudget = joinMemoryBudget;
+  }
+
+  public int getHashJoinPartitionNum() {
+    return hashJoinPartitionNum;
+  }
+
+  public void setHashJoinPartitionNum(int hashJoinPartitionNum) {
+    this.hashJoinPartitionNum = hashJoinPartitionNum;
+  }
+
+  public long getQueryMemoryPoolSize() {
+    return queryMemoryPoolSize;
+  }
+
+  public void setQueryMemoryPoolSize(long queryMemoryPoolSize) {
+    this.queryMemoryPoolSize = queryMemoryPoolSize;
+  }
+
+  public long getQueryMemoryLimit() {
+    return queryMemoryLimit;
+  }
+
+  public void setQueryMemoryLimit(long queryMemoryLimit) {
+    this.queryMemoryLimit = queryMemoryLimit;
+  }
+
+  public long getQueryMemoryWaitTimeout() {
+    return queryMemoryWaitTimeout;
+  }
+
+  public void setQueryMemoryWaitTimeout(long queryMemoryWaitTimeout) {
+    this.queryMemoryWaitTimeout = queryMemoryWaitTimeout;
+  }
+
   public boolean isEnableMemoryControl() {
     return enableMemoryControl;
   }
@@ -910,6 +1090,70 @@ public class Config {
     this.batchSizeImportCsv = batchSizeImportCsv;
   }
 
+  public int getParallelismImportCsv() {
+    return parallelismImportCsv;
+  }
+
+  public void setParallelismImportCsv(int parallelismImportCsv) {
+    this.parallelismImportCsv = parallelismImportCsv;
+  }
+
+  public boolean isEnableInsertCoalescing() {
+    return enableInsertCoalescing;
+  }
+
+  public void setEnableInsertCoalescing(boolean enableInsertCoalescing) {
+    this.enableInsertCoalescing = enableInsertCoalescing;
+  }
+
+  public long getInsertCoalescingWindowMs() {
+    return insertCoalescingWindowMs;
+  }
+
+  public void setInsertCoalescingWindowMs(long insertCoalescingWindowMs) {
+    this.insertCoalescingWindowMs = insertCoalescingWindowMs;
+  }
+
+  public int getInsertCoalescingMaxPoints() {
+    return insertCoalescingMaxPoints;
+  }
+
+  public void setInsertCoalescingMaxPoints(int insertCoalescingMaxPoints) {
+    this.insertCoalescingMaxPoints = insertCoalescingMaxPoints;
+  }
+
+  public boolean isEnablePlanCache() {
+    return enablePlanCache;
+  }
+
+  public void setEnablePlanCache(boolean enablePlanCache) {
+    this.enablePlanCache = enablePlanCache;
+  }
+
+  public int getPlanCacheCapacity() {
+    return planCacheCapacity;
+  }
+
+  public void setPlanCacheCapacity(int planCacheCapacity) {
+    this.planCacheCapacity = planCacheCapacity;
+  }
+
+  public boolean isEnableResultCache() {
+    return enableResultCache;
+  }
+
+  public void setEnableResultCache(boolean enableResultCache) {
+    this.enableResultCache = enableResultCache;
+  }
+
+  public long getResultCacheMemoryBudget() {
+    return resultCacheMemoryBudget;
+  }
+
+  public void setResultCacheMemoryBudget(long resultCacheMemoryBudget) {
+    this.resultCacheMemoryBudget = resultCacheMemoryBudget;
+  }
+
   public boolean isUTTestEnv() {
     return isUTTestEnv;
   }
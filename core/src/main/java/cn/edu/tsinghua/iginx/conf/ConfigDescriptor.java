@@ -99,6 +99,10 @@ public class ConfigDescriptor {
               "policyClassName", "cn.edu.tsinghua.iginx.policy.naive.NaivePolicy"));
       config.setMigrationBatchSize(
           Integer.parseInt(properties.getProperty("migrationBatchSize", "100")));
+      config.setMigrationParallelism(
+          Integer.parseInt(properties.getProperty("migrationParallelism", "4")));
+      config.setMigrationMaxPointsPerSecond(
+          Long.parseLong(properties.getProperty("migrationMaxPointsPerSecond", "0")));
       config.setEnableMonitor(
           Boolean.parseBoolean(properties.getProperty("enableMonitor", "false")));
       config.setLoadBalanceCheckInterval(
@@ -169,8 +173,12 @@ public class ConfigDescriptor {
       config.setPhysicalTaskThreadPoolSizePerStorage(
           Integer.parseInt(properties.getProperty("physicalTaskThreadPoolSizePerStorage", "100")));
 
-      config.setMaxCachedPhysicalTaskPerStorage(
-          Integer.parseInt(properties.getProperty("maxCachedPhysicalTaskPerStorage", "500")));
+      config.setStorageTaskDispatcherThreadNum(
+          Integer.parseInt(properties.getProperty("storageTaskDispatcherThreadNum", "8")));
+      config.setMaxConcurrentTaskPerStorage(
+          Integer.parseInt(properties.getProperty("maxConcurrentTaskPerStorage", "100")));
+      config.setPhysicalTaskQueueTimeout(
+          Long.parseLong(properties.getProperty("physicalTaskQueueTimeout", "60000")));
 
       config.setCachedTimeseriesProb(
           Double.parseDouble(properties.getProperty("cachedTimeseriesProb", "0.01")));
@@ -189,6 +197,27 @@ public class ConfigDescriptor {
           Boolean.parseBoolean(properties.getProperty("enablePushDown", "true")));
       config.setUseStreamExecutor(
           Boolean.parseBoolean(properties.getProperty("useStreamExecutor", "true")));
+      config.setEnableBatchExecution(
+          Boolean.parseBoolean(properties.getProperty("enableBatchExecution", "false")));
+      config.setBatchExecutionSize(
+          Integer.parseInt(properties.getProperty("batchExecutionSize", "4096")));
+      config.setEnableIncrementalAggregation(
+          Boolean.parseBoolean(properties.getProperty("enableIncrementalAggregation", "true")));
+      config.setSpillDir(properties.getProperty("spillDir", "spill"));
+      config.setSortMemoryBudget(
+          Long.parseLong(properties.getProperty("sortMemoryBudget", "268435456")));
+      config.setTopNMaxSize(Long.parseLong(properties.getProperty("topNMaxSize", "100000")));
+      config.setJoinMemoryBudget(
+          Long.parseLong(properties.getProperty("joinMemoryBudget", "268435456")));
+      config.setGroupByMemoryBudget(
+          Long.parseLong(properties.getProperty("groupByMemoryBudget", "268435456")));
+      config.setHashJoinPartitionNum(
+          Integer.parseInt(properties.getProperty("hashJoinPartitionNum", "16")));
+      config.setQueryMemoryPoolSize(
+          Long.parseLong(properties.getProperty("queryMemoryPoolSize", "0")));
+      config.setQueryMemoryLimit(Long.parseLong(properties.getProperty("queryMemoryLimit", "0")));
+      config.setQueryMemoryWaitTimeout(
+          Long.parseLong(properties.getProperty("queryMemoryWaitTimeout", "10000")));
 
       config.setEnableMemoryControl(
           Boolean.parseBoolean(properties.getProperty("enableMemoryControl", "true")));
@@ -235,10 +264,26 @@ public class ConfigDescriptor {
           Integer.parseInt(properties.getProperty("streamParallelGroupByWorkerNum", "5")));
       config.setBatchSizeImportCsv(
           Integer.parseInt(properties.getProperty("batchSizeImportCsv", "10000")));
+      config.setParallelismImportCsv(
+          Integer.parseInt(properties.getProperty("parallelismImportCsv", "4")));
+      config.setEnableInsertCoalescing(
+          Boolean.parseBoolean(properties.getProperty("enableInsertCoalescing", "false")));
+      config.setInsertCoalescingWindowMs(
+          Long.parseLong(properties.getProperty("insertCoalescingWindowMs", "5")));
+      config.setInsertCoalescingMaxPoints(
+          Integer.parseInt(properties.getProperty("insertCoalescingMaxPoints", "10000")));
+      config.setEnablePlanCache(
+          Boolean.parseBoolean(properties.getProperty("enablePlanCache", "false")));
+      config.setPlanCacheCapacity(
+          Integer.parseInt(properties.getProperty("planCacheCapacity", "1000")));
+      config.setEnableResultCache(
+          Boolean.parseBoolean(properties.getProperty("enableResultCache", "false")));
+      config.setResultCacheMemoryBudget(
+          Long.parseLong(properties.getProperty("resultCacheMemoryBudget", "268435456")));
       config.setRuleBasedOptimizer(
           properties.getProperty(
               "ruleBasedOptimizer",
-              "NotFilterRemoveRule=on,FragmentPruningByFilterRule=on,ColumnPruningRule=on,FragmentPruningByPatternRule=on"));
+              "NotFilterRemoveRule=on,FragmentPruningByFilterRule=on,ColumnPruningRule=on,FragmentPruningByPatternRule=on,TopNRule=on,LimitPushDownRule=on"));
       config.setInitialReconnectInterval(
           Long.parseLong(properties.getProperty("initialReconnectInterval", "2")));
       config.setMaxReconnectInterval(
@@ -308,9 +353,13 @@ public class ConfigDescriptor {
         EnvUtils.loadEnv(
             "physicalTaskThreadPoolSizePerStorage",
             config.getPhysicalTaskThreadPoolSizePerStorage()));
-    config.setMaxCachedPhysicalTaskPerStorage(
+    config.setStorageTaskDispatcherThreadNum(
         EnvUtils.loadEnv(
-            "maxCachedPhysicalTaskPerStorage", config.getMaxCachedPhysicalTaskPerStorage()));
+            "storageTaskDispatcherThreadNum", config.getStorageTaskDispatcherThreadNum()));
+    config.setMaxConcurrentTaskPerStorage(
+        EnvUtils.loadEnv("maxConcurrentTaskPerStorage", config.getMaxConcurrentTaskPerStorage()));
+    config.setPhysicalTaskQueueTimeout(
+        EnvUtils.loadEnv("physicalTaskQueueTimeout", config.getPhysicalTaskQueueTimeout()));
     config.setCachedTimeseriesProb(
         EnvUtils.loadEnv("cachedTimeseriesProb", config.getCachedTimeseriesProb()));
     config.setRetryCount(EnvUtils.loadEnv("retryCount", config.getRetryCount()));
@@ -325,6 +374,15 @@ public class ConfigDescriptor {
     config.setEnablePushDown(EnvUtils.loadEnv("enablePushDown", config.isEnablePushDown()));
     config.setUseStreamExecutor(
         EnvUtils.loadEnv("useStreamExecutor", config.isUseStreamExecutor()));
+    config.setEnableBatchExecution(
+        EnvUtils.loadEnv("enableBatchExecution", config.isEnableBatchExecution()));
+    config.setBatchExecutionSize(
+        EnvUtils.loadEnv("batchExecutionSize", config.getBatchExecutionSize()));
+    config.setEnableIncrementalAggregation(
+        EnvUtils.loadEnv("enableIncrementalAggregation", config.isEnableIncrementalAggregation()));
+    config.setSpillDir(EnvUtils.loadEnv("spillDir", config.getSpillDir()));
+    config.setSortMemoryBudget(EnvUtils.loadEnv("sortMemoryBudget", config.getSortMemoryBudget()));
+    config.setTopNMaxSize(EnvUtils.loadEnv("topNMaxSize", config.getTopNMaxSize()));
     config.setEnableMemoryControl(
         EnvUtils.loadEnv("enableMemoryControl", config.isEnableMemoryControl()));
     config.setSystemResourceMetrics(
@@ -370,6 +428,21 @@ public class ConfigDescriptor {
             "streamParallelGroupByWorkerNum", config.getStreamParallelGroupByWorkerNum()));
     config.setBatchSizeImportCsv(
         EnvUtils.loadEnv("batchSizeImportCsv", config.getBatchSizeImportCsv()));
+    config.setParallelismImportCsv(
+        EnvUtils.loadEnv("parallelismImportCsv", config.getParallelismImportCsv()));
+    config.setEnableInsertCoalescing(
+        EnvUtils.loadEnv("enableInsertCoalescing", config.isEnableInsertCoalescing()));
+    config.setInsertCoalescingWindowMs(
+        EnvUtils.loadEnv("insertCoalescingWindowMs", config.getInsertCoalescingWindowMs()));
+    config.setInsertCoalescingMaxPoints(
+        EnvUtils.loadEnv("insertCoalescingMaxPoints", config.getInsertCoalescingMaxPoints()));
+    config.setEnablePlanCache(EnvUtils.loadEnv("enablePlanCache", config.isEnablePlanCache()));
+    config.setPlanCacheCapacity(
+        EnvUtils.loadEnv("planCacheCapacity", config.getPlanCacheCapacity()));
+    config.setEnableResultCache(
+        EnvUtils.loadEnv("enableResultCache", config.isEnableResultCache()));
+    config.setResultCacheMemoryBudget(
+        EnvUtils.loadEnv("resultCacheMemoryBudget", config.getResultCacheMemoryBudget()));
     config.setUTTestEnv(EnvUtils.loadEnv("utTestEnv", config.isUTTestEnv()));
     config.setRuleBasedOptimizer(
         EnvUtils.loadEnv("ruleBasedOptimizer", config.getRuleBasedOptimizer()));
@@ -129,11 +129,10 @@ public class ContextBuilder {
       List<ByteBuffer> bitmapList,
       List<Map<String, String>> tagsList,
       TimePrecision timePrecision) {
-    long[] timeArray = ByteUtils.getLongArrayFromByteArray(timestamps);
-    List<Long> times = new ArrayList<>();
+    long[] times = ByteUtils.getLongArrayFromByteArray(timestamps);
     if (timePrecision == null) timePrecision = config.getTimePrecision();
-    for (long time : timeArray) {
-      times.add(TimeUtils.getTimeInNs(time, timePrecision));
+    for (int i = 0; i < times.length; i++) {
+      times[i] = TimeUtils.getTimeInNs(times[i], timePrecision);
     }
 
     List<Bitmap> bitmaps;
@@ -147,9 +146,9 @@ public class ContextBuilder {
     } else {
       bitmaps =
           bitmapList.stream()
-              .map(x -> new Bitmap(times.size(), x.array()))
+              .map(x -> new Bitmap(times.length, x.array()))
               .collect(Collectors.toList());
-      values = ByteUtils.getColumnValuesByDataType(valueList, types, bitmapList, times.size());
+      values = ByteUtils.getColumnValuesByDataType(valueList, types, bitmapList, times.length);
     }
 
     InsertStatement statement =
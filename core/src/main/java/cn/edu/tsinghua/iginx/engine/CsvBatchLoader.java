@@ -0,0 +1,146 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** 导入 csv 时并发写入各批次。key 范围与之前未完成批次重叠的批次要等那些批次写完再提交，从而保证重复 key 仍以文件中靠后的行为准，与顺序导入的结果一致。 */
+class CsvBatchLoader {
+
+  private final ExecutorService pool;
+
+  private final Semaphore inFlight;
+
+  private final AtomicBoolean failed = new AtomicBoolean(false);
+
+  private final List<Batch> batches = new ArrayList<>();
+
+  /**
+   * @param pool 执行写入的线程池，由多次导入共享
+   * @param parallelism 本次导入同时写入的批次数上限
+   */
+  CsvBatchLoader(ExecutorService pool, int parallelism) {
+    this.pool = pool;
+    this.inFlight = new Semaphore(Math.max(1, parallelism));
+  }
+
+  /** 从迭代器中取出至多 batchSize 个元素作为一个批次 */
+  static <T> List<T> nextBatch(Iterator<T> iterator, int batchSize) {
+    List<T> batch = new ArrayList<>(batchSize);
+    for (int n = 0; n < batchSize && iterator.hasNext(); n++) {
+      batch.add(iterator.next());
+    }
+    return batch;
+  }
+
+  /**
+   * 提交一个批次，阻塞直到有空闲的并发额度，且之前 key 范围与之重叠的批次都已写完
+   *
+   * @param write 执行写入，返回是否成功
+   * @return 是否已提交，之前有批次失败时不再提交
+   */
+  boolean submit(long minKey, long maxKey, Callable<Boolean> write)
+      throws InterruptedException, ExecutionException {
+    for (Batch batch : batches) {
+      if (!batch.future.isDone() && batch.minKey <= maxKey && minKey <= batch.maxKey) {
+        batch.future.get();
+      }
+    }
+    batches.removeIf(batch -> batch.future.isDone() && !isFailed(batch.future));
+    inFlight.acquire();
+    if (failed.get()) {
+      inFlight.release();
+      return false;
+    }
+    Future<Boolean> future =
+        pool.submit(
+            () -> {
+              try {
+                boolean success = write.call();
+                if (!success) {
+                  failed.set(true);
+                }
+                return success;
+              } catch (Exception e) {
+                failed.set(true);
+                throw e;
+              } finally {
+                inFlight.release();
+              }
+            });
+    batches.add(new Batch(minKey, maxKey, future));
+    return true;
+  }
+
+  boolean hasFailed() {
+    return failed.get();
+  }
+
+  /**
+   * 等待所有已提交的批次写完
+   *
+   * @return 是否所有批次都写入成功
+   * @throws ExecutionException 某个批次写入时抛出的异常
+   */
+  boolean await() throws InterruptedException, ExecutionException {
+    for (Batch batch : batches) {
+      batch.future.get();
+    }
+    return !failed.get();
+  }
+
+  /** 放弃尚未开始的批次 */
+  void cancel() {
+    for (Batch batch : batches) {
+      batch.future.cancel(false);
+    }
+  }
+
+  private static boolean isFailed(Future<Boolean> future) {
+    try {
+      return !future.get();
+    } catch (Exception e) {
+      return true;
+    }
+  }
+
+  private static class Batch {
+
+    private final long minKey;
+
+    private final long maxKey;
+
+    private final Future<Boolean> future;
+
+    private Batch(long minKey, long maxKey, Future<Boolean> future) {
+      this.minKey = minKey;
+      this.maxKey = maxKey;
+      this.future = future;
+    }
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.engine.shared.data.write.RawDataType;
+import cn.edu.tsinghua.iginx.sql.statement.InsertStatement;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.thrift.Status;
+import cn.edu.tsinghua.iginx.utils.Bitmap;
+import cn.edu.tsinghua.iginx.utils.Pair;
+import cn.edu.tsinghua.iginx.utils.RpcUtils;
+import java.util.*;
+import java.util.concurrent.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 写入合并：将同一会话在时间窗口内并发到达的小批量写入请求合并为一个 InsertStatement 执行，合并后的写入完成后再统一返回各请求的结果。
+ * 合并后的语句仍按分片拆分，因此每个分片在一个窗口内只产生一次后端写入。合并后的写入失败时逐个重新执行各请求，使每个请求得到自己的结果。
+ */
+public class InsertCoalescer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InsertCoalescer.class);
+
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  private final StatementExecutor executor = StatementExecutor.getInstance();
+
+  private final ScheduledExecutorService scheduler =
+      Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+
+  private final Object lock = new Object();
+
+  // 按会话分别缓冲，合并后的语句在其所有请求共同的会话下执行
+  private final Map<Long, Buffer> buffers = new HashMap<>();
+
+  private static class InsertCoalescerHolder {
+    private static final InsertCoalescer INSTANCE = new InsertCoalescer();
+  }
+
+  private InsertCoalescer() {}
+
+  public static InsertCoalescer getInstance() {
+    return InsertCoalescerHolder.INSTANCE;
+  }
+
+  public boolean isEnabled() {
+    return config.isEnableInsertCoalescing();
+  }
+
+  /** 提交一个由写入 RPC 构造的请求，阻塞直到包含该请求的合并写入完成 */
+  public Status submit(RequestContext ctx) {
+    InsertStatement statement = (InsertStatement) ctx.getStatement();
+    int maxPoints = config.getInsertCoalescingMaxPoints();
+    if (Buffer.countPoints(statement) > maxPoints) {
+      return executeDirectly(ctx);
+    }
+
+    long sessionId = ctx.getSessionId();
+    Pending pending = new Pending(ctx);
+    Buffer full = null;
+    boolean conflicted = false;
+    synchronized (lock) {
+      Buffer buffer = buffers.computeIfAbsent(sessionId, k -> new Buffer());
+      if (!buffer.add(statement)) {
+        conflicted = true;
+      } else {
+        buffer.pendings.add(pending);
+        if (buffer.points >= maxPoints) {
+          full = buffer;
+          buffers.remove(sessionId);
+        } else if (buffer.pendings.size() == 1) {
+          Buffer current = buffer;
+          scheduler.schedule(
+              () -> flush(sessionId, current),
+              config.getInsertCoalescingWindowMs(),
+              TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+    if (conflicted) {
+      // 与缓冲中的数据类型冲突，单独执行以保留原有的报错行为
+      return executeDirectly(ctx);
+    }
+    if (full != null) {
+      write(full);
+    }
+
+    try {
+      return pending.future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return RpcUtils.FAILURE;
+    } catch (ExecutionException e) {
+      LOGGER.error("unexpected error when waiting for coalesced insert: ", e);
+      return RpcUtils.FAILURE;
+    }
+  }
+
+  private Status executeDirectly(RequestContext ctx) {
+    executor.execute(ctx);
+    return ctx.getResult().getStatus();
+  }
+
+  private void flush(long sessionId, Buffer target) {
+    synchronized (lock) {
+      if (buffers.get(sessionId) != target) { // 已经因为数据点数达到上限被写入
+        return;
+      }
+      buffers.remove(sessionId);
+    }
+    write(target);
+  }
+
+  private void write(Buffer target) {
+    List<Pending> pendings = target.pendings;
+    Status status;
+    try {
+      RequestContext ctx =
+          new RequestContext(pendings.get(0).ctx.getSessionId(), target.toStatement());
+      executor.execute(ctx);
+      status = ctx.getResult().getStatus();
+    } catch (Exception e) {
+      LOGGER.error("execute coalesced insert failure: ", e);
+      status = RpcUtils.FAILURE;
+    }
+    if (pendings.size() == 1 || status.equals(RpcUtils.SUCCESS)) {
+      for (Pending pending : pendings) {
+        pending.future.complete(status);
+      }
+      return;
+    }
+    // 合并后的写入失败时无法区分是哪个请求导致的，逐个重新执行，避免一个请求的错误影响其他请求
+    LOGGER.warn(
+        "coalesced insert of {} requests failed: {}, execute them one by one",
+        pendings.size(),
+        status.getMessage());
+    for (Pending pending : pendings) {
+      Status own;
+      try {
+        own = executeDirectly(pending.ctx);
+      } catch (Exception e) {
+        LOGGER.error("execute insert failure: ", e);
+        own = RpcUtils.FAILURE;
+      }
+      pending.future.complete(own);
+    }
+  }
+
+  /** 缓冲中等待合并写入的请求 */
+  private static class Pending {
+
+    private final RequestContext ctx;
+
+    private final CompletableFuture<Status> future = new CompletableFuture<>();
+
+    private Pending(RequestContext ctx) {
+      this.ctx = ctx;
+    }
+  }
+
+  /** 一个合并窗口内缓冲的数据，按序列（路径与标签）保存各 key 上的值，同一 key 上后到达的值覆盖先到达的值 */
+  static class Buffer {
+
+    private final Map<Pair<String, Map<String, String>>, DataType> types = new HashMap<>();
+
+    private final Map<Pair<String, Map<String, String>>, TreeMap<Long, Object>> series =
+        new HashMap<>();
+
+    private final List<Pending> pendings = new ArrayList<>();
+
+    private int points = 0;
+
+    static int countPoints(InsertStatement statement) {
+      int count = 0;
+      for (Object value : statement.getValues()) {
+        count += ((Object[]) value).length;
+      }
+      return count;
+    }
+
+    /** 将语句中的数据并入缓冲，与已有序列类型冲突时不做任何修改并返回 false */
+    boolean add(InsertStatement statement) {
+      List<String> paths = statement.getPaths();
+      List<DataType> dataTypes = statement.getTypes();
+      List<Pair<String, Map<String, String>>> seriesKeys = new ArrayList<>(paths.size());
+      for (int i = 0; i < paths.size(); i++) {
+        Pair<String, Map<String, String>> seriesKey =
+            new Pair<>(paths.get(i), getTags(statement, i));
+        DataType type = types.get(seriesKey);
+        if (type != null && type != dataTypes.get(i)) {
+          return false;
+        }
+        seriesKeys.add(seriesKey);
+      }
+
+      long[] keys = statement.getKeys();
+      Object[] values = statement.getValues();
+      List<Bitmap> bitmaps = statement.getBitmaps();
+      List<TreeMap<Long, Object>> targets = new ArrayList<>(paths.size());
+      for (int i = 0; i < paths.size(); i++) {
+        types.put(seriesKeys.get(i), dataTypes.get(i));
+        targets.add(series.computeIfAbsent(seriesKeys.get(i), k -> new TreeMap<>()));
+      }
+      RawDataType rawDataType = statement.getRawDataType();
+      if (rawDataType == RawDataType.Row || rawDataType == RawDataType.NonAlignedRow) {
+        for (int j = 0; j < keys.length; j++) {
+          Object[] rowValues = (Object[]) values[j];
+          Bitmap bitmap = bitmaps.get(j);
+          int index = 0;
+          for (int i = 0; i < paths.size(); i++) {
+            if (bitmap.get(i)) {
+              put(targets.get(i), keys[j], rowValues[index++]);
+            }
+          }
+        }
+      } else {
+        for (int i = 0; i < paths.size(); i++) {
+          Object[] columnValues = (Object[]) values[i];
+          Bitmap bitmap = bitmaps.get(i);
+          int index = 0;
+          for (int j = 0; j < keys.length; j++) {
+            if (bitmap.get(j)) {
+              put(targets.get(i), keys[j], columnValues[index++]);
+            }
+          }
+        }
+      }
+      return true;
+    }
+
+    private void put(TreeMap<Long, Object> target, long key, Object value) {
+      if (target.put(key, value) == null) {
+        points++;
+      }
+    }
+
+    private static Map<String, String> getTags(InsertStatement statement, int index) {
+      List<Map<String, String>> tagsList = statement.getTagsList();
+      if (tagsList == null || tagsList.isEmpty() || tagsList.get(index) == null) {
+        return Collections.emptyMap();
+      }
+      return tagsList.get(index);
+    }
+
+    int getPoints() {
+      return points;
+    }
+
+    /** 以非对齐列式数据的形式生成合并后的语句，路径与 key 均有序 */
+    InsertStatement toStatement() {
+      List<Pair<String, Map<String, String>>> seriesKeys = new ArrayList<>(series.keySet());
+      seriesKeys.sort(
+          Comparator.comparing((Pair<String, Map<String, String>> p) -> p.k)
+              .thenComparing(p -> p.v.toString()));
+
+      TreeSet<Long> keySet = new TreeSet<>();
+      for (TreeMap<Long, Object> points : series.values()) {
+        keySet.addAll(points.keySet());
+      }
+      long[] keys = new long[keySet.size()];
+      Map<Long, Integer> keyIndex = new HashMap<>();
+      int keyCount = 0;
+      for (long key : keySet) {
+        keyIndex.put(key, keyCount);
+        keys[keyCount++] = key;
+      }
+
+      List<String> paths = new ArrayList<>(seriesKeys.size());
+      List<Map<String, String>> tagsList = new ArrayList<>(seriesKeys.size());
+      List<DataType> dataTypes = new ArrayList<>(seriesKeys.size());
+      List<Bitmap> bitmaps = new ArrayList<>(seriesKeys.size());
+      Object[] values = new Object[seriesKeys.size()];
+      for (int i = 0; i < seriesKeys.size(); i++) {
+        Pair<String, Map<String, String>> seriesKey = seriesKeys.get(i);
+        TreeMap<Long, Object> points = series.get(seriesKey);
+        Bitmap bitmap = new Bitmap(keys.length);
+        Object[] columnValues = new Object[points.size()];
+        int index = 0;
+        for (Map.Entry<Long, Object> entry : points.entrySet()) {
+          bitmap.mark(keyIndex.get(entry.getKey()));
+          columnValues[index++] = entry.getValue();
+        }
+        paths.add(seriesKey.k);
+        tagsList.add(new HashMap<>(seriesKey.v));
+        dataTypes.add(types.get(seriesKey));
+        bitmaps.add(bitmap);
+        values[i] = columnValues;
+      }
+      return new InsertStatement(
+          RawDataType.NonAlignedColumn, paths, keys, values, dataTypes, bitmaps, tagsList);
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.metadata.DefaultMetaManager;
+import cn.edu.tsinghua.iginx.metadata.IMetaManager;
+import cn.edu.tsinghua.iginx.sql.statement.Statement;
+import cn.edu.tsinghua.iginx.sql.statement.StatementType;
+import cn.edu.tsinghua.iginx.sql.statement.select.SelectStatement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 查询计划缓存：以规范化后的 SQL 文本为键，缓存逻辑优化后的操作符树，命中后跳过逻辑计划生成和优化，每次执行使用操作符树的副本。
+ * 执行过程中会修改语句对象，因此不缓存语句，每次执行重新解析。分片、存储单元、存储引擎、Python 函数或优化规则发生变化时清空缓存。
+ */
+public class PlanCache {
+
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  // 含有 now() 的语句每次解析得到的常量不同，不能缓存
+  private static final Pattern NOW_PATTERN = Pattern.compile("(?i)\\bnow\\s*\\(");
+
+  private final Map<String, CachedPlan> plans;
+
+  private long version = 0; // 每次清空缓存后递增，由 plans 的锁保护
+
+  private static class PlanCacheHolder {
+    private static final PlanCache INSTANCE =
+        new PlanCache(DefaultMetaManager.getInstance(), config.getPlanCacheCapacity());
+  }
+
+  PlanCache(IMetaManager metaManager, int capacity) {
+    this.plans =
+        new LinkedHashMap<String, CachedPlan>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CachedPlan> eldest) {
+            return size() > capacity;
+          }
+        };
+    metaManager.registerFragmentChangeHook((create, fragment) -> invalidate());
+    metaManager.registerStorageUnitHook((before, after) -> invalidate());
+    metaManager.registerStorageEngineChangeHook((before, after) -> invalidate());
+    metaManager.registerPyFunctionChangeHook((name, pyFunctionMeta) -> invalidate());
+  }
+
+  public static PlanCache getInstance() {
+    return PlanCacheHolder.INSTANCE;
+  }
+
+  public boolean isEnabled() {
+    return config.isEnablePlanCache();
+  }
+
+  public CachedPlan get(String sql) {
+    String key = normalize(sql);
+    synchronized (plans) {
+      return plans.get(key);
+    }
+  }
+
+  /** 生成计划前获取，生成期间缓存被清空时放弃缓存得到的计划 */
+  public long getVersion() {
+    synchronized (plans) {
+      return version;
+    }
+  }
+
+  public void put(String sql, long version, Statement statement, Operator root) {
+    if (!isCacheable(sql, statement)) {
+      return;
+    }
+    String key = normalize(sql);
+    CachedPlan plan = new CachedPlan(root.copy());
+    synchronized (plans) {
+      if (this.version == version) {
+        plans.put(key, plan);
+      }
+    }
+  }
+
+  public void invalidate() {
+    synchronized (plans) {
+      version++;
+      plans.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (plans) {
+      return plans.size();
+    }
+  }
+
+  static boolean isCacheable(String sql, Statement statement) {
+    if (statement.getType() != StatementType.SELECT) {
+      return false;
+    }
+    SelectStatement selectStatement = (SelectStatement) statement;
+    if (selectStatement.isNeedLogicalExplain()
+        || selectStatement.isNeedPhysicalExplain()
+        || selectStatement.isNeedAnalyzeExplain()) {
+      return false;
+    }
+    return !NOW_PATTERN.matcher(sql).find();
+  }
+
+  /** 合并引号外的连续空白字符，并去除首尾空白和结尾的分号 */
+  static String normalize(String sql) {
+    StringBuilder builder = new StringBuilder(sql.length());
+    char quote = 0;
+    boolean pendingSpace = false;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        builder.append(c);
+        if (c == quote) {
+          quote = 0;
+        }
+        continue;
+      }
+      if (Character.isWhitespace(c)) {
+        pendingSpace = builder.length() > 0;
+        continue;
+      }
+      if (pendingSpace) {
+        builder.append(' ');
+        pendingSpace = false;
+      }
+      if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      }
+      builder.append(c);
+    }
+    int end = builder.length();
+    while (end > 0 && (builder.charAt(end - 1) == ';' || builder.charAt(end - 1) == ' ')) {
+      end--;
+    }
+    builder.setLength(end);
+    return builder.toString();
+  }
+
+  public static class CachedPlan {
+
+    private final Operator root;
+
+    CachedPlan(Operator root) {
+      this.root = root;
+    }
+
+    /** 执行过程中可能修改操作符树，每次返回一个副本 */
+    public Operator copyRoot() {
+      return root.copy();
+    }
+  }
+}
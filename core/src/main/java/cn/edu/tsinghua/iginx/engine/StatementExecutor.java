@@ -37,6 +37,7 @@ import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.EmptyRowStream;
 import cn.edu.tsinghua.iginx.engine.physical.task.PhysicalTask;
+import cn.edu.tsinghua.iginx.engine.physical.task.visitor.TaskAnalyzeVisitor;
 import cn.edu.tsinghua.iginx.engine.physical.task.visitor.TaskInfoVisitor;
 import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
 import cn.edu.tsinghua.iginx.engine.shared.Result;
@@ -58,6 +59,7 @@ import cn.edu.tsinghua.iginx.engine.shared.processor.*;
 import cn.edu.tsinghua.iginx.exception.StatusCode;
 import cn.edu.tsinghua.iginx.metadata.DefaultMetaManager;
 import cn.edu.tsinghua.iginx.metadata.IMetaManager;
+import cn.edu.tsinghua.iginx.resource.QueryResourceManager;
 import cn.edu.tsinghua.iginx.resource.ResourceManager;
 import cn.edu.tsinghua.iginx.sql.exception.SQLParserException;
 import cn.edu.tsinghua.iginx.sql.statement.*;
@@ -76,7 +78,11 @@ import java.lang.reflect.InvocationTargetException;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
@@ -99,8 +105,17 @@ public class StatementExecutor {
 
   private static final ResourceManager resourceManager = ResourceManager.getInstance();
 
+  private static final QueryResourceManager queryResourceManager =
+      QueryResourceManager.getInstance();
+
   private static final IMetaManager metaManager = DefaultMetaManager.getInstance();
 
+  private static final PlanCache planCache = PlanCache.getInstance();
+
+  // 导入 csv 时并发写入批次的线程池，由所有导入共享
+  private static final ExecutorService importCsvPool =
+      Executors.newFixedThreadPool(Math.max(1, config.getParallelismImportCsv()));
+
   private static final Map<StatementType, List<LogicalGenerator>> generatorMap = new HashMap<>();
 
   private static final List<LogicalGenerator> queryGeneratorList = new ArrayList<>();
@@ -244,10 +259,17 @@ public class StatementExecutor {
       return;
     }
     before(ctx, preExecuteProcessors);
-    if (ctx.isFromSQL()) {
-      executeSQL(ctx);
-    } else {
-      executeStatement(ctx);
+    try {
+      if (ctx.isFromSQL()) {
+        executeSQL(ctx);
+      } else {
+        executeStatement(ctx);
+      }
+    } finally {
+      if (!ctx.isUseStream()) {
+        // 非流式查询的结果已经全部取出，流式查询在关闭时归还
+        queryResourceManager.releaseMemory(ctx.getId());
+      }
     }
     after(ctx, postExecuteProcessors);
   }
@@ -255,7 +277,12 @@ public class StatementExecutor {
   public void executeSQL(RequestContext ctx) {
     try {
       before(ctx, preParseProcessors);
+      // 语句在执行过程中会被修改，即使命中计划缓存也重新解析，只复用操作符树
       builder.buildFromSQL(ctx);
+      PlanCache.CachedPlan plan = planCache.isEnabled() ? planCache.get(ctx.getSql()) : null;
+      if (plan != null) {
+        ctx.setCachedRoot(plan.copyRoot());
+      }
       after(ctx, postParseProcessors);
       executeStatement(ctx);
     } catch (SQLParserException | ParseCancellationException e) {
@@ -330,10 +357,18 @@ public class StatementExecutor {
 
   private void process(RequestContext ctx) throws StatementExecutionException, PhysicalException {
     StatementType type = ctx.getStatement().getType();
+    if (type == StatementType.SELECT) {
+      if (config.isEnableMemoryControl() && queryResourceManager.isMemoryPoolExhausted()) {
+        throw new StatementExecutionException(
+            "Execute Error: query memory pool is exhausted, please retry later.");
+      }
+      // 提前创建内存上下文，使 SHOW QUERIES 能够列出所有正在执行的查询
+      queryResourceManager.getMemoryContext(ctx);
+    }
     List<LogicalGenerator> generatorList = generatorMap.get(type);
     for (LogicalGenerator generator : generatorList) {
       before(ctx, preLogicalProcessors);
-      Operator root = generator.generate(ctx);
+      Operator root = generate(ctx, generator);
       after(ctx, postLogicalProcessors);
       if (root == null && !metaManager.hasWritableStorageEngines()) {
         ctx.setResult(new Result(RpcUtils.SUCCESS));
@@ -349,6 +384,10 @@ public class StatementExecutor {
           }
         }
 
+        if (type == StatementType.SELECT) {
+          ctx.setNeedAnalyze(((SelectStatement) ctx.getStatement()).isNeedAnalyzeExplain());
+        }
+
         before(ctx, prePhysicalProcessors);
         RowStream stream = engine.execute(ctx, root);
         after(ctx, postPhysicalProcessors);
@@ -359,6 +398,10 @@ public class StatementExecutor {
             processExplainPhysicalStatement(ctx);
             return;
           }
+          if (selectStatement.isNeedAnalyzeExplain()) {
+            processExplainAnalyzeStatement(ctx, stream);
+            return;
+          }
         }
 
         setResult(ctx, stream);
@@ -368,6 +411,22 @@ public class StatementExecutor {
     throw new StatementExecutionException("Execute Error: can not construct a legal logical tree.");
   }
 
+  /** 命中查询计划缓存时直接使用缓存的操作符树，否则生成操作符树并尝试放入缓存 */
+  private Operator generate(RequestContext ctx, LogicalGenerator generator) {
+    if (ctx.getCachedRoot() != null) {
+      return ctx.getCachedRoot();
+    }
+    if (!planCache.isEnabled() || !ctx.isFromSQL()) {
+      return generator.generate(ctx);
+    }
+    long version = planCache.getVersion();
+    Operator root = generator.generate(ctx);
+    if (root != null) {
+      planCache.put(ctx.getSql(), version, ctx.getStatement(), root);
+    }
+    return root;
+  }
+
   private void processExplainLogicalStatement(RequestContext ctx, Operator root)
       throws PhysicalException, StatementExecutionException {
     List<Field> fields =
@@ -401,6 +460,39 @@ public class StatementExecutor {
     formatTree(ctx, header, visitor.getCache(), visitor.getMaxLen());
   }
 
+  private void processExplainAnalyzeStatement(RequestContext ctx, RowStream stream)
+      throws PhysicalException, StatementExecutionException {
+    // 完整消费查询结果，使各任务的统计信息完整
+    try {
+      while (stream.hasNext()) {
+        stream.next();
+      }
+    } finally {
+      stream.close();
+    }
+
+    PhysicalTask root = ctx.getPhysicalTree();
+    List<Field> fields =
+        new ArrayList<>(
+            Arrays.asList(
+                new Field("Physical Tree", DataType.BINARY),
+                new Field("Task Type", DataType.BINARY),
+                new Field("Task Info", DataType.BINARY),
+                new Field("Push Down Type", DataType.BINARY),
+                new Field("Wall Time", DataType.BINARY),
+                new Field("CPU Time", DataType.BINARY),
+                new Field("Queue Wait", DataType.BINARY),
+                new Field("Rows In", DataType.LONG),
+                new Field("Rows Out", DataType.LONG),
+                new Field("Bytes Out", DataType.LONG),
+                new Field("Peak Buffered Rows", DataType.LONG)));
+    Header header = new Header(fields);
+
+    TaskAnalyzeVisitor visitor = new TaskAnalyzeVisitor();
+    root.accept(visitor);
+    formatTree(ctx, header, visitor.getCache(), visitor.getMaxLen());
+  }
+
   private void formatTree(RequestContext ctx, Header header, List<Object[]> cache, int maxLen)
       throws PhysicalException, StatementExecutionException {
     List<Row> rows = new ArrayList<>();
@@ -429,6 +521,7 @@ public class StatementExecutor {
 
     // step 2: export file
     setResultFromRowStream(ctx, stream);
+    queryResourceManager.releaseMemory(selectContext.getId());
     ExportFile exportFile = statement.getExportFile();
     switch (exportFile.getType()) {
       case CSV:
@@ -542,127 +635,78 @@ public class StatementExecutor {
       // type must be fixed once set, just like paths
       List<DataType> types = null;
 
-      while (iterator.hasNext()) {
-        long KeyStart = keyBase + count;
-        List<CSVRecord> records = new ArrayList<>(BATCH_SIZE);
-        // 每次从文件中取出BATCH_SIZE行数据
-        for (int n = 0; n < BATCH_SIZE && iterator.hasNext(); n++) {
-          tmp = iterator.next();
-          // more values are OK; the extra ones are skipped
-          if (tmp.size() < pathSize + delta) {
-            throw new RuntimeException(
-                "The paths' size doesn't match csv data at line: " + tmp.getRecordNumber());
-          }
-          records.add(tmp);
-        }
-
-        int recordsSize = records.size();
-        Long[] keys = new Long[recordsSize];
-        Object[][] values = new Object[recordsSize][pathSize];
-        List<Bitmap> bitmaps = new ArrayList<>();
-
-        // 填充 types
-        // 类型推断一定可以在一个batch中完成
-        if (types == null) {
-          types = new ArrayList<>();
-          Set<Integer> dataTypeIndex = new HashSet<>();
-          for (int i = 0; i < pathSize; i++) {
-            types.add(null);
-          }
-          for (int i = 0; i < pathSize; i++) {
-            dataTypeIndex.add(i);
-          }
-
+      // 读取线程负责切分 csv 记录并按顺序计算 key，类型转换和写入交给导入线程池并发执行
+      CsvBatchLoader loader = new CsvBatchLoader(importCsvPool, config.getParallelismImportCsv());
+      AtomicLong inserted = new AtomicLong(0);
+      long startTime = System.currentTimeMillis();
+      boolean success;
+      try {
+        while (iterator.hasNext() && !loader.hasFailed()) {
+          long keyStart = keyBase + count;
+          // 每次从文件中取出BATCH_SIZE行数据
+          List<CSVRecord> records = CsvBatchLoader.nextBatch(iterator, BATCH_SIZE);
           for (CSVRecord record : records) {
-            if (dataTypeIndex.isEmpty()) {
-              break;
-            }
-            for (int j = 0; j < pathSize; j++) {
-              if (!dataTypeIndex.contains(j)) {
-                continue;
-              }
-              DataType inferredDataType =
-                  DataTypeInferenceUtils.getInferredDataType(record.get(j + delta));
-              if (inferredDataType != null) { // 找到每一列第一个不为 null 的值进行类型推断
-                types.set(j, inferredDataType);
-                dataTypeIndex.remove(j);
-              }
+            // more values are OK; the extra ones are skipped
+            if (record.size() < pathSize + delta) {
+              throw new RuntimeException(
+                  "The paths' size doesn't match csv data at line: " + record.getRecordNumber());
             }
           }
-          if (!dataTypeIndex.isEmpty()) {
-            for (Integer index : dataTypeIndex) {
-              types.set(index, DataType.BINARY);
-            }
-          }
-          // sort types by paths
-          List<DataType> sortedDataTypeList = new ArrayList<>();
-          for (int i = 0; i < idx.length; i++) {
-            sortedDataTypeList.add(types.get(idx[i]));
-          }
-          types = sortedDataTypeList;
-        }
 
-        // 填充 keys, values 和 bitmaps
-        for (int i = 0; i < recordsSize; i++) {
-          CSVRecord record = records.get(i);
-          if (keyInFile.get()) keys[i] = Long.parseLong(record.get(keyIdx)) + keyBase; // 指定了同名key列
-          else if (keyIdx != -1) keys[i] = tryParse2Key(record.get(keyIdx)) + keyBase; // 指定了非同名key列
-          else keys[i] = (long) i + KeyStart; // 需要自增key列
-          Bitmap bitmap = new Bitmap(pathSize);
-
-          // 按照排好序的列来处理
-          for (int index = 0; index < pathSize; ) {
-            int j = idx[index];
-            if (!record.get(j + delta).equalsIgnoreCase("null")) {
-              bitmap.mark(index);
-              switch (types.get(index)) { // types已经排好序了
-                case BOOLEAN:
-                  values[i][index] = Boolean.parseBoolean(record.get(j + delta));
-                  index++;
-                  break;
-                case INTEGER:
-                  values[i][index] = Integer.parseInt(record.get(j + delta));
-                  index++;
-                  break;
-                case LONG:
-                  values[i][index] = Long.parseLong(record.get(j + delta));
-                  index++;
-                  break;
-                case FLOAT:
-                  values[i][index] = Float.parseFloat(record.get(j + delta));
-                  index++;
-                  break;
-                case DOUBLE:
-                  values[i][index] = Double.parseDouble(record.get(j + delta));
-                  index++;
-                  break;
-                case BINARY:
-                  values[i][index] = record.get(j + delta).getBytes();
-                  index++;
-                  break;
-                default:
-              }
-            }
+          // 类型推断一定可以在一个batch中完成
+          if (types == null) {
+            types = inferCsvTypes(records, pathSize, delta, idx);
           }
-          bitmaps.add(bitmap);
-        }
 
-        insertStatement.setKeys(new ArrayList<>(Arrays.asList(keys)));
-        insertStatement.setValues(values);
-        insertStatement.setTypes(types);
-        insertStatement.setBitmaps(bitmaps);
-
-        // do the actual insert
-        LOGGER.info("Inserting {} rows, {} rows completed", recordsSize, count);
-        RequestContext subInsertContext = new RequestContext(ctx.getSessionId(), insertStatement);
-        process(subInsertContext);
-
-        if (!subInsertContext.getResult().getStatus().equals(RpcUtils.SUCCESS)) {
-          ctx.setResult(new Result(RpcUtils.FAILURE));
-          return;
+          CsvBatchLayout layout =
+              new CsvBatchLayout(keyInFile.get(), keyIdx, keyBase, delta, idx, types);
+          long[] keys = computeCsvKeys(records, keyStart, layout);
+          long minKey = Arrays.stream(keys).min().orElse(keyStart);
+          long maxKey = Arrays.stream(keys).max().orElse(keyStart);
+          boolean submitted =
+              loader.submit(
+                  minKey,
+                  maxKey,
+                  () -> {
+                    InsertStatement batch =
+                        buildCsvInsertBatch(insertStatement, records, keys, layout);
+                    RequestContext subInsertContext = new RequestContext(ctx.getSessionId(), batch);
+                    process(subInsertContext);
+                    if (!subInsertContext.getResult().getStatus().equals(RpcUtils.SUCCESS)) {
+                      return false;
+                    }
+                    long completed = inserted.addAndGet(records.size());
+                    long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+                    LOGGER.info(
+                        "Inserted {} rows, {} rows completed, {} rows/s",
+                        records.size(),
+                        completed,
+                        completed * 1000 / elapsed);
+                    return true;
+                  });
+          if (!submitted) {
+            break;
+          }
+          count += records.size();
         }
-        count += recordsSize;
+        success = loader.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted when loading csv file " + tmpCSV.getName(), e);
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      } finally {
+        loader.cancel();
       }
+      if (!success) {
+        ctx.setResult(new Result(RpcUtils.FAILURE));
+        return;
+      }
+      LOGGER.info(
+          "Loaded {} rows from csv file {} in {} ms",
+          count,
+          tmpCSV.getName(),
+          System.currentTimeMillis() - startTime);
       ctx.setResult(new Result(RpcUtils.SUCCESS));
       ctx.getResult().setLoadCSVColumns(insertStatement.getPaths());
       ctx.getResult().setLoadCSVRecordNum(count);
@@ -672,13 +716,161 @@ public class StatementExecutor {
               + tmpCSV.getCanonicalPath()
               + ", because "
               + e.getMessage());
-    } catch (StatementExecutionException | PhysicalException e) {
+    } catch (StatementExecutionException e) {
       throw new RuntimeException(e);
     }
 
     Files.delete(tmpCSV.toPath());
   }
 
+  /** csv 中 key 列和各数据列的位置，由读取线程确定后交给工作线程使用 */
+  private static class CsvBatchLayout {
+
+    private final boolean keyInFile;
+
+    private final int keyIdx;
+
+    private final long keyBase;
+
+    private final int delta;
+
+    private final Integer[] idx;
+
+    private final List<DataType> types;
+
+    private CsvBatchLayout(
+        boolean keyInFile,
+        int keyIdx,
+        long keyBase,
+        int delta,
+        Integer[] idx,
+        List<DataType> types) {
+      this.keyInFile = keyInFile;
+      this.keyIdx = keyIdx;
+      this.keyBase = keyBase;
+      this.delta = delta;
+      this.idx = idx;
+      this.types = types;
+    }
+  }
+
+  /** 找到每一列第一个不为 null 的值进行类型推断，返回按路径排好序的类型列表 */
+  private static List<DataType> inferCsvTypes(
+      List<CSVRecord> records, int pathSize, int delta, Integer[] idx) {
+    List<DataType> types = new ArrayList<>();
+    Set<Integer> dataTypeIndex = new HashSet<>();
+    for (int i = 0; i < pathSize; i++) {
+      types.add(null);
+    }
+    for (int i = 0; i < pathSize; i++) {
+      dataTypeIndex.add(i);
+    }
+
+    for (CSVRecord record : records) {
+      if (dataTypeIndex.isEmpty()) {
+        break;
+      }
+      for (int j = 0; j < pathSize; j++) {
+        if (!dataTypeIndex.contains(j)) {
+          continue;
+        }
+        DataType inferredDataType =
+            DataTypeInferenceUtils.getInferredDataType(record.get(j + delta));
+        if (inferredDataType != null) {
+          types.set(j, inferredDataType);
+          dataTypeIndex.remove(j);
+        }
+      }
+    }
+    if (!dataTypeIndex.isEmpty()) {
+      for (Integer index : dataTypeIndex) {
+        types.set(index, DataType.BINARY);
+      }
+    }
+    // sort types by paths
+    List<DataType> sortedDataTypeList = new ArrayList<>();
+    for (int i = 0; i < idx.length; i++) {
+      sortedDataTypeList.add(types.get(idx[i]));
+    }
+    return sortedDataTypeList;
+  }
+
+  /** 计算一批 csv 记录的 key，写入前需要根据 key 范围确定批次之间的写入顺序 */
+  private static long[] computeCsvKeys(
+      List<CSVRecord> records, long keyStart, CsvBatchLayout layout) {
+    long[] keys = new long[records.size()];
+    for (int i = 0; i < records.size(); i++) {
+      CSVRecord record = records.get(i);
+      if (layout.keyInFile) {
+        keys[i] = Long.parseLong(record.get(layout.keyIdx)) + layout.keyBase; // 指定了同名key列
+      } else if (layout.keyIdx != -1) {
+        keys[i] = tryParse2Key(record.get(layout.keyIdx)) + layout.keyBase; // 指定了非同名key列
+      } else {
+        keys[i] = i + keyStart; // 需要自增key列
+      }
+    }
+    return keys;
+  }
+
+  /** 将一批 csv 记录转换为独立的 InsertStatement，各批次之间不共享可变状态，可以并发写入 */
+  private static InsertStatement buildCsvInsertBatch(
+      InsertStatement template, List<CSVRecord> records, long[] keys, CsvBatchLayout layout) {
+    int recordsSize = records.size();
+    int pathSize = layout.types.size();
+    Object[][] values = new Object[recordsSize][pathSize];
+    List<Bitmap> bitmaps = new ArrayList<>(recordsSize);
+
+    // 填充 values 和 bitmaps
+    for (int i = 0; i < recordsSize; i++) {
+      CSVRecord record = records.get(i);
+      Bitmap bitmap = new Bitmap(pathSize);
+
+      // 按照排好序的列来处理
+      for (int index = 0; index < pathSize; index++) {
+        String value = record.get(layout.idx[index] + layout.delta);
+        if (value.equalsIgnoreCase("null")) {
+          continue;
+        }
+        bitmap.mark(index);
+        switch (layout.types.get(index)) { // types已经排好序了
+          case BOOLEAN:
+            values[i][index] = Boolean.parseBoolean(value);
+            break;
+          case INTEGER:
+            values[i][index] = Integer.parseInt(value);
+            break;
+          case LONG:
+            values[i][index] = Long.parseLong(value);
+            break;
+          case FLOAT:
+            values[i][index] = Float.parseFloat(value);
+            break;
+          case DOUBLE:
+            values[i][index] = Double.parseDouble(value);
+            break;
+          case BINARY:
+            values[i][index] = value.getBytes();
+            break;
+          default:
+        }
+      }
+      bitmaps.add(bitmap);
+    }
+
+    InsertStatement batch =
+        new InsertStatement(
+            template.getRawDataType(),
+            new ArrayList<>(template.getPaths()),
+            keys,
+            values,
+            layout.types,
+            bitmaps,
+            new ArrayList<>(template.getTagsList()));
+    batch.setPrefixPath(template.getPrefixPath());
+    batch.setGlobalTags(template.getGlobalTags());
+    return batch;
+  }
+
   private void processInsertFromSelect(RequestContext ctx)
       throws StatementExecutionException, PhysicalException {
     InsertFromSelectStatement statement = (InsertFromSelectStatement) ctx.getStatement();
@@ -694,6 +886,7 @@ public class StatementExecutor {
     InsertStatement insertStatement = statement.getSubInsertStatement();
     parseOldTagsFromHeader(rowStream.getHeader(), insertStatement);
     parseInsertValuesSpecFromRowStream(statement.getKeyOffset(), rowStream, insertStatement);
+    queryResourceManager.releaseMemory(subSelectContext.getId());
     RequestContext subInsertContext =
         new RequestContext(ctx.getSessionId(), insertStatement, ctx.isUseStream());
     process(subInsertContext);
@@ -932,7 +1125,7 @@ public class StatementExecutor {
     List<DataType> types = new ArrayList<>();
     header.getFields().forEach(field -> types.add(field.getType()));
 
-    List<Long> times = new ArrayList<>();
+    long[] times = new long[16];
     List<Object[]> rows = new ArrayList<>();
     List<Bitmap> bitmaps = new ArrayList<>();
 
@@ -949,15 +1142,14 @@ public class StatementExecutor {
       }
       bitmaps.add(bitmap);
 
-      if (header.hasKey()) {
-        times.add(row.getKey() + offset);
-      } else {
-        times.add(i + offset);
+      if (rows.size() > times.length) {
+        times = Arrays.copyOf(times, times.length * 2);
       }
+      times[rows.size() - 1] = header.hasKey() ? row.getKey() + offset : i + offset;
     }
     Object[][] values = rows.toArray(new Object[0][0]);
 
-    insertStatement.setKeys(times);
+    insertStatement.setKeys(Arrays.copyOf(times, rows.size()));
     insertStatement.setValues(values);
     insertStatement.setTypes(types);
     insertStatement.setBitmaps(bitmaps);
@@ -115,12 +115,12 @@ public class InsertGenerator extends AbstractGenerator {
   private DataView getDataSection(FragmentMeta meta, RawData rawData) {
     KeyInterval keyInterval = meta.getKeyInterval();
     ColumnsInterval columnsInterval = meta.getColumnsInterval();
-    List<Long> insertTimes = rawData.getKeys();
+    long[] insertTimes = rawData.getKeys();
     List<String> paths = rawData.getPaths();
 
     // time overlap doesn't exist.
-    if (keyInterval.getStartKey() > insertTimes.get(insertTimes.size() - 1)
-        || keyInterval.getEndKey() <= insertTimes.get(0)) {
+    if (keyInterval.getStartKey() > insertTimes[insertTimes.length - 1]
+        || keyInterval.getEndKey() <= insertTimes[0]) {
       return null;
     }
 
@@ -133,10 +133,10 @@ public class InsertGenerator extends AbstractGenerator {
     }
 
     int startKeyIndex = 0;
-    while (keyInterval.getStartKey() > insertTimes.get(startKeyIndex)) startKeyIndex++;
+    while (keyInterval.getStartKey() > insertTimes[startKeyIndex]) startKeyIndex++;
     int endKeyIndex = startKeyIndex;
-    while (endKeyIndex < insertTimes.size()
-        && keyInterval.getEndKey() > insertTimes.get(endKeyIndex)) endKeyIndex++;
+    while (endKeyIndex < insertTimes.length && keyInterval.getEndKey() > insertTimes[endKeyIndex])
+      endKeyIndex++;
 
     int startPathIndex = 0;
     if (columnsInterval.getStartColumn() != null) {
@@ -26,6 +26,7 @@ import cn.edu.tsinghua.iginx.engine.physical.memory.queue.MemoryPhysicalTaskQueu
 import cn.edu.tsinghua.iginx.engine.physical.memory.queue.MemoryPhysicalTaskQueueImpl;
 import cn.edu.tsinghua.iginx.engine.physical.task.MemoryPhysicalTask;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
+import cn.edu.tsinghua.iginx.engine.physical.task.TaskStatistics;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import org.slf4j.Logger;
@@ -56,6 +57,7 @@ public class MemoryPhysicalTaskDispatcher {
   }
 
   public boolean addMemoryTask(MemoryPhysicalTask task) {
+    task.getStatistics().markQueued(System.currentTimeMillis());
     return taskQueue.addTask(task);
   }
 
@@ -74,13 +76,17 @@ public class MemoryPhysicalTaskDispatcher {
                     MemoryPhysicalTask currentTask = task;
                     while (currentTask != null) {
                       TaskExecuteResult result;
+                      TaskStatistics statistics = currentTask.getStatistics();
+                      statistics.markDequeued();
                       long startTime = System.currentTimeMillis();
+                      long startCpuTime = statistics.beginExecute();
                       try {
                         result = currentTask.execute();
                       } catch (Exception e) {
                         LOGGER.error("execute memory task failure: ", e);
                         result = new TaskExecuteResult(new PhysicalException(e));
                       }
+                      statistics.endExecute(startCpuTime);
                       long span = System.currentTimeMillis() - startTime;
                       currentTask.setSpan(span);
                       currentTask.setResult(result);
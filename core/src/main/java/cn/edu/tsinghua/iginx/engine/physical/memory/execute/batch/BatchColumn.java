@@ -0,0 +1,225 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.BitSet;
+
+/** 一列数据的批式存储，值保存在原生类型数组中，空值由 validity 位图标记 */
+public final class BatchColumn {
+
+  private final DataType type;
+
+  private final int capacity;
+
+  private final BitSet validity;
+
+  private boolean[] booleans;
+
+  private int[] ints;
+
+  private long[] longs;
+
+  private float[] floats;
+
+  private double[] doubles;
+
+  private byte[][] binaries;
+
+  public BatchColumn(DataType type, int capacity) {
+    this.type = type;
+    this.capacity = capacity;
+    this.validity = new BitSet(capacity);
+    switch (type) {
+      case BOOLEAN:
+        booleans = new boolean[capacity];
+        break;
+      case INTEGER:
+        ints = new int[capacity];
+        break;
+      case LONG:
+        longs = new long[capacity];
+        break;
+      case FLOAT:
+        floats = new float[capacity];
+        break;
+      case DOUBLE:
+        doubles = new double[capacity];
+        break;
+      case BINARY:
+        binaries = new byte[capacity][];
+        break;
+      default:
+        throw new IllegalArgumentException("unsupported data type: " + type);
+    }
+  }
+
+  public DataType getType() {
+    return type;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public boolean isNull(int index) {
+    return !validity.get(index);
+  }
+
+  public BitSet getValidity() {
+    return validity;
+  }
+
+  public boolean getBoolean(int index) {
+    return booleans[index];
+  }
+
+  public int getInt(int index) {
+    return ints[index];
+  }
+
+  public long getLong(int index) {
+    return longs[index];
+  }
+
+  public float getFloat(int index) {
+    return floats[index];
+  }
+
+  public double getDouble(int index) {
+    return doubles[index];
+  }
+
+  public byte[] getBinary(int index) {
+    return binaries[index];
+  }
+
+  /** 以 double 形式读取数值列，与 ValueUtils.transformToDouble 的转换规则保持一致 */
+  public double getAsDouble(int index) {
+    switch (type) {
+      case INTEGER:
+        return ints[index];
+      case LONG:
+        return longs[index];
+      case FLOAT:
+        return Double.parseDouble(Float.toString(floats[index]));
+      case DOUBLE:
+        return doubles[index];
+      default:
+        throw new IllegalStateException("column of type " + type + " is not numeric");
+    }
+  }
+
+  public Object getObject(int index) {
+    if (isNull(index)) {
+      return null;
+    }
+    switch (type) {
+      case BOOLEAN:
+        return booleans[index];
+      case INTEGER:
+        return ints[index];
+      case LONG:
+        return longs[index];
+      case FLOAT:
+        return floats[index];
+      case DOUBLE:
+        return doubles[index];
+      case BINARY:
+        return binaries[index];
+      default:
+        throw new IllegalStateException("unsupported data type: " + type);
+    }
+  }
+
+  public void setNull(int index) {
+    validity.clear(index);
+  }
+
+  public void setObject(int index, Object value) {
+    if (value == null) {
+      setNull(index);
+      return;
+    }
+    switch (type) {
+      case BOOLEAN:
+        booleans[index] = (Boolean) value;
+        break;
+      case INTEGER:
+        ints[index] = (Integer) value;
+        break;
+      case LONG:
+        longs[index] = (Long) value;
+        break;
+      case FLOAT:
+        floats[index] = (Float) value;
+        break;
+      case DOUBLE:
+        doubles[index] = (Double) value;
+        break;
+      case BINARY:
+        binaries[index] = (byte[]) value;
+        break;
+      default:
+        throw new IllegalStateException("unsupported data type: " + type);
+    }
+    validity.set(index);
+  }
+
+  /**
+   * 按选择向量拷贝出一列新的紧凑数据
+   *
+   * @param positions 被选中的行号，按升序排列
+   * @param count positions 中有效元素的个数
+   */
+  public BatchColumn select(int[] positions, int count) {
+    BatchColumn column = new BatchColumn(type, count);
+    for (int i = 0; i < count; i++) {
+      int from = positions[i];
+      if (!validity.get(from)) {
+        continue;
+      }
+      switch (type) {
+        case BOOLEAN:
+          column.booleans[i] = booleans[from];
+          break;
+        case INTEGER:
+          column.ints[i] = ints[from];
+          break;
+        case LONG:
+          column.longs[i] = longs[from];
+          break;
+        case FLOAT:
+          column.floats[i] = floats[from];
+          break;
+        case DOUBLE:
+          column.doubles[i] = doubles[from];
+          break;
+        case BINARY:
+          column.binaries[i] = binaries[from];
+          break;
+        default:
+          break;
+      }
+      column.validity.set(i);
+    }
+    return column;
+  }
+}
@@ -0,0 +1,307 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.BoolFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.NotFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/** 对整个 ColumnBatch 计算过滤条件，结果以布尔掩码返回；无法向量化的条件回退到 FilterUtils 逐行计算 */
+public class BatchFilterUtils {
+
+  public static boolean[] evaluate(Filter filter, ColumnBatch batch) throws PhysicalException {
+    int size = batch.getSize();
+    boolean[] mask = new boolean[size];
+    switch (filter.getType()) {
+      case Bool:
+        Arrays.fill(mask, ((BoolFilter) filter).isTrue());
+        return mask;
+      case And:
+        Arrays.fill(mask, true);
+        for (Filter child : ((AndFilter) filter).getChildren()) {
+          boolean[] childMask = evaluate(child, batch);
+          boolean any = false;
+          for (int i = 0; i < size; i++) {
+            mask[i] &= childMask[i];
+            any |= mask[i];
+          }
+          if (!any) { // 已经没有满足条件的行，无需继续计算
+            break;
+          }
+        }
+        return mask;
+      case Or:
+        for (Filter child : ((OrFilter) filter).getChildren()) {
+          boolean[] childMask = evaluate(child, batch);
+          for (int i = 0; i < size; i++) {
+            mask[i] |= childMask[i];
+          }
+        }
+        return mask;
+      case Not:
+        boolean[] notMask = evaluate(((NotFilter) filter).getChild(), batch);
+        for (int i = 0; i < size; i++) {
+          mask[i] = !notMask[i];
+        }
+        return mask;
+      case Key:
+        evaluateKeyFilter((KeyFilter) filter, batch, mask);
+        return mask;
+      case Value:
+        if (evaluateValueFilter((ValueFilter) filter, batch, mask)) {
+          return mask;
+        }
+        break;
+      default:
+        break;
+    }
+    for (int i = 0; i < size; i++) {
+      // 与逐行执行保持一致，计算失败时整个查询失败
+      mask[i] = FilterUtils.validate(filter, batch.getRow(i));
+    }
+    return mask;
+  }
+
+  private static void evaluateKeyFilter(KeyFilter keyFilter, ColumnBatch batch, boolean[] mask) {
+    if (!batch.hasKey()) {
+      return;
+    }
+    long[] keys = batch.getKeys();
+    long target = keyFilter.getValue();
+    for (int i = 0; i < batch.getSize(); i++) {
+      long key = keys[i];
+      if (key == Row.NON_EXISTED_KEY) {
+        continue;
+      }
+      switch (keyFilter.getOp()) {
+        case E:
+        case E_AND:
+          mask[i] = key == target;
+          break;
+        case G:
+        case G_AND:
+          mask[i] = key > target;
+          break;
+        case L:
+        case L_AND:
+          mask[i] = key < target;
+          break;
+        case GE:
+        case GE_AND:
+          mask[i] = key >= target;
+          break;
+        case LE:
+        case LE_AND:
+          mask[i] = key <= target;
+          break;
+        case NE:
+        case NE_AND:
+          mask[i] = key != target;
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  /**
+   * 对路径唯一对应一个数值列、比较对象为数值常量的 ValueFilter 进行向量化计算
+   *
+   * @return 是否已完成计算，返回 false 时需要回退到逐行计算
+   */
+  private static boolean evaluateValueFilter(
+      ValueFilter valueFilter, ColumnBatch batch, boolean[] mask) {
+    Value target = valueFilter.getValue();
+    if (target.isNull()) { // targetValue是空值，则认为不可比较
+      return true;
+    }
+    if (!ValueUtils.isNumericType(target) || !isCompareOp(valueFilter.getOp())) {
+      return false;
+    }
+    List<Integer> indexList = batch.getHeader().patternIndexOf(valueFilter.getPath());
+    if (indexList.isEmpty()) {
+      return true;
+    }
+    if (indexList.size() != 1) {
+      return false;
+    }
+    BatchColumn column = batch.getColumn(indexList.get(0));
+    DataType type = column.getType();
+    if (!ValueUtils.isNumericType(type)) {
+      return false;
+    }
+
+    Op op = valueFilter.getOp();
+    int size = batch.getSize();
+    if (type == target.getDataType()) {
+      switch (type) {
+        case INTEGER:
+          int intTarget = target.getIntV();
+          for (int i = 0; i < size; i++) {
+            mask[i] =
+                !column.isNull(i) && matches(op, Integer.compare(column.getInt(i), intTarget));
+          }
+          return true;
+        case LONG:
+          long longTarget = target.getLongV();
+          for (int i = 0; i < size; i++) {
+            mask[i] = !column.isNull(i) && matches(op, Long.compare(column.getLong(i), longTarget));
+          }
+          return true;
+        case FLOAT:
+          float floatTarget = target.getFloatV();
+          for (int i = 0; i < size; i++) {
+            mask[i] =
+                !column.isNull(i) && matches(op, Float.compare(column.getFloat(i), floatTarget));
+          }
+          return true;
+        default:
+          break;
+      }
+    }
+    double doubleTarget = ValueUtils.transformToDouble(target).getDoubleV();
+    if (type == DataType.FLOAT) {
+      evaluateFloatColumn(column, op, doubleTarget, mask, size);
+      return true;
+    }
+    for (int i = 0; i < size; i++) {
+      mask[i] =
+          !column.isNull(i) && matches(op, Double.compare(column.getAsDouble(i), doubleTarget));
+    }
+    return true;
+  }
+
+  /**
+   * FLOAT 列与非 FLOAT 常量比较时，逐行计算会先将 float 按十进制表示转换为 double。该转换是单调的， 因此预先二分出比较结果为 0 的 float 区间，逐值只需比较
+   * float 的有序键，避免逐值解析字符串
+   */
+  private static void evaluateFloatColumn(
+      BatchColumn column, Op op, double target, boolean[] mask, int size) {
+    long lowest = toSortableKey(Float.NEGATIVE_INFINITY);
+    long highest = toSortableKey(Float.POSITIVE_INFINITY);
+    long lower = searchFloatKey(lowest, highest, target, false); // 首个比较结果 >= 0 的键
+    long upper = searchFloatKey(lowest, highest, target, true); // 首个比较结果 > 0 的键
+    int nanCmp = Double.compare(Double.NaN, target);
+    for (int i = 0; i < size; i++) {
+      if (column.isNull(i)) {
+        mask[i] = false;
+        continue;
+      }
+      float value = column.getFloat(i);
+      int cmp;
+      if (Float.isNaN(value)) {
+        cmp = nanCmp;
+      } else {
+        long key = toSortableKey(value);
+        cmp = key < lower ? -1 : key < upper ? 0 : 1;
+      }
+      mask[i] = matches(op, cmp);
+    }
+  }
+
+  private static long searchFloatKey(long lowest, long highest, double target, boolean strict) {
+    long left = lowest;
+    long right = highest + 1;
+    while (left < right) {
+      long mid = left + (right - left) / 2;
+      double value = new BigDecimal(Float.toString(fromSortableKey(mid))).doubleValue();
+      int cmp = Double.compare(value, target);
+      if (strict ? cmp > 0 : cmp >= 0) {
+        right = mid;
+      } else {
+        left = mid + 1;
+      }
+    }
+    return left;
+  }
+
+  /** 将 float 映射为与 Float.compare 顺序一致的整数键 */
+  private static long toSortableKey(float value) {
+    int bits = Float.floatToIntBits(value);
+    return bits ^ ((bits >> 31) & 0x7fffffff);
+  }
+
+  private static float fromSortableKey(long key) {
+    int bits = (int) key;
+    return Float.intBitsToFloat(bits ^ ((bits >> 31) & 0x7fffffff));
+  }
+
+  private static boolean isCompareOp(Op op) {
+    switch (op) {
+      case LIKE:
+      case LIKE_AND:
+      case NOT_LIKE:
+      case NOT_LIKE_AND:
+        return false;
+      default:
+        return true;
+    }
+  }
+
+  private static boolean matches(Op op, int cmp) {
+    switch (op) {
+      case E:
+      case E_AND:
+        return cmp == 0;
+      case G:
+      case G_AND:
+        return cmp > 0;
+      case L:
+      case L_AND:
+        return cmp < 0;
+      case GE:
+      case GE_AND:
+        return cmp >= 0;
+      case LE:
+      case LE_AND:
+        return cmp <= 0;
+      case NE:
+      case NE_AND:
+        return cmp != 0;
+      default:
+        return false;
+    }
+  }
+
+  /** 将掩码转换为升序的选择向量，返回值为被选中的行数 */
+  public static int toSelection(boolean[] mask, int[] positions) {
+    int count = 0;
+    for (int i = 0; i < mask.length; i++) {
+      if (mask[i]) {
+        positions[count++] = i;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+
+/** 将 BatchStream 展开为逐行的 RowStream，供尚未迁移到批式执行的算子使用 */
+public class BatchToRowStream implements RowStream {
+
+  private final BatchStream stream;
+
+  private RequestContext context;
+
+  private ColumnBatch batch;
+
+  private int index = 0;
+
+  public BatchToRowStream(BatchStream stream) {
+    this.stream = stream;
+  }
+
+  public BatchStream getBatchStream() {
+    return stream;
+  }
+
+  /** 是否还没有任何数据被读取，此时可以安全地直接使用内部的 BatchStream */
+  boolean isUntouched() {
+    return batch == null;
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    return stream.getHeader();
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    stream.close();
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    while (batch == null || index >= batch.getSize()) {
+      if (!stream.hasNext()) {
+        return false;
+      }
+      batch = stream.next();
+      index = 0;
+    }
+    return true;
+  }
+
+  @Override
+  public Row next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("row stream doesn't have more data!");
+    }
+    return batch.getRow(index++);
+  }
+
+  @Override
+  public void setContext(RequestContext context) {
+    this.context = context;
+  }
+
+  @Override
+  public RequestContext getContext() {
+    return context;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import java.util.ArrayList;
+import java.util.List;
+
+/** 列式的数据批次：key 保存在 long 数组中，每一列对应一个 BatchColumn */
+public final class ColumnBatch {
+
+  private final Header header;
+
+  private final long[] keys;
+
+  private final BatchColumn[] columns;
+
+  private final int size;
+
+  public ColumnBatch(Header header, long[] keys, BatchColumn[] columns, int size) {
+    if (columns.length != header.getFieldSize()) {
+      throw new IllegalArgumentException(
+          "column count " + columns.length + " mismatch header " + header);
+    }
+    this.header = header;
+    this.keys = keys;
+    this.columns = columns;
+    this.size = size;
+  }
+
+  public static ColumnBatch fromRows(Header header, List<Row> rows) {
+    int size = rows.size();
+    long[] keys = null;
+    if (header.hasKey()) {
+      keys = new long[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = rows.get(i).getKey();
+      }
+    }
+    BatchColumn[] columns = new BatchColumn[header.getFieldSize()];
+    for (int j = 0; j < columns.length; j++) {
+      BatchColumn column = new BatchColumn(header.getField(j).getType(), size);
+      for (int i = 0; i < size; i++) {
+        column.setObject(i, rows.get(i).getValue(j));
+      }
+      columns[j] = column;
+    }
+    return new ColumnBatch(header, keys, columns, size);
+  }
+
+  public Header getHeader() {
+    return header;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public boolean hasKey() {
+    return keys != null;
+  }
+
+  public long getKey(int index) {
+    return keys == null ? Row.NON_EXISTED_KEY : keys[index];
+  }
+
+  public long[] getKeys() {
+    return keys;
+  }
+
+  public BatchColumn getColumn(int index) {
+    return columns[index];
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  public Row getRow(int index) {
+    Object[] values = new Object[columns.length];
+    for (int j = 0; j < columns.length; j++) {
+      values[j] = columns[j].getObject(index);
+    }
+    return new Row(header, getKey(index), values);
+  }
+
+  public List<Row> toRows() {
+    List<Row> rows = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      rows.add(getRow(i));
+    }
+    return rows;
+  }
+
+  /** 按选择向量生成新的批次，positions 需按升序排列 */
+  public ColumnBatch select(int[] positions, int count) {
+    if (count == size) {
+      return this;
+    }
+    long[] newKeys = null;
+    if (keys != null) {
+      newKeys = new long[count];
+      for (int i = 0; i < count; i++) {
+        newKeys[i] = keys[positions[i]];
+      }
+    }
+    BatchColumn[] newColumns = new BatchColumn[columns.length];
+    for (int j = 0; j < columns.length; j++) {
+      newColumns[j] = columns[j].select(positions, count);
+    }
+    return new ColumnBatch(header, newKeys, newColumns, count);
+  }
+
+  /** 按列下标投影，列数据直接复用不做拷贝 */
+  public ColumnBatch project(Header targetHeader, int[] columnIndexes) {
+    BatchColumn[] newColumns = new BatchColumn[columnIndexes.length];
+    for (int j = 0; j < columnIndexes.length; j++) {
+      newColumns[j] = columns[columnIndexes[j]];
+    }
+    return new ColumnBatch(targetHeader, targetHeader.hasKey() ? keys : null, newColumns, size);
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.KEY;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class ProjectBatchStream implements BatchStream {
+
+  private final Project project;
+
+  private final BatchStream stream;
+
+  private Header header;
+
+  private int[] columnIndexes;
+
+  private ColumnBatch nextBatch;
+
+  public ProjectBatchStream(Project project, BatchStream stream) {
+    this.project = project;
+    this.stream = stream;
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    if (header == null) {
+      List<String> patterns = project.getPatterns();
+      Header header = stream.getHeader();
+      List<Field> targetFields = new ArrayList<>();
+
+      for (Field field : header.getFields()) {
+        if (project.isRemainKey() && field.getName().endsWith(KEY)) {
+          targetFields.add(field);
+          continue;
+        }
+        for (String pattern : patterns) {
+          if (!StringUtils.isPattern(pattern)) {
+            if (pattern.equals(field.getFullName())) {
+              targetFields.add(field);
+            }
+          } else {
+            if (Pattern.matches(StringUtils.reformatPath(pattern), field.getFullName())) {
+              targetFields.add(field);
+            }
+          }
+        }
+      }
+      columnIndexes = new int[targetFields.size()];
+      for (int i = 0; i < targetFields.size(); i++) {
+        columnIndexes[i] = header.indexOf(targetFields.get(i));
+      }
+      this.header = new Header(header.getKey(), targetFields);
+    }
+    return header;
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    stream.close();
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    Header header = getHeader();
+    while (nextBatch == null && stream.hasNext()) {
+      ColumnBatch batch = stream.next().project(header, columnIndexes);
+      // 与 ProjectLazyStream 一致，投影后所有列均为空的行需要被丢弃
+      BitSet nonEmpty = new BitSet(batch.getSize());
+      for (int j = 0; j < batch.getColumnCount(); j++) {
+        nonEmpty.or(batch.getColumn(j).getValidity());
+      }
+      int count = nonEmpty.cardinality();
+      if (count == 0) {
+        continue;
+      }
+      int[] positions = new int[count];
+      for (int i = nonEmpty.nextSetBit(0), k = 0; i >= 0; i = nonEmpty.nextSetBit(i + 1)) {
+        positions[k++] = i;
+      }
+      nextBatch = batch.select(positions, count);
+    }
+    return nextBatch != null;
+  }
+
+  @Override
+  public ColumnBatch next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("batch stream doesn't have more data!");
+    }
+    ColumnBatch batch = nextBatch;
+    nextBatch = null;
+    return batch;
+  }
+}
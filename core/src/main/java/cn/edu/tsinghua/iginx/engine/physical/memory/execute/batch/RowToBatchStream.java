@@ -0,0 +1,81 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/** 将行式的 RowStream 按固定行数打包为 ColumnBatch */
+public class RowToBatchStream implements BatchStream {
+
+  private final RowStream stream;
+
+  private final int batchSize;
+
+  public RowToBatchStream(RowStream stream, int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("batch size should be positive: " + batchSize);
+    }
+    this.stream = stream;
+    this.batchSize = batchSize;
+  }
+
+  /** 如果 stream 本身是由 BatchStream 转换而来，则直接取出内部的 BatchStream，避免来回转换 */
+  public static BatchStream of(RowStream stream, int batchSize) {
+    if (stream instanceof BatchToRowStream) {
+      BatchToRowStream adapter = (BatchToRowStream) stream;
+      if (adapter.isUntouched()) {
+        return adapter.getBatchStream();
+      }
+    }
+    return new RowToBatchStream(stream, batchSize);
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    return stream.getHeader();
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    stream.close();
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    return stream.hasNext();
+  }
+
+  @Override
+  public ColumnBatch next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("batch stream doesn't have more data!");
+    }
+    List<Row> rows = new ArrayList<>(batchSize);
+    while (rows.size() < batchSize && stream.hasNext()) {
+      rows.add(stream.next());
+    }
+    return ColumnBatch.fromRows(stream.getHeader(), rows);
+  }
+}
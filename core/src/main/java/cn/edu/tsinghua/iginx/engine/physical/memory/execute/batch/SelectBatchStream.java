@@ -0,0 +1,72 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+
+public class SelectBatchStream implements BatchStream {
+
+  private final Select select;
+
+  private final BatchStream stream;
+
+  private ColumnBatch nextBatch;
+
+  public SelectBatchStream(Select select, BatchStream stream) {
+    this.select = select;
+    this.stream = stream;
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    return stream.getHeader();
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    stream.close();
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    while (nextBatch == null && stream.hasNext()) {
+      ColumnBatch batch = stream.next();
+      boolean[] mask = BatchFilterUtils.evaluate(select.getFilter(), batch);
+      int[] positions = new int[batch.getSize()];
+      int count = BatchFilterUtils.toSelection(mask, positions);
+      if (count > 0) {
+        nextBatch = batch.select(positions, count);
+      }
+    }
+    return nextBatch != null;
+  }
+
+  @Override
+  public ColumnBatch next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("batch stream doesn't have more data!");
+    }
+    ColumnBatch batch = nextBatch;
+    nextBatch = null;
+    return batch;
+  }
+}
@@ -43,6 +43,8 @@ import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailur
 import cn.edu.tsinghua.iginx.engine.physical.exception.UnexpectedOperatorException;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutor;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.SpillUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderUtils;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
@@ -81,6 +83,7 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SingleJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.TopN;
 import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Union;
 import cn.edu.tsinghua.iginx.engine.shared.operator.ValueToSelectedPath;
@@ -89,6 +92,7 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.type.OuterJoinType;
 import cn.edu.tsinghua.iginx.engine.shared.source.ConstantSource;
 import cn.edu.tsinghua.iginx.engine.shared.source.EmptySource;
 import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.resource.MemoryReservation;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Bitmap;
 import cn.edu.tsinghua.iginx.utils.Pair;
@@ -112,7 +116,7 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
   @Override
   public RowStream executeUnaryOperator(
       UnaryOperator operator, RowStream stream, RequestContext context) throws PhysicalException {
-    Table table = transformToTable(stream);
+    Table table = transformToTable(stream, context);
     table.setContext(context);
     switch (operator.getType()) {
       case Project:
@@ -123,6 +127,8 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
         return executeSort((Sort) operator, table);
       case Limit:
         return executeLimit((Limit) operator, table);
+      case TopN:
+        return executeTopN((TopN) operator, table);
       case Downsample:
         return executeDownsample((Downsample) operator, table);
       case RowTransform:
@@ -156,8 +162,8 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
   public RowStream executeBinaryOperator(
       BinaryOperator operator, RowStream streamA, RowStream streamB, RequestContext context)
       throws PhysicalException {
-    Table tableA = transformToTable(streamA);
-    Table tableB = transformToTable(streamB);
+    Table tableA = transformToTable(streamA, context);
+    Table tableB = transformToTable(streamB, context);
     tableA.setContext(context);
     tableB.setContext(context);
     switch (operator.getType()) {
@@ -186,6 +192,24 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
     }
   }
 
+  /** 物化输入数据，所占内存记入查询的内存上下文，在查询结束时归还 */
+  private Table transformToTable(RowStream stream, RequestContext context)
+      throws PhysicalException {
+    if (stream instanceof Table) {
+      return (Table) stream;
+    }
+    MemoryReservation reservation = MemoryReservation.of(context);
+    Header header = stream.getHeader();
+    List<Row> rows = new ArrayList<>();
+    while (stream.hasNext()) {
+      Row row = stream.next();
+      reservation.reserve(SpillUtils.estimateRowSize(row));
+      rows.add(row);
+    }
+    stream.close();
+    return new Table(header, rows);
+  }
+
   private Table transformToTable(RowStream stream) throws PhysicalException {
     if (stream instanceof Table) {
       return (Table) stream;
@@ -237,7 +261,8 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
     Filter filter = select.getFilter();
     List<Row> rows = table.getRows();
 
-    List<Row> targetRows = RowUtils.cacheFilterResult(rows, filter);
+    List<Row> targetRows =
+        RowUtils.cacheFilterResult(rows, FilterCompiler.compile(filter, table.getHeader()));
     return new Table(table.getHeader(), targetRows);
   }
 
@@ -266,6 +291,19 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
     return new Table(header, rows);
   }
 
+  private RowStream executeTopN(TopN topN, Table table) throws PhysicalException {
+    RowTransform preRowTransform =
+        HeaderUtils.checkSortHeader(table.getHeader(), topN.getSortByExpressions());
+    if (preRowTransform != null) {
+      table = transformToTable(executeRowTransform(preRowTransform, table));
+    }
+
+    // 表已经完全物化，直接排序后截取
+    RowUtils.sortRows(table.getRows(), topN.getAscendingList(), topN.getSortByCols());
+    return executeLimit(
+        new Limit(EmptySource.EMPTY_SOURCE, topN.getLimit(), topN.getOffset()), table);
+  }
+
   private RowStream executeDownsample(Downsample downsample, Table table) throws PhysicalException {
     Header header = table.getHeader();
     if (!header.hasKey()) {
@@ -0,0 +1,116 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import java.io.File;
+
+/**
+ * 分组聚合落盘时使用的分区文件管理。
+ *
+ * <p>行按分组键的哈希值写入对应的分区文件，保证同一分组的行总是落在同一分区中，之后逐个分区地读回进行聚合。
+ */
+public class GroupByPartitioner implements AutoCloseable {
+
+  private final Header header;
+
+  private final int partitionNum;
+
+  private final File[] files;
+
+  private final RowSpillWriter[] writers;
+
+  private int currentPartition = -1;
+
+  private RowSpillReader reader;
+
+  public GroupByPartitioner(Header header, int partitionNum) throws PhysicalException {
+    this.header = header;
+    this.partitionNum = Math.max(partitionNum, 2);
+    this.files = new File[this.partitionNum];
+    this.writers = new RowSpillWriter[this.partitionNum];
+    for (int i = 0; i < this.partitionNum; i++) {
+      files[i] = SpillUtils.createSpillFile("group-by");
+      writers[i] = new RowSpillWriter(files[i], header);
+    }
+  }
+
+  public void addRow(int hash, Row row) throws PhysicalException {
+    // 分组键的哈希值低位分布可能不均匀，先混合高位再取模
+    writers[Math.floorMod(hash ^ (hash >>> 16), partitionNum)].write(row);
+  }
+
+  /** 结束写入阶段，之后可以通过 {@link #nextPartition()} 逐个读取分区 */
+  public void finishWriting() throws PhysicalException {
+    for (int i = 0; i < partitionNum; i++) {
+      writers[i].close();
+      writers[i] = null;
+    }
+  }
+
+  /**
+   * 切换到下一个分区，并释放上一个分区的文件
+   *
+   * @return 是否还有未处理的分区
+   */
+  public boolean nextPartition() throws PhysicalException {
+    closeCurrentPartition();
+    currentPartition++;
+    if (currentPartition >= partitionNum) {
+      return false;
+    }
+    reader = new RowSpillReader(files[currentPartition], header);
+    return true;
+  }
+
+  public RowSpillReader getReader() {
+    return reader;
+  }
+
+  private void closeCurrentPartition() throws PhysicalException {
+    if (currentPartition < 0 || currentPartition >= partitionNum) {
+      return;
+    }
+    try {
+      reader.close();
+    } finally {
+      reader = null;
+      SpillUtils.deleteSpillFile(files[currentPartition]);
+    }
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    try {
+      for (int i = 0; i < partitionNum; i++) {
+        if (writers[i] != null) {
+          writers[i].close();
+        }
+      }
+      closeCurrentPartition();
+    } finally {
+      for (int i = 0; i < partitionNum; i++) {
+        SpillUtils.deleteSpillFile(files[i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import java.io.File;
+
+/**
+ * Grace 哈希连接使用的分区落盘文件管理。
+ *
+ * <p>构建侧与探测侧的行按连接列的哈希值写入相同编号的分区文件，保证可能匹配的行总是落在同一分区中，之后逐个分区地读回进行连接。
+ */
+public class HashJoinPartitioner implements AutoCloseable {
+
+  private final Header buildHeader;
+
+  private final Header probeHeader;
+
+  private final int partitionNum;
+
+  private final File[] buildFiles;
+
+  private final File[] probeFiles;
+
+  private final RowSpillWriter[] buildWriters;
+
+  private final RowSpillWriter[] probeWriters;
+
+  private int currentPartition = -1;
+
+  private RowSpillReader buildReader;
+
+  private RowSpillReader probeReader;
+
+  public HashJoinPartitioner(Header buildHeader, Header probeHeader, int partitionNum)
+      throws PhysicalException {
+    this.buildHeader = buildHeader;
+    this.probeHeader = probeHeader;
+    this.partitionNum = Math.max(partitionNum, 2);
+    this.buildFiles = new File[this.partitionNum];
+    this.probeFiles = new File[this.partitionNum];
+    this.buildWriters = new RowSpillWriter[this.partitionNum];
+    this.probeWriters = new RowSpillWriter[this.partitionNum];
+    for (int i = 0; i < this.partitionNum; i++) {
+      buildFiles[i] = SpillUtils.createSpillFile("join-build");
+      buildWriters[i] = new RowSpillWriter(buildFiles[i], buildHeader);
+      probeFiles[i] = SpillUtils.createSpillFile("join-probe");
+      probeWriters[i] = new RowSpillWriter(probeFiles[i], probeHeader);
+    }
+  }
+
+  private int partitionOf(int hash) {
+    // 连接列的哈希值低位分布可能不均匀，先混合高位再取模
+    return Math.floorMod(hash ^ (hash >>> 16), partitionNum);
+  }
+
+  public void addBuildRow(int hash, Row row) throws PhysicalException {
+    buildWriters[partitionOf(hash)].write(row);
+  }
+
+  public void addProbeRow(int hash, Row row) throws PhysicalException {
+    probeWriters[partitionOf(hash)].write(row);
+  }
+
+  /** 结束写入阶段，之后可以通过 {@link #nextPartition()} 逐个读取分区 */
+  public void finishWriting() throws PhysicalException {
+    for (int i = 0; i < partitionNum; i++) {
+      buildWriters[i].close();
+      buildWriters[i] = null;
+      probeWriters[i].close();
+      probeWriters[i] = null;
+    }
+  }
+
+  /**
+   * 切换到下一个分区，并释放上一个分区的文件
+   *
+   * @return 是否还有未处理的分区
+   */
+  public boolean nextPartition() throws PhysicalException {
+    closeCurrentPartition();
+    currentPartition++;
+    if (currentPartition >= partitionNum) {
+      return false;
+    }
+    buildReader = new RowSpillReader(buildFiles[currentPartition], buildHeader);
+    probeReader = new RowSpillReader(probeFiles[currentPartition], probeHeader);
+    return true;
+  }
+
+  public RowSpillReader getBuildReader() {
+    return buildReader;
+  }
+
+  public RowSpillReader getProbeReader() {
+    return probeReader;
+  }
+
+  private void closeCurrentPartition() throws PhysicalException {
+    if (currentPartition < 0 || currentPartition >= partitionNum) {
+      return;
+    }
+    try {
+      buildReader.close();
+      probeReader.close();
+    } finally {
+      buildReader = null;
+      probeReader = null;
+      SpillUtils.deleteSpillFile(buildFiles[currentPartition]);
+      SpillUtils.deleteSpillFile(probeFiles[currentPartition]);
+    }
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    try {
+      for (int i = 0; i < partitionNum; i++) {
+        if (buildWriters[i] != null) {
+          buildWriters[i].close();
+        }
+        if (probeWriters[i] != null) {
+          probeWriters[i].close();
+        }
+      }
+      closeCurrentPartition();
+    } finally {
+      for (int i = 0; i < partitionNum; i++) {
+        SpillUtils.deleteSpillFile(buildFiles[i]);
+        SpillUtils.deleteSpillFile(probeFiles[i]);
+      }
+    }
+  }
+}
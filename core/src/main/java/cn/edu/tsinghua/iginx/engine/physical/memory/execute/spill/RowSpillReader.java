@@ -0,0 +1,133 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/** 顺序读取 {@link RowSpillWriter} 写出的落盘文件 */
+public class RowSpillReader implements AutoCloseable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final File file;
+
+  private final Header header;
+
+  private final DataType[] types;
+
+  private final byte[] bitmap;
+
+  private final DataInputStream in;
+
+  private Row nextRow;
+
+  private boolean finished = false;
+
+  public RowSpillReader(File file, Header header) throws PhysicalException {
+    this.file = file;
+    this.header = header;
+    this.types = RowSpillWriter.getTypes(header);
+    this.bitmap = new byte[(types.length + 7) / 8];
+    try {
+      this.in =
+          new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+    } catch (IOException e) {
+      throw new PhysicalTaskExecuteFailureException("cannot open spill file " + file, e);
+    }
+  }
+
+  public boolean hasNext() throws PhysicalException {
+    if (nextRow == null && !finished) {
+      nextRow = readRow();
+      finished = nextRow == null;
+    }
+    return nextRow != null;
+  }
+
+  public Row next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("spill file doesn't have more data!");
+    }
+    Row row = nextRow;
+    nextRow = null;
+    return row;
+  }
+
+  private Row readRow() throws PhysicalException {
+    try {
+      if (in.readByte() == RowSpillWriter.END_MARK) {
+        return null;
+      }
+      long key = header.hasKey() ? in.readLong() : Row.NON_EXISTED_KEY;
+      in.readFully(bitmap);
+      Object[] values = new Object[types.length];
+      for (int i = 0; i < types.length; i++) {
+        if ((bitmap[i >> 3] & (1 << (i & 7))) == 0) {
+          continue;
+        }
+        switch (types[i]) {
+          case BOOLEAN:
+            values[i] = in.readBoolean();
+            break;
+          case INTEGER:
+            values[i] = in.readInt();
+            break;
+          case LONG:
+            values[i] = in.readLong();
+            break;
+          case FLOAT:
+            values[i] = in.readFloat();
+            break;
+          case DOUBLE:
+            values[i] = in.readDouble();
+            break;
+          case BINARY:
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            values[i] = bytes;
+            break;
+          default:
+            throw new PhysicalTaskExecuteFailureException("unsupported spill type: " + types[i]);
+        }
+      }
+      return new Row(header, key, values);
+    } catch (IOException e) {
+      throw new PhysicalTaskExecuteFailureException("failed to read spill file " + file, e);
+    }
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    try {
+      in.close();
+    } catch (IOException e) {
+      throw new PhysicalTaskExecuteFailureException("failed to close spill file " + file, e);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * 以紧凑的二进制格式将行顺序写入落盘文件。
+ *
+ * <p>每行的格式为：行标记(1 字节) + key(仅当表头含 key 时) + 空值位图 + 按列类型编码的非空值，文件以结束标记结尾。
+ */
+public class RowSpillWriter implements AutoCloseable {
+
+  static final byte ROW_MARK = 1;
+
+  static final byte END_MARK = 0;
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final File file;
+
+  private final DataType[] types;
+
+  private final boolean hasKey;
+
+  private final byte[] bitmap;
+
+  private final DataOutputStream out;
+
+  private long rowCount = 0;
+
+  public RowSpillWriter(File file, Header header) throws PhysicalException {
+    this.file = file;
+    this.types = getTypes(header);
+    this.hasKey = header.hasKey();
+    this.bitmap = new byte[(types.length + 7) / 8];
+    try {
+      this.out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+    } catch (IOException e) {
+      throw new PhysicalTaskExecuteFailureException("cannot open spill file " + file, e);
+    }
+  }
+
+  static DataType[] getTypes(Header header) {
+    DataType[] types = new DataType[header.getFieldSize()];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = header.getField(i).getType();
+    }
+    return types;
+  }
+
+  public void write(Row row) throws PhysicalException {
+    Object[] values = row.getValues();
+    try {
+      out.writeByte(ROW_MARK);
+      if (hasKey) {
+        out.writeLong(row.getKey());
+      }
+      for (int i = 0; i < bitmap.length; i++) {
+        bitmap[i] = 0;
+      }
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] != null) {
+          bitmap[i >> 3] |= (byte) (1 << (i & 7));
+        }
+      }
+      out.write(bitmap);
+      for (int i = 0; i < values.length; i++) {
+        Object value = values[i];
+        if (value == null) {
+          continue;
+        }
+        switch (types[i]) {
+          case BOOLEAN:
+            out.writeBoolean((boolean) value);
+            break;
+          case INTEGER:
+            out.writeInt((int) value);
+            break;
+          case LONG:
+            out.writeLong((long) value);
+            break;
+          case FLOAT:
+            out.writeFloat((float) value);
+            break;
+          case DOUBLE:
+            out.writeDouble((double) value);
+            break;
+          case BINARY:
+            byte[] bytes = (byte[]) value;
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            break;
+          default:
+            throw new PhysicalTaskExecuteFailureException("unsupported spill type: " + types[i]);
+        }
+      }
+      rowCount++;
+    } catch (IOException e) {
+      throw new PhysicalTaskExecuteFailureException("failed to write spill file " + file, e);
+    }
+  }
+
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    try {
+      out.writeByte(END_MARK);
+      out.close();
+    } catch (IOException e) {
+      throw new PhysicalTaskExecuteFailureException("failed to close spill file " + file, e);
+    }
+  }
+}
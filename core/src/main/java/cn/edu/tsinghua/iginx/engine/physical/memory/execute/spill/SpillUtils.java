@@ -0,0 +1,96 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import java.io.File;
+import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** 内存算子落盘时使用的公共工具 */
+public class SpillUtils {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SpillUtils.class);
+
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  private static final String SPILL_FILE_SUFFIX = ".spill";
+
+  private static final int OBJECT_OVERHEAD = 16;
+
+  private static final int REFERENCE_SIZE = 8;
+
+  /** 在配置的落盘目录下创建临时文件，使用方需要在关闭时调用 {@link #deleteSpillFile(File)} 删除 */
+  public static File createSpillFile(String prefix) throws PhysicalException {
+    File dir = new File(config.getSpillDir());
+    if (!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+      throw new PhysicalTaskExecuteFailureException(
+          "cannot create spill dir: " + dir.getAbsolutePath());
+    }
+    try {
+      return File.createTempFile(prefix, SPILL_FILE_SUFFIX, dir);
+    } catch (IOException e) {
+      throw new PhysicalTaskExecuteFailureException("cannot create spill file", e);
+    }
+  }
+
+  /** 启动时清理上次进程异常退出后残留的落盘文件 */
+  public static void cleanSpillDir() {
+    File[] files = new File(config.getSpillDir()).listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.isFile() && file.getName().endsWith(SPILL_FILE_SUFFIX)) {
+        deleteSpillFile(file);
+      }
+    }
+  }
+
+  public static void deleteSpillFile(File file) {
+    if (file != null && file.exists() && !file.delete()) {
+      LOGGER.warn("failed to delete spill file {}", file.getAbsolutePath());
+    }
+  }
+
+  /** 粗略估计一行数据在堆上占用的字节数，用于判断是否超出内存预算 */
+  public static long estimateRowSize(Row row) {
+    Object[] values = row.getValues();
+    long size = OBJECT_OVERHEAD * 2 + Long.BYTES + (long) REFERENCE_SIZE * values.length;
+    for (Object value : values) {
+      if (value == null) {
+        continue;
+      }
+      if (value instanceof byte[]) {
+        size += OBJECT_OVERHEAD + ((byte[]) value).length;
+      } else if (value instanceof Long || value instanceof Double) {
+        size += OBJECT_OVERHEAD + Long.BYTES;
+      } else {
+        size += OBJECT_OVERHEAD + Integer.BYTES;
+      }
+    }
+    return size;
+  }
+}
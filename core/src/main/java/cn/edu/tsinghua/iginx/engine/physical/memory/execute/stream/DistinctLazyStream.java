@@ -22,6 +22,7 @@ package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils.isEqualRow;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.SpillUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.Value;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -77,6 +78,7 @@ public class DistinctLazyStream extends UnaryLazyStream {
           return;
         }
       }
+      getMemoryReservation().reserve(SpillUtils.estimateRowSize(row));
       nullValueRows.add(row);
       cache.addLast(row);
     } else {
@@ -93,8 +95,10 @@ public class DistinctLazyStream extends UnaryLazyStream {
             return;
           }
         }
+        getMemoryReservation().reserve(SpillUtils.estimateRowSize(row));
         rowsExist.add(row);
       } else {
+        getMemoryReservation().reserve(SpillUtils.estimateRowSize(row));
         rowsHashMap.put(hash, new ArrayList<>(Collections.singletonList(row)));
       }
       cache.addLast(row);
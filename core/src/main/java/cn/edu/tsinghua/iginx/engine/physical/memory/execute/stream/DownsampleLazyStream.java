@@ -22,9 +22,14 @@ package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_END_COL;
 import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_START_COL;
 
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.GroupByKey;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.IncrementalAggregator;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.IncrementalAggregator.AggregateState;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
@@ -38,15 +43,48 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
+/**
+ * 流式降采样：输入按 key 有序，输入的 key 越过窗口结束位置后立即计算并输出该窗口，内存占用与查询的时间范围无关。
+ *
+ * <p>系统聚合函数使用增量计算：按窗口长度与滑动距离的最大公约数将 key 切分为若干段，每行只累加到所在段的中间状态，窗口的结果由其覆盖的各段合并得到，
+ * 滑动窗口之间共享各段的中间状态。其余函数（UDAF 等）回退为缓冲当前窗口范围内的行，每个窗口在缓冲区上重新计算。
+ */
 public class DownsampleLazyStream extends UnaryLazyStream {
 
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
   private final RowStreamWrapper wrapper;
 
   private final Downsample downsample;
 
   private final List<FunctionCall> functionCallList;
 
+  private final long precision;
+
+  private final long slideDistance;
+
+  // 按 key 有序，只包含 key 不小于当前窗口起点的行，仅在不支持增量计算时使用
+  private final List<Row> buffer = new ArrayList<>();
+
+  // 支持增量计算时不为 null
+  private IncrementalAggregator aggregator;
+
+  private long paneSize;
+
+  // 段序号到该段中间状态的映射，只包含不早于当前窗口起点的段
+  private final TreeMap<Long, Map<GroupByKey, AggregateState[]>> panes = new TreeMap<>();
+
+  private long seq = 0; // 输入行的序号，用于 first_value 和 last_value
+
+  private long bias;
+
+  private long windowCount; // 窗口数量，未指定查询区间时不限制
+
+  private long windowIndex = 0; // 下一个待计算的窗口
+
   private Row nextTarget;
 
   private boolean hasInitialized = false;
@@ -58,17 +96,33 @@ public class DownsampleLazyStream extends UnaryLazyStream {
     this.wrapper = new RowStreamWrapper(stream);
     this.downsample = downsample;
     this.functionCallList = downsample.getFunctionCallList();
+    this.precision = downsample.getPrecision();
+    this.slideDistance = downsample.getSlideDistance();
   }
 
   private void initialize() throws PhysicalException {
     if (hasInitialized) {
       return;
     }
+    if (downsample.notSetInterval()) {
+      bias = wrapper.hasNext() ? wrapper.nextTimestamp() : 0;
+      windowCount = Long.MAX_VALUE;
+    } else {
+      bias = downsample.getKeyRange().getActualBeginKey();
+      long endKey = downsample.getKeyRange().getActualEndKey();
+      // startKey + (n - 1) * slideDistance + precision - 1 >= endKey
+      windowCount =
+          (long) (Math.ceil((double) (endKey - bias - precision + 1) / slideDistance) + 1);
+    }
+    if (config.isEnableIncrementalAggregation()) {
+      aggregator = IncrementalAggregator.tryCreate(functionCallList, stream.getHeader());
+      paneSize = gcd(precision, slideDistance);
+    }
+    hasInitialized = true;
     nextTarget = loadNext();
     if (nextTarget != null) {
       header = nextTarget.getHeader();
     }
-    hasInitialized = true;
   }
 
   @Override
@@ -86,48 +140,102 @@ public class DownsampleLazyStream extends UnaryLazyStream {
     if (nextTarget != null) {
       return nextTarget;
     }
-    Row row = null;
-    long windowStartKey = 0;
-    long bias = downsample.getKeyRange().getActualBeginKey();
-    long endKey = downsample.getKeyRange().getActualEndKey();
-    long precision = downsample.getPrecision();
-    long slideDistance = downsample.getSlideDistance();
-    // startKey + (n - 1) * slideDistance + precision - 1 >= endKey
-    int n = (int) (Math.ceil((double) (endKey - bias - precision + 1) / slideDistance) + 1);
-    while (row == null && wrapper.hasNext()) {
-      windowStartKey = wrapper.nextTimestamp() - (wrapper.nextTimestamp() - bias) % precision;
-      List<Row> rows = new ArrayList<>();
-      while (wrapper.hasNext() && wrapper.nextTimestamp() < windowStartKey + precision) {
-        rows.add(wrapper.next());
+    while (windowIndex < windowCount) {
+      if (buffer.isEmpty() && panes.isEmpty()) {
+        if (!wrapper.hasNext()) {
+          return null;
+        }
+        // 跳过不包含任何行的窗口
+        long firstWindow =
+            -Math.floorDiv(bias + precision - 1 - wrapper.nextTimestamp(), slideDistance);
+        windowIndex = Math.max(windowIndex, firstWindow);
+        if (windowIndex >= windowCount) {
+          return null;
+        }
       }
-      Table table = new Table(rows.get(0).getHeader(), rows);
-
-      List<Row> subRowList = new ArrayList<>();
-      for (FunctionCall functionCall : functionCallList) {
-        FunctionParams params = functionCall.getParams();
-        SetMappingFunction function = (SetMappingFunction) functionCall.getFunction();
-        try {
-          subRowList.add(function.transform(table, params));
-        } catch (Exception e) {
-          throw new PhysicalTaskExecuteFailureException(
-              "encounter error when execute set mapping function " + function.getIdentifier() + ".",
-              e);
+      long windowStartKey = bias + windowIndex * slideDistance;
+      long windowEndKey = windowStartKey + precision; // 不包含
+      windowIndex++;
+
+      if (aggregator != null) {
+        Row row = aggregateWindow(windowStartKey, windowEndKey);
+        if (row != null) {
+          return appendWindow(row, windowStartKey);
         }
+        continue;
+      }
+
+      while (wrapper.hasNext() && wrapper.nextTimestamp() < windowEndKey) {
+        buffer.add(wrapper.next());
+      }
+      int evicted = 0;
+      while (evicted < buffer.size() && buffer.get(evicted).getKey() < windowStartKey) {
+        evicted++;
+      }
+      buffer.subList(0, evicted).clear();
+      if (buffer.isEmpty()) {
+        continue;
       }
-      row = RowUtils.combineMultipleColumns(subRowList);
+
+      Row row = transform(new Table(buffer.get(0).getHeader(), buffer));
+      if (row != null) {
+        return appendWindow(row, windowStartKey);
+      }
+    }
+    return null;
+  }
+
+  /** 将窗口结束位置之前的行累加到各段，丢弃窗口起点之前的段，再合并剩余的段得到窗口的结果 */
+  private Row aggregateWindow(long windowStartKey, long windowEndKey) throws PhysicalException {
+    while (wrapper.hasNext() && wrapper.nextTimestamp() < windowEndKey) {
+      Row row = wrapper.next();
+      long pane = Math.floorDiv(row.getKey() - bias, paneSize);
+      aggregator.update(panes.computeIfAbsent(pane, k -> aggregator.newGroups()), row, seq++);
     }
-    if (row == null) {
+    // 窗口起点与 bias 的距离是段长度的整数倍
+    panes.headMap((windowStartKey - bias) / paneSize).clear();
+    if (panes.isEmpty()) {
       return null;
-    } else {
-      List<Field> fields = row.getHeader().getFields();
-      fields.add(0, new Field(WINDOW_START_COL, DataType.LONG));
-      fields.add(1, new Field(WINDOW_END_COL, DataType.LONG));
-      Object[] values = new Object[row.getValues().length + 2];
-      values[0] = windowStartKey;
-      values[1] = windowStartKey + precision - 1;
-      System.arraycopy(row.getValues(), 0, values, 2, row.getValues().length);
-      return new Row(new Header(Field.KEY, fields), windowStartKey, values);
     }
+    List<Row> rows = aggregator.getResult(aggregator.combine(panes.values()));
+    return rows.isEmpty() ? null : rows.get(0);
+  }
+
+  private static long gcd(long a, long b) {
+    while (b != 0) {
+      long t = a % b;
+      a = b;
+      b = t;
+    }
+    return a;
+  }
+
+  private Row transform(Table table) throws PhysicalException {
+    List<Row> subRowList = new ArrayList<>();
+    for (FunctionCall functionCall : functionCallList) {
+      FunctionParams params = functionCall.getParams();
+      SetMappingFunction function = (SetMappingFunction) functionCall.getFunction();
+      try {
+        subRowList.add(function.transform(table, params));
+      } catch (Exception e) {
+        throw new PhysicalTaskExecuteFailureException(
+            "encounter error when execute set mapping function " + function.getIdentifier() + ".",
+            e);
+      }
+    }
+    return RowUtils.combineMultipleColumns(subRowList);
+  }
+
+  private Row appendWindow(Row row, long windowStartKey) {
+    // 增量计算时各窗口共享同一个表头，不能修改其中的字段列表
+    List<Field> fields = new ArrayList<>(row.getHeader().getFields());
+    fields.add(0, new Field(WINDOW_START_COL, DataType.LONG));
+    fields.add(1, new Field(WINDOW_END_COL, DataType.LONG));
+    Object[] values = new Object[row.getValues().length + 2];
+    values[0] = windowStartKey;
+    values[1] = windowStartKey + precision - 1;
+    System.arraycopy(row.getValues(), 0, values, 2, row.getValues().length);
+    return new Row(new Header(Field.KEY, fields), windowStartKey, values);
   }
 
   @Override
@@ -24,13 +24,19 @@ import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.GroupByPartitioner;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.RowSpillReader;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.SpillUtils;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.GroupByKey;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.IncrementalAggregator;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.IncrementalAggregator.AggregateState;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.GroupBy;
+import cn.edu.tsinghua.iginx.resource.MemoryReservation;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -39,10 +45,15 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * 分组聚合。系统聚合函数按分组增量计算，只保留中间状态；UDAF 等其余函数没有中间状态，需要缓存每个分组的原始行， 缓存超出 groupByMemoryBudget
+ * 或查询内存不足时，将原始行按分组键哈希分区写入磁盘，再逐个分区聚合。
+ */
 public class GroupByLazyStream extends UnaryLazyStream {
 
   private static final Config config = ConfigDescriptor.getInstance().getConfig();
@@ -59,11 +70,20 @@ public class GroupByLazyStream extends UnaryLazyStream {
 
   private final GroupBy groupBy;
 
+  private final long memoryBudget;
+
+  private final AtomicLong bufferedSize = new AtomicLong(0);
+
   private Table resultTable;
 
   public GroupByLazyStream(GroupBy groupBy, RowStream stream) {
+    this(groupBy, stream, config.getGroupByMemoryBudget());
+  }
+
+  public GroupByLazyStream(GroupBy groupBy, RowStream stream, long memoryBudget) {
     super(stream);
     this.groupBy = groupBy;
+    this.memoryBudget = memoryBudget;
   }
 
   @Override
@@ -88,13 +108,31 @@ public class GroupByLazyStream extends UnaryLazyStream {
   }
 
   private void cacheResult() throws PhysicalException {
+    // 在启动并行 worker 之前获取，保证所有 worker 共享同一个预留
+    MemoryReservation reservation = getMemoryReservation();
+    if (config.isEnableIncrementalAggregation()) {
+      IncrementalAggregator aggregator =
+          IncrementalAggregator.tryCreate(groupBy, stream.getHeader());
+      if (aggregator != null) {
+        cacheIncrementalResult(aggregator);
+        return;
+      }
+    }
+
     List<Row> rows = new ArrayList<>();
-    while (stream.hasNext() && rows.size() < config.getParallelGroupByRowsThreshold()) {
-      rows.add(stream.next());
+    boolean overBudget = false;
+    while (!overBudget
+        && stream.hasNext()
+        && rows.size() < config.getParallelGroupByRowsThreshold()) {
+      Row row = stream.next();
+      rows.add(row);
+      overBudget = !reserveRow(row);
     }
 
     List<Row> cache;
-    if (stream.hasNext()) {
+    if (overBudget) {
+      cache = partitionedCache(rows);
+    } else if (stream.hasNext()) {
       // more than threshold, use parallel cache.
       cache = parallelCache(rows);
     } else {
@@ -110,13 +148,25 @@ public class GroupByLazyStream extends UnaryLazyStream {
     this.resultTable = new Table(newHeader, cache);
   }
 
-  private List<Row> parallelCache(List<Row> firstPartialRows) throws PhysicalException {
-    // search the required fields
-    Header header = stream.getHeader();
+  /**
+   * 缓存一行原始数据并计入内存
+   *
+   * @return 是否仍在内存预算之内，返回 false 表示需要落盘
+   */
+  private boolean reserveRow(Row row) throws PhysicalException {
+    long rowSize = SpillUtils.estimateRowSize(row);
+    if (memoryBudget <= 0) {
+      getMemoryReservation().reserve(rowSize);
+      return true;
+    }
+    return bufferedSize.addAndGet(rowSize) <= memoryBudget
+        && getMemoryReservation().tryReserve(rowSize);
+  }
+
+  private int[] getGroupByColIndex(Header header, List<Field> fields)
+      throws PhysicalTaskExecuteFailureException {
     List<String> cols = groupBy.getGroupByCols();
     int[] colIndex = new int[cols.size()];
-    List<Field> fields = new ArrayList<>();
-
     int cur = 0;
     for (String col : cols) {
       int index = header.indexOf(col);
@@ -127,6 +177,64 @@ public class GroupByLazyStream extends UnaryLazyStream {
       colIndex[cur++] = index;
       fields.add(header.getField(index));
     }
+    return colIndex;
+  }
+
+  private static GroupByKey getGroupByKey(Row row, int[] colIndex) {
+    Object[] values = row.getValues();
+    List<Object> hashValues = new ArrayList<>();
+    for (int index : colIndex) {
+      if (values[index] instanceof byte[]) {
+        hashValues.add(new String((byte[]) values[index]));
+      } else {
+        hashValues.add(values[index]);
+      }
+    }
+    return new GroupByKey(hashValues);
+  }
+
+  /** 将已缓存的行与剩余的输入按分组键哈希分区写入磁盘，再逐个分区聚合，内存中只保留一个分区的原始行 */
+  private List<Row> partitionedCache(List<Row> bufferedRows) throws PhysicalException {
+    Header header = stream.getHeader();
+    int[] colIndex = getGroupByColIndex(header, new ArrayList<>());
+    List<Row> result = new ArrayList<>();
+    try (GroupByPartitioner partitioner =
+        new GroupByPartitioner(header, config.getHashJoinPartitionNum())) {
+      for (Row row : bufferedRows) {
+        partitioner.addRow(getGroupByKey(row, colIndex).hashCode(), row);
+      }
+      bufferedRows.clear();
+      getMemoryReservation().releaseAll();
+      bufferedSize.set(0);
+      while (stream.hasNext()) {
+        Row row = stream.next();
+        partitioner.addRow(getGroupByKey(row, colIndex).hashCode(), row);
+      }
+      partitioner.finishWriting();
+
+      while (partitioner.nextPartition()) {
+        List<Row> rows = new ArrayList<>();
+        RowSpillReader reader = partitioner.getReader();
+        while (reader.hasNext()) {
+          Row row = reader.next();
+          // 单个分区无法落盘，只能等待内存
+          getMemoryReservation().reserve(SpillUtils.estimateRowSize(row));
+          rows.add(row);
+        }
+        if (!rows.isEmpty()) {
+          result.addAll(RowUtils.cacheGroupByResult(groupBy, new Table(header, rows)));
+        }
+        getMemoryReservation().releaseAll();
+      }
+    }
+    return result;
+  }
+
+  private List<Row> parallelCache(List<Row> firstPartialRows) throws PhysicalException {
+    // search the required fields
+    Header header = stream.getHeader();
+    List<Field> fields = new ArrayList<>();
+    int[] colIndex = getGroupByColIndex(header, fields);
 
     // split first partial rows into workers' cache
     List<List<Row>> partition = new ArrayList<>();
@@ -138,6 +246,8 @@ public class GroupByLazyStream extends UnaryLazyStream {
     }
 
     Map<GroupByKey, List<Row>> groups = new ConcurrentHashMap<>();
+    PhysicalException[] failure = new PhysicalException[1];
+    boolean[] overBudget = new boolean[1];
     CountDownLatch latch = new CountDownLatch(WORKER_NUM);
 
     for (int i = 0; i < WORKER_NUM; i++) {
@@ -150,29 +260,25 @@ public class GroupByLazyStream extends UnaryLazyStream {
                 // 开启多个线程但是加速比率又比较低的情况。加锁部分执行时间可能会占大头。
                 // parallel get batch rows and then calculate hash value.
                 lock.lock();
-                int getRowCnt = 0;
-                while (getRowCnt < BATCH_SIZE && stream.hasNext()) {
-                  list.add(stream.next());
-                  getRowCnt++;
+                try {
+                  // 超出内存预算后停止读取，已读取的行由落盘流程接管
+                  int getRowCnt = 0;
+                  while (!overBudget[0] && getRowCnt < BATCH_SIZE && stream.hasNext()) {
+                    Row row = stream.next();
+                    list.add(row);
+                    overBudget[0] = !reserveRow(row);
+                    getRowCnt++;
+                  }
+                } finally {
+                  lock.unlock();
                 }
-                lock.unlock();
 
                 if (list.isEmpty()) { // no more lines
                   break;
                 }
 
                 for (Row row : list) {
-                  Object[] values = row.getValues();
-                  List<Object> hashValues = new ArrayList<>();
-                  for (int index : colIndex) {
-                    if (values[index] instanceof byte[]) {
-                      hashValues.add(new String((byte[]) values[index]));
-                    } else {
-                      hashValues.add(values[index]);
-                    }
-                  }
-
-                  GroupByKey key = new GroupByKey(hashValues);
+                  GroupByKey key = getGroupByKey(row, colIndex);
                   // make sure concurrent safe.
                   List<Row> rows =
                       groups.putIfAbsent(key, Collections.synchronizedList(new ArrayList<>()));
@@ -185,6 +291,7 @@ public class GroupByLazyStream extends UnaryLazyStream {
               }
             } catch (PhysicalException e) {
               LOGGER.error("encounter error when parallel calculate hash: ", e);
+              failure[0] = e;
             } finally {
               latch.countDown();
             }
@@ -197,6 +304,15 @@ public class GroupByLazyStream extends UnaryLazyStream {
       throw new PhysicalTaskExecuteFailureException(
           "encounter error when wait for parallel build: ", e);
     }
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+    if (overBudget[0]) {
+      List<Row> bufferedRows = new ArrayList<>();
+      groups.values().forEach(bufferedRows::addAll);
+      groups.clear();
+      return partitionedCache(bufferedRows);
+    }
 
     try {
       return RowUtils.applyFunc(groupBy, fields, header, groups);
@@ -204,4 +320,106 @@ public class GroupByLazyStream extends UnaryLazyStream {
       throw new PhysicalTaskExecuteFailureException("encounter error when apply func: ", e);
     }
   }
+
+  /** 增量聚合：每个分组只保留聚合中间状态，超过阈值后由多个 worker 各自维护部分状态，最后合并 */
+  private void cacheIncrementalResult(IncrementalAggregator aggregator) throws PhysicalException {
+    Map<GroupByKey, AggregateState[]> groups = aggregator.newGroups();
+    long seq = 0;
+    while (stream.hasNext() && seq < config.getParallelGroupByRowsThreshold()) {
+      updateGroups(aggregator, groups, stream.next(), seq++);
+    }
+    if (stream.hasNext()) {
+      // more than threshold, aggregate in parallel.
+      parallelAggregate(aggregator, groups, seq);
+    }
+
+    List<Row> cache = aggregator.getResult(groups);
+    Header newHeader;
+    if (cache.isEmpty()) {
+      newHeader = Header.EMPTY_HEADER;
+    } else {
+      newHeader = cache.get(0).getHeader();
+    }
+    this.resultTable = new Table(newHeader, cache);
+  }
+
+  /** 只有产生新分组时才需要额外的内存，以该行的大小近似估计新分组中间状态的大小 */
+  private void updateGroups(
+      IncrementalAggregator aggregator, Map<GroupByKey, AggregateState[]> groups, Row row, long seq)
+      throws PhysicalException {
+    int groupNum = groups.size();
+    aggregator.update(groups, row, seq);
+    if (groups.size() > groupNum) {
+      getMemoryReservation().reserve(SpillUtils.estimateRowSize(row));
+    }
+  }
+
+  private void parallelAggregate(
+      IncrementalAggregator aggregator, Map<GroupByKey, AggregateState[]> groups, long startSeq)
+      throws PhysicalException {
+    List<Map<GroupByKey, AggregateState[]>> partials = new ArrayList<>();
+    for (int i = 0; i < WORKER_NUM; i++) {
+      partials.add(aggregator.newGroups());
+    }
+    long[] nextSeq = new long[] {startSeq};
+    PhysicalException[] failure = new PhysicalException[1];
+    CountDownLatch latch = new CountDownLatch(WORKER_NUM);
+
+    for (int i = 0; i < WORKER_NUM; i++) {
+      Map<GroupByKey, AggregateState[]> partial = partials.get(i);
+      pool.submit(
+          () -> {
+            List<Row> list = new ArrayList<>(BATCH_SIZE);
+            try {
+              while (true) {
+                long seq;
+                lock.lock();
+                try {
+                  if (failure[0] != null) {
+                    break;
+                  }
+                  while (list.size() < BATCH_SIZE && stream.hasNext()) {
+                    list.add(stream.next());
+                  }
+                  seq = nextSeq[0];
+                  nextSeq[0] += list.size();
+                } finally {
+                  lock.unlock();
+                }
+
+                if (list.isEmpty()) { // no more lines
+                  break;
+                }
+                for (Row row : list) {
+                  updateGroups(aggregator, partial, row, seq++);
+                }
+                list.clear();
+              }
+            } catch (PhysicalException e) {
+              LOGGER.error("encounter error when parallel aggregate: ", e);
+              lock.lock();
+              try {
+                failure[0] = e;
+              } finally {
+                lock.unlock();
+              }
+            } finally {
+              latch.countDown();
+            }
+          });
+    }
+
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new PhysicalTaskExecuteFailureException(
+          "encounter error when wait for parallel aggregate: ", e);
+    }
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+    for (Map<GroupByKey, AggregateState[]> partial : partials) {
+      aggregator.merge(groups, partial);
+    }
+  }
 }
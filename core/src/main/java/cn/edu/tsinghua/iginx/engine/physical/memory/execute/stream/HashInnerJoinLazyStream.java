@@ -24,7 +24,12 @@ import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtil
 import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils.getSamePathWithSpecificPrefix;
 import static cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils.getHash;
 
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.HashJoinPartitioner;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.RowSpillReader;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.SpillUtils;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderUtils;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
@@ -41,11 +46,19 @@ import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
+/** 哈希内连接。StreamB 作为构建侧，超出内存预算或查询内存不足时两侧数据均按连接列哈希值分区落盘，之后逐个分区地建立哈希表并进行连接（Grace hash join）。 */
 public class HashInnerJoinLazyStream extends BinaryLazyStream {
 
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
   private final InnerJoin innerJoin;
 
+  private final long memoryBudget;
+
+  private HashJoinPartitioner partitioner;
+
   private final HashMap<Integer, List<Row>> streamBHashMap;
 
   private final Deque<Row> cache;
@@ -67,8 +80,14 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
   private boolean needTypeCast = false;
 
   public HashInnerJoinLazyStream(InnerJoin innerJoin, RowStream streamA, RowStream streamB) {
+    this(innerJoin, streamA, streamB, config.getJoinMemoryBudget());
+  }
+
+  public HashInnerJoinLazyStream(
+      InnerJoin innerJoin, RowStream streamA, RowStream streamB, long memoryBudget) {
     super(streamA, streamB);
     this.innerJoin = innerJoin;
+    this.memoryBudget = memoryBudget;
     this.streamBHashMap = new HashMap<>();
     this.cache = new LinkedList<>();
   }
@@ -114,18 +133,39 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
       this.needTypeCast = true;
     }
 
+    long bufferedSize = 0;
     while (streamB.hasNext()) {
       Row rowB = streamB.next();
-      Value value = rowB.getAsValue(joinPathB);
-      if (value.isNull()) {
+      if (partitioner != null) {
+        Value value = rowB.getAsValue(joinPathB);
+        if (!value.isNull()) {
+          partitioner.addBuildRow(getBuildHash(value), rowB);
+        }
+        continue;
+      }
+      if (!addToHashMap(rowB)) {
+        continue;
+      }
+      long rowSize = SpillUtils.estimateRowSize(rowB);
+      if (memoryBudget <= 0) {
+        getMemoryReservation().reserve(rowSize);
         continue;
       }
-      if (needTypeCast) {
-        value = ValueUtils.transformToDouble(value);
+      bufferedSize += rowSize;
+      // 超出算子的内存预算或查询内存池不足时均落盘
+      if (bufferedSize > memoryBudget || !getMemoryReservation().tryReserve(rowSize)) {
+        spillBuildSide();
       }
-      int hash = getHash(value, needTypeCast);
-      List<Row> rows = streamBHashMap.computeIfAbsent(hash, k -> new ArrayList<>());
-      rows.add(rowB);
+    }
+    if (partitioner != null) {
+      while (streamA.hasNext()) {
+        Row rowA = streamA.next();
+        Value value = rowA.getAsValue(joinPathA);
+        if (!value.isNull()) {
+          partitioner.addProbeRow(getHash(value, needTypeCast), rowA);
+        }
+      }
+      partitioner.finishWriting();
     }
 
     this.header =
@@ -141,6 +181,70 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
     this.hasInitialized = true;
   }
 
+  private int getBuildHash(Value value) {
+    if (needTypeCast) {
+      value = ValueUtils.transformToDouble(value);
+    }
+    return getHash(value, needTypeCast);
+  }
+
+  private boolean addToHashMap(Row rowB) {
+    Value value = rowB.getAsValue(joinPathB);
+    if (value.isNull()) {
+      return false;
+    }
+    int hash = getBuildHash(value);
+    List<Row> rows = streamBHashMap.computeIfAbsent(hash, k -> new ArrayList<>());
+    rows.add(rowB);
+    return true;
+  }
+
+  /** 构建侧超出内存预算，将已缓存的数据转移到分区文件中 */
+  private void spillBuildSide() throws PhysicalException {
+    partitioner =
+        new HashJoinPartitioner(
+            streamB.getHeader(), streamA.getHeader(), config.getHashJoinPartitionNum());
+    for (Map.Entry<Integer, List<Row>> entry : streamBHashMap.entrySet()) {
+      for (Row rowB : entry.getValue()) {
+        partitioner.addBuildRow(entry.getKey(), rowB);
+      }
+    }
+    streamBHashMap.clear();
+    getMemoryReservation().releaseAll();
+  }
+
+  /** 读取下一个分区的构建侧数据并建立哈希表 */
+  private boolean loadNextPartition() throws PhysicalException {
+    streamBHashMap.clear();
+    if (!partitioner.nextPartition()) {
+      return false;
+    }
+    getMemoryReservation().releaseAll();
+    RowSpillReader reader = partitioner.getBuildReader();
+    while (reader.hasNext()) {
+      Row rowB = reader.next();
+      addToHashMap(rowB);
+      getMemoryReservation().reserve(SpillUtils.estimateRowSize(rowB));
+    }
+    return true;
+  }
+
+  private boolean hasNextRowA() throws PhysicalException {
+    if (partitioner == null) {
+      return streamA.hasNext();
+    }
+    while (partitioner.getProbeReader() == null || !partitioner.getProbeReader().hasNext()) {
+      if (!loadNextPartition()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Row nextRowA() throws PhysicalException {
+    return partitioner == null ? streamA.next() : partitioner.getProbeReader().next();
+  }
+
   @Override
   public Header getHeader() throws PhysicalException {
     if (!hasInitialized) {
@@ -154,14 +258,13 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
     if (!hasInitialized) {
       initialize();
     }
-    while (cache.isEmpty() && streamA.hasNext()) {
-      tryMatch();
+    while (cache.isEmpty() && hasNextRowA()) {
+      tryMatch(nextRowA());
     }
     return !cache.isEmpty();
   }
 
-  private void tryMatch() throws PhysicalException {
-    Row rowA = streamA.next();
+  private void tryMatch(Row rowA) throws PhysicalException {
 
     Value value = rowA.getAsValue(joinPathA);
     if (value.isNull()) {
@@ -204,4 +307,15 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
     }
     return cache.pollFirst();
   }
+
+  @Override
+  public void close() throws PhysicalException {
+    try {
+      if (partitioner != null) {
+        partitioner.close();
+      }
+    } finally {
+      super.close();
+    }
+  }
 }
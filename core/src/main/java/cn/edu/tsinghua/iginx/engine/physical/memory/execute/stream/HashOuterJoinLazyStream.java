@@ -26,7 +26,12 @@ import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtil
 import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils.getSamePathWithSpecificPrefix;
 import static cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils.getHash;
 
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.HashJoinPartitioner;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.RowSpillReader;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.SpillUtils;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.Value;
@@ -46,10 +51,17 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+/** 哈希外连接。StreamB 作为构建侧，超出内存预算或查询内存不足时两侧数据均按连接列哈希值分区落盘，之后逐个分区地完成连接及未匹配行的输出（Grace hash join）。 */
 public class HashOuterJoinLazyStream extends BinaryLazyStream {
 
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
   private final OuterJoin outerJoin;
 
+  private final long memoryBudget;
+
+  private HashJoinPartitioner partitioner;
+
   private final HashMap<Integer, List<Row>> streamBHashMap;
 
   private final List<Integer> streamBHashPutOrder;
@@ -81,8 +93,14 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
   private boolean needTypeCast = false;
 
   public HashOuterJoinLazyStream(OuterJoin outerJoin, RowStream streamA, RowStream streamB) {
+    this(outerJoin, streamA, streamB, config.getJoinMemoryBudget());
+  }
+
+  public HashOuterJoinLazyStream(
+      OuterJoin outerJoin, RowStream streamA, RowStream streamB, long memoryBudget) {
     super(streamA, streamB);
     this.outerJoin = outerJoin;
+    this.memoryBudget = memoryBudget;
     this.streamBHashMap = new HashMap<>();
     this.streamBHashPutOrder = new LinkedList<>();
     this.unmatchedStreamARows = new ArrayList<>();
@@ -147,21 +165,43 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
       this.needTypeCast = true;
     }
 
+    long bufferedSize = 0;
     while (streamB.hasNext()) {
       Row rowB = streamB.next();
-      Value value = rowB.getAsValue(joinPathB);
-      if (value.isNull()) {
+      if (partitioner != null) {
+        Value value = rowB.getAsValue(joinPathB);
+        if (!value.isNull()) {
+          partitioner.addBuildRow(getBuildHash(value), rowB);
+        }
         continue;
       }
-      if (needTypeCast) {
-        value = ValueUtils.transformToDouble(value);
+      if (!addToHashMap(rowB)) {
+        continue;
+      }
+      long rowSize = SpillUtils.estimateRowSize(rowB);
+      if (memoryBudget <= 0) {
+        getMemoryReservation().reserve(rowSize);
+        continue;
       }
-      int hash = getHash(value, needTypeCast);
-      List<Row> rows = streamBHashMap.computeIfAbsent(hash, k -> new ArrayList<>());
-      rows.add(rowB);
-      if (rows.size() == 1) {
-        streamBHashPutOrder.add(hash);
+      bufferedSize += rowSize;
+      // 超出算子的内存预算或查询内存池不足时均落盘
+      if (bufferedSize > memoryBudget || !getMemoryReservation().tryReserve(rowSize)) {
+        spillBuildSide();
+      }
+    }
+    if (partitioner != null) {
+      while (streamA.hasNext()) {
+        Row rowA = streamA.next();
+        Value value = rowA.getAsValue(joinPathA);
+        if (value.isNull()) {
+          continue;
+        }
+        if (needTypeCast) {
+          value = ValueUtils.transformToDouble(value);
+        }
+        partitioner.addProbeRow(getHash(value, needTypeCast), rowA);
       }
+      partitioner.finishWriting();
     }
 
     // 计算连接之后的header
@@ -178,6 +218,73 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
     this.hasInitialized = true;
   }
 
+  private int getBuildHash(Value value) {
+    if (needTypeCast) {
+      value = ValueUtils.transformToDouble(value);
+    }
+    return getHash(value, needTypeCast);
+  }
+
+  private boolean addToHashMap(Row rowB) {
+    Value value = rowB.getAsValue(joinPathB);
+    if (value.isNull()) {
+      return false;
+    }
+    int hash = getBuildHash(value);
+    List<Row> rows = streamBHashMap.computeIfAbsent(hash, k -> new ArrayList<>());
+    rows.add(rowB);
+    if (rows.size() == 1) {
+      streamBHashPutOrder.add(hash);
+    }
+    return true;
+  }
+
+  /** 构建侧超出内存预算，将已缓存的数据转移到分区文件中 */
+  private void spillBuildSide() throws PhysicalException {
+    partitioner =
+        new HashJoinPartitioner(
+            streamB.getHeader(), streamA.getHeader(), config.getHashJoinPartitionNum());
+    for (int hash : streamBHashPutOrder) {
+      for (Row rowB : streamBHashMap.get(hash)) {
+        partitioner.addBuildRow(hash, rowB);
+      }
+    }
+    streamBHashMap.clear();
+    streamBHashPutOrder.clear();
+    getMemoryReservation().releaseAll();
+  }
+
+  /** 读取下一个分区的构建侧数据并建立哈希表，同时重置上一个分区的匹配状态 */
+  private boolean loadNextPartition() throws PhysicalException {
+    streamBHashMap.clear();
+    streamBHashPutOrder.clear();
+    matchedStreamBRowHashSet.clear();
+    unmatchedStreamARows.clear();
+    if (!partitioner.nextPartition()) {
+      return false;
+    }
+    getMemoryReservation().releaseAll();
+    RowSpillReader reader = partitioner.getBuildReader();
+    while (reader.hasNext()) {
+      Row rowB = reader.next();
+      addToHashMap(rowB);
+      getMemoryReservation().reserve(SpillUtils.estimateRowSize(rowB));
+    }
+    lastPartHasInitialized = false;
+    return true;
+  }
+
+  private boolean hasNextRowA() throws PhysicalException {
+    if (partitioner == null) {
+      return streamA.hasNext();
+    }
+    return partitioner.getProbeReader() != null && partitioner.getProbeReader().hasNext();
+  }
+
+  private Row nextRowA() throws PhysicalException {
+    return partitioner == null ? streamA.next() : partitioner.getProbeReader().next();
+  }
+
   private void initializeLastPart() throws PhysicalException {
     if (lastPartHasInitialized) {
       return;
@@ -234,17 +341,19 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
     if (!hasInitialized) {
       initialize();
     }
-    while (cache.isEmpty() && streamA.hasNext()) {
-      tryMatch();
-    }
-    if (cache.isEmpty() && !lastPartHasInitialized) {
-      initializeLastPart();
+    while (cache.isEmpty()) {
+      if (hasNextRowA()) {
+        tryMatch(nextRowA());
+      } else if (!lastPartHasInitialized) {
+        initializeLastPart();
+      } else if (partitioner == null || !loadNextPartition()) {
+        break;
+      }
     }
     return !cache.isEmpty();
   }
 
-  private void tryMatch() throws PhysicalException {
-    Row rowA = streamA.next();
+  private void tryMatch(Row rowA) throws PhysicalException {
 
     Value value = rowA.getAsValue(joinPathA);
     if (value.isNull()) {
@@ -294,4 +403,15 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
     }
     return cache.pollFirst();
   }
+
+  @Override
+  public void close() throws PhysicalException {
+    try {
+      if (partitioner != null) {
+        partitioner.close();
+      }
+    } finally {
+      super.close();
+    }
+  }
 }
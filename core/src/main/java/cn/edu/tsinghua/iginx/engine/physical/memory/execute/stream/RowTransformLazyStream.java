@@ -20,14 +20,23 @@
 package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.ExprCompiler;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Expression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.KeyExpression;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
 import cn.edu.tsinghua.iginx.engine.shared.function.MappingType;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.ArithmeticExpr;
 import cn.edu.tsinghua.iginx.engine.shared.operator.RowTransform;
+import cn.edu.tsinghua.iginx.thrift.DataType;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class RowTransformLazyStream extends UnaryLazyStream {
@@ -38,6 +47,17 @@ public class RowTransformLazyStream extends UnaryLazyStream {
 
   private Header header;
 
+  // 全部为算术表达式时，表达式按输入 Header 编译后直接求值，输出 Header 按结果类型缓存复用
+  private final boolean compilable;
+
+  private final boolean remainKey;
+
+  private ExprCompiler.RowEvaluator[] evaluators;
+
+  private DataType[] outputTypes;
+
+  private Header outputHeader;
+
   public RowTransformLazyStream(RowTransform rowTransform, RowStream stream) {
     super(stream);
     this.functionCallList = new ArrayList<>();
@@ -53,6 +73,20 @@ public class RowTransformLazyStream extends UnaryLazyStream {
               }
               this.functionCallList.add(functionCall);
             });
+    this.compilable =
+        functionCallList.stream()
+            .allMatch(
+                functionCall ->
+                    functionCall.getFunction() instanceof ArithmeticExpr
+                        && !functionCall.isNeedPreRowTransform()
+                        && functionCall.getParams().getExpressions().size() == 1);
+    // 与 RowUtils.calRowTransform 一致，若有KeyExpression，则返回结果将没有key列
+    this.remainKey =
+        functionCallList.stream()
+            .allMatch(
+                functionCall ->
+                    functionCall.getParams().getExpressions().stream()
+                        .noneMatch(expression -> expression instanceof KeyExpression));
   }
 
   @Override
@@ -68,7 +102,10 @@ public class RowTransformLazyStream extends UnaryLazyStream {
 
   private Row calculateNext() throws PhysicalException {
     while (stream.hasNext()) {
-      Row row = RowUtils.calRowTransform(stream.next(), functionCallList, false);
+      Row row =
+          compilable
+              ? calculateCompiled(stream.next())
+              : RowUtils.calRowTransform(stream.next(), functionCallList, false);
       if (!row.equals(Row.EMPTY_ROW)) {
         return row;
       }
@@ -76,6 +113,51 @@ public class RowTransformLazyStream extends UnaryLazyStream {
     return null;
   }
 
+  private Row calculateCompiled(Row row) throws PhysicalException {
+    if (evaluators == null) {
+      Header inputHeader = stream.getHeader();
+      evaluators = new ExprCompiler.RowEvaluator[functionCallList.size()];
+      for (int i = 0; i < evaluators.length; i++) {
+        Expression expr = functionCallList.get(i).getParams().getExpression(0);
+        evaluators[i] = ExprCompiler.compile(expr, inputHeader);
+      }
+    }
+
+    Object[] values = new Object[evaluators.length];
+    DataType[] types = new DataType[evaluators.length];
+    for (int i = 0; i < evaluators.length; i++) {
+      Value ret;
+      try {
+        ret = evaluators[i].evaluate(row);
+      } catch (Exception e) {
+        throw new PhysicalTaskExecuteFailureException(
+            "encounter error when execute row mapping function "
+                + ArithmeticExpr.ARITHMETIC_EXPR
+                + ".",
+            e);
+      }
+      if (ret == null) { // 存在无法计算的表达式时，交由通用逻辑处理
+        return RowUtils.calRowTransform(row, functionCallList, false);
+      }
+      values[i] = ret.getValue();
+      types[i] = ret.getDataType();
+    }
+
+    boolean hasKey = remainKey && row.getHeader().hasKey();
+    if (outputHeader == null
+        || !Arrays.equals(outputTypes, types)
+        || outputHeader.hasKey() != hasKey) {
+      List<Field> fields = new ArrayList<>();
+      for (int i = 0; i < types.length; i++) {
+        Expression expr = functionCallList.get(i).getParams().getExpression(0);
+        fields.add(new Field(expr.getColumnName(), types[i]));
+      }
+      outputHeader = hasKey ? new Header(Field.KEY, fields) : new Header(fields);
+      outputTypes = types;
+    }
+    return remainKey ? new Row(outputHeader, row.getKey(), values) : new Row(outputHeader, values);
+  }
+
   @Override
   public boolean hasNext() throws PhysicalException {
     if (nextRow == null) {
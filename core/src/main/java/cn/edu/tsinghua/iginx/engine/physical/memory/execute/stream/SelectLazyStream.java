@@ -20,6 +20,7 @@
 package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterCompiler;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
@@ -38,6 +39,8 @@ public class SelectLazyStream extends UnaryLazyStream {
 
   private List<Row> nextBatchCache = new ArrayList<>();
 
+  private FilterCompiler.RowPredicate predicate;
+
   public SelectLazyStream(Select select, RowStream stream) {
     super(stream);
     this.select = select;
@@ -57,13 +60,16 @@ public class SelectLazyStream extends UnaryLazyStream {
   }
 
   private void calculateNextBatch() throws PhysicalException {
+    if (predicate == null) {
+      predicate = FilterCompiler.compile(select.getFilter(), getHeader());
+    }
     int rowCnt = 0;
     List<Row> rows = new ArrayList<>();
     while (stream.hasNext() && rowCnt < BATCH_SIZE) {
       rows.add(stream.next());
       rowCnt++;
     }
-    nextBatchCache = RowUtils.cacheFilterResult(rows, select.getFilter());
+    nextBatchCache = RowUtils.cacheFilterResult(rows, predicate);
     cacheIndex = 0;
   }
 
@@ -19,31 +19,68 @@
  */
 package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.MemoryLimitExceededException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.RowSpillReader;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.RowSpillWriter;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.SpillUtils;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
 
+/**
+ * 排序算子。缓存的数据超出内存预算或查询内存不足时，将当前缓存排序后作为有序段写入磁盘，最终对所有有序段进行多路归并，归并过程按需读取。
+ * 查询内存不足时有序段至少缓存一定大小（不超过内存预算）才会落盘，以限制有序段的数量。
+ *
+ * <p>相等的行按有序段的先后顺序输出，因此与内存中的稳定排序结果一致。
+ */
 public class SortLazyStream extends UnaryLazyStream {
 
   private final Sort sort;
 
   private final List<Boolean> ascendingList;
 
-  private final List<Row> rows;
+  private static final long MIN_RUN_SIZE = 4 * 1024 * 1024L;
+
+  private final long memoryBudget;
+
+  private final long minRunSize;
+
+  private List<Row> rows;
+
+  private long bufferedSize = 0;
+
+  private Comparator<Row> comparator;
+
+  private final List<File> spillFiles = new ArrayList<>();
+
+  private final List<RowSpillReader> readers = new ArrayList<>();
+
+  private PriorityQueue<RunCursor> mergeQueue;
 
   private boolean hasSorted = false;
 
   private int cur = 0;
 
   public SortLazyStream(Sort sort, RowStream stream) {
+    this(sort, stream, ConfigDescriptor.getInstance().getConfig().getSortMemoryBudget());
+  }
+
+  public SortLazyStream(Sort sort, RowStream stream, long memoryBudget) {
     super(stream);
     this.sort = sort;
     this.ascendingList = sort.getAscendingList();
+    this.memoryBudget = memoryBudget;
+    this.minRunSize = Math.min(memoryBudget, MIN_RUN_SIZE);
     this.rows = new ArrayList<>();
   }
 
@@ -56,11 +93,42 @@ public class SortLazyStream extends UnaryLazyStream {
   public boolean hasNext() throws PhysicalException {
     if (!hasSorted) {
       while (stream.hasNext()) {
-        rows.add(stream.next());
+        Row row = stream.next();
+        rows.add(row);
+        long rowSize = SpillUtils.estimateRowSize(row);
+        if (memoryBudget <= 0) {
+          getMemoryReservation().reserve(rowSize);
+          continue;
+        }
+        bufferedSize += rowSize;
+        if (bufferedSize > memoryBudget) {
+          spill();
+          continue;
+        }
+        if (getMemoryReservation().tryReserve(rowSize)) {
+          continue;
+        }
+        // 查询内存池不足时，有序段未达到最小大小则等待内存，避免产生大量很小的有序段
+        if (bufferedSize < minRunSize) {
+          try {
+            getMemoryReservation().reserve(rowSize);
+            continue;
+          } catch (MemoryLimitExceededException e) {
+            // 超出单查询上限或等待超时，只能落盘
+          }
+        }
+        spill();
+      }
+      if (spillFiles.isEmpty()) {
+        RowUtils.sortRows(rows, ascendingList, sort.getSortByCols());
+      } else {
+        prepareMerge();
       }
-      RowUtils.sortRows(rows, ascendingList, sort.getSortByCols());
       hasSorted = true;
     }
+    if (mergeQueue != null) {
+      return !mergeQueue.isEmpty();
+    }
     return cur < rows.size();
   }
 
@@ -69,6 +137,105 @@ public class SortLazyStream extends UnaryLazyStream {
     if (!hasNext()) {
       throw new IllegalStateException("row stream doesn't have more data!");
     }
+    if (mergeQueue != null) {
+      RunCursor cursor = mergeQueue.poll();
+      Row row = cursor.current;
+      if (cursor.advance()) {
+        mergeQueue.add(cursor);
+      }
+      return row;
+    }
     return rows.get(cur++);
   }
+
+  private Comparator<Row> getComparator() throws PhysicalException {
+    if (comparator == null) {
+      List<String> sortByCols = sort.getSortByCols();
+      if (sortByCols == null || sortByCols.isEmpty()) {
+        comparator = (a, b) -> 0;
+      } else {
+        comparator = RowUtils.buildRowComparator(getHeader(), ascendingList, sortByCols);
+      }
+    }
+    return comparator;
+  }
+
+  /** 将当前缓存的数据排序后写入一个新的有序段 */
+  private void spill() throws PhysicalException {
+    rows.sort(getComparator());
+    File file = SpillUtils.createSpillFile("sort");
+    spillFiles.add(file);
+    try (RowSpillWriter writer = new RowSpillWriter(file, getHeader())) {
+      for (Row row : rows) {
+        writer.write(row);
+      }
+    }
+    rows = new ArrayList<>();
+    bufferedSize = 0;
+    getMemoryReservation().releaseAll();
+  }
+
+  private void prepareMerge() throws PhysicalException {
+    Comparator<Row> rowComparator = getComparator();
+    mergeQueue =
+        new PriorityQueue<>(
+            spillFiles.size() + 1,
+            (a, b) -> {
+              int cmp = rowComparator.compare(a.current, b.current);
+              return cmp != 0 ? cmp : Integer.compare(a.index, b.index);
+            });
+    Header header = getHeader();
+    for (File file : spillFiles) {
+      RowSpillReader reader = new RowSpillReader(file, header);
+      readers.add(reader);
+      RunCursor cursor = new RunCursor(readers.size() - 1, reader, null);
+      if (cursor.advance()) {
+        mergeQueue.add(cursor);
+      }
+    }
+    // 内存中剩余的数据作为最后一个有序段参与归并
+    rows.sort(rowComparator);
+    RunCursor cursor = new RunCursor(spillFiles.size(), null, rows.iterator());
+    if (cursor.advance()) {
+      mergeQueue.add(cursor);
+    }
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    try {
+      for (RowSpillReader reader : readers) {
+        reader.close();
+      }
+    } finally {
+      spillFiles.forEach(SpillUtils::deleteSpillFile);
+      super.close();
+    }
+  }
+
+  private static class RunCursor {
+
+    private final int index;
+
+    private final RowSpillReader reader;
+
+    private final Iterator<Row> iterator;
+
+    private Row current;
+
+    RunCursor(int index, RowSpillReader reader, Iterator<Row> iterator) {
+      this.index = index;
+      this.reader = reader;
+      this.iterator = iterator;
+    }
+
+    boolean advance() throws PhysicalException {
+      if (reader != null) {
+        current = reader.hasNext() ? reader.next() : null;
+      } else {
+        current = iterator.hasNext() ? iterator.next() : null;
+      }
+      return current != null;
+    }
+  }
 }
@@ -21,11 +21,17 @@ package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
 import static cn.edu.tsinghua.iginx.engine.shared.function.FunctionUtils.isCanUseSetQuantifierFunction;
 
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.physical.exception.InvalidOperatorParameterException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.UnexpectedOperatorException;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutor;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.BatchToRowStream;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.ProjectBatchStream;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.RowToBatchStream;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch.SelectBatchStream;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.HeaderUtils;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.Constants;
@@ -61,6 +67,7 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SingleJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.TopN;
 import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Union;
 import cn.edu.tsinghua.iginx.engine.shared.operator.ValueToSelectedPath;
@@ -73,6 +80,8 @@ import java.util.Map;
 
 public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
 
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
   private StreamOperatorMemoryExecutor() {}
 
   public static StreamOperatorMemoryExecutor getInstance() {
@@ -96,6 +105,9 @@ public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
       case Limit:
         result = executeLimit((Limit) operator, stream);
         break;
+      case TopN:
+        result = executeTopN((TopN) operator, stream);
+        break;
       case Downsample:
         result = executeDownsample((Downsample) operator, stream);
         break;
@@ -184,6 +196,11 @@ public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
     switch (source.getType()) {
       case Operator:
       case Empty:
+        if (config.isEnableBatchExecution()) {
+          return new BatchToRowStream(
+              new ProjectBatchStream(
+                  project, RowToBatchStream.of(stream, config.getBatchExecutionSize())));
+        }
         return new ProjectLazyStream(project, stream);
       case Constant:
         ConstantSource constantSource = (ConstantSource) source;
@@ -195,6 +212,11 @@ public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
   }
 
   private RowStream executeSelect(Select select, RowStream stream) {
+    if (config.isEnableBatchExecution()) {
+      return new BatchToRowStream(
+          new SelectBatchStream(
+              select, RowToBatchStream.of(stream, config.getBatchExecutionSize())));
+    }
     return new SelectLazyStream(select, stream);
   }
 
@@ -211,6 +233,16 @@ public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
     return new LimitLazyStream(limit, stream);
   }
 
+  private RowStream executeTopN(TopN topN, RowStream stream) throws PhysicalException {
+    RowTransform preRowTransform =
+        HeaderUtils.checkSortHeader(stream.getHeader(), topN.getSortByExpressions());
+    if (preRowTransform != null) {
+      stream = executeRowTransform(preRowTransform, stream);
+    }
+
+    return new TopNLazyStream(topN, stream);
+  }
+
   private RowStream executeDownsample(Downsample downsample, RowStream stream)
       throws PhysicalException {
     if (!stream.getHeader().hasKey()) {
@@ -0,0 +1,128 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.SpillUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.TopN;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** 使用大小为 offset + limit 的有界堆计算 Top-N，结果与先 Sort 再 Limit 一致（相等的行保持输入顺序），堆中的行计入查询内存 */
+public class TopNLazyStream extends UnaryLazyStream {
+
+  private final TopN topN;
+
+  private List<Row> rows;
+
+  private int cur = 0;
+
+  public TopNLazyStream(TopN topN, RowStream stream) {
+    super(stream);
+    this.topN = topN;
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    return stream.getHeader();
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    if (rows == null) {
+      rows = computeTopN();
+      cur = topN.getOffset();
+    }
+    return cur < rows.size();
+  }
+
+  @Override
+  public Row next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("row stream doesn't have more data!");
+    }
+    return rows.get(cur++);
+  }
+
+  private List<Row> computeTopN() throws PhysicalException {
+    long capacity = (long) topN.getOffset() + topN.getLimit();
+    if (capacity == 0 || !stream.hasNext()) {
+      return new ArrayList<>();
+    }
+
+    Comparator<Row> rowComparator =
+        RowUtils.buildRowComparator(
+            stream.getHeader(), topN.getAscendingList(), topN.getSortByCols());
+    // 排序靠后的行位于堆顶，相等时输入靠后的行视为更靠后
+    Comparator<SequencedRow> order =
+        (a, b) -> {
+          int cmp = rowComparator.compare(a.row, b.row);
+          return cmp != 0 ? cmp : Long.compare(a.seq, b.seq);
+        };
+    PriorityQueue<SequencedRow> heap = new PriorityQueue<>(order.reversed());
+
+    long seq = 0;
+    while (stream.hasNext()) {
+      Row row = stream.next();
+      if (heap.size() < capacity) {
+        heap.add(reserve(row, seq));
+      } else if (rowComparator.compare(row, heap.peek().row) < 0) {
+        getMemoryReservation().release(heap.poll().size);
+        heap.add(reserve(row, seq));
+      }
+      seq++;
+    }
+
+    List<SequencedRow> sequencedRows = new ArrayList<>(heap);
+    sequencedRows.sort(order);
+    List<Row> result = new ArrayList<>(sequencedRows.size());
+    for (SequencedRow sequencedRow : sequencedRows) {
+      result.add(sequencedRow.row);
+    }
+    return result;
+  }
+
+  private SequencedRow reserve(Row row, long seq) throws PhysicalException {
+    long size = SpillUtils.estimateRowSize(row);
+    getMemoryReservation().reserve(size);
+    return new SequencedRow(row, seq, size);
+  }
+
+  private static class SequencedRow {
+
+    private final Row row;
+
+    private final long seq;
+
+    private final long size;
+
+    SequencedRow(Row row, long seq, long size) {
+      this.row = row;
+      this.seq = seq;
+      this.size = size;
+    }
+  }
+}
@@ -22,6 +22,7 @@ package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.resource.MemoryReservation;
 
 public abstract class UnaryLazyStream implements RowStream {
 
@@ -29,15 +30,28 @@ public abstract class UnaryLazyStream implements RowStream {
 
   protected RequestContext context;
 
+  private MemoryReservation memoryReservation;
+
   public UnaryLazyStream(RowStream stream) {
     this.stream = stream;
   }
 
   @Override
   public void close() throws PhysicalException {
+    if (memoryReservation != null) {
+      memoryReservation.releaseAll();
+    }
     stream.close();
   }
 
+  /** 缓存数据的算子通过该预留进行内存记账，需要在 context 设置之后调用 */
+  protected MemoryReservation getMemoryReservation() {
+    if (memoryReservation == null) {
+      memoryReservation = MemoryReservation.of(context);
+    }
+    return memoryReservation;
+  }
+
   @Override
   public void setContext(RequestContext context) {
     this.context = context;
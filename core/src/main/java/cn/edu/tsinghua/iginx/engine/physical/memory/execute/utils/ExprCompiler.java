@@ -0,0 +1,91 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BinaryExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BracketExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.ConstantExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Expression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.expr.UnaryExpression;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+
+/**
+ * 将表达式绑定到给定的 Header 上编译为可复用的求值器：列下标在编译期解析，求值时不再按列名查找。 暂不支持编译的表达式（函数、多元、CASE WHEN 等）回退到 ExprUtils
+ * 逐行解释执行。
+ */
+public class ExprCompiler {
+
+  @FunctionalInterface
+  public interface RowEvaluator {
+    Value evaluate(Row row) throws PhysicalException;
+  }
+
+  /** 编译表达式，当输入行的 Header 与编译时的 Header 不是同一对象时，回退到解释执行 */
+  public static RowEvaluator compile(Expression expr, Header header) {
+    RowEvaluator compiled = compileBound(expr, header);
+    return row ->
+        row.getHeader() == header ? compiled.evaluate(row) : ExprUtils.calculateExpr(row, expr);
+  }
+
+  /** 编译表达式，返回的求值器只能用于 Header 为 header 的行 */
+  static RowEvaluator compileBound(Expression expr, Header header) {
+    switch (expr.getType()) {
+      case Constant:
+        Value constant = new Value(((ConstantExpression) expr).getValue());
+        return row -> constant;
+      case Key:
+        if (!header.hasKey()) {
+          return row -> {
+            throw new PhysicalTaskExecuteFailureException("there is no key in row");
+          };
+        }
+        return row -> new Value(row.getKey());
+      case Base:
+        int index = header.indexOf(((BaseExpression) expr).getColumnName());
+        if (index == -1) {
+          return row -> null;
+        }
+        DataType type = header.getField(index).getType();
+        return row -> new Value(type, row.getValues()[index]);
+      case Bracket:
+        return compileBound(((BracketExpression) expr).getExpression(), header);
+      case Unary:
+        UnaryExpression unaryExpr = (UnaryExpression) expr;
+        RowEvaluator child = compileBound(unaryExpr.getExpression(), header);
+        Operator unaryOp = unaryExpr.getOperator();
+        return row -> ExprUtils.calculateUnary(unaryOp, child.evaluate(row));
+      case Binary:
+        BinaryExpression binaryExpr = (BinaryExpression) expr;
+        RowEvaluator left = compileBound(binaryExpr.getLeftExpression(), header);
+        RowEvaluator right = compileBound(binaryExpr.getRightExpression(), header);
+        Operator binaryOp = binaryExpr.getOp();
+        return row -> ExprUtils.calculateBinary(binaryOp, left.evaluate(row), right.evaluate(row));
+      default:
+        return row -> ExprUtils.calculateExpr(row, expr);
+    }
+  }
+}
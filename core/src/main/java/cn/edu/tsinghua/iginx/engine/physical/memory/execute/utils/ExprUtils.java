@@ -148,6 +148,11 @@ public class ExprUtils {
     Operator operator = unaryExpr.getOperator();
 
     Value value = calculateExpr(row, expr);
+    return calculateUnary(operator, value);
+  }
+
+  /** 对已求值的操作数执行一元运算 */
+  public static Value calculateUnary(Operator operator, Value value) {
     if (operator.equals(Operator.PLUS)) { // positive
       return value;
     }
@@ -174,7 +179,11 @@ public class ExprUtils {
 
     Value leftVal = calculateExpr(row, leftExpr);
     Value rightVal = calculateExpr(row, rightExpr);
+    return calculateBinary(operator, leftVal, rightVal);
+  }
 
+  /** 对两个已求值的操作数执行二元运算 */
+  public static Value calculateBinary(Operator operator, Value leftVal, Value rightVal) {
     if (!leftVal.getDataType().equals(rightVal.getDataType())) { // 两值类型不同，但均为数值类型，转为double再运算
       if (DataTypeUtils.isNumber(leftVal.getDataType())
           && DataTypeUtils.isNumber(rightVal.getDataType())) {
@@ -0,0 +1,357 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.ExprCompiler.RowEvaluator;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.BoolFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ExprFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.InFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.NotFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.PathFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 将过滤条件绑定到给定的 Header 上编译为可复用的谓词：列下标在编译期解析，数值比较按数据类型特化，求值时直接读取行内的原始值， 语义与 FilterUtils.validate 保持一致。
+ */
+public class FilterCompiler {
+
+  @FunctionalInterface
+  public interface RowPredicate {
+    boolean test(Row row) throws PhysicalException;
+  }
+
+  /** 对单个非空原始值的判断 */
+  @FunctionalInterface
+  private interface ValueMatcher {
+    boolean matches(Object value) throws PhysicalException;
+  }
+
+  @FunctionalInterface
+  private interface RawComparator {
+    int compare(Object a, Object b);
+  }
+
+  /** 编译过滤条件，当输入行的 Header 与编译时的 Header 不是同一对象时，回退到 FilterUtils 逐行解释执行 */
+  public static RowPredicate compile(Filter filter, Header header) {
+    RowPredicate compiled = compileBound(filter, header);
+    return row ->
+        row.getHeader() == header ? compiled.test(row) : FilterUtils.validate(filter, row);
+  }
+
+  private static RowPredicate compileBound(Filter filter, Header header) {
+    switch (filter.getType()) {
+      case Or:
+        RowPredicate[] orChildren = compileChildren(((OrFilter) filter).getChildren(), header);
+        return row -> {
+          for (RowPredicate child : orChildren) {
+            if (child.test(row)) {
+              return true;
+            }
+          }
+          return false;
+        };
+      case Bool:
+        boolean isTrue = ((BoolFilter) filter).isTrue();
+        return row -> isTrue;
+      case And:
+        RowPredicate[] andChildren = compileChildren(((AndFilter) filter).getChildren(), header);
+        return row -> {
+          for (RowPredicate child : andChildren) {
+            if (!child.test(row)) {
+              return false;
+            }
+          }
+          return true;
+        };
+      case Not:
+        RowPredicate notChild = compileBound(((NotFilter) filter).getChild(), header);
+        return row -> !notChild.test(row);
+      case Key:
+        KeyFilter keyFilter = (KeyFilter) filter;
+        Op keyOp = keyFilter.getOp();
+        long target = keyFilter.getValue();
+        return row ->
+            row.getKey() != Row.NON_EXISTED_KEY
+                && matches(keyOp, Long.compare(row.getKey(), target));
+      case Value:
+        return compileValueFilter((ValueFilter) filter, header);
+      case Path:
+        return compilePathFilter((PathFilter) filter, header);
+      case Expr:
+        return compileExprFilter((ExprFilter) filter, header);
+      case In:
+        return compileInFilter((InFilter) filter, header);
+      default:
+        return row -> false;
+    }
+  }
+
+  private static RowPredicate[] compileChildren(List<Filter> children, Header header) {
+    RowPredicate[] predicates = new RowPredicate[children.size()];
+    for (int i = 0; i < children.size(); i++) {
+      predicates[i] = compileBound(children.get(i), header);
+    }
+    return predicates;
+  }
+
+  private static RowPredicate compileValueFilter(ValueFilter valueFilter, Header header) {
+    Op op = valueFilter.getOp();
+    Value target = valueFilter.getValue();
+    if (target.isNull()) { // targetValue是空值，则认为不可比较
+      return row -> false;
+    }
+    List<Integer> indexList = new ArrayList<>();
+    List<ValueMatcher> matcherList = new ArrayList<>();
+    for (int index : header.patternIndexOf(valueFilter.getPath())) {
+      if (index != -1) {
+        indexList.add(index);
+        matcherList.add(compileValueMatcher(op, header.getField(index).getType(), target));
+      }
+    }
+
+    if (indexList.isEmpty()) {
+      return row -> false;
+    }
+    if (indexList.size() == 1) {
+      int index = indexList.get(0);
+      ValueMatcher matcher = matcherList.get(0);
+      return row -> {
+        Object value = row.getValues()[index];
+        return value != null && matcher.matches(value);
+      };
+    }
+
+    int[] indexes = indexList.stream().mapToInt(Integer::intValue).toArray();
+    ValueMatcher[] matchers = matcherList.toArray(new ValueMatcher[0]);
+    if (Op.isOrOp(op)) {
+      return row -> {
+        Object[] values = row.getValues();
+        for (int i = 0; i < indexes.length; i++) {
+          Object value = values[indexes[i]];
+          if (value != null && matchers[i].matches(value)) {
+            return true;
+          }
+        }
+        return false;
+      };
+    } else if (Op.isAndOp(op)) {
+      return row -> {
+        Object[] values = row.getValues();
+        for (int i = 0; i < indexes.length; i++) {
+          Object value = values[indexes[i]];
+          if (value == null || !matchers[i].matches(value)) {
+            return false;
+          }
+        }
+        return true;
+      };
+    } else {
+      throw new IllegalArgumentException("Unknown op type: " + op);
+    }
+  }
+
+  private static ValueMatcher compileValueMatcher(Op op, DataType type, Value target) {
+    DataType targetType = target.getDataType();
+    if (isCompareOp(op) && ValueUtils.isNumericType(type) && ValueUtils.isNumericType(targetType)) {
+      if (type != targetType) { // 类型不同的数值先统一转为double再比较
+        target = ValueUtils.transformToDouble(target);
+        targetType = DataType.DOUBLE;
+      }
+      RawComparator comparator = numericComparator(type, targetType);
+      Object targetValue = target.getValue();
+      return value -> matches(op, comparator.compare(value, targetValue));
+    }
+    Value targetValue = target;
+    return value -> FilterUtils.validateValueCompare(op, new Value(type, value), targetValue);
+  }
+
+  private static RowPredicate compilePathFilter(PathFilter pathFilter, Header header) {
+    Op op = pathFilter.getOp();
+    int indexA = header.indexOf(pathFilter.getPathA());
+    int indexB = header.indexOf(pathFilter.getPathB());
+    if (indexA == -1 || indexB == -1) {
+      return row -> false;
+    }
+    DataType typeA = header.getField(indexA).getType();
+    DataType typeB = header.getField(indexB).getType();
+    if (isCompareOp(op) && ValueUtils.isNumericType(typeA) && ValueUtils.isNumericType(typeB)) {
+      RawComparator comparator = numericComparator(typeA, typeB);
+      return row -> {
+        Object[] values = row.getValues();
+        Object valueA = values[indexA];
+        Object valueB = values[indexB];
+        return valueA != null && valueB != null && matches(op, comparator.compare(valueA, valueB));
+      };
+    }
+    return row -> {
+      Object[] values = row.getValues();
+      Object valueA = values[indexA];
+      Object valueB = values[indexB];
+      if (valueA == null || valueB == null) { // 如果任何一个是空值，则认为不可比较
+        return false;
+      }
+      return FilterUtils.validateValueCompare(
+          op, new Value(typeA, valueA), new Value(typeB, valueB));
+    };
+  }
+
+  private static RowPredicate compileExprFilter(ExprFilter exprFilter, Header header) {
+    Op op = exprFilter.getOp();
+    RowEvaluator exprA = ExprCompiler.compileBound(exprFilter.getExpressionA(), header);
+    RowEvaluator exprB = ExprCompiler.compileBound(exprFilter.getExpressionB(), header);
+    return row -> {
+      Value valueA = exprA.evaluate(row);
+      Value valueB = exprB.evaluate(row);
+      if (valueA == null
+          || valueA.isNull()
+          || valueB == null
+          || valueB.isNull()) { // 如果任何一个是空值，则认为不可比较
+        return false;
+      }
+      return FilterUtils.validateValueCompare(op, valueA, valueB);
+    };
+  }
+
+  private static RowPredicate compileInFilter(InFilter inFilter, Header header) {
+    String path = inFilter.getPath();
+    Set<Value> values = inFilter.getValues();
+    InFilter.InOp inOp = inFilter.getInOp();
+    boolean isNot = inOp.isNotOp();
+
+    if (!path.contains("*")) {
+      int index = header.indexOf(path);
+      if (index == -1) {
+        return row -> false;
+      }
+      DataType type = header.getField(index).getType();
+      return row -> {
+        Object value = row.getValues()[index];
+        return value != null && isNot ^ values.contains(new Value(type, value));
+      };
+    }
+
+    // 带通配符的filter
+    int[] indexes =
+        header.patternIndexOf(path).stream().filter(i -> i != -1).mapToInt(i -> i).toArray();
+    DataType[] types = new DataType[indexes.length];
+    for (int i = 0; i < indexes.length; i++) {
+      types[i] = header.getField(indexes[i]).getType();
+    }
+    boolean isOrOp = inOp.isOrOp();
+    return row -> {
+      Object[] rowValues = row.getValues();
+      for (int i = 0; i < indexes.length; i++) {
+        Object value = rowValues[indexes[i]];
+        if (value == null) { // value是空值，则认为不可比较
+          return false;
+        }
+        boolean contains = values.contains(new Value(types[i], value));
+        if (isOrOp && isNot != contains) {
+          return true;
+        } else if (!isOrOp && isNot == contains) {
+          return false;
+        }
+      }
+      return !isOrOp;
+    };
+  }
+
+  /** 两个非空数值原始值的比较，类型相同时直接比较，否则统一转为double */
+  private static RawComparator numericComparator(DataType typeA, DataType typeB) {
+    if (typeA == typeB) {
+      switch (typeA) {
+        case INTEGER:
+          return (a, b) -> Integer.compare((Integer) a, (Integer) b);
+        case LONG:
+          return (a, b) -> Long.compare((Long) a, (Long) b);
+        case FLOAT:
+          return (a, b) -> Float.compare((Float) a, (Float) b);
+        default:
+          return (a, b) -> Double.compare((Double) a, (Double) b);
+      }
+    }
+    return (a, b) -> Double.compare(toDouble(typeA, a), toDouble(typeB, b));
+  }
+
+  /** 与 ValueUtils.transformToDouble 的转换方式保持一致 */
+  private static double toDouble(DataType type, Object value) {
+    switch (type) {
+      case INTEGER:
+        return (Integer) value;
+      case LONG:
+        return (Long) value;
+      case FLOAT:
+        return Double.parseDouble(value.toString());
+      default:
+        return (Double) value;
+    }
+  }
+
+  private static boolean isCompareOp(Op op) {
+    switch (op) {
+      case LIKE:
+      case LIKE_AND:
+      case NOT_LIKE:
+      case NOT_LIKE_AND:
+        return false;
+      default:
+        return true;
+    }
+  }
+
+  private static boolean matches(Op op, int cmp) {
+    switch (op) {
+      case E:
+      case E_AND:
+        return cmp == 0;
+      case G:
+      case G_AND:
+        return cmp > 0;
+      case L:
+      case L_AND:
+        return cmp < 0;
+      case GE:
+      case GE_AND:
+        return cmp >= 0;
+      case LE:
+      case LE_AND:
+        return cmp <= 0;
+      case NE:
+      case NE_AND:
+        return cmp != 0;
+      default:
+        return false;
+    }
+  }
+}
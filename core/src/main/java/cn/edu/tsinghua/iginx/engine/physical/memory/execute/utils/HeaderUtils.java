@@ -368,7 +368,11 @@ public class HeaderUtils {
   }
 
   public static RowTransform checkSortHeader(Header header, Sort sort) {
-    List<Expression> sortExpressions = new ArrayList<>(sort.getSortByExpressions());
+    return checkSortHeader(header, sort.getSortByExpressions());
+  }
+
+  public static RowTransform checkSortHeader(Header header, List<Expression> sortByExpressions) {
+    List<Expression> sortExpressions = new ArrayList<>(sortByExpressions);
     if (sortExpressions.get(0) instanceof KeyExpression) {
       sortExpressions.remove(0);
     }
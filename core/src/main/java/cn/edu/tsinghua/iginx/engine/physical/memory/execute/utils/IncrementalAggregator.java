@@ -0,0 +1,417 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionType;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionUtils;
+import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Avg;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.FirstValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.LastValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.engine.shared.operator.GroupBy;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.DataTypeUtils;
+import cn.edu.tsinghua.iginx.utils.Pair;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分组聚合的增量计算：每个分组只保存聚合函数的中间状态，而不是缓存分组内的全部原始行。
+ *
+ * <p>仅支持不需要行预处理的系统聚合函数（sum、count、avg、min、max、first_value、last_value）， 其余情况（UDAF、DISTINCT
+ * 等）需要回退到原有的按组缓存再计算的方式。结果的表头与行布局与 {@link RowUtils#applyFunc} 保持一致。
+ */
+public class IncrementalAggregator {
+
+  private final int[] colIndex;
+
+  private final AggregateFunc[] funcs;
+
+  private final Header resultHeader;
+
+  private IncrementalAggregator(int[] colIndex, AggregateFunc[] funcs, Header resultHeader) {
+    this.colIndex = colIndex;
+    this.funcs = funcs;
+    this.resultHeader = resultHeader;
+  }
+
+  /**
+   * 尝试为给定的 GroupBy 构造增量聚合器
+   *
+   * @return 不支持增量计算时返回 null
+   */
+  public static IncrementalAggregator tryCreate(GroupBy groupBy, Header header)
+      throws PhysicalException {
+    return tryCreate(groupBy.getGroupByCols(), groupBy.getFunctionCallList(), header);
+  }
+
+  /**
+   * 尝试为不分组的聚合（如降采样的每个窗口）构造增量聚合器，所有行属于同一个分组
+   *
+   * @return 不支持增量计算时返回 null
+   */
+  public static IncrementalAggregator tryCreate(List<FunctionCall> functionCallList, Header header)
+      throws PhysicalException {
+    return tryCreate(Collections.emptyList(), functionCallList, header);
+  }
+
+  private static IncrementalAggregator tryCreate(
+      List<String> cols, List<FunctionCall> functionCallList, Header header)
+      throws PhysicalException {
+    int[] colIndex = new int[cols.size()];
+    List<Field> fields = new ArrayList<>();
+    for (int i = 0; i < cols.size(); i++) {
+      int index = header.indexOf(cols.get(i));
+      if (index == -1) {
+        throw new PhysicalTaskExecuteFailureException(
+            String.format("Group by col [%s] not exist.", cols.get(i)));
+      }
+      colIndex[i] = index;
+      fields.add(header.getField(index));
+    }
+
+    AggregateFunc[] funcs = new AggregateFunc[functionCallList.size()];
+    Table emptyTable = new Table(header, Collections.emptyList());
+    for (int i = 0; i < funcs.length; i++) {
+      FunctionCall functionCall = functionCallList.get(i);
+      if (!isSupported(functionCall)) {
+        return null;
+      }
+      SetMappingFunction function = (SetMappingFunction) functionCall.getFunction();
+      Pair<List<Field>, List<Integer>> pair =
+          FunctionUtils.getFieldAndIndices(emptyTable, functionCall.getParams(), function);
+      DataType[] types = new DataType[pair.v.size()];
+      int[] indices = new int[pair.v.size()];
+      for (int j = 0; j < indices.length; j++) {
+        indices[j] = pair.v.get(j);
+        types[j] = header.getField(indices[j]).getType();
+        if (needNumber(function.getIdentifier()) && !DataTypeUtils.isNumber(types[j])) {
+          return null; // 保留原有路径的报错行为
+        }
+      }
+      funcs[i] = new AggregateFunc(function.getIdentifier(), indices, types);
+      fields.addAll(pair.k);
+    }
+    return new IncrementalAggregator(colIndex, funcs, new Header(fields));
+  }
+
+  private static boolean isSupported(FunctionCall functionCall) {
+    if (functionCall.getFunction().getFunctionType() != FunctionType.System
+        || functionCall.isNeedPreRowTransform()) {
+      return false;
+    }
+    FunctionParams params = functionCall.getParams();
+    if (params.getPaths() == null || params.getPaths().size() != 1) {
+      return false;
+    }
+    switch (functionCall.getFunction().getIdentifier()) {
+      case Max.MAX:
+      case Min.MIN:
+        return true; // min和max无需去重
+      case Sum.SUM:
+      case Count.COUNT:
+      case Avg.AVG:
+      case FirstValue.FIRST_VALUE:
+      case LastValue.LAST_VALUE:
+        return !params.isDistinct();
+      default:
+        return false;
+    }
+  }
+
+  private static boolean needNumber(String identifier) {
+    return identifier.equals(Sum.SUM) || identifier.equals(Avg.AVG);
+  }
+
+  /** 用于计算分组键，与 RowUtils 中分组时的处理一致，byte[] 转换为 String 以便比较 */
+  public GroupByKey getKey(Row row) {
+    Object[] values = row.getValues();
+    List<Object> hashValues = new ArrayList<>(colIndex.length);
+    for (int index : colIndex) {
+      if (values[index] instanceof byte[]) {
+        hashValues.add(new String((byte[]) values[index]));
+      } else {
+        hashValues.add(values[index]);
+      }
+    }
+    return new GroupByKey(hashValues);
+  }
+
+  /**
+   * 将一行数据累加到对应分组的中间状态中
+   *
+   * @param seq 行在输入中的序号，用于保证 first_value 和 last_value 在并行计算时的结果与输入顺序一致
+   */
+  public void update(Map<GroupByKey, AggregateState[]> groups, Row row, long seq) {
+    AggregateState[] states = groups.computeIfAbsent(getKey(row), k -> newStates());
+    Object[] values = row.getValues();
+    for (int i = 0; i < funcs.length; i++) {
+      states[i].update(values, seq);
+    }
+  }
+
+  /** 将 from 中的部分聚合结果合并到 to 中 */
+  public void merge(Map<GroupByKey, AggregateState[]> to, Map<GroupByKey, AggregateState[]> from) {
+    for (Map.Entry<GroupByKey, AggregateState[]> entry : from.entrySet()) {
+      AggregateState[] states = to.putIfAbsent(entry.getKey(), entry.getValue());
+      if (states != null) {
+        for (int i = 0; i < funcs.length; i++) {
+          states[i].merge(entry.getValue()[i]);
+        }
+      }
+    }
+  }
+
+  /** 将多个部分聚合结果合并为新的结果，不修改输入，可用于多个窗口共享的部分结果 */
+  public Map<GroupByKey, AggregateState[]> combine(
+      Iterable<Map<GroupByKey, AggregateState[]>> parts) {
+    Map<GroupByKey, AggregateState[]> result = newGroups();
+    for (Map<GroupByKey, AggregateState[]> part : parts) {
+      for (Map.Entry<GroupByKey, AggregateState[]> entry : part.entrySet()) {
+        AggregateState[] states = result.computeIfAbsent(entry.getKey(), k -> newStates());
+        for (int i = 0; i < funcs.length; i++) {
+          states[i].merge(entry.getValue()[i]);
+        }
+      }
+    }
+    return result;
+  }
+
+  public List<Row> getResult(Map<GroupByKey, AggregateState[]> groups) {
+    int fieldSize = resultHeader.getFieldSize();
+    List<Row> cache = new ArrayList<>(groups.size());
+    for (Map.Entry<GroupByKey, AggregateState[]> entry : groups.entrySet()) {
+      Object[] values = new Object[fieldSize];
+      int cur = 0;
+      for (Object val : entry.getKey().getGroupByValues()) {
+        if (val instanceof String) {
+          values[cur++] = ((String) val).getBytes();
+        } else {
+          values[cur++] = val;
+        }
+      }
+      for (AggregateState state : entry.getValue()) {
+        cur = state.fillResult(values, cur);
+      }
+      cache.add(new Row(resultHeader, values));
+    }
+    return cache;
+  }
+
+  public Map<GroupByKey, AggregateState[]> newGroups() {
+    return new HashMap<>();
+  }
+
+  private AggregateState[] newStates() {
+    AggregateState[] states = new AggregateState[funcs.length];
+    for (int i = 0; i < funcs.length; i++) {
+      states[i] = new AggregateState(funcs[i]);
+    }
+    return states;
+  }
+
+  private static class AggregateFunc {
+
+    private final String identifier;
+
+    private final int[] indices;
+
+    private final DataType[] types;
+
+    AggregateFunc(String identifier, int[] indices, DataType[] types) {
+      this.identifier = identifier;
+      this.indices = indices;
+      this.types = types;
+    }
+  }
+
+  /** 单个分组上单个聚合函数的中间状态，每个匹配的列占一个槽位 */
+  public static class AggregateState {
+
+    private final AggregateFunc func;
+
+    private final long[] counts;
+
+    private final long[] longValues;
+
+    private final double[] doubleValues;
+
+    private final Object[] values;
+
+    private final long[] seqs;
+
+    private AggregateState(AggregateFunc func) {
+      this.func = func;
+      int size = func.indices.length;
+      this.counts = new long[size];
+      this.longValues = new long[size];
+      this.doubleValues = new double[size];
+      this.values = new Object[size];
+      this.seqs = new long[size];
+    }
+
+    private void update(Object[] row, long seq) {
+      for (int i = 0; i < counts.length; i++) {
+        Object value = row[func.indices[i]];
+        if (value == null) {
+          continue;
+        }
+        switch (func.identifier) {
+          case Sum.SUM:
+          case Avg.AVG:
+            addNumber(i, value);
+            break;
+          case Max.MAX:
+            if (values[i] == null || ValueUtils.compare(values[i], value, func.types[i]) < 0) {
+              values[i] = value;
+            }
+            break;
+          case Min.MIN:
+            if (values[i] == null || ValueUtils.compare(values[i], value, func.types[i]) > 0) {
+              values[i] = value;
+            }
+            break;
+          case FirstValue.FIRST_VALUE:
+            if (values[i] == null || seq < seqs[i]) {
+              values[i] = value;
+              seqs[i] = seq;
+            }
+            break;
+          case LastValue.LAST_VALUE:
+            if (values[i] == null || seq > seqs[i]) {
+              values[i] = value;
+              seqs[i] = seq;
+            }
+            break;
+          default:
+            break;
+        }
+        counts[i]++;
+      }
+    }
+
+    private void addNumber(int i, Object value) {
+      switch (func.types[i]) {
+        case INTEGER:
+          longValues[i] += (int) value;
+          doubleValues[i] += (int) value;
+          break;
+        case LONG:
+          longValues[i] += (long) value;
+          doubleValues[i] += (long) value;
+          break;
+        case FLOAT:
+          doubleValues[i] += (float) value;
+          break;
+        case DOUBLE:
+          doubleValues[i] += (double) value;
+          break;
+        default:
+          throw new IllegalStateException("Unexpected field type: " + func.types[i].toString());
+      }
+    }
+
+    private void merge(AggregateState other) {
+      for (int i = 0; i < counts.length; i++) {
+        if (other.counts[i] == 0) {
+          continue;
+        }
+        switch (func.identifier) {
+          case Sum.SUM:
+          case Avg.AVG:
+            longValues[i] += other.longValues[i];
+            doubleValues[i] += other.doubleValues[i];
+            break;
+          case Max.MAX:
+            if (values[i] == null
+                || ValueUtils.compare(values[i], other.values[i], func.types[i]) < 0) {
+              values[i] = other.values[i];
+            }
+            break;
+          case Min.MIN:
+            if (values[i] == null
+                || ValueUtils.compare(values[i], other.values[i], func.types[i]) > 0) {
+              values[i] = other.values[i];
+            }
+            break;
+          case FirstValue.FIRST_VALUE:
+            if (values[i] == null || other.seqs[i] < seqs[i]) {
+              values[i] = other.values[i];
+              seqs[i] = other.seqs[i];
+            }
+            break;
+          case LastValue.LAST_VALUE:
+            if (values[i] == null || other.seqs[i] > seqs[i]) {
+              values[i] = other.values[i];
+              seqs[i] = other.seqs[i];
+            }
+            break;
+          default:
+            break;
+        }
+        counts[i] += other.counts[i];
+      }
+    }
+
+    private int fillResult(Object[] target, int offset) {
+      for (int i = 0; i < counts.length; i++) {
+        Object result;
+        switch (func.identifier) {
+          case Count.COUNT:
+            result = counts[i];
+            break;
+          case Sum.SUM:
+            if (counts[i] == 0) {
+              result = null;
+            } else if (DataTypeUtils.isWholeNumber(func.types[i])) {
+              result = longValues[i];
+            } else {
+              result = doubleValues[i];
+            }
+            break;
+          case Avg.AVG:
+            result = counts[i] == 0 ? null : doubleValues[i] / counts[i];
+            break;
+          default:
+            result = values[i];
+            break;
+        }
+        target[offset++] = result;
+      }
+      return offset;
+    }
+  }
+}
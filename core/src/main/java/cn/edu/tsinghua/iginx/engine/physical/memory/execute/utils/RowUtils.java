@@ -595,17 +595,14 @@ public class RowUtils {
         groups.compute(timestamp, (k, v) -> v == null ? new ArrayList<>() : v).add(row);
       }
     } else {
-      HashMap<Long, Long> timestamps = new HashMap<>();
-      for (long i = 0; i < n; i++) {
-        timestamps.put(i, bias + i * slideDistance);
-      }
+      // 直接计算包含该行的窗口区间，无需逐个窗口判断
       for (Row row : rows) {
         long rowTimestamp = row.getKey();
-        for (long i = 0; i < n; i++) {
-          if (rowTimestamp - timestamps.get(i) >= 0
-              && rowTimestamp - timestamps.get(i) < precision) {
-            groups.compute(timestamps.get(i), (k, v) -> v == null ? new ArrayList<>() : v).add(row);
-          }
+        long first =
+            Math.max(0, -Math.floorDiv(bias + precision - 1 - rowTimestamp, slideDistance));
+        long last = Math.min(n - 1, Math.floorDiv(rowTimestamp - bias, slideDistance));
+        for (long i = first; i <= last; i++) {
+          groups.computeIfAbsent(bias + i * slideDistance, k -> new ArrayList<>()).add(row);
         }
       }
     }
@@ -883,6 +880,11 @@ public class RowUtils {
 
   public static List<Row> cacheFilterResult(List<Row> rows, Filter filter)
       throws PhysicalException {
+    return cacheFilterResult(rows, row -> FilterUtils.validate(filter, row));
+  }
+
+  public static List<Row> cacheFilterResult(List<Row> rows, FilterCompiler.RowPredicate predicate)
+      throws PhysicalException {
     if (rows.size() > config.getParallelFilterThreshold()) {
       ForkJoinPool pool = null;
       try {
@@ -891,7 +893,7 @@ public class RowUtils {
             .filter(
                 row -> {
                   try {
-                    return FilterUtils.validate(filter, row);
+                    return predicate.test(row);
                   } catch (PhysicalException e) {
                     LOGGER.error("execute parallel filter error, cause by: ", e);
                     return false;
@@ -910,7 +912,7 @@ public class RowUtils {
           .filter(
               row -> {
                 try {
-                  return FilterUtils.validate(filter, row);
+                  return predicate.test(row);
                 } catch (PhysicalException e) {
                   LOGGER.error("execute sequence filter error, cause by: ", e);
                   return false;
@@ -928,8 +930,13 @@ public class RowUtils {
     if (sortByCols == null || sortByCols.isEmpty()) {
       return;
     }
-    Header header = rows.get(0).getHeader();
+    rows.sort(buildRowComparator(rows.get(0).getHeader(), ascendingList, sortByCols));
+  }
 
+  /** 根据排序列构造行比较器，key 列只能作为第一个排序列 */
+  public static Comparator<Row> buildRowComparator(
+      Header header, List<Boolean> ascendingList, List<String> sortByCols)
+      throws PhysicalTaskExecuteFailureException {
     List<Integer> indexList = new ArrayList<>();
     List<DataType> typeList = new ArrayList<>();
     boolean hasKey = false;
@@ -948,33 +955,30 @@ public class RowUtils {
     }
 
     boolean finalHasKey = hasKey;
-    rows.sort(
-        (a, b) -> {
-          if (finalHasKey) {
-            int cmp =
-                ascendingList.get(0)
-                    ? Long.compare(a.getKey(), b.getKey())
-                    : Long.compare(b.getKey(), a.getKey());
-            if (cmp != 0) {
-              return cmp;
-            }
-          }
-          for (int i = 0; i < indexList.size(); i++) {
-            boolean asc = finalHasKey ? ascendingList.get(i + 1) : ascendingList.get(i);
-            int cmp =
-                asc
-                    ? ValueUtils.compare(
-                        a.getValue(indexList.get(i)), b.getValue(indexList.get(i)), typeList.get(i))
-                    : ValueUtils.compare(
-                        b.getValue(indexList.get(i)),
-                        a.getValue(indexList.get(i)),
-                        typeList.get(i));
-            if (cmp != 0) {
-              return cmp;
-            }
-          }
-          return 0;
-        });
+    return (a, b) -> {
+      if (finalHasKey) {
+        int cmp =
+            ascendingList.get(0)
+                ? Long.compare(a.getKey(), b.getKey())
+                : Long.compare(b.getKey(), a.getKey());
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
+      for (int i = 0; i < indexList.size(); i++) {
+        boolean asc = finalHasKey ? ascendingList.get(i + 1) : ascendingList.get(i);
+        int cmp =
+            asc
+                ? ValueUtils.compare(
+                    a.getValue(indexList.get(i)), b.getValue(indexList.get(i)), typeList.get(i))
+                : ValueUtils.compare(
+                    b.getValue(indexList.get(i)), a.getValue(indexList.get(i)), typeList.get(i));
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
+      return 0;
+    };
   }
 
   public static Table project(Header header, List<Row> rows, List<String> patterns) {
@@ -62,6 +62,11 @@ public interface IStorage {
     return false;
   }
 
+  /** 同时支持谓词下推与带Agg带谓词下推时，是否优先下推 Select + Agg，默认优先下推 Select */
+  default boolean isPreferProjectWithAggSelect() {
+    return false;
+  }
+
   /** 对非叠加分片带Agg带谓词下推的查询 */
   TaskExecuteResult executeProjectWithAggSelect(
       Project project, Select select, Operator agg, DataArea dataArea);
@@ -76,6 +81,41 @@ public interface IStorage {
   /** 对叠加分片带Agg的查询 */
   TaskExecuteResult executeProjectDummyWithAgg(Project project, Operator agg, DataArea dataArea);
 
+  /** 询问底层是否支持带 Limit 或按 key 排序的 TopN 的查询 */
+  default boolean isSupportProjectWithLimit(Operator limit, DataArea dataArea, boolean isDummy) {
+    return false;
+  }
+
+  /** 询问底层是否支持带谓词与 Limit 或按 key 排序的 TopN 的查询 */
+  default boolean isSupportProjectWithSelectLimit(
+      Operator limit, Select select, DataArea dataArea, boolean isDummy) {
+    return false;
+  }
+
+  /** 对非叠加分片带 Limit 的查询，只需保证返回结果包含按序的前 offset + limit 行，上层会再次执行 Limit */
+  default TaskExecuteResult executeProjectWithLimit(
+      Project project, Operator limit, DataArea dataArea) {
+    return executeProject(project, dataArea);
+  }
+
+  /** 对叠加分片带 Limit 的查询 */
+  default TaskExecuteResult executeProjectDummyWithLimit(
+      Project project, Operator limit, DataArea dataArea) {
+    return executeProjectDummy(project, dataArea);
+  }
+
+  /** 对非叠加分片带谓词与 Limit 的查询 */
+  default TaskExecuteResult executeProjectWithSelectLimit(
+      Project project, Select select, Operator limit, DataArea dataArea) {
+    return executeProjectWithSelect(project, select, dataArea);
+  }
+
+  /** 对叠加分片带谓词与 Limit 的查询 */
+  default TaskExecuteResult executeProjectDummyWithSelectLimit(
+      Project project, Select select, Operator limit, DataArea dataArea) {
+    return executeProjectDummyWithSelect(project, select, dataArea);
+  }
+
   /** 对非叠加分片删除数据 */
   TaskExecuteResult executeDelete(Delete delete, DataArea dataArea);
 
@@ -0,0 +1,346 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.storage.cache;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.logical.utils.LogicalFilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.SpillUtils;
+import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.metadata.DefaultMetaManager;
+import cn.edu.tsinghua.iginx.metadata.IMetaManager;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import cn.edu.tsinghua.iginx.metadata.entity.IginxMeta;
+import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 存储任务结果缓存：缓存历史分片（结束键不为 Long.MAX_VALUE，不再接收顺序写入）上查询任务的结果，以分片和下推到存储的操作符为键，按内存预算进行 LRU
+ * 淘汰。分片上执行写入或删除时失效该分片的缓存，分片、存储单元或存储引擎发生变化时清空缓存。
+ *
+ * <p>历史分片仍可能接收乱序写入，而失效只由本节点执行的写入和删除触发，经其他 IginX 节点的写入无法感知，因此只在集群中仅有一个 IginX 节点时启用；发现其他节点后清空缓存且不再缓存。
+ */
+public class StorageResultCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StorageResultCache.class);
+
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  private final IMetaManager metaManager;
+
+  private final long memoryBudget;
+
+  // 单个结果最多占用预算的四分之一，避免一次大查询挤掉所有缓存
+  private final long maxEntrySize;
+
+  private final LinkedHashMap<String, CachedResult> results = new LinkedHashMap<>(16, 0.75f, true);
+
+  // 每个分片的失效次数，与 epoch 一起判断结果生成期间缓存是否失效过，均由 this 的锁保护
+  private final Map<String, Long> fragmentVersions = new HashMap<>();
+
+  private long epoch = 0;
+
+  private long usedMemory = 0;
+
+  private static class StorageResultCacheHolder {
+    private static final StorageResultCache INSTANCE =
+        new StorageResultCache(
+            DefaultMetaManager.getInstance(), config.getResultCacheMemoryBudget());
+  }
+
+  StorageResultCache(IMetaManager metaManager, long memoryBudget) {
+    this.metaManager = metaManager;
+    this.memoryBudget = memoryBudget;
+    this.maxEntrySize = memoryBudget / 4;
+    metaManager.registerFragmentChangeHook((create, fragment) -> invalidateAll());
+    metaManager.registerStorageUnitHook((before, after) -> invalidateAll());
+    metaManager.registerStorageEngineChangeHook((before, after) -> invalidateAll());
+  }
+
+  public static StorageResultCache getInstance() {
+    return StorageResultCacheHolder.INSTANCE;
+  }
+
+  public boolean isEnabled() {
+    return config.isEnableResultCache() && memoryBudget > 0;
+  }
+
+  /**
+   * 计算查询任务的缓存键
+   *
+   * @return 任务结果不可缓存时返回 null
+   */
+  public String getKey(
+      FragmentMeta fragment, boolean isDummyStorageUnit, List<Operator> operators) {
+    // dummy 存储单元中的数据可能被外部修改，未封闭的分片仍在接收写入
+    if (!isEnabled() || isDummyStorageUnit || !isHistorical(fragment)) {
+      return null;
+    }
+    if (!isSingleNode()) {
+      if (size() > 0) {
+        LOGGER.info("other iginx nodes found, clear and stop caching storage results");
+        invalidateAll();
+      }
+      return null;
+    }
+    if (operators.isEmpty() || operators.get(0).getType() != OperatorType.Project) {
+      return null;
+    }
+    StringBuilder builder = new StringBuilder(getFragmentId(fragment));
+    for (Operator operator : operators) {
+      if (operator.getType() == OperatorType.Select
+          && coversFragment((Select) operator, fragment.getKeyInterval())) {
+        continue; // 过滤条件对该分片不生效，滑动窗口查询中被完整覆盖的分片可以命中同一条缓存
+      }
+      builder.append('|').append(operator.getType()).append(':').append(operator.getInfo());
+    }
+    return builder.toString();
+  }
+
+  /** @return 缓存中的结果，未命中时返回 null */
+  public synchronized RowStream get(String key) {
+    CachedResult result = results.get(key);
+    if (result == null) {
+      return null;
+    }
+    return new Table(result.header, result.rows);
+  }
+
+  /** 执行查询前获取，执行期间分片上的缓存失效过时放弃本次结果 */
+  public synchronized long getStamp(FragmentMeta fragment) {
+    // 两个计数器都只增不减，二者之和不变说明都未变化
+    return epoch + fragmentVersions.getOrDefault(getFragmentId(fragment), 0L);
+  }
+
+  /** 包装查询结果，结果被完整读取后放入缓存 */
+  public RowStream cache(String key, FragmentMeta fragment, long stamp, RowStream stream) {
+    return new CachingRowStream(key, getFragmentId(fragment), fragment, stamp, stream);
+  }
+
+  /** 分片上执行写入或删除后调用 */
+  public synchronized void invalidate(FragmentMeta fragment) {
+    if (!isHistorical(fragment)) {
+      return; // 未封闭的分片上没有缓存
+    }
+    String fragmentId = getFragmentId(fragment);
+    fragmentVersions.merge(fragmentId, 1L, Long::sum);
+    Iterator<CachedResult> iterator = results.values().iterator();
+    while (iterator.hasNext()) {
+      CachedResult result = iterator.next();
+      if (result.fragmentId.equals(fragmentId)) {
+        usedMemory -= result.size;
+        iterator.remove();
+      }
+    }
+  }
+
+  public synchronized void invalidateAll() {
+    epoch++;
+    results.clear();
+    usedMemory = 0;
+  }
+
+  public synchronized int size() {
+    return results.size();
+  }
+
+  public synchronized long getUsedMemory() {
+    return usedMemory;
+  }
+
+  private synchronized void put(
+      String key, FragmentMeta fragment, long stamp, CachedResult result) {
+    if (getStamp(fragment) != stamp) {
+      return;
+    }
+    CachedResult old = results.put(key, result);
+    if (old != null) {
+      usedMemory -= old.size;
+    }
+    usedMemory += result.size;
+    Iterator<CachedResult> iterator = results.values().iterator();
+    while (usedMemory > memoryBudget && iterator.hasNext()) {
+      usedMemory -= iterator.next().size;
+      iterator.remove();
+    }
+    LOGGER.debug("cache result of fragment {}, {} bytes in use", result.fragmentId, usedMemory);
+  }
+
+  /** 其他节点上的写入不会失效本节点的缓存，有多个节点时缓存的结果可能过期 */
+  private boolean isSingleNode() {
+    List<IginxMeta> iginxList = metaManager.getIginxList();
+    return iginxList == null || iginxList.size() <= 1;
+  }
+
+  static boolean isHistorical(FragmentMeta fragment) {
+    return fragment.getKeyInterval().getEndKey() != Long.MAX_VALUE;
+  }
+
+  private static String getFragmentId(FragmentMeta fragment) {
+    KeyInterval keyInterval = fragment.getKeyInterval();
+    return keyInterval.getStartKey()
+        + "-"
+        + keyInterval.getEndKey()
+        + "@"
+        + fragment.getColumnsInterval();
+  }
+
+  /** 过滤条件只包含键过滤且其键范围完整覆盖分片时，过滤条件在该分片上不生效 */
+  static boolean coversFragment(Select select, KeyInterval keyInterval) {
+    if (select.getTagFilter() != null || !isKeyOnly(select.getFilter())) {
+      return false;
+    }
+    List<KeyRange> keyRanges;
+    try {
+      keyRanges = LogicalFilterUtils.getKeyRangesFromFilter(select.getFilter());
+    } catch (RuntimeException e) {
+      return false;
+    }
+    for (KeyRange keyRange : keyRanges) {
+      if (keyRange.getBeginKey() <= keyInterval.getStartKey()
+          && keyRange.getEndKey() >= keyInterval.getEndKey()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isKeyOnly(Filter filter) {
+    switch (filter.getType()) {
+      case Key:
+        return true;
+      case And:
+        return ((AndFilter) filter).getChildren().stream().allMatch(StorageResultCache::isKeyOnly);
+      case Or:
+        return ((OrFilter) filter).getChildren().stream().allMatch(StorageResultCache::isKeyOnly);
+      default:
+        return false;
+    }
+  }
+
+  private static class CachedResult {
+
+    private final String fragmentId;
+
+    private final Header header;
+
+    private final List<Row> rows;
+
+    private final long size;
+
+    CachedResult(String fragmentId, Header header, List<Row> rows, long size) {
+      this.fragmentId = fragmentId;
+      this.header = header;
+      this.rows = rows;
+      this.size = size;
+    }
+  }
+
+  /** 在读取结果的同时记录每一行，结果超过单条缓存上限时停止记录 */
+  private class CachingRowStream implements RowStream {
+
+    private final String key;
+
+    private final String fragmentId;
+
+    private final FragmentMeta fragment;
+
+    private final long stamp;
+
+    private final RowStream stream;
+
+    private List<Row> rows = new ArrayList<>();
+
+    private long size = 0;
+
+    CachingRowStream(
+        String key, String fragmentId, FragmentMeta fragment, long stamp, RowStream stream) {
+      this.key = key;
+      this.fragmentId = fragmentId;
+      this.fragment = fragment;
+      this.stamp = stamp;
+      this.stream = stream;
+    }
+
+    @Override
+    public Header getHeader() throws PhysicalException {
+      return stream.getHeader();
+    }
+
+    @Override
+    public void close() throws PhysicalException {
+      rows = null;
+      stream.close();
+    }
+
+    @Override
+    public boolean hasNext() throws PhysicalException {
+      boolean hasNext = stream.hasNext();
+      if (!hasNext && rows != null) {
+        put(key, fragment, stamp, new CachedResult(fragmentId, getHeader(), rows, size));
+        rows = null;
+      }
+      return hasNext;
+    }
+
+    @Override
+    public Row next() throws PhysicalException {
+      Row row = stream.next();
+      if (rows != null) {
+        size += SpillUtils.estimateRowSize(row);
+        if (size > maxEntrySize) {
+          rows = null;
+        } else {
+          rows.add(row);
+        }
+      }
+      return row;
+    }
+
+    @Override
+    public void setContext(RequestContext context) {
+      stream.setContext(context);
+    }
+
+    @Override
+    public RequestContext getContext() {
+      return stream.getContext();
+    }
+  }
+}
@@ -32,16 +32,19 @@ import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.EmptyRowStrea
 import cn.edu.tsinghua.iginx.engine.physical.optimizer.ReplicaDispatcher;
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.StorageManager;
+import cn.edu.tsinghua.iginx.engine.physical.storage.cache.StorageResultCache;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.Column;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
 import cn.edu.tsinghua.iginx.engine.physical.storage.execute.pushdown.strategy.PushDownStrategy;
 import cn.edu.tsinghua.iginx.engine.physical.storage.execute.pushdown.strategy.PushDownStrategyFactory;
+import cn.edu.tsinghua.iginx.engine.physical.storage.execute.pushdown.strategy.PushDownType;
 import cn.edu.tsinghua.iginx.engine.physical.storage.execute.stream.ShowColumnsRowStream;
 import cn.edu.tsinghua.iginx.engine.physical.storage.queue.StoragePhysicalTaskQueue;
 import cn.edu.tsinghua.iginx.engine.physical.task.GlobalPhysicalTask;
 import cn.edu.tsinghua.iginx.engine.physical.task.MemoryPhysicalTask;
 import cn.edu.tsinghua.iginx.engine.physical.task.StoragePhysicalTask;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
+import cn.edu.tsinghua.iginx.engine.physical.task.TaskStatistics;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.*;
 import cn.edu.tsinghua.iginx.metadata.DefaultMetaManager;
@@ -76,14 +79,28 @@ public class StoragePhysicalTaskExecutor {
 
   private final Map<String, StoragePhysicalTaskQueue> storageTaskQueues = new ConcurrentHashMap<>();
 
-  private final Map<String, ExecutorService> dispatchers = new ConcurrentHashMap<>();
+  private final StorageResultCache resultCache = StorageResultCache.getInstance();
 
   private ReplicaDispatcher replicaDispatcher;
 
   private MemoryPhysicalTaskDispatcher memoryTaskExecutor;
 
-  private final int maxCachedPhysicalTaskPerStorage =
-      ConfigDescriptor.getInstance().getConfig().getMaxCachedPhysicalTaskPerStorage();
+  private final int maxConcurrentTaskPerStorage =
+      ConfigDescriptor.getInstance().getConfig().getMaxConcurrentTaskPerStorage();
+
+  private final long physicalTaskQueueTimeout =
+      ConfigDescriptor.getInstance().getConfig().getPhysicalTaskQueueTimeout();
+
+  // 所有存储单元共享的调度线程池，取代原先每个存储单元独占一个调度线程的方式
+  private final ExecutorService dispatcher =
+      Executors.newFixedThreadPool(
+          ConfigDescriptor.getInstance().getConfig().getStorageTaskDispatcherThreadNum());
+
+  // 存储引擎并发已满时，按排队超时时间重新调度对应的存储单元，检查任务是否超时
+  private final ScheduledExecutorService retryScheduler =
+      Executors.newSingleThreadScheduledExecutor();
+
+  private final Map<Long, StorageConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
 
   private StoragePhysicalTaskExecutor() {
     StorageUnitHook storageUnitHook =
@@ -91,16 +108,9 @@ public class StoragePhysicalTaskExecutor {
           if (before == null && after != null) { // 新增加 du，处理这种事件，其他事件暂时不处理
             LOGGER.info("new storage unit {} come!", after.getId());
             String id = after.getId();
-            boolean isDummy = after.isDummy();
-            if (storageTaskQueues.containsKey(id)) {
-              return;
-            }
-            storageTaskQueues.put(id, new StoragePhysicalTaskQueue());
-            // 为拥有该分片的存储创建一个调度线程，用于调度任务执行
-            ExecutorService dispatcher = Executors.newSingleThreadExecutor();
-            long storageId = after.getStorageEngineId();
-            dispatchers.put(id, dispatcher);
-            dispatcher.submit(() -> runDispatcherTask(id, storageId, isDummy));
+            // 调度线程由所有存储单元共享，此处只需创建任务队列
+            storageTaskQueues.putIfAbsent(
+                id, new StoragePhysicalTaskQueue(after.getStorageEngineId(), after.isDummy()));
             LOGGER.info("process for new storage unit finished!");
           }
         };
@@ -135,122 +145,242 @@ public class StoragePhysicalTaskExecutor {
     }
   }
 
-  private void runDispatcherTask(String id, long storageId, boolean isDummy) {
-    try {
-      StoragePhysicalTaskQueue taskQueue = storageTaskQueues.get(id);
-      Pair<IStorage, ThreadPoolExecutor> p = storageManager.getStorage(storageId);
-      boolean hasInitialized = p != null;
-      while (true) {
-        StoragePhysicalTask task = taskQueue.getTask();
-        task.setStorageUnit(id);
-        task.setDummyStorageUnit(isDummy);
-
-        List<Operator> operators = task.getOperators();
-        if (operators.isEmpty()) {
-          task.setResult(new TaskExecuteResult(new NonExecutablePhysicalTaskException()));
-          continue;
-        }
-        Operator op = operators.get(0);
+  private void addTask(String storageUnitId, StoragePhysicalTask task) {
+    StoragePhysicalTaskQueue taskQueue = storageTaskQueues.get(storageUnitId);
+    taskQueue.addTask(task);
+    if (!task.isBackground() && taskQueue.isParkedForBackground()) {
+      // 队列只因后台任务等待额度而暂停，用户任务无需等待后台额度
+      wakeQueue(storageUnitId, taskQueue);
+    }
+    scheduleQueue(storageUnitId, taskQueue);
+  }
 
-        String storageUnit = task.getStorageUnit();
-        StorageUnitMeta masterStorageUnit = task.getTargetFragment().getMasterStorageUnit();
-        List<StorageUnitMeta> replicas = new ArrayList<>(masterStorageUnit.getReplicas());
-        replicas.add(masterStorageUnit);
-        switch (op.getType()) {
-          case Project:
-            if (!hasInitialized) {
-              p = reconnectStorage(storageId);
-              hasInitialized = p != null;
-            }
+  private void scheduleQueue(String id, StoragePhysicalTaskQueue taskQueue) {
+    if (taskQueue.trySchedule()) {
+      dispatcher.submit(() -> drainQueue(id, taskQueue));
+    }
+  }
 
-            // 重连失败，尝试更换为副本中的数据
-            if (!hasInitialized) {
-              boolean foundAvailableStorage = false;
-              for (StorageUnitMeta replica : replicas) {
-                if (replica.getId().equals(storageUnit)) {
-                  continue;
-                }
-                long replicaId = replica.getStorageEngineId();
-                if (metaManager.isStorageEngineInConnection(replicaId)
-                    || reconnectStorage(replicaId) != null) {
-                  foundAvailableStorage = true;
-                  storageTaskQueues.get(replica.getId()).addTask(task);
-                  break;
-                }
-              }
+  private void drainQueue(String id, StoragePhysicalTaskQueue taskQueue) {
+    StoragePhysicalTask task;
+    StoragePhysicalTask blocked = null; // 等待并发额度的后台任务，期间只调度用户任务
+    while ((task = blocked == null ? taskQueue.pollTask() : taskQueue.pollUserTask()) != null) {
+      boolean dispatched;
+      try {
+        dispatched = dispatchTask(id, taskQueue, task);
+      } catch (Exception e) {
+        LOGGER.error(
+            "unexpected exception during dispatcher storage task, please contact developer to check: ",
+            e);
+        task.setResult(new TaskExecuteResult(new PhysicalException(e)));
+        executeParentTaskIfNeed(task);
+        continue;
+      }
+      if (dispatched) {
+        continue;
+      }
+      // 存储引擎并发已满，任务放回队首，以保证同类任务的执行顺序
+      taskQueue.addTaskFirst(task);
+      if (task.isBackground()) {
+        // 后台额度耗尽时用户额度可能仍有剩余，越过后台任务继续调度用户任务
+        blocked = task;
+        continue;
+      }
+      // 用户额度也已耗尽
+      if (parkQueue(id, taskQueue, task)) {
+        return;
+      }
+      blocked = null;
+    }
+    if (blocked != null && parkQueue(id, taskQueue, blocked)) {
+      return;
+    }
+    taskQueue.finishSchedule();
+    // 释放调度权前后可能有新任务入队
+    if (!taskQueue.isEmpty()) {
+      scheduleQueue(id, taskQueue);
+    }
+  }
 
-              // 未找到可用的存储单元，查询失败
-              if (!foundAvailableStorage) {
-                List<Long> storageIds =
-                    replicas.stream()
-                        .map(StorageUnitMeta::getStorageEngineId)
-                        .collect(Collectors.toList());
-                task.setResult(new TaskExecuteResult(new UnconnectedStorageException(storageIds)));
-                executeParentTaskIfNeed(task);
-              }
-              continue;
-            }
+  /**
+   * 暂停调度，保持调度权直到引擎归还并发额度
+   *
+   * @return 是否停止处理该队列，返回 false 表示登记等待前已有任务归还了并发额度，调用方应直接重试
+   */
+  private boolean parkQueue(
+      String id, StoragePhysicalTaskQueue taskQueue, StoragePhysicalTask task) {
+    taskQueue.park(task.isBackground());
+    StorageConcurrencyLimiter limiter = getLimiter(taskQueue.getStorageId());
+    if (!limiter.waitIfFull(task.isBackground(), () -> wakeQueue(id, taskQueue))) {
+      // 新到达的用户任务可能已唤醒该队列，此时由被唤醒的调度线程继续处理
+      return !taskQueue.unpark();
+    }
+    // 由引擎归还并发额度时唤醒，排队超时仍需按时检查，每个队列只保留一个待触发的检查
+    if (physicalTaskQueueTimeout > 0 && taskQueue.tryScheduleTimeout()) {
+      long delay =
+          Math.max(
+              1, task.getQueuedTime() + physicalTaskQueueTimeout - System.currentTimeMillis() + 1);
+      retryScheduler.schedule(
+          () -> {
+            taskQueue.finishTimeout();
+            wakeQueue(id, taskQueue);
+          },
+          delay,
+          TimeUnit.MILLISECONDS);
+    }
+    return true;
+  }
 
-            break;
-          case Insert:
-          case Delete:
-            if (!hasInitialized) {
-              p = reconnectStorage(storageId);
-              if (p == null) { // 重连失败，则写入/删除失败
-                task.setResult(
-                    new TaskExecuteResult(
-                        new UnconnectedStorageException(op.getType(), storageId)));
-                failToExecuteInsertOrDelete(task, replicas);
-                continue;
-              }
-              hasInitialized = true;
-            }
+  private void wakeQueue(String id, StoragePhysicalTaskQueue taskQueue) {
+    if (taskQueue.unpark()) {
+      dispatcher.submit(() -> drainQueue(id, taskQueue));
+    }
+  }
 
-            boolean existUnconnectedStorage =
-                replicas.stream()
-                    .anyMatch(
-                        replica -> {
-                          long replicaId = replica.getStorageEngineId();
-                          // 写入/删除涉及的副本里有无法连接的存储且重连失败，则写入/删除失败
-                          boolean unconnected =
-                              !metaManager.isStorageEngineInConnection(replicaId)
-                                  && reconnectStorage(replicaId) == null;
-                          if (unconnected) {
-                            task.setResult(
-                                new TaskExecuteResult(
-                                    new UnconnectedStorageException(op.getType(), replicaId)));
-                          }
-                          return unconnected;
-                        });
-            if (existUnconnectedStorage) {
-              failToExecuteInsertOrDelete(task, replicas);
+  private StorageConcurrencyLimiter getLimiter(long storageId) {
+    return limiters.computeIfAbsent(
+        storageId, k -> new StorageConcurrencyLimiter(maxConcurrentTaskPerStorage));
+  }
+
+  /** @return 任务是否已被处理，返回 false 表示存储引擎并发已满，任务需要稍后重新调度 */
+  private boolean dispatchTask(
+      String id, StoragePhysicalTaskQueue taskQueue, StoragePhysicalTask task) {
+    long storageId = taskQueue.getStorageId();
+    Pair<IStorage, ThreadPoolExecutor> p = storageManager.getStorage(storageId);
+    boolean hasInitialized = p != null;
+    task.setStorageUnit(id);
+    task.setDummyStorageUnit(taskQueue.isDummy());
+
+    List<Operator> operators = task.getOperators();
+    if (operators.isEmpty()) {
+      task.setResult(new TaskExecuteResult(new NonExecutablePhysicalTaskException()));
+      return true;
+    }
+    Operator op = operators.get(0);
+
+    String storageUnit = task.getStorageUnit();
+    StorageUnitMeta masterStorageUnit = task.getTargetFragment().getMasterStorageUnit();
+    List<StorageUnitMeta> replicas = new ArrayList<>(masterStorageUnit.getReplicas());
+    replicas.add(masterStorageUnit);
+    switch (op.getType()) {
+      case Project:
+        // 历史分片上的结果命中缓存时无需访问存储引擎
+        String cacheKey =
+            resultCache.getKey(task.getTargetFragment(), task.isDummyStorageUnit(), operators);
+        RowStream cachedResult = cacheKey == null ? null : resultCache.get(cacheKey);
+        if (cachedResult != null) {
+          task.getStatistics().markDequeued();
+          task.setSpan(0);
+          task.setResult(new TaskExecuteResult(cachedResult));
+          executeParentTaskIfNeed(task);
+          return true;
+        }
+
+        if (!hasInitialized) {
+          p = reconnectStorage(storageId);
+          hasInitialized = p != null;
+        }
+
+        // 重连失败，尝试更换为副本中的数据
+        if (!hasInitialized) {
+          boolean foundAvailableStorage = false;
+          for (StorageUnitMeta replica : replicas) {
+            if (replica.getId().equals(storageUnit)) {
               continue;
             }
+            long replicaId = replica.getStorageEngineId();
+            if (metaManager.isStorageEngineInConnection(replicaId)
+                || reconnectStorage(replicaId) != null) {
+              foundAvailableStorage = true;
+              addTask(replica.getId(), task);
+              break;
+            }
+          }
 
-            break;
-          default:
-            task.setResult(new TaskExecuteResult(new UnsupportedPhysicalTaskException()));
-            continue;
+          // 未找到可用的存储单元，查询失败
+          if (!foundAvailableStorage) {
+            List<Long> storageIds =
+                replicas.stream()
+                    .map(StorageUnitMeta::getStorageEngineId)
+                    .collect(Collectors.toList());
+            task.setResult(new TaskExecuteResult(new UnconnectedStorageException(storageIds)));
+            executeParentTaskIfNeed(task);
+          }
+          return true;
         }
 
-        if (p.v.getQueue().size() > maxCachedPhysicalTaskPerStorage) {
-          task.setResult(new TaskExecuteResult(new TooManyPhysicalTasksException(storageId)));
-          continue;
+        break;
+      case Insert:
+      case Delete:
+        if (!hasInitialized) {
+          p = reconnectStorage(storageId);
+          if (p == null) { // 重连失败，则写入/删除失败
+            task.setResult(
+                new TaskExecuteResult(new UnconnectedStorageException(op.getType(), storageId)));
+            failToExecuteInsertOrDelete(task, replicas);
+            return true;
+          }
         }
 
-        if (isCancelled(task.getSessionId())) {
-          LOGGER.warn("StoragePhysicalTask[sessionId={}] is cancelled.", task.getSessionId());
-          continue;
+        boolean existUnconnectedStorage =
+            replicas.stream()
+                .anyMatch(
+                    replica -> {
+                      long replicaId = replica.getStorageEngineId();
+                      // 写入/删除涉及的副本里有无法连接的存储且重连失败，则写入/删除失败
+                      boolean unconnected =
+                          !metaManager.isStorageEngineInConnection(replicaId)
+                              && reconnectStorage(replicaId) == null;
+                      if (unconnected) {
+                        task.setResult(
+                            new TaskExecuteResult(
+                                new UnconnectedStorageException(op.getType(), replicaId)));
+                      }
+                      return unconnected;
+                    });
+        if (existUnconnectedStorage) {
+          failToExecuteInsertOrDelete(task, replicas);
+          return true;
         }
 
-        Pair<IStorage, ThreadPoolExecutor> pair = p;
-        pair.v.submit(() -> executeStorageTask(task, storageUnit, op, operators, pair));
+        break;
+      default:
+        task.setResult(new TaskExecuteResult(new UnsupportedPhysicalTaskException()));
+        return true;
+    }
+
+    if (isCancelled(task.getSessionId())) {
+      LOGGER.warn("StoragePhysicalTask[sessionId={}] is cancelled.", task.getSessionId());
+      return true;
+    }
+
+    // 存储引擎并发已满时任务在队列中等待，超过等待时间才以失败返回
+    StorageConcurrencyLimiter limiter = getLimiter(storageId);
+    boolean background = task.isBackground();
+    if (!limiter.tryAcquire(background)) {
+      if (physicalTaskQueueTimeout > 0
+          && System.currentTimeMillis() - task.getQueuedTime() > physicalTaskQueueTimeout) {
+        task.setResult(new TaskExecuteResult(new TooManyPhysicalTasksException(storageId)));
+        return true;
       }
-    } catch (Exception e) {
-      LOGGER.error(
-          "unexpected exception during dispatcher storage task, please contact developer to check: ",
-          e);
+      return false;
     }
+
+    Pair<IStorage, ThreadPoolExecutor> pair = p;
+    try {
+      pair.v.submit(
+          () -> {
+            try {
+              executeStorageTask(task, storageUnit, op, operators, pair);
+            } finally {
+              limiter.release(background);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      limiter.release(background);
+      task.setResult(new TaskExecuteResult(new PhysicalException(e)));
+    }
+    return true;
   }
 
   private void executeStorageTask(
@@ -262,6 +392,9 @@ public class StoragePhysicalTaskExecutor {
     TaskExecuteResult result = null;
     long taskId = System.nanoTime();
     long startTime = System.currentTimeMillis();
+    TaskStatistics statistics = task.getStatistics();
+    statistics.markDequeued();
+    long startCpuTime = statistics.beginExecute();
     try {
       FragmentMeta fragmentMeta = task.getTargetFragment();
       boolean isDummyStorageUnit = task.isDummyStorageUnit();
@@ -273,17 +406,28 @@ public class StoragePhysicalTaskExecutor {
             result = new TaskExecuteResult(new EmptyRowStream());
             break;
           }
-          PushDownStrategy strategy =
-              PushDownStrategyFactory.getStrategy(operators, pair.k, dataArea, isDummyStorageUnit);
+          String cacheKey = resultCache.getKey(fragmentMeta, isDummyStorageUnit, operators);
+          long cacheStamp = cacheKey == null ? 0 : resultCache.getStamp(fragmentMeta);
+          PushDownType pushDownType =
+              PushDownStrategyFactory.getPushDownType(
+                  operators, pair.k, dataArea, isDummyStorageUnit);
+          statistics.setPushDownType(pushDownType);
+          PushDownStrategy strategy = PushDownStrategyFactory.getStrategy(pushDownType);
           result =
               strategy.execute(
                   project, operators, dataArea, pair.k, isDummyStorageUnit, task.getContext());
+          if (cacheKey != null && result.getException() == null && result.getRowStream() != null) {
+            result.setRowStream(
+                resultCache.cache(cacheKey, fragmentMeta, cacheStamp, result.getRowStream()));
+          }
           break;
         case Insert:
           result = pair.k.executeInsert((Insert) op, dataArea);
+          resultCache.invalidate(fragmentMeta);
           break;
         case Delete:
           result = pair.k.executeDelete((Delete) op, dataArea);
+          resultCache.invalidate(fragmentMeta);
           break;
         default:
           result = new TaskExecuteResult(new UnsupportedPhysicalTaskException());
@@ -301,6 +445,7 @@ public class StoragePhysicalTaskExecutor {
       LOGGER.error("Monitor catch error:", e);
     }
 
+    statistics.endExecute(startCpuTime);
     long span = System.currentTimeMillis() - startTime;
     task.setSpan(span);
     task.setResult(result);
@@ -326,7 +471,7 @@ public class StoragePhysicalTaskExecutor {
           }
           StoragePhysicalTask replicaTask =
               new StoragePhysicalTask(task.getOperators(), false, false, task.getContext());
-          storageTaskQueues.get(replicaId).addTask(replicaTask);
+          addTask(replicaId, replicaTask);
           LOGGER.info("broadcasting task {} to {}", task, replicaId);
         }
       }
@@ -387,7 +532,7 @@ public class StoragePhysicalTaskExecutor {
   }
 
   public void commitWithTargetStorageUnitId(StoragePhysicalTask task, String storageUnitId) {
-    storageTaskQueues.get(storageUnitId).addTask(task);
+    addTask(storageUnitId, task);
   }
 
   public TaskExecuteResult executeGlobalTask(GlobalPhysicalTask task) {
@@ -484,13 +629,9 @@ public class StoragePhysicalTaskExecutor {
   public void commit(List<StoragePhysicalTask> tasks) {
     for (StoragePhysicalTask task : tasks) {
       if (replicaDispatcher == null) {
-        storageTaskQueues
-            .get(task.getTargetFragment().getMasterStorageUnitId())
-            .addTask(task); // 默认情况下，异步写备，查询只查主
+        addTask(task.getTargetFragment().getMasterStorageUnitId(), task); // 默认情况下，异步写备，查询只查主
       } else {
-        storageTaskQueues
-            .get(replicaDispatcher.chooseReplica(task))
-            .addTask(task); // 在优化策略提供了选择器的情况下，利用选择器提供的结果
+        addTask(replicaDispatcher.chooseReplica(task), task); // 在优化策略提供了选择器的情况下，利用选择器提供的结果
       }
     }
   }
@@ -504,4 +645,63 @@ public class StoragePhysicalTaskExecutor {
   public StorageManager getStorageManager() {
     return storageManager;
   }
+
+  /** 限制单个存储引擎上同时执行的任务数，后台任务最多占用一半的并发额度；并发已满时登记等待的存储单元队列，归还额度时唤醒 */
+  private static class StorageConcurrencyLimiter {
+
+    private final int limit;
+
+    private final int backgroundLimit;
+
+    private int running = 0;
+
+    private int backgroundRunning = 0;
+
+    private final List<Runnable> waiters = new ArrayList<>();
+
+    StorageConcurrencyLimiter(int maxConcurrentTask) {
+      this.limit = Math.max(1, maxConcurrentTask);
+      this.backgroundLimit = Math.max(1, limit / 2);
+    }
+
+    synchronized boolean tryAcquire(boolean background) {
+      if (!isAvailable(background)) {
+        return false;
+      }
+      running++;
+      if (background) {
+        backgroundRunning++;
+      }
+      return true;
+    }
+
+    /** @return 是否已登记等待，返回 false 表示当前已有可用额度，调用方应直接重试 */
+    synchronized boolean waitIfFull(boolean background, Runnable waiter) {
+      if (isAvailable(background)) {
+        return false;
+      }
+      waiters.add(waiter);
+      return true;
+    }
+
+    void release(boolean background) {
+      List<Runnable> toWake;
+      synchronized (this) {
+        running--;
+        if (background) {
+          backgroundRunning--;
+        }
+        if (waiters.isEmpty()) {
+          return;
+        }
+        toWake = new ArrayList<>(waiters);
+        waiters.clear();
+      }
+      toWake.forEach(Runnable::run);
+    }
+
+    private boolean isAvailable(boolean background) {
+      return running < limit && (!background || backgroundRunning < backgroundLimit);
+    }
+  }
 }
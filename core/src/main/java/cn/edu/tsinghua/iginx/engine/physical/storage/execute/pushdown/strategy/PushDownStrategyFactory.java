@@ -21,40 +21,63 @@ package cn.edu.tsinghua.iginx.engine.physical.storage.execute.pushdown.strategy;
 
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
+import cn.edu.tsinghua.iginx.engine.physical.storage.utils.LimitUtils;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import java.util.List;
 
 public class PushDownStrategyFactory {
-  private static PushDownType determinePushDownType(
+  public static PushDownType getPushDownType(
       List<Operator> operators, IStorage storage, DataArea dataArea, boolean isDummyStorageUnit) {
+    if (operators.size() >= 3) {
+      // 声明优先下推 Select + 聚合 的存储先尝试下推更多的算子，否则会被 SelectPushDown 提前截断
+      if (storage.isPreferProjectWithAggSelect()
+          && isAggSelect(operators, storage, dataArea, isDummyStorageUnit)) {
+        return PushDownType.AggSelectPushDown;
+      }
+      if (operators.get(1).getType() == OperatorType.Select
+          && LimitUtils.isSupportLimit(operators.get(2))
+          && storage.isSupportProjectWithSelectLimit(
+              operators.get(2), (Select) operators.get(1), dataArea, isDummyStorageUnit)) {
+        return PushDownType.LimitSelectPushDown;
+      }
+    }
     if (operators.size() >= 2) {
       OperatorType secondOpType = operators.get(1).getType();
       if (storage.isSupportProjectWithSelect() && secondOpType == OperatorType.Select) {
         return PushDownType.SelectPushDown;
       }
-      if ((secondOpType == OperatorType.GroupBy || secondOpType == OperatorType.SetTransform)
+      if (isAggType(secondOpType)
           && storage.isSupportProjectWithAgg(operators.get(1), dataArea, isDummyStorageUnit)) {
         return PushDownType.AggPushDown;
       }
-    }
-    if (operators.size() >= 3) {
-      OperatorType thirdOpType = operators.get(2).getType();
-      if (operators.get(1).getType() == OperatorType.Select
-          && (thirdOpType == OperatorType.GroupBy || thirdOpType == OperatorType.SetTransform)
-          && storage.isSupportProjectWithAggSelect(
-              operators.get(2), (Select) operators.get(1), dataArea, isDummyStorageUnit)) {
-        return PushDownType.AggSelectPushDown;
+      if (LimitUtils.isSupportLimit(operators.get(1))
+          && storage.isSupportProjectWithLimit(operators.get(1), dataArea, isDummyStorageUnit)) {
+        return PushDownType.LimitPushDown;
       }
     }
+    if (operators.size() >= 3 && isAggSelect(operators, storage, dataArea, isDummyStorageUnit)) {
+      return PushDownType.AggSelectPushDown;
+    }
     return PushDownType.NoPushDown;
   }
 
-  public static PushDownStrategy getStrategy(
+  private static boolean isAggSelect(
       List<Operator> operators, IStorage storage, DataArea dataArea, boolean isDummyStorageUnit) {
-    PushDownType pushDownType =
-        determinePushDownType(operators, storage, dataArea, isDummyStorageUnit);
+    return operators.get(1).getType() == OperatorType.Select
+        && isAggType(operators.get(2).getType())
+        && storage.isSupportProjectWithAggSelect(
+            operators.get(2), (Select) operators.get(1), dataArea, isDummyStorageUnit);
+  }
+
+  private static boolean isAggType(OperatorType type) {
+    return type == OperatorType.GroupBy
+        || type == OperatorType.SetTransform
+        || type == OperatorType.Downsample;
+  }
+
+  public static PushDownStrategy getStrategy(PushDownType pushDownType) {
     switch (pushDownType) {
       case SelectPushDown:
         return new SelectPushDownStrategy();
@@ -62,6 +85,10 @@ public class PushDownStrategyFactory {
         return new AggPushDownStrategy();
       case AggSelectPushDown:
         return new AggSelectPushDownStrategy();
+      case LimitPushDown:
+        return new LimitPushDownStrategy();
+      case LimitSelectPushDown:
+        return new LimitSelectPushDownStrategy();
       default:
         return new NoPushDownStrategy();
     }
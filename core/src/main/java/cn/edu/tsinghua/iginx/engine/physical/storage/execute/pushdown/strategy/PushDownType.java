@@ -23,5 +23,7 @@ public enum PushDownType {
   SelectPushDown,
   AggPushDown,
   AggSelectPushDown,
+  LimitPushDown,
+  LimitSelectPushDown,
   NoPushDown
 }
@@ -20,35 +20,107 @@
 package cn.edu.tsinghua.iginx.engine.physical.storage.queue;
 
 import cn.edu.tsinghua.iginx.engine.physical.task.StoragePhysicalTask;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * 存储单元的待调度任务队列。用户请求产生的任务优先于迁移、合并等后台任务出队。
+ *
+ * <p>队列本身不持有线程，由共享的调度线程池在有任务时进行调度，同一时刻最多只有一个调度线程处理该队列。
+ */
 public class StoragePhysicalTaskQueue {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(StoragePhysicalTaskQueue.class);
+  private final long storageId;
+
+  private final boolean dummy;
+
+  private final Deque<StoragePhysicalTask> tasks = new ArrayDeque<>();
+
+  private final Deque<StoragePhysicalTask> backgroundTasks = new ArrayDeque<>();
 
-  private final BlockingQueue<StoragePhysicalTask> tasks;
+  private final AtomicBoolean scheduled = new AtomicBoolean(false);
 
-  public StoragePhysicalTaskQueue() {
-    tasks = new LinkedBlockingQueue<>();
+  private final AtomicBoolean parked = new AtomicBoolean(false);
+
+  private volatile boolean parkedForBackground = false;
+
+  private final AtomicBoolean timeoutScheduled = new AtomicBoolean(false);
+
+  public StoragePhysicalTaskQueue(long storageId, boolean dummy) {
+    this.storageId = storageId;
+    this.dummy = dummy;
   }
 
-  public void addTask(StoragePhysicalTask task) {
-    try {
-      tasks.put(task);
-    } catch (InterruptedException e) {
-      LOGGER.error("add task to physical task queue error: ", e);
+  public synchronized void addTask(StoragePhysicalTask task) {
+    if (task.getQueuedTime() == 0) {
+      task.setQueuedTime(System.currentTimeMillis());
+      task.getStatistics().markQueued(task.getQueuedTime());
     }
+    (task.isBackground() ? backgroundTasks : tasks).addLast(task);
   }
 
-  public StoragePhysicalTask getTask() {
-    try {
-      return tasks.take();
-    } catch (Exception e) {
-      LOGGER.error("encounter error when get memory task: ", e);
-    }
-    return null;
+  /** 任务暂时无法执行时放回队首，保持原有的执行顺序 */
+  public synchronized void addTaskFirst(StoragePhysicalTask task) {
+    (task.isBackground() ? backgroundTasks : tasks).addFirst(task);
+  }
+
+  public synchronized StoragePhysicalTask pollTask() {
+    StoragePhysicalTask task = tasks.pollFirst();
+    return task != null ? task : backgroundTasks.pollFirst();
+  }
+
+  /** 后台任务等待并发额度时，用户任务越过队首的后台任务出队 */
+  public synchronized StoragePhysicalTask pollUserTask() {
+    return tasks.pollFirst();
+  }
+
+  public synchronized boolean isEmpty() {
+    return tasks.isEmpty() && backgroundTasks.isEmpty();
+  }
+
+  /** @return 是否成功获得该队列的调度权 */
+  public boolean trySchedule() {
+    return scheduled.compareAndSet(false, true);
+  }
+
+  public void finishSchedule() {
+    scheduled.set(false);
+  }
+
+  /**
+   * 队首任务等待存储引擎的并发额度，暂停调度但保留调度权
+   *
+   * @param forBackground 是否只有后台任务在等待，此时新到达的用户任务应唤醒该队列
+   */
+  public void park(boolean forBackground) {
+    parkedForBackground = forBackground;
+    parked.set(true);
+  }
+
+  public boolean isParkedForBackground() {
+    return parked.get() && parkedForBackground;
+  }
+
+  /** @return 是否由本次调用恢复调度，保证同一时刻只有一个调度线程继续处理该队列 */
+  public boolean unpark() {
+    return parked.compareAndSet(true, false);
+  }
+
+  /** @return 是否需要登记排队超时检查，保证每个队列同一时刻最多只有一个待触发的检查 */
+  public boolean tryScheduleTimeout() {
+    return timeoutScheduled.compareAndSet(false, true);
+  }
+
+  public void finishTimeout() {
+    timeoutScheduled.set(false);
+  }
+
+  public long getStorageId() {
+    return storageId;
+  }
+
+  public boolean isDummy() {
+    return dummy;
   }
 }
@@ -0,0 +1,86 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.storage.utils;
+
+import cn.edu.tsinghua.iginx.engine.shared.Constants;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Limit;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.TopN;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import java.util.Collections;
+
+/** 下推到存储层的 Limit 与按 key 排序的 TopN 的辅助方法 */
+public class LimitUtils {
+
+  /** 是否为可下推的 Limit 或仅按 key 排序的 TopN */
+  public static boolean isSupportLimit(Operator operator) {
+    if (operator.getType() == OperatorType.Limit) {
+      return true;
+    }
+    if (operator.getType() == OperatorType.TopN) {
+      TopN topN = (TopN) operator;
+      return topN.getSortByCols().equals(Collections.singletonList(Constants.KEY))
+          && topN.getSortTypes().size() == 1;
+    }
+    return false;
+  }
+
+  /** 是否需要按 key 降序取数 */
+  public static boolean isDescending(Operator operator) {
+    return operator.getType() == OperatorType.TopN
+        && ((TopN) operator).getSortTypes().get(0) == Sort.SortType.DESC;
+  }
+
+  /** 每个数据源至少需要返回的行数，即 offset + limit */
+  public static int getFetchSize(Operator operator) {
+    long fetchSize;
+    if (operator.getType() == OperatorType.Limit) {
+      Limit limit = (Limit) operator;
+      fetchSize = (long) limit.getLimit() + limit.getOffset();
+    } else {
+      TopN topN = (TopN) operator;
+      fetchSize = (long) topN.getLimit() + topN.getOffset();
+    }
+    return (int) Math.min(fetchSize, Integer.MAX_VALUE);
+  }
+
+  /** 谓词是否只包含 key 条件，此时存储层截断后不会因为内存中再次过滤而少于 offset + limit 行 */
+  public static boolean isKeyOnlySelect(Select select) {
+    return select.getTagFilter() == null && isKeyOnly(select.getFilter());
+  }
+
+  private static boolean isKeyOnly(Filter filter) {
+    switch (filter.getType()) {
+      case Key:
+        return true;
+      case And:
+        return ((AndFilter) filter).getChildren().stream().allMatch(LimitUtils::isKeyOnly);
+      case Or:
+        return ((OrFilter) filter).getChildren().stream().allMatch(LimitUtils::isKeyOnly);
+      default:
+        return false;
+    }
+  }
+}
@@ -44,10 +44,13 @@ public abstract class AbstractPhysicalTask implements PhysicalTask {
 
   private long span = 0;
 
+  private final TaskStatistics statistics;
+
   public AbstractPhysicalTask(TaskType type, List<Operator> operators, RequestContext context) {
     this.type = type;
     this.operators = operators;
     this.context = context;
+    this.statistics = new TaskStatistics(context != null && context.isNeedAnalyze());
   }
 
   public RequestContext getContext() {
@@ -90,6 +93,9 @@ public abstract class AbstractPhysicalTask implements PhysicalTask {
 
   @Override
   public void setResult(TaskExecuteResult result) {
+    if (statistics.isEnabled() && result.getException() == null) {
+      result.setRowStream(statistics.wrap(result.getRowStream()));
+    }
     this.result = result;
     this.resultLatch.countDown();
     this.affectRows = result.getAffectRows();
@@ -110,6 +116,11 @@ public abstract class AbstractPhysicalTask implements PhysicalTask {
     return affectRows;
   }
 
+  @Override
+  public TaskStatistics getStatistics() {
+    return statistics;
+  }
+
   @Override
   public String getInfo() {
     List<String> info =
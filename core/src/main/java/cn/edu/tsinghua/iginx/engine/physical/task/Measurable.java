@@ -26,4 +26,6 @@ public interface Measurable {
   long getSpan();
 
   int getAffectedRows();
+
+  TaskStatistics getStatistics();
 }
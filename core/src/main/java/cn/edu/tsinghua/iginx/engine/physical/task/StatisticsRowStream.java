@@ -0,0 +1,87 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.task;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.spill.SpillUtils;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+
+/** 统计任务结果流被消费时的输出行数、字节数与耗时，耗时包含拉取上游任务结果流的部分 */
+class StatisticsRowStream implements RowStream {
+
+  private final RowStream stream;
+
+  private final TaskStatistics statistics;
+
+  StatisticsRowStream(RowStream stream, TaskStatistics statistics) {
+    this.stream = stream;
+    this.statistics = statistics;
+  }
+
+  @Override
+  public Header getHeader() throws PhysicalException {
+    return stream.getHeader();
+  }
+
+  @Override
+  public void close() throws PhysicalException {
+    stream.close();
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    long startTime = System.nanoTime();
+    long startCpuTime = TaskStatistics.currentCpuTime();
+    try {
+      return stream.hasNext();
+    } finally {
+      statistics.addStreamTime(
+          System.nanoTime() - startTime, TaskStatistics.currentCpuTime() - startCpuTime);
+    }
+  }
+
+  @Override
+  public Row next() throws PhysicalException {
+    long startTime = System.nanoTime();
+    long startCpuTime = TaskStatistics.currentCpuTime();
+    Row row;
+    try {
+      row = stream.next();
+    } finally {
+      statistics.addStreamTime(
+          System.nanoTime() - startTime, TaskStatistics.currentCpuTime() - startCpuTime);
+    }
+    statistics.addRow(SpillUtils.estimateRowSize(row));
+    return row;
+  }
+
+  @Override
+  public void setContext(RequestContext context) {
+    stream.setContext(context);
+  }
+
+  @Override
+  public RequestContext getContext() {
+    return stream.getContext();
+  }
+}
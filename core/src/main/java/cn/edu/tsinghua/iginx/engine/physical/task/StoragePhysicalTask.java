@@ -35,6 +35,7 @@ public class StoragePhysicalTask extends AbstractPhysicalTask {
   private String storageUnit;
   private long storage;
   private boolean dummyStorageUnit;
+  private long queuedTime;
 
   public StoragePhysicalTask(List<Operator> operators, RequestContext context) {
     this(
@@ -103,6 +104,20 @@ public class StoragePhysicalTask extends AbstractPhysicalTask {
     return needBroadcasting;
   }
 
+  public long getQueuedTime() {
+    return queuedTime;
+  }
+
+  public void setQueuedTime(long queuedTime) {
+    this.queuedTime = queuedTime;
+  }
+
+  /** 没有会话的任务来自迁移、合并等后台流程，调度时优先级低于用户请求 */
+  public boolean isBackground() {
+    RequestContext context = getContext();
+    return context == null || context.getSessionId() == 0;
+  }
+
   @Override
   public String toString() {
     return "StoragePhysicalTask{targetFragment="
@@ -0,0 +1,157 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.task;
+
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.storage.execute.pushdown.strategy.PushDownType;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** 物理任务的运行时统计信息，仅在 EXPLAIN ANALYZE 时采集，其余情况下所有方法均为空操作 */
+public class TaskStatistics {
+
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+  private static final boolean CPU_TIME_SUPPORTED =
+      THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled();
+
+  private final boolean enabled;
+
+  private final AtomicLong executeCpuTime = new AtomicLong(); // 任务执行的 CPU 时间，单位 ns
+
+  private final AtomicLong streamCpuTime = new AtomicLong(); // 消费结果流的 CPU 时间（含上游任务），单位 ns
+
+  private final AtomicLong streamTime = new AtomicLong(); // 消费结果流的墙钟时间（含上游任务），单位 ns
+
+  private final AtomicLong rowsOut = new AtomicLong();
+
+  private final AtomicLong bytesOut = new AtomicLong();
+
+  private volatile long peakBufferedRows = 0;
+
+  private volatile long queuedTime = 0;
+
+  private volatile long queueWait = 0; // 单位 ms
+
+  private volatile PushDownType pushDownType;
+
+  public TaskStatistics(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public static long currentCpuTime() {
+    return CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+  }
+
+  /** @return 当前线程的 CPU 时间，作为 {@link #endExecute(long)} 的参数 */
+  public long beginExecute() {
+    return enabled ? currentCpuTime() : 0;
+  }
+
+  public void endExecute(long beginCpuTime) {
+    if (enabled) {
+      executeCpuTime.addAndGet(currentCpuTime() - beginCpuTime);
+    }
+  }
+
+  public void markQueued(long queuedTime) {
+    if (enabled) {
+      this.queuedTime = queuedTime;
+    }
+  }
+
+  public void markDequeued() {
+    if (enabled && queuedTime != 0) {
+      queueWait = Math.max(0, System.currentTimeMillis() - queuedTime);
+      queuedTime = 0;
+    }
+  }
+
+  /** 包装任务的结果流，在下游消费时统计输出行数、字节数与耗时 */
+  public RowStream wrap(RowStream stream) {
+    if (!enabled || stream == null) {
+      return stream;
+    }
+    if (stream instanceof Table) { // 物化的结果全部缓存在内存中
+      updatePeakBufferedRows(((Table) stream).getRowSize());
+    }
+    return new StatisticsRowStream(stream, this);
+  }
+
+  public void updatePeakBufferedRows(long bufferedRows) {
+    if (enabled && bufferedRows > peakBufferedRows) {
+      peakBufferedRows = bufferedRows;
+    }
+  }
+
+  void addStreamTime(long time, long cpuTime) {
+    streamTime.addAndGet(time);
+    streamCpuTime.addAndGet(cpuTime);
+  }
+
+  void addRow(long bytes) {
+    rowsOut.incrementAndGet();
+    bytesOut.addAndGet(bytes);
+  }
+
+  public long getExecuteCpuTime() {
+    return executeCpuTime.get();
+  }
+
+  public long getStreamCpuTime() {
+    return streamCpuTime.get();
+  }
+
+  public long getStreamTime() {
+    return streamTime.get();
+  }
+
+  public long getRowsOut() {
+    return rowsOut.get();
+  }
+
+  public long getBytesOut() {
+    return bytesOut.get();
+  }
+
+  public long getPeakBufferedRows() {
+    return peakBufferedRows;
+  }
+
+  public long getQueueWait() {
+    return queueWait;
+  }
+
+  public PushDownType getPushDownType() {
+    return pushDownType;
+  }
+
+  public void setPushDownType(PushDownType pushDownType) {
+    if (enabled) {
+      this.pushDownType = pushDownType;
+    }
+  }
+}
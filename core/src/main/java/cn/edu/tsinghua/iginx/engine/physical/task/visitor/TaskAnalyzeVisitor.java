@@ -0,0 +1,151 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.task.visitor;
+
+import cn.edu.tsinghua.iginx.engine.physical.task.BinaryMemoryPhysicalTask;
+import cn.edu.tsinghua.iginx.engine.physical.task.GlobalPhysicalTask;
+import cn.edu.tsinghua.iginx.engine.physical.task.MultipleMemoryPhysicalTask;
+import cn.edu.tsinghua.iginx.engine.physical.task.PhysicalTask;
+import cn.edu.tsinghua.iginx.engine.physical.task.StoragePhysicalTask;
+import cn.edu.tsinghua.iginx.engine.physical.task.TaskStatistics;
+import cn.edu.tsinghua.iginx.engine.physical.task.UnaryMemoryPhysicalTask;
+import java.util.ArrayList;
+import java.util.List;
+
+/** 收集 EXPLAIN ANALYZE 的结果，结果流耗时包含拉取上游结果流的部分，输出时减去子任务的对应值得到任务自身的耗时 */
+public class TaskAnalyzeVisitor implements TaskVisitor {
+
+  private final List<PhysicalTask> tasks = new ArrayList<>();
+
+  private final List<Integer> parents = new ArrayList<>();
+
+  private final List<String> names = new ArrayList<>();
+
+  private final List<Integer> path = new ArrayList<>(); // 当前访问路径上每一层的任务下标
+
+  private int maxLen = 0;
+
+  private int depth = -1;
+
+  public List<Object[]> getCache() {
+    int size = tasks.size();
+    long[] childStreamTime = new long[size];
+    long[] childStreamCpuTime = new long[size];
+    long[] rowsIn = new long[size];
+    for (int i = 0; i < size; i++) {
+      int parent = parents.get(i);
+      if (parent >= 0) {
+        TaskStatistics statistics = tasks.get(i).getStatistics();
+        childStreamTime[parent] += statistics.getStreamTime();
+        childStreamCpuTime[parent] += statistics.getStreamCpuTime();
+        rowsIn[parent] += statistics.getRowsOut();
+      }
+    }
+
+    List<Object[]> cache = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      PhysicalTask task = tasks.get(i);
+      TaskStatistics statistics = task.getStatistics();
+      long wallTime = task.getSpan() * 1_000_000 + statistics.getStreamTime() - childStreamTime[i];
+      long cpuTime =
+          statistics.getExecuteCpuTime() + statistics.getStreamCpuTime() - childStreamCpuTime[i];
+      String pushDownType =
+          statistics.getPushDownType() == null ? "" : statistics.getPushDownType().toString();
+
+      Object[] values = new Object[11];
+      values[0] = names.get(i);
+      values[1] = task.getType().toString().getBytes();
+      values[2] = task.getInfo().getBytes();
+      values[3] = pushDownType.getBytes();
+      values[4] = formatTime(wallTime).getBytes();
+      values[5] = formatTime(cpuTime).getBytes();
+      values[6] = (statistics.getQueueWait() + "ms").getBytes();
+      values[7] = rowsIn[i];
+      values[8] = statistics.getRowsOut();
+      values[9] = statistics.getBytesOut();
+      values[10] = statistics.getPeakBufferedRows();
+      cache.add(values);
+    }
+    return cache;
+  }
+
+  private static String formatTime(long nanos) {
+    return String.format("%.3fms", Math.max(0, nanos) / 1_000_000.0);
+  }
+
+  public int getMaxLen() {
+    return maxLen;
+  }
+
+  @Override
+  public void enter() {
+    depth++;
+  }
+
+  @Override
+  public void leave() {
+    depth--;
+  }
+
+  @Override
+  public void visit(BinaryMemoryPhysicalTask task) {
+    collectTask(task);
+  }
+
+  @Override
+  public void visit(UnaryMemoryPhysicalTask task) {
+    collectTask(task);
+  }
+
+  @Override
+  public void visit(MultipleMemoryPhysicalTask task) {
+    collectTask(task);
+  }
+
+  @Override
+  public void visit(StoragePhysicalTask task) {
+    collectTask(task);
+  }
+
+  @Override
+  public void visit(GlobalPhysicalTask task) {
+    collectTask(task);
+  }
+
+  private void collectTask(PhysicalTask task) {
+    StringBuilder builder = new StringBuilder();
+    if (depth != 0) {
+      for (int i = 0; i < depth; i++) {
+        builder.append("  ");
+      }
+      builder.append("+--");
+    }
+    builder.append(task.getType());
+    maxLen = Math.max(maxLen, builder.length());
+
+    while (path.size() > depth) {
+      path.remove(path.size() - 1);
+    }
+    parents.add(depth == 0 ? -1 : path.get(depth - 1));
+    path.add(tasks.size());
+    tasks.add(task);
+    names.add(builder.toString());
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.shared;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.transform.utils.TypeUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+
+/** 将结果集按列编码为 Arrow IPC 流，客户端可直接映射为列式数据而无需逐值解析 */
+class ArrowDataSetEncoder {
+
+  static class EncodedBatch {
+    public final ByteBuffer arrowData;
+    public final int rowCount;
+
+    EncodedBatch(ByteBuffer arrowData, int rowCount) {
+      this.arrowData = arrowData;
+      this.rowCount = rowCount;
+    }
+  }
+
+  /** 从结果流中取出至多 fetchSize 行编码为一个 record batch，编码后的数据超过 maxBytes 时提前结束 */
+  static EncodedBatch encode(RowStream resultStream, int fetchSize, int maxBytes)
+      throws PhysicalException {
+    Header header = resultStream.getHeader();
+    List<String> names = new ArrayList<>();
+    List<DataType> types = new ArrayList<>();
+    if (header.hasKey()) {
+      names.add(Field.KEY.getFullName());
+      types.add(Field.KEY.getType());
+    }
+    for (Field field : header.getFields()) {
+      names.add(field.getFullName());
+      types.add(field.getType());
+    }
+
+    try (RootAllocator allocator = new RootAllocator(Long.MAX_VALUE)) {
+      List<FieldVector> vectors = new ArrayList<>(names.size());
+      for (int i = 0; i < names.size(); i++) {
+        FieldVector vector =
+            (FieldVector) TypeUtils.getValueVectorByDataType(types.get(i), names.get(i), allocator);
+        vector.allocateNew();
+        vectors.add(vector);
+      }
+      try (VectorSchemaRoot root = new VectorSchemaRoot(vectors)) {
+        int rowCount = 0;
+        long totalSize = 0;
+        while (rowCount < fetchSize && resultStream.hasNext()) {
+          Row row = resultStream.next();
+          int offset = 0;
+          if (header.hasKey()) {
+            TypeUtils.setValue(vectors.get(0), rowCount, DataType.LONG, row.getKey());
+            totalSize += Long.BYTES;
+            offset = 1;
+          }
+          Object[] values = row.getValues();
+          for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) { // 未赋值的位置即为空值
+              continue;
+            }
+            DataType type = types.get(i + offset);
+            TypeUtils.setValue(vectors.get(i + offset), rowCount, type, values[i]);
+            totalSize += type == DataType.BINARY ? ((byte[]) values[i]).length : Long.BYTES;
+          }
+          rowCount++;
+          if (totalSize > maxBytes) {
+            break;
+          }
+        }
+        root.setRowCount(rowCount);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ArrowStreamWriter writer =
+            new ArrowStreamWriter(root, null, Channels.newChannel(out))) {
+          writer.start();
+          writer.writeBatch();
+          writer.end();
+        }
+        return new EncodedBatch(ByteBuffer.wrap(out.toByteArray()), rowCount);
+      }
+    } catch (IOException e) {
+      throw new PhysicalException("encode result as arrow batch failed", e);
+    }
+  }
+}
@@ -20,6 +20,7 @@
 package cn.edu.tsinghua.iginx.engine.shared;
 
 import cn.edu.tsinghua.iginx.engine.physical.task.PhysicalTask;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
 import cn.edu.tsinghua.iginx.sql.statement.Statement;
 import cn.edu.tsinghua.iginx.thrift.SqlType;
 import cn.edu.tsinghua.iginx.thrift.Status;
@@ -58,6 +59,8 @@ public class RequestContext {
 
   private PhysicalTask physicalTree;
 
+  private Operator cachedRoot; // 命中查询计划缓存时的操作符树
+
   private String loadCSVFileName;
 
   private ByteBuffer UDFModuleByteBuffer;
@@ -66,6 +69,8 @@ public class RequestContext {
 
   private String warningMsg;
 
+  private boolean needAnalyze; // EXPLAIN ANALYZE 时采集物理任务的运行时统计
+
   private void init() {
     this.id = SnowFlakeUtils.getInstance().nextId();
     this.startTime = System.currentTimeMillis();
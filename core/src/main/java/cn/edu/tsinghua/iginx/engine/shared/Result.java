@@ -65,6 +65,7 @@ public class Result {
   private long queryId;
   private JobState jobState;
   private RowStream resultStream;
+  private QueryDataSetFormat dataSetFormat = QueryDataSetFormat.ROW;
 
   private long jobId;
   private Map<JobState, List<Long>> jobStateMap;
@@ -250,17 +251,10 @@ public class Result {
             "size of metadata is {} bytes, which exceeds DEFAULT_MAX_BYTES(100MB)", metadataSize);
       }
 
-      // 收集行，直到达到 fetchSize 或超过默认最大字节数（100MB）
-      SizeLimiter.LimitedResult limitedResult =
-          SizeLimiter.collectRowsUntilLimit(
-              resultStream, types, header.hasKey(), fetchSize, metadataSize);
-      LOGGER.debug(
-          "fetch {} rows, total size: {} bytes", limitedResult.rowCount, limitedResult.totalSize);
-
       resp.setColumns(paths);
       resp.setTagsList(tagsList);
       resp.setDataTypeList(types);
-      resp.setQueryDataSet(new QueryDataSetV2(limitedResult.valuesList, limitedResult.bitmapList));
+      resp.setQueryDataSet(buildQueryDataSet(types, header.hasKey(), fetchSize, metadataSize));
 
       // OUTFILE AS STREAM
       resp.setExportStreamDir(exportByteStreamDir);
@@ -324,14 +318,9 @@ public class Result {
 
       resultStream.getHeader().getFields().forEach(field -> types.add(field.getType()));
 
-      // 收集行，直到达到 fetchSize 或超过默认最大字节数（100MB）
-      SizeLimiter.LimitedResult limitedResult =
-          SizeLimiter.collectRowsUntilLimit(resultStream, types, header.hasKey(), fetchSize, 0);
-      LOGGER.debug(
-          "fetch {} rows, total size: {} bytes", limitedResult.rowCount, limitedResult.totalSize);
-
+      QueryDataSetV2 dataSet = buildQueryDataSet(types, header.hasKey(), fetchSize, 0);
       resp.setHasMoreResults(resultStream.hasNext());
-      resp.setQueryDataSet(new QueryDataSetV2(limitedResult.valuesList, limitedResult.bitmapList));
+      resp.setQueryDataSet(dataSet);
     } catch (PhysicalException e) {
       LOGGER.error("unexpected error when load row stream: ", e);
       resp.setStatus(RpcUtils.FAILURE);
@@ -339,6 +328,30 @@ public class Result {
     return resp;
   }
 
+  private QueryDataSetV2 buildQueryDataSet(
+      List<DataType> types, boolean hasKey, int fetchSize, int initialSize)
+      throws PhysicalException {
+    if (dataSetFormat == QueryDataSetFormat.ARROW) {
+      // 按列编码为 Arrow record batch，行式的 valuesList 与 bitmapList 置空
+      ArrowDataSetEncoder.EncodedBatch batch =
+          ArrowDataSetEncoder.encode(
+              resultStream, fetchSize, SizeLimiter.DEFAULT_MAX_BYTES - initialSize);
+      LOGGER.debug(
+          "fetch {} rows as arrow batch, total size: {} bytes",
+          batch.rowCount,
+          batch.arrowData.remaining());
+      QueryDataSetV2 dataSet = new QueryDataSetV2(Collections.emptyList(), Collections.emptyList());
+      dataSet.setArrowData(batch.arrowData);
+      return dataSet;
+    }
+    // 收集行，直到达到 fetchSize 或超过默认最大字节数（100MB）
+    SizeLimiter.LimitedResult limitedResult =
+        SizeLimiter.collectRowsUntilLimit(resultStream, types, hasKey, fetchSize, initialSize);
+    LOGGER.debug(
+        "fetch {} rows, total size: {} bytes", limitedResult.rowCount, limitedResult.totalSize);
+    return new QueryDataSetV2(limitedResult.valuesList, limitedResult.bitmapList);
+  }
+
   static class SizeLimiter {
 
     static final int DEFAULT_MAX_BYTES = 100 * 1024 * 1024; // 100MB
@@ -20,6 +20,7 @@
 package cn.edu.tsinghua.iginx.engine.shared.data.write;
 
 import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -104,15 +105,22 @@ public abstract class DataView {
     return data.getDataTypeList().get(startPathIndex + index);
   }
 
+  /** 写入数据的 key 已经按升序排列，但可能存在重复的 key。在视图范围内二分查找，再向前找到第一个相等的 key，与 indexOf 的结果保持一致 */
   public int getKeyIndex(long timestamp) {
-    return data.getKeys().contains(timestamp)
-        ? data.getKeys().indexOf(timestamp) - startKeyIndex
-        : -1;
+    long[] keys = data.getKeys();
+    int index = Arrays.binarySearch(keys, startKeyIndex, endKeyIndex, timestamp);
+    if (index < 0) {
+      return -1;
+    }
+    while (index > startKeyIndex && keys[index - 1] == timestamp) {
+      index--;
+    }
+    return index - startKeyIndex;
   }
 
-  public Long getKey(int index) {
+  public long getKey(int index) {
     checkTimeIndexRange(index);
-    return data.getKeys().get(startKeyIndex + index);
+    return data.getKeys()[startKeyIndex + index];
   }
 
   public abstract Object getValue(int index1, int index2);
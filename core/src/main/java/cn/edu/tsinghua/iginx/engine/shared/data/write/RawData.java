@@ -30,7 +30,7 @@ public class RawData {
 
   private final List<Map<String, String>> tagsList;
 
-  private final List<Long> keys;
+  private final long[] keys;
 
   private final Object[] valuesList;
 
@@ -43,7 +43,7 @@ public class RawData {
   public RawData(
       List<String> paths,
       List<Map<String, String>> tagsList,
-      List<Long> keys,
+      long[] keys,
       Object[] valuesList,
       List<DataType> dataTypeList,
       List<Bitmap> bitmaps,
@@ -65,10 +65,14 @@ public class RawData {
     return tagsList;
   }
 
-  public List<Long> getKeys() {
+  public long[] getKeys() {
     return keys;
   }
 
+  public int getKeySize() {
+    return keys.length;
+  }
+
   public Object[] getValuesList() {
     return valuesList;
   }
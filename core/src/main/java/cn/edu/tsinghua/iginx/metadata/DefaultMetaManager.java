@@ -35,6 +35,8 @@ import cn.edu.tsinghua.iginx.metadata.cache.DefaultMetaCache;
 import cn.edu.tsinghua.iginx.metadata.cache.IMetaCache;
 import cn.edu.tsinghua.iginx.metadata.entity.*;
 import cn.edu.tsinghua.iginx.metadata.exception.MetaStorageException;
+import cn.edu.tsinghua.iginx.metadata.hook.FragmentChangeHook;
+import cn.edu.tsinghua.iginx.metadata.hook.PyFunctionChangeHook;
 import cn.edu.tsinghua.iginx.metadata.hook.StorageEngineChangeHook;
 import cn.edu.tsinghua.iginx.metadata.hook.StorageUnitHook;
 import cn.edu.tsinghua.iginx.metadata.storage.IMetaStorage;
@@ -69,6 +71,8 @@ public class DefaultMetaManager implements IMetaManager {
   private final IMetaStorage storage;
   private final List<StorageEngineChangeHook> storageEngineChangeHooks;
   private final List<StorageUnitHook> storageUnitHooks;
+  private final List<FragmentChangeHook> fragmentChangeHooks;
+  private final List<PyFunctionChangeHook> pyFunctionChangeHooks;
   private long id;
 
   // 当前活跃的最大的结束时间
@@ -109,6 +113,8 @@ public class DefaultMetaManager implements IMetaManager {
 
     storageEngineChangeHooks = Collections.synchronizedList(new ArrayList<>());
     storageUnitHooks = Collections.synchronizedList(new ArrayList<>());
+    fragmentChangeHooks = Collections.synchronizedList(new ArrayList<>());
+    pyFunctionChangeHooks = Collections.synchronizedList(new ArrayList<>());
 
     try {
       initIginx();
@@ -364,8 +370,10 @@ public class DefaultMetaManager implements IMetaManager {
           fragment.setMasterStorageUnit(cache.getStorageUnit(fragment.getMasterStorageUnitId()));
           if (create) {
             cache.addFragment(fragment);
+            notifyFragmentChange(true, fragment);
           } else {
             cache.updateFragment(fragment);
+            notifyFragmentChange(false, fragment);
           }
         });
   }
@@ -420,6 +428,7 @@ public class DefaultMetaManager implements IMetaManager {
           } else {
             cache.addOrUpdatePyFunction(pyFunctionMeta);
           }
+          notifyPyFunctionChange(name, pyFunctionMeta);
         }));
     for (PyFunctionMeta task : storage.loadPyFunction()) {
       cache.addOrUpdatePyFunction(task);
@@ -829,6 +838,7 @@ public class DefaultMetaManager implements IMetaManager {
         // 在更新分片时，先更新本地
         fragmentMeta.setUpdatedBy(id);
         cache.updateFragment(fragmentMeta);
+        notifyFragmentChange(false, fragmentMeta);
         storage.updateFragment(fragmentMeta);
       }
 
@@ -842,6 +852,7 @@ public class DefaultMetaManager implements IMetaManager {
           fragmentMeta.setMasterStorageUnit(getStorageUnit(storageUnit.getMasterId()));
         }
         cache.addFragment(fragmentMeta);
+        notifyFragmentChange(true, fragmentMeta);
         storage.addFragment(fragmentMeta);
       }
       return true;
@@ -891,8 +902,10 @@ public class DefaultMetaManager implements IMetaManager {
 
       // 结束旧分片
       cache.deleteFragmentByColumnsInterval(fragment.getColumnsInterval(), fragment);
+      notifyFragmentChange(false, fragment);
       fragment = fragment.endFragmentMeta(toAddFragment.getKeyInterval().getStartKey());
       cache.addFragment(fragment);
+      notifyFragmentChange(true, fragment);
       fragment.setUpdatedBy(id);
       storage.updateFragment(fragment);
 
@@ -905,6 +918,7 @@ public class DefaultMetaManager implements IMetaManager {
         toAddFragment.setMasterStorageUnit(getStorageUnit(actualMasterStorageUnit.getMasterId()));
       }
       cache.addFragment(toAddFragment);
+      notifyFragmentChange(true, toAddFragment);
       storage.addFragment(toAddFragment);
     } catch (MetaStorageException e) {
       LOGGER.error("create fragment error: ", e);
@@ -925,6 +939,7 @@ public class DefaultMetaManager implements IMetaManager {
     try {
       storage.lockFragment();
       cache.deleteFragmentByColumnsInterval(fragmentMeta.getColumnsInterval(), fragmentMeta);
+      notifyFragmentChange(false, fragmentMeta);
       storage.removeFragment(fragmentMeta);
     } catch (MetaStorageException e) {
       LOGGER.error("remove fragment error: ", e);
@@ -942,6 +957,7 @@ public class DefaultMetaManager implements IMetaManager {
     try {
       storage.lockFragment();
       cache.addFragment(fragmentMeta);
+      notifyFragmentChange(true, fragmentMeta);
       storage.addFragment(fragmentMeta);
     } catch (MetaStorageException e) {
       LOGGER.error("add fragment error: ", e);
@@ -963,8 +979,10 @@ public class DefaultMetaManager implements IMetaManager {
               fragmentMeta.getColumnsInterval().getStartColumn(),
               fragmentMeta.getColumnsInterval().getEndColumn());
       cache.deleteFragmentByColumnsInterval(fragmentMeta.getColumnsInterval(), fragmentMeta);
+      notifyFragmentChange(false, fragmentMeta);
       fragmentMeta.getColumnsInterval().setEndColumn(endColumn);
       cache.addFragment(fragmentMeta);
+      notifyFragmentChange(true, fragmentMeta);
       storage.updateFragmentByColumnsInterval(sourceColumnsInterval, fragmentMeta);
     } catch (MetaStorageException e) {
       LOGGER.error("end fragment by time series interval error: ", e);
@@ -983,6 +1001,7 @@ public class DefaultMetaManager implements IMetaManager {
     try {
       storage.lockFragment();
       cache.updateFragmentByColumnsInterval(columnsInterval, fragmentMeta);
+      notifyFragmentChange(false, fragmentMeta);
       storage.updateFragmentByColumnsInterval(columnsInterval, fragmentMeta);
     } catch (Exception e) {
       LOGGER.error("update fragment error: ", e);
@@ -1131,6 +1150,7 @@ public class DefaultMetaManager implements IMetaManager {
         // 再初始化缓存
         cache.initStorageUnit(globalStorageUnits);
         cache.initFragment(globalFragmentMap);
+        notifyFragmentChange(true, null);
         return false;
       }
 
@@ -1181,6 +1201,7 @@ public class DefaultMetaManager implements IMetaManager {
       // 再初始化缓存
       cache.initStorageUnit(loadedStorageUnits);
       cache.initFragment(storage.loadFragment());
+      notifyFragmentChange(true, null);
       return true;
     } catch (MetaStorageException e) {
       LOGGER.error("encounter error when init fragment: ", e);
@@ -1439,6 +1460,30 @@ public class DefaultMetaManager implements IMetaManager {
     this.storageUnitHooks.add(hook);
   }
 
+  @Override
+  public void registerFragmentChangeHook(FragmentChangeHook hook) {
+    this.fragmentChangeHooks.add(hook);
+  }
+
+  /** 本地缓存中的分片发生变化后通知，批量加载分片时 fragment 为 null */
+  private void notifyFragmentChange(boolean create, FragmentMeta fragment) {
+    for (FragmentChangeHook hook : fragmentChangeHooks) {
+      hook.onChange(create, fragment);
+    }
+  }
+
+  @Override
+  public void registerPyFunctionChangeHook(PyFunctionChangeHook hook) {
+    this.pyFunctionChangeHooks.add(hook);
+  }
+
+  /** 本地缓存中的 Python 函数发生变化后通知，删除函数时 pyFunctionMeta 为 null */
+  private void notifyPyFunctionChange(String name, PyFunctionMeta pyFunctionMeta) {
+    for (PyFunctionChangeHook hook : pyFunctionChangeHooks) {
+      hook.onChange(name, pyFunctionMeta);
+    }
+  }
+
   @Override
   public boolean election() {
     return storage.election();
@@ -1474,6 +1519,7 @@ public class DefaultMetaManager implements IMetaManager {
     try {
       storage.addPyFunction(pyFunctionMeta);
       cache.addOrUpdatePyFunction(pyFunctionMeta);
+      notifyPyFunctionChange(pyFunctionMeta.getName(), pyFunctionMeta);
       return true;
     } catch (MetaStorageException e) {
       LOGGER.error("add python function error: ", e);
@@ -1486,6 +1532,7 @@ public class DefaultMetaManager implements IMetaManager {
     try {
       storage.updatePyFunction(pyFunctionMeta);
       cache.addOrUpdatePyFunction(pyFunctionMeta);
+      notifyPyFunctionChange(pyFunctionMeta.getName(), pyFunctionMeta);
       return true;
     } catch (MetaStorageException e) {
       LOGGER.error("add python function error: ", e);
@@ -1498,6 +1545,7 @@ public class DefaultMetaManager implements IMetaManager {
     try {
       cache.dropPyFunction(name);
       storage.dropPyFunction(name);
+      notifyPyFunctionChange(name, null);
       return true;
     } catch (MetaStorageException e) {
       LOGGER.error("drop python function error: ", e);
@@ -21,6 +21,8 @@ package cn.edu.tsinghua.iginx.metadata;
 
 import cn.edu.tsinghua.iginx.metadata.entity.*;
 import cn.edu.tsinghua.iginx.metadata.exception.MetaStorageException;
+import cn.edu.tsinghua.iginx.metadata.hook.FragmentChangeHook;
+import cn.edu.tsinghua.iginx.metadata.hook.PyFunctionChangeHook;
 import cn.edu.tsinghua.iginx.metadata.hook.StorageEngineChangeHook;
 import cn.edu.tsinghua.iginx.metadata.hook.StorageUnitHook;
 import cn.edu.tsinghua.iginx.policy.simple.ColumnCalDO;
@@ -175,6 +177,12 @@ public interface IMetaManager {
 
   void registerStorageUnitHook(StorageUnitHook hook);
 
+  /** 注册分片变化的回调，本地创建、更新、删除分片以及收到其他节点的分片变化时均会触发 */
+  void registerFragmentChangeHook(FragmentChangeHook hook);
+
+  /** 注册 Python 函数变化的回调，本地注册、更新、删除函数以及收到其他节点的函数变化时均会触发 */
+  void registerPyFunctionChangeHook(PyFunctionChangeHook hook);
+
   boolean election();
 
   void saveColumnsData(InsertStatement statement);
@@ -21,6 +21,8 @@ package cn.edu.tsinghua.iginx.metadata;
 
 import cn.edu.tsinghua.iginx.metadata.entity.*;
 import cn.edu.tsinghua.iginx.metadata.exception.MetaStorageException;
+import cn.edu.tsinghua.iginx.metadata.hook.FragmentChangeHook;
+import cn.edu.tsinghua.iginx.metadata.hook.PyFunctionChangeHook;
 import cn.edu.tsinghua.iginx.metadata.hook.StorageEngineChangeHook;
 import cn.edu.tsinghua.iginx.metadata.hook.StorageUnitHook;
 import cn.edu.tsinghua.iginx.policy.simple.ColumnCalDO;
@@ -36,6 +38,8 @@ public class MetaManagerMock implements IMetaManager {
   private Map<ColumnsInterval, List<FragmentMeta>> getFragmentMapByColumnsIntervalMockMap =
       new HashMap<>();
 
+  private List<IginxMeta> iginxList = null;
+
   private static volatile MetaManagerMock INSTANCE;
 
   private MetaManagerMock() {}
@@ -109,7 +113,11 @@ public class MetaManagerMock implements IMetaManager {
 
   @Override
   public List<IginxMeta> getIginxList() {
-    return null;
+    return iginxList;
+  }
+
+  public void setIginxList(List<IginxMeta> iginxList) {
+    this.iginxList = iginxList;
   }
 
   @Override
@@ -297,6 +305,12 @@ public class MetaManagerMock implements IMetaManager {
   @Override
   public void registerStorageUnitHook(StorageUnitHook hook) {}
 
+  @Override
+  public void registerFragmentChangeHook(FragmentChangeHook hook) {}
+
+  @Override
+  public void registerPyFunctionChangeHook(PyFunctionChangeHook hook) {}
+
   @Override
   public boolean election() {
     return false;
@@ -50,6 +50,9 @@ public class DefaultMetaCache implements IMetaCache {
 
   private final Map<ColumnsInterval, List<FragmentMeta>> fragmentMetaListMap;
 
+  // 分片列表的只读快照，写入方在写锁内修改上面的列表后重新发布，查询无需加锁
+  private volatile FragmentIndex fragmentIndex = FragmentIndex.EMPTY;
+
   private final List<FragmentMeta> dummyFragments;
 
   private int fragmentCacheSize;
@@ -155,41 +158,6 @@ public class DefaultMetaCache implements IMetaCache {
     return minKey;
   }
 
-  private static List<Pair<ColumnsInterval, List<FragmentMeta>>> searchFragmentSeriesList(
-      List<Pair<ColumnsInterval, List<FragmentMeta>>> fragmentSeriesList,
-      ColumnsInterval columnsInterval) {
-    List<Pair<ColumnsInterval, List<FragmentMeta>>> resultList = new ArrayList<>();
-    if (fragmentSeriesList.isEmpty()) {
-      return resultList;
-    }
-    int index = 0;
-    while (index < fragmentSeriesList.size()
-        && !fragmentSeriesList.get(index).k.isCompletelyAfter(columnsInterval)) {
-      if (fragmentSeriesList.get(index).k.isIntersect(columnsInterval)) {
-        resultList.add(fragmentSeriesList.get(index));
-      }
-      index++;
-    }
-    return resultList;
-  }
-
-  private static List<Pair<ColumnsInterval, List<FragmentMeta>>> searchFragmentSeriesList(
-      List<Pair<ColumnsInterval, List<FragmentMeta>>> fragmentSeriesList, String columnName) {
-    List<Pair<ColumnsInterval, List<FragmentMeta>>> resultList = new ArrayList<>();
-    if (fragmentSeriesList.isEmpty()) {
-      return resultList;
-    }
-    int index = 0;
-    while (index < fragmentSeriesList.size()
-        && !fragmentSeriesList.get(index).k.isAfter(columnName)) {
-      if (fragmentSeriesList.get(index).k.isContain(columnName)) {
-        resultList.add(fragmentSeriesList.get(index));
-      }
-      index++;
-    }
-    return resultList;
-  }
-
   private static List<FragmentMeta> searchFragmentList(
       List<FragmentMeta> fragmentMetaList, KeyInterval keyInterval) {
     List<FragmentMeta> resultList = new ArrayList<>();
@@ -251,11 +219,18 @@ public class DefaultMetaCache implements IMetaCache {
           kickOffHistoryFragment();
         }
       }
+      fragmentIndex = FragmentIndex.of(sortedFragmentMetaLists);
     } finally {
       fragmentLock.writeLock().unlock();
     }
   }
 
+  /** 某个列区间下的分片列表变化后发布新的快照，列区间集合变化时重新构建 */
+  private void publishFragmentList(ColumnsInterval columnsInterval, List<FragmentMeta> fragments) {
+    FragmentIndex index = fragmentIndex.withFragmentList(columnsInterval, fragments);
+    fragmentIndex = index != null ? index : FragmentIndex.of(sortedFragmentMetaLists);
+  }
+
   private void kickOffHistoryFragment() {
     long nextMinKey = 0L;
     for (List<FragmentMeta> fragmentList : fragmentMetaListMap.values()) {
@@ -286,6 +261,7 @@ public class DefaultMetaCache implements IMetaCache {
         updateSortedFragmentsList(fragmentMeta.getColumnsInterval(), fragmentMetaList);
       }
       fragmentMetaList.add(fragmentMeta);
+      boolean kickedOff = false;
       if (enableFragmentCacheControl) {
         if (fragmentMeta.getKeyInterval().getStartKey() < minKey) {
           minKey = fragmentMeta.getKeyInterval().getStartKey();
@@ -293,8 +269,14 @@ public class DefaultMetaCache implements IMetaCache {
         fragmentCacheSize++;
         while (fragmentCacheSize > fragmentCacheMaxSize) {
           kickOffHistoryFragment();
+          kickedOff = true;
         }
       }
+      if (kickedOff) {
+        fragmentIndex = FragmentIndex.of(sortedFragmentMetaLists);
+      } else {
+        publishFragmentList(fragmentMeta.getColumnsInterval(), fragmentMetaList);
+      }
     } finally {
       fragmentLock.writeLock().unlock();
     }
@@ -334,6 +316,7 @@ public class DefaultMetaCache implements IMetaCache {
       List<FragmentMeta> fragmentMetaList =
           fragmentMetaListMap.get(fragmentMeta.getColumnsInterval());
       fragmentMetaList.set(fragmentMetaList.size() - 1, fragmentMeta);
+      publishFragmentList(fragmentMeta.getColumnsInterval(), fragmentMetaList);
     } finally {
       fragmentLock.writeLock().unlock();
     }
@@ -356,6 +339,7 @@ public class DefaultMetaCache implements IMetaCache {
           columnsIntervalListPair.k = fragmentMeta.getColumnsInterval();
         }
       }
+      fragmentIndex = FragmentIndex.of(sortedFragmentMetaLists);
     } finally {
       fragmentLock.writeLock().unlock();
     }
@@ -381,6 +365,11 @@ public class DefaultMetaCache implements IMetaCache {
           break;
         }
       }
+      if (fragmentMetaList.isEmpty()) {
+        fragmentIndex = FragmentIndex.of(sortedFragmentMetaLists);
+      } else {
+        publishFragmentList(columnsInterval, fragmentMetaList);
+      }
     } finally {
       fragmentLock.writeLock().unlock();
     }
@@ -390,13 +379,7 @@ public class DefaultMetaCache implements IMetaCache {
   public Map<ColumnsInterval, List<FragmentMeta>> getFragmentMapByColumnsInterval(
       ColumnsInterval columnsInterval) {
     Map<ColumnsInterval, List<FragmentMeta>> resultMap = new HashMap<>();
-    fragmentLock.readLock().lock();
-    try {
-      searchFragmentSeriesList(sortedFragmentMetaLists, columnsInterval)
-          .forEach(e -> resultMap.put(e.k, e.v));
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
+    fragmentIndex.search(columnsInterval).forEach(e -> resultMap.put(e.k, e.v));
     return resultMap;
   }
 
@@ -420,15 +403,10 @@ public class DefaultMetaCache implements IMetaCache {
   @Override
   public Map<ColumnsInterval, FragmentMeta> getLatestFragmentMap() {
     Map<ColumnsInterval, FragmentMeta> latestFragmentMap = new HashMap<>();
-    fragmentLock.readLock().lock();
-    try {
-      sortedFragmentMetaLists.stream()
-          .map(e -> e.v.get(e.v.size() - 1))
-          .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
-          .forEach(e -> latestFragmentMap.put(e.getColumnsInterval(), e));
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
+    fragmentIndex.getFragmentLists().stream()
+        .map(e -> e.v.get(e.v.size() - 1))
+        .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
+        .forEach(e -> latestFragmentMap.put(e.getColumnsInterval(), e));
     return latestFragmentMap;
   }
 
@@ -436,15 +414,10 @@ public class DefaultMetaCache implements IMetaCache {
   public Map<ColumnsInterval, FragmentMeta> getLatestFragmentMapByColumnsInterval(
       ColumnsInterval columnsInterval) {
     Map<ColumnsInterval, FragmentMeta> latestFragmentMap = new HashMap<>();
-    fragmentLock.readLock().lock();
-    try {
-      searchFragmentSeriesList(sortedFragmentMetaLists, columnsInterval).stream()
-          .map(e -> e.v.get(e.v.size() - 1))
-          .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
-          .forEach(e -> latestFragmentMap.put(e.getColumnsInterval(), e));
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
+    fragmentIndex.search(columnsInterval).stream()
+        .map(e -> e.v.get(e.v.size() - 1))
+        .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
+        .forEach(e -> latestFragmentMap.put(e.getColumnsInterval(), e));
     return latestFragmentMap;
   }
 
@@ -452,19 +425,7 @@ public class DefaultMetaCache implements IMetaCache {
   public Map<ColumnsInterval, List<FragmentMeta>> getFragmentMapByColumnsIntervalAndKeyInterval(
       ColumnsInterval columnsInterval, KeyInterval keyInterval) {
     Map<ColumnsInterval, List<FragmentMeta>> resultMap = new HashMap<>();
-    fragmentLock.readLock().lock();
-    try {
-      searchFragmentSeriesList(sortedFragmentMetaLists, columnsInterval)
-          .forEach(
-              e -> {
-                List<FragmentMeta> fragmentMetaList = searchFragmentList(e.v, keyInterval);
-                if (!fragmentMetaList.isEmpty()) {
-                  resultMap.put(e.k, fragmentMetaList);
-                }
-              });
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
+    fragmentIndex.search(columnsInterval, keyInterval).forEach(e -> resultMap.put(e.k, e.v));
     return resultMap;
   }
 
@@ -489,46 +450,30 @@ public class DefaultMetaCache implements IMetaCache {
 
   @Override
   public List<FragmentMeta> getFragmentListByColumnName(String columnName) {
-    List<FragmentMeta> resultList;
-    fragmentLock.readLock().lock();
-    try {
-      resultList =
-          searchFragmentSeriesList(sortedFragmentMetaLists, columnName).stream()
-              .map(e -> e.v)
-              .flatMap(List::stream)
-              .sorted(
-                  (o1, o2) -> {
-                    if (o1.getColumnsInterval().getStartColumn() == null
-                        && o2.getColumnsInterval().getStartColumn() == null) return 0;
-                    else if (o1.getColumnsInterval().getStartColumn() == null) return -1;
-                    else if (o2.getColumnsInterval().getStartColumn() == null) return 1;
-                    return o1.getColumnsInterval()
-                        .getStartColumn()
-                        .compareTo(o2.getColumnsInterval().getStartColumn());
-                  })
-              .collect(Collectors.toList());
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
-    return resultList;
+    return fragmentIndex.search(columnName).stream()
+        .map(e -> e.v)
+        .flatMap(List::stream)
+        .sorted(
+            (o1, o2) -> {
+              if (o1.getColumnsInterval().getStartColumn() == null
+                  && o2.getColumnsInterval().getStartColumn() == null) return 0;
+              else if (o1.getColumnsInterval().getStartColumn() == null) return -1;
+              else if (o2.getColumnsInterval().getStartColumn() == null) return 1;
+              return o1.getColumnsInterval()
+                  .getStartColumn()
+                  .compareTo(o2.getColumnsInterval().getStartColumn());
+            })
+        .collect(Collectors.toList());
   }
 
   @Override
   public FragmentMeta getLatestFragmentByColumnName(String columnName) {
-    FragmentMeta result;
-    fragmentLock.readLock().lock();
-    try {
-      result =
-          searchFragmentSeriesList(sortedFragmentMetaLists, columnName).stream()
-              .map(e -> e.v)
-              .flatMap(List::stream)
-              .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
-              .findFirst()
-              .orElse(null);
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
-    return result;
+    return fragmentIndex.search(columnName).stream()
+        .map(e -> e.v)
+        .flatMap(List::stream)
+        .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
+        .findFirst()
+        .orElse(null);
   }
 
   @Override
@@ -549,43 +494,29 @@ public class DefaultMetaCache implements IMetaCache {
   @Override
   public List<FragmentMeta> getFragmentListByColumnNameAndKeyInterval(
       String columnName, KeyInterval keyInterval) {
-    List<FragmentMeta> resultList;
-    fragmentLock.readLock().lock();
-    try {
-      List<FragmentMeta> fragmentMetas =
-          searchFragmentSeriesList(sortedFragmentMetaLists, columnName).stream()
-              .map(e -> e.v)
-              .flatMap(List::stream)
-              .sorted(Comparator.comparingLong(o -> o.getKeyInterval().getStartKey()))
-              .collect(Collectors.toList());
-      resultList = searchFragmentList(fragmentMetas, keyInterval);
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
-    return resultList;
+    List<FragmentMeta> fragmentMetas =
+        fragmentIndex.search(columnName).stream()
+            .map(e -> e.v)
+            .flatMap(List::stream)
+            .sorted(Comparator.comparingLong(o -> o.getKeyInterval().getStartKey()))
+            .collect(Collectors.toList());
+    return searchFragmentList(fragmentMetas, keyInterval);
   }
 
   @Override
   public List<FragmentMeta> getFragmentListByStorageUnitId(String storageUnitId) {
-    List<FragmentMeta> resultList;
-    fragmentLock.readLock().lock();
-    try {
-      List<FragmentMeta> fragmentMetas =
-          sortedFragmentMetaLists.stream()
-              .map(e -> e.v)
-              .flatMap(List::stream)
-              .sorted(Comparator.comparingLong(o -> o.getKeyInterval().getStartKey()))
-              .collect(Collectors.toList());
-      resultList = searchFragmentList(fragmentMetas, storageUnitId);
-    } finally {
-      fragmentLock.readLock().unlock();
-    }
-    return resultList;
+    List<FragmentMeta> fragmentMetas =
+        fragmentIndex.getFragmentLists().stream()
+            .map(e -> e.v)
+            .flatMap(List::stream)
+            .sorted(Comparator.comparingLong(o -> o.getKeyInterval().getStartKey()))
+            .collect(Collectors.toList());
+    return searchFragmentList(fragmentMetas, storageUnitId);
   }
 
   @Override
   public boolean hasFragment() {
-    return !sortedFragmentMetaLists.isEmpty() || (enableFragmentCacheControl && minKey != 0L);
+    return !fragmentIndex.isEmpty() || (enableFragmentCacheControl && minKey != 0L);
   }
 
   @Override
@@ -781,13 +712,8 @@ public class DefaultMetaCache implements IMetaCache {
   @Override
   public List<FragmentMeta> getFragments() {
     List<FragmentMeta> fragments = new ArrayList<>();
-    fragmentLock.readLock().lock();
-    try {
-      for (Pair<ColumnsInterval, List<FragmentMeta>> pair : sortedFragmentMetaLists) {
-        fragments.addAll(pair.v);
-      }
-    } finally {
-      fragmentLock.readLock().unlock();
+    for (Pair<ColumnsInterval, List<FragmentMeta>> pair : fragmentIndex.getFragmentLists()) {
+      fragments.addAll(pair.v);
     }
     return fragments;
   }
@@ -833,8 +759,7 @@ public class DefaultMetaCache implements IMetaCache {
       RawData data = statement.getRawData();
       List<String> paths = data.getPaths();
       if (data.isColumnData()) {
-        DataView view =
-            new ColumnDataView(data, 0, data.getPaths().size(), 0, data.getKeys().size());
+        DataView view = new ColumnDataView(data, 0, data.getPaths().size(), 0, data.getKeySize());
         for (int i = 0; i < view.getPathNum(); i++) {
           long minn = Long.MAX_VALUE;
           long maxx = Long.MIN_VALUE;
@@ -858,7 +783,7 @@ public class DefaultMetaCache implements IMetaCache {
           }
         }
       } else {
-        DataView view = new RowDataView(data, 0, data.getPaths().size(), 0, data.getKeys().size());
+        DataView view = new RowDataView(data, 0, data.getPaths().size(), 0, data.getKeySize());
         long[] totalByte = new long[view.getPathNum()];
         int[] count = new int[view.getPathNum()];
         long[] minn = new long[view.getPathNum()];
@@ -0,0 +1,275 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.metadata.cache;
+
+import cn.edu.tsinghua.iginx.metadata.entity.ColumnsInterval;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
+import cn.edu.tsinghua.iginx.utils.Pair;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * 分片索引的不可变快照。列区间按起始列排序，并用线段树维护每段内最大的列区间终点，查找时跳过终点不超过查询起点的整段； 每个列区间下的分片按起始 key 排序，并维护终止 key
+ * 的前缀最大值，用二分跳过不可能相交的前缀。写入方每次修改后发布新的快照，读取方无需加锁。
+ */
+public final class FragmentIndex {
+
+  public static final FragmentIndex EMPTY = of(Collections.emptyList());
+
+  private final ColumnsInterval[] columnsIntervals;
+
+  private final List<List<FragmentMeta>> fragmentLists;
+
+  private final long[][] maxEndKeys;
+
+  // 线段树节点保存子树内最大的列区间终点，null 表示正无穷
+  private final String[] maxEndColumns;
+
+  private FragmentIndex(
+      ColumnsInterval[] columnsIntervals,
+      List<List<FragmentMeta>> fragmentLists,
+      long[][] maxEndKeys,
+      String[] maxEndColumns) {
+    this.columnsIntervals = columnsIntervals;
+    this.fragmentLists = fragmentLists;
+    this.maxEndKeys = maxEndKeys;
+    this.maxEndColumns = maxEndColumns;
+  }
+
+  /** 根据按列区间排序的分片列表构建快照，分片列表会被复制 */
+  public static FragmentIndex of(List<Pair<ColumnsInterval, List<FragmentMeta>>> sortedLists) {
+    int size = sortedLists.size();
+    ColumnsInterval[] columnsIntervals = new ColumnsInterval[size];
+    List<List<FragmentMeta>> fragmentLists = new ArrayList<>(size);
+    long[][] maxEndKeys = new long[size][];
+    for (int i = 0; i < size; i++) {
+      Pair<ColumnsInterval, List<FragmentMeta>> pair = sortedLists.get(i);
+      List<FragmentMeta> fragments = new ArrayList<>(pair.v);
+      columnsIntervals[i] = pair.k;
+      fragmentLists.add(fragments);
+      maxEndKeys[i] = buildMaxEndKeys(fragments);
+    }
+    String[] maxEndColumns = new String[Math.max(4 * size, 1)];
+    if (size > 0) {
+      buildMaxEndColumns(columnsIntervals, maxEndColumns, 1, 0, size);
+    }
+    return new FragmentIndex(columnsIntervals, fragmentLists, maxEndKeys, maxEndColumns);
+  }
+
+  /**
+   * 替换某个已有列区间下的分片列表，列区间不变时复用线段树
+   *
+   * @return 新的快照；列区间不存在时返回 null，需要调用方重新构建
+   */
+  public FragmentIndex withFragmentList(
+      ColumnsInterval columnsInterval, List<FragmentMeta> fragments) {
+    int index = indexOf(columnsInterval);
+    if (index == -1) {
+      return null;
+    }
+    List<FragmentMeta> copy = new ArrayList<>(fragments);
+    List<List<FragmentMeta>> newFragmentLists = new ArrayList<>(fragmentLists);
+    newFragmentLists.set(index, copy);
+    long[][] newMaxEndKeys = maxEndKeys.clone();
+    newMaxEndKeys[index] = buildMaxEndKeys(copy);
+    return new FragmentIndex(columnsIntervals, newFragmentLists, newMaxEndKeys, maxEndColumns);
+  }
+
+  public boolean isEmpty() {
+    return columnsIntervals.length == 0;
+  }
+
+  public List<Pair<ColumnsInterval, List<FragmentMeta>>> getFragmentLists() {
+    List<Pair<ColumnsInterval, List<FragmentMeta>>> resultList =
+        new ArrayList<>(columnsIntervals.length);
+    for (int i = 0; i < columnsIntervals.length; i++) {
+      resultList.add(new Pair<>(columnsIntervals[i], fragmentLists.get(i)));
+    }
+    return resultList;
+  }
+
+  /** 查找与给定列区间相交的所有列区间及其分片，结果按列区间排序 */
+  public List<Pair<ColumnsInterval, List<FragmentMeta>>> search(ColumnsInterval columnsInterval) {
+    List<Pair<ColumnsInterval, List<FragmentMeta>>> resultList = new ArrayList<>();
+    for (int index : searchIndexes(columnsInterval)) {
+      resultList.add(new Pair<>(columnsIntervals[index], fragmentLists.get(index)));
+    }
+    return resultList;
+  }
+
+  /** 查找与给定列区间、key 区间均相交的分片，只返回存在相交分片的列区间 */
+  public List<Pair<ColumnsInterval, List<FragmentMeta>>> search(
+      ColumnsInterval columnsInterval, KeyInterval keyInterval) {
+    List<Pair<ColumnsInterval, List<FragmentMeta>>> resultList = new ArrayList<>();
+    for (int index : searchIndexes(columnsInterval)) {
+      List<FragmentMeta> fragments = searchFragments(index, keyInterval);
+      if (!fragments.isEmpty()) {
+        resultList.add(new Pair<>(columnsIntervals[index], fragments));
+      }
+    }
+    return resultList;
+  }
+
+  /** 查找包含给定列的所有列区间及其分片，结果按列区间排序 */
+  public List<Pair<ColumnsInterval, List<FragmentMeta>>> search(String columnName) {
+    List<Pair<ColumnsInterval, List<FragmentMeta>>> resultList = new ArrayList<>();
+    int bound = firstMatch(index -> columnsIntervals[index].isAfter(columnName));
+    List<Integer> candidates = new ArrayList<>();
+    collectCandidates(1, 0, columnsIntervals.length, bound, pruneThreshold(columnName), candidates);
+    for (int index : candidates) {
+      if (columnsIntervals[index].isContain(columnName)) {
+        resultList.add(new Pair<>(columnsIntervals[index], fragmentLists.get(index)));
+      }
+    }
+    return resultList;
+  }
+
+  private List<Integer> searchIndexes(ColumnsInterval columnsInterval) {
+    int bound = firstMatch(index -> columnsIntervals[index].isCompletelyAfter(columnsInterval));
+    List<Integer> candidates = new ArrayList<>();
+    collectCandidates(
+        1,
+        0,
+        columnsIntervals.length,
+        bound,
+        pruneThreshold(columnsInterval.getStartColumn()),
+        candidates);
+    candidates.removeIf(index -> !columnsIntervals[index].isIntersect(columnsInterval));
+    return candidates;
+  }
+
+  private List<FragmentMeta> searchFragments(int index, KeyInterval keyInterval) {
+    List<FragmentMeta> fragments = fragmentLists.get(index);
+    long[] endKeys = maxEndKeys[index];
+    // 终止 key 的前缀最大值单调不减，之前的分片都不可能与查询区间相交
+    int left = 0, right = endKeys.length;
+    while (left < right) {
+      int mid = (left + right) >>> 1;
+      if (endKeys[mid] > keyInterval.getStartKey()) {
+        right = mid;
+      } else {
+        left = mid + 1;
+      }
+    }
+    List<FragmentMeta> resultList = new ArrayList<>();
+    for (int i = left; i < fragments.size(); i++) {
+      KeyInterval fragmentKeyInterval = fragments.get(i).getKeyInterval();
+      if (fragmentKeyInterval.isAfter(keyInterval)) {
+        break;
+      }
+      if (fragmentKeyInterval.isIntersect(keyInterval)) {
+        resultList.add(fragments.get(i));
+      }
+    }
+    return resultList;
+  }
+
+  /** 列区间按起始列排序，满足条件的列区间构成一个后缀，返回其起始下标 */
+  private int firstMatch(IntPredicate isAfter) {
+    int left = 0, right = columnsIntervals.length;
+    while (left < right) {
+      int mid = (left + right) >>> 1;
+      if (isAfter.test(mid)) {
+        right = mid;
+      } else {
+        left = mid + 1;
+      }
+    }
+    return left;
+  }
+
+  private void collectCandidates(
+      int node, int lo, int hi, int bound, String threshold, List<Integer> candidates) {
+    if (lo >= bound || lo >= hi) {
+      return;
+    }
+    String maxEndColumn = maxEndColumns[node];
+    if (threshold != null && maxEndColumn != null && maxEndColumn.compareTo(threshold) <= 0) {
+      return; // 整段的终点都不超过查询起点，不可能相交
+    }
+    if (hi - lo == 1) {
+      candidates.add(lo);
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    collectCandidates(2 * node, lo, mid, bound, threshold, candidates);
+    collectCandidates(2 * node + 1, mid, hi, bound, threshold, candidates);
+  }
+
+  /** 与 StringUtils.compare 的语义保持一致：终点不超过该值的列区间不可能包含查询起点之后的列；返回 null 表示无法剪枝 */
+  private static String pruneThreshold(String startColumn) {
+    if (startColumn == null || startColumn.equals("*")) {
+      return null;
+    }
+    int index = startColumn.indexOf('*');
+    return index == -1 ? startColumn : startColumn.substring(0, index);
+  }
+
+  private static String buildMaxEndColumns(
+      ColumnsInterval[] columnsIntervals, String[] maxEndColumns, int node, int lo, int hi) {
+    if (hi - lo == 1) {
+      return maxEndColumns[node] = realEndColumn(columnsIntervals[lo]);
+    }
+    int mid = (lo + hi) >>> 1;
+    String left = buildMaxEndColumns(columnsIntervals, maxEndColumns, 2 * node, lo, mid);
+    String right = buildMaxEndColumns(columnsIntervals, maxEndColumns, 2 * node + 1, mid, hi);
+    if (left == null || right == null) {
+      return maxEndColumns[node] = null;
+    }
+    return maxEndColumns[node] = left.compareTo(right) >= 0 ? left : right;
+  }
+
+  private static String realEndColumn(ColumnsInterval columnsInterval) {
+    String endColumn = columnsInterval.getEndColumn();
+    if (endColumn != null && columnsInterval.getSchemaPrefix() != null) {
+      return columnsInterval.getSchemaPrefix() + "." + endColumn;
+    }
+    return endColumn;
+  }
+
+  private static long[] buildMaxEndKeys(List<FragmentMeta> fragments) {
+    long[] endKeys = new long[fragments.size()];
+    long max = Long.MIN_VALUE;
+    for (int i = 0; i < endKeys.length; i++) {
+      max = Math.max(max, fragments.get(i).getKeyInterval().getEndKey());
+      endKeys[i] = max;
+    }
+    return endKeys;
+  }
+
+  private int indexOf(ColumnsInterval columnsInterval) {
+    int left = 0, right = columnsIntervals.length - 1;
+    while (left <= right) {
+      int mid = (left + right) >>> 1;
+      int cmp = columnsInterval.compareTo(columnsIntervals[mid]);
+      if (cmp < 0) {
+        right = mid - 1;
+      } else if (cmp > 0) {
+        left = mid + 1;
+      } else {
+        return columnsIntervals[mid].equals(columnsInterval) ? mid : -1;
+      }
+    }
+    return -1;
+  }
+}
@@ -19,19 +19,22 @@
  */
 package cn.edu.tsinghua.iginx.migration;
 
+import cn.edu.tsinghua.iginx.conf.Config;
 import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.EmptyRowStream;
 import cn.edu.tsinghua.iginx.engine.physical.storage.execute.StoragePhysicalTaskExecutor;
 import cn.edu.tsinghua.iginx.engine.physical.task.MemoryPhysicalTask;
 import cn.edu.tsinghua.iginx.engine.physical.task.StoragePhysicalTask;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.physical.task.UnaryMemoryPhysicalTask;
 import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.data.write.ColumnDataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.RawData;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.RawDataType;
-import cn.edu.tsinghua.iginx.engine.shared.data.write.RowDataView;
 import cn.edu.tsinghua.iginx.engine.shared.operator.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
@@ -41,19 +44,34 @@ import cn.edu.tsinghua.iginx.engine.shared.source.FragmentSource;
 import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
 import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
 import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
-import cn.edu.tsinghua.iginx.metadata.entity.StorageUnitMeta;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Bitmap;
-import cn.edu.tsinghua.iginx.utils.ByteUtils;
-import java.nio.ByteBuffer;
+import com.google.common.util.concurrent.RateLimiter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/** 分片迁移：将分片的列切分为若干列组并发复制。每个列组由一个线程读取并按列攒批，写入交给写线程异步执行，读取下一批与写入上一批重叠进行，同一列组同时最多有一个批次在写入。 */
 public class MigrationPhysicalExecutor {
 
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
   private static final MigrationPhysicalExecutor INSTANCE = new MigrationPhysicalExecutor();
 
+  // 所有迁移共享的写入限速器，为空时不限速
+  private final RateLimiter rateLimiter;
+
+  private MigrationPhysicalExecutor() {
+    long maxPointsPerSecond = config.getMigrationMaxPointsPerSecond();
+    rateLimiter = maxPointsPerSecond > 0 ? RateLimiter.create(maxPointsPerSecond) : null;
+  }
+
   public static MigrationPhysicalExecutor getInstance() {
     return INSTANCE;
   }
@@ -62,9 +80,130 @@ public class MigrationPhysicalExecutor {
       RequestContext ctx, Migration migration, StoragePhysicalTaskExecutor storageTaskExecutor)
       throws PhysicalException {
     FragmentMeta toMigrateFragment = migration.getFragmentMeta();
-    StorageUnitMeta targetStorageUnitMeta = migration.getTargetStorageUnitMeta();
+    String targetStorageUnitId = migration.getTargetStorageUnitMeta().getId();
+    List<List<String>> columnGroups =
+        splitColumnGroups(migration.getPaths(), config.getMigrationParallelism());
+
+    ExecutorService readPool = Executors.newFixedThreadPool(columnGroups.size());
+    ExecutorService writePool = Executors.newFixedThreadPool(columnGroups.size());
+    AtomicBoolean failed = new AtomicBoolean(false);
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (List<String> columnGroup : columnGroups) {
+        futures.add(
+            readPool.submit(
+                () -> {
+                  try {
+                    migrateColumnGroup(
+                        ctx,
+                        toMigrateFragment,
+                        columnGroup,
+                        targetStorageUnitId,
+                        storageTaskExecutor,
+                        writePool,
+                        failed);
+                  } catch (PhysicalException | RuntimeException e) {
+                    failed.set(true);
+                    throw e;
+                  }
+                  return null;
+                }));
+      }
+      PhysicalException exception = null;
+      for (Future<?> future : futures) {
+        try {
+          waitFor(future);
+        } catch (PhysicalException e) {
+          if (exception == null) {
+            exception = e;
+          }
+        }
+      }
+      if (exception != null) {
+        throw exception;
+      }
+    } finally {
+      readPool.shutdownNow();
+      writePool.shutdownNow();
+    }
+    return new EmptyRowStream();
+  }
+
+  /** 将有序的列切分为至多 parallelism 个连续的列组，列为空时仍返回一个空列组 */
+  static List<List<String>> splitColumnGroups(List<String> paths, int parallelism) {
+    int groupNum = Math.max(1, Math.min(parallelism, paths.size()));
+    if (groupNum == 1) {
+      return Collections.singletonList(paths);
+    }
+    List<List<String>> groups = new ArrayList<>(groupNum);
+    int groupSize = (paths.size() + groupNum - 1) / groupNum;
+    for (int start = 0; start < paths.size(); start += groupSize) {
+      groups.add(paths.subList(start, Math.min(paths.size(), start + groupSize)));
+    }
+    return groups;
+  }
+
+  private void migrateColumnGroup(
+      RequestContext ctx,
+      FragmentMeta toMigrateFragment,
+      List<String> paths,
+      String storageUnitId,
+      StoragePhysicalTaskExecutor storageTaskExecutor,
+      ExecutorService writePool,
+      AtomicBoolean failed)
+      throws PhysicalException {
+    RowStream selectRowStream =
+        queryColumnGroup(ctx, toMigrateFragment, paths, storageTaskExecutor);
+    try {
+      List<String> selectResultPaths = new ArrayList<>();
+      List<DataType> selectResultTypes = new ArrayList<>();
+      for (Field field : selectRowStream.getHeader().getFields()) {
+        selectResultPaths.add(field.getName());
+        selectResultTypes.add(field.getType());
+      }
+
+      int batchSize = (int) config.getMigrationBatchSize();
+      ColumnBatchBuilder builder = new ColumnBatchBuilder(selectResultTypes.size(), batchSize);
+      Future<?> pendingWrite = null;
+      while (selectRowStream.hasNext() && !failed.get()) {
+        builder.append(selectRowStream.next());
+        if (builder.size() == batchSize) {
+          RawData batch = builder.build(selectResultPaths, selectResultTypes);
+          int points = builder.points();
+          // 等待上一批写入完成后再提交当前批次，读取与写入重叠且内存中最多保留两个批次
+          waitFor(pendingWrite);
+          pendingWrite =
+              writePool.submit(
+                  () -> {
+                    insertDataByBatch(
+                        ctx, batch, points, toMigrateFragment, storageUnitId, storageTaskExecutor);
+                    return null;
+                  });
+          builder = new ColumnBatchBuilder(selectResultTypes.size(), batchSize);
+        }
+      }
+      waitFor(pendingWrite);
+      if (builder.size() > 0 && !failed.get()) {
+        insertDataByBatch(
+            ctx,
+            builder.build(selectResultPaths, selectResultTypes),
+            builder.points(),
+            toMigrateFragment,
+            storageUnitId,
+            storageTaskExecutor);
+      }
+    } finally {
+      selectRowStream.close();
+    }
+  }
+
+  private RowStream queryColumnGroup(
+      RequestContext ctx,
+      FragmentMeta toMigrateFragment,
+      List<String> paths,
+      StoragePhysicalTaskExecutor storageTaskExecutor)
+      throws PhysicalException {
     KeyInterval keyInterval = toMigrateFragment.getKeyInterval();
-    List<String> paths = migration.getPaths();
 
     // 查询分区数据
     List<Operator> projectOperators = new ArrayList<>();
@@ -85,101 +224,45 @@ public class MigrationPhysicalExecutor {
     storageTaskExecutor.commit(projectPhysicalTask);
 
     TaskExecuteResult selectResult = selectPhysicalTask.getResult();
-    RowStream selectRowStream = selectResult.getRowStream();
-
-    List<String> selectResultPaths = new ArrayList<>();
-    List<DataType> selectResultTypes = new ArrayList<>();
-    selectRowStream
-        .getHeader()
-        .getFields()
-        .forEach(
-            field -> {
-              selectResultPaths.add(field.getName());
-              selectResultTypes.add(field.getType());
-            });
-
-    List<Long> timestampList = new ArrayList<>();
-    List<ByteBuffer> valuesList = new ArrayList<>();
-    List<Bitmap> bitmapList = new ArrayList<>();
-    List<ByteBuffer> bitmapBufferList = new ArrayList<>();
-
-    boolean hasTimestamp = selectRowStream.getHeader().hasKey();
-    while (selectRowStream.hasNext()) {
-      Row row = selectRowStream.next();
-      Object[] rowValues = row.getValues();
-      valuesList.add(ByteUtils.getRowByteBuffer(rowValues, selectResultTypes));
-      Bitmap bitmap = new Bitmap(rowValues.length);
-      for (int i = 0; i < rowValues.length; i++) {
-        if (rowValues[i] != null) {
-          bitmap.mark(i);
-        }
-      }
-      bitmapBufferList.add(ByteBuffer.wrap(bitmap.getBytes()));
-      bitmapList.add(bitmap);
-      if (hasTimestamp) {
-        timestampList.add(row.getKey());
-      }
+    if (selectResult.getException() != null) {
+      throw selectResult.getException();
+    }
+    return selectResult.getRowStream();
+  }
 
-      // 按行批量插入数据
-      if (timestampList.size()
-          == ConfigDescriptor.getInstance().getConfig().getMigrationBatchSize()) {
-        insertDataByBatch(
-            ctx,
-            timestampList,
-            valuesList,
-            bitmapList,
-            bitmapBufferList,
-            toMigrateFragment,
-            selectResultPaths,
-            selectResultTypes,
-            targetStorageUnitMeta.getId(),
-            storageTaskExecutor);
-        timestampList.clear();
-        valuesList.clear();
-        bitmapList.clear();
-        bitmapBufferList.clear();
+  private static void waitFor(Future<?> future) throws PhysicalException {
+    if (future == null) {
+      return;
+    }
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PhysicalException("interrupted when migrating data", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof PhysicalException) {
+        throw (PhysicalException) e.getCause();
       }
+      throw new PhysicalException("encounter error when migrating data", e.getCause());
     }
-    insertDataByBatch(
-        ctx,
-        timestampList,
-        valuesList,
-        bitmapList,
-        bitmapBufferList,
-        toMigrateFragment,
-        selectResultPaths,
-        selectResultTypes,
-        targetStorageUnitMeta.getId(),
-        storageTaskExecutor);
-    return selectResult.getRowStream();
   }
 
   private void insertDataByBatch(
       RequestContext ctx,
-      List<Long> timestampList,
-      List<ByteBuffer> valuesList,
-      List<Bitmap> bitmapList,
-      List<ByteBuffer> bitmapBufferList,
+      RawData columnData,
+      int points,
       FragmentMeta toMigrateFragment,
-      List<String> selectResultPaths,
-      List<DataType> selectResultTypes,
       String storageUnitId,
       StoragePhysicalTaskExecutor storageTaskExecutor)
       throws PhysicalException {
-    // 按行批量插入数据
-    RawData rowData =
-        new RawData(
-            selectResultPaths,
-            Collections.emptyList(),
-            timestampList,
-            ByteUtils.getRowValuesByDataType(valuesList, selectResultTypes, bitmapBufferList),
-            selectResultTypes,
-            bitmapList,
-            RawDataType.NonAlignedRow);
-    RowDataView rowDataView =
-        new RowDataView(rowData, 0, selectResultPaths.size(), 0, timestampList.size());
+    if (rateLimiter != null && points > 0) {
+      rateLimiter.acquire(points);
+    }
+    // 按列批量插入数据
+    ColumnDataView columnDataView =
+        new ColumnDataView(columnData, 0, columnData.getPaths().size(), 0, columnData.getKeySize());
     List<Operator> insertOperators = new ArrayList<>();
-    insertOperators.add(new Insert(new FragmentSource(toMigrateFragment), rowDataView));
+    insertOperators.add(new Insert(new FragmentSource(toMigrateFragment), columnDataView));
     StoragePhysicalTask insertPhysicalTask = new StoragePhysicalTask(insertOperators, ctx);
     storageTaskExecutor.commitWithTargetStorageUnitId(insertPhysicalTask, storageUnitId);
     TaskExecuteResult insertResult = insertPhysicalTask.getResult();
@@ -187,4 +270,78 @@ public class MigrationPhysicalExecutor {
       throw insertResult.getException();
     }
   }
+
+  /** 将读取到的行直接按列写入各列的非空值数组与位图，无需经过字节序列化 */
+  static class ColumnBatchBuilder {
+
+    private final int capacity;
+
+    private final long[] keys;
+
+    private final List<List<Object>> columns;
+
+    private final List<Bitmap> bitmaps;
+
+    private int size = 0;
+
+    private int points = 0;
+
+    ColumnBatchBuilder(int columnNum, int capacity) {
+      this.capacity = capacity;
+      this.keys = new long[capacity];
+      this.columns = new ArrayList<>(columnNum);
+      this.bitmaps = new ArrayList<>(columnNum);
+      for (int i = 0; i < columnNum; i++) {
+        columns.add(new ArrayList<>());
+        bitmaps.add(new Bitmap(capacity));
+      }
+    }
+
+    void append(Row row) {
+      Object[] values = row.getValues();
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] != null) {
+          columns.get(i).add(values[i]);
+          bitmaps.get(i).mark(size);
+          points++;
+        }
+      }
+      keys[size++] = row.getKey();
+    }
+
+    int size() {
+      return size;
+    }
+
+    int points() {
+      return points;
+    }
+
+    RawData build(List<String> paths, List<DataType> types) {
+      Object[] valuesList = new Object[columns.size()];
+      List<Bitmap> batchBitmaps = new ArrayList<>(columns.size());
+      for (int i = 0; i < columns.size(); i++) {
+        valuesList[i] = columns.get(i).toArray();
+        batchBitmaps.add(size == capacity ? bitmaps.get(i) : shrink(bitmaps.get(i), size));
+      }
+      return new RawData(
+          paths,
+          Collections.emptyList(),
+          size == capacity ? keys : Arrays.copyOf(keys, size),
+          valuesList,
+          types,
+          batchBitmaps,
+          RawDataType.NonAlignedColumn);
+    }
+
+    private static Bitmap shrink(Bitmap bitmap, int size) {
+      Bitmap shrunk = new Bitmap(size);
+      for (int i = 0; i < size; i++) {
+        if (bitmap.get(i)) {
+          shrunk.mark(i);
+        }
+      }
+      return shrunk;
+    }
+  }
 }
@@ -77,9 +77,9 @@ public class Utils {
     switch (type) {
       case INSERT:
         InsertStatement insertStatement = (InsertStatement) statement;
-        List<Long> keys = insertStatement.getKeys();
-        return new KeyInterval(
-            Collections.min(keys), Collections.min(keys)); // interval should require coparison
+        long[] keys = insertStatement.getKeys();
+        long minKey = Arrays.stream(keys).min().getAsLong();
+        return new KeyInterval(minKey, minKey); // interval should require coparison
       case SELECT:
         UnarySelectStatement selectStatement = (UnarySelectStatement) statement;
         return new KeyInterval(selectStatement.getStartKey(), selectStatement.getEndKey());
@@ -0,0 +1,66 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.resource;
+
+/** 所有查询共享的全局内存池，容量小于等于 0 时不做限制 */
+public class MemoryPool {
+
+  private final long capacity;
+
+  private long used = 0;
+
+  public MemoryPool(long capacity) {
+    this.capacity = capacity;
+  }
+
+  public synchronized boolean tryReserve(long bytes) {
+    if (capacity > 0 && used + bytes > capacity) {
+      return false;
+    }
+    used += bytes;
+    return true;
+  }
+
+  /** 内存池空间不足时最多等待 timeoutMs 毫秒，等待其他查询释放内存 */
+  public synchronized boolean reserve(long bytes, long timeoutMs) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    while (!tryReserve(bytes)) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0 || bytes > capacity) {
+        return false;
+      }
+      wait(remaining);
+    }
+    return true;
+  }
+
+  public synchronized void release(long bytes) {
+    used = Math.max(0, used - bytes);
+    notifyAll();
+  }
+
+  public synchronized long getUsed() {
+    return used;
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+}
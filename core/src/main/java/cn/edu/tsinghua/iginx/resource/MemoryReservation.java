@@ -0,0 +1,105 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.resource;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.MemoryLimitExceededException;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+
+/**
+ * 单个内存算子持有的预留，按块向查询内存上下文申请以减少竞争，算子关闭时全部归还。
+ *
+ * <p>没有请求上下文时（例如单元测试中直接构造的算子）不做任何限制。
+ */
+public class MemoryReservation {
+
+  private static final long CHUNK_SIZE = 1024 * 1024L;
+
+  private final QueryMemoryContext memoryContext;
+
+  private long reserved = 0;
+
+  private long used = 0;
+
+  private MemoryReservation(QueryMemoryContext memoryContext) {
+    this.memoryContext = memoryContext;
+  }
+
+  public static MemoryReservation of(RequestContext context) {
+    if (context == null) {
+      return new MemoryReservation(null);
+    }
+    return new MemoryReservation(QueryResourceManager.getInstance().getMemoryContext(context));
+  }
+
+  /** 尝试预留内存，失败时不会阻塞，调用方应当将数据落盘 */
+  public synchronized boolean tryReserve(long bytes) {
+    if (memoryContext == null) {
+      return true;
+    }
+    if (used + bytes > reserved) {
+      long request = Math.max(used + bytes - reserved, CHUNK_SIZE);
+      if (!memoryContext.tryReserve(request)) {
+        // 按块申请失败时退回到只申请本次所需的大小
+        request = used + bytes - reserved;
+        if (!memoryContext.tryReserve(request)) {
+          return false;
+        }
+      }
+      reserved += request;
+    }
+    used += bytes;
+    return true;
+  }
+
+  /** 预留内存，全局内存池不足时等待，超时或超出单查询上限时抛出异常 */
+  public synchronized void reserve(long bytes) throws MemoryLimitExceededException {
+    if (memoryContext == null) {
+      return;
+    }
+    if (used + bytes > reserved) {
+      long request = used + bytes - reserved;
+      if (request < CHUNK_SIZE && memoryContext.tryReserve(CHUNK_SIZE)) {
+        request = CHUNK_SIZE;
+      } else {
+        memoryContext.reserve(request);
+      }
+      reserved += request;
+    }
+    used += bytes;
+  }
+
+  /** 归还部分已使用的内存，已申请的块仍由该预留持有，供之后复用 */
+  public synchronized void release(long bytes) {
+    used = Math.max(0, used - bytes);
+  }
+
+  /** 释放算子已使用的全部内存，例如数据已经落盘 */
+  public synchronized void releaseAll() {
+    used = 0;
+    if (memoryContext != null && reserved > 0) {
+      memoryContext.release(reserved);
+    }
+    reserved = 0;
+  }
+
+  public synchronized long getUsed() {
+    return used;
+  }
+}
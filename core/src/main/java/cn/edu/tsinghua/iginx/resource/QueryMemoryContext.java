@@ -0,0 +1,158 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.resource;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.MemoryLimitExceededException;
+
+/**
+ * 单个查询的内存记账。内存算子缓存数据前需要先在此预留，预留同时受单查询上限和全局内存池的约束。
+ *
+ * <p>可以落盘的算子使用 {@link #tryReserve(long)}，失败时转为落盘；其余算子使用 {@link #reserve(long)}，全局内存池不足时等待其他查询释放，
+ * 超时或超出单查询上限时抛出异常。
+ */
+public class QueryMemoryContext {
+
+  private final long queryId;
+
+  private final long sessionId;
+
+  private final long limit;
+
+  private final long waitTimeout;
+
+  private final MemoryPool pool;
+
+  private long used = 0;
+
+  private long pending = 0; // 已计入 used 但尚未从内存池获得的字节数
+
+  private long peak = 0;
+
+  private boolean closed = false;
+
+  public QueryMemoryContext(
+      long queryId, long sessionId, long limit, long waitTimeout, MemoryPool pool) {
+    this.queryId = queryId;
+    this.sessionId = sessionId;
+    this.limit = limit;
+    this.waitTimeout = waitTimeout;
+    this.pool = pool;
+  }
+
+  public synchronized boolean tryReserve(long bytes) {
+    if (closed || exceedsLimit(bytes) || !pool.tryReserve(bytes)) {
+      return false;
+    }
+    add(bytes);
+    return true;
+  }
+
+  public void reserve(long bytes) throws MemoryLimitExceededException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      if (exceedsLimit(bytes)) {
+        throw new MemoryLimitExceededException(
+            String.format(
+                "query %d exceeds its memory limit: used %d bytes, requested %d bytes, limit %d bytes",
+                queryId, used, bytes, limit));
+      }
+      // 等待内存池前先计入本查询，避免同一查询的并发预留都通过上限检查
+      used += bytes;
+      pending += bytes;
+    }
+    boolean reserved;
+    try {
+      reserved = pool.reserve(bytes, waitTimeout);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      reserved = false;
+    }
+    synchronized (this) {
+      if (closed) {
+        if (reserved) {
+          pool.release(bytes);
+        }
+        return;
+      }
+      pending -= bytes;
+      if (reserved) {
+        peak = Math.max(peak, used);
+        return;
+      }
+      used -= bytes;
+    }
+    throw new MemoryLimitExceededException(
+        String.format(
+            "query %d cannot reserve %d bytes: global query memory pool is exhausted (%d/%d bytes)",
+            queryId, bytes, pool.getUsed(), pool.getCapacity()));
+  }
+
+  public synchronized void release(long bytes) {
+    if (closed) {
+      return;
+    }
+    long released = Math.min(bytes, used - pending);
+    used -= released;
+    pool.release(released);
+  }
+
+  /** 查询结束时释放所有尚未归还的内存 */
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    // 仍在等待内存池的预留由等待方自行处理
+    pool.release(used - pending);
+    used = 0;
+    pending = 0;
+    closed = true;
+  }
+
+  private boolean exceedsLimit(long bytes) {
+    return limit > 0 && used + bytes > limit;
+  }
+
+  private void add(long bytes) {
+    used += bytes;
+    peak = Math.max(peak, used);
+  }
+
+  public long getQueryId() {
+    return queryId;
+  }
+
+  public long getSessionId() {
+    return sessionId;
+  }
+
+  public long getLimit() {
+    return limit;
+  }
+
+  public synchronized long getUsed() {
+    return used;
+  }
+
+  public synchronized long getPeak() {
+    return peak;
+  }
+}
@@ -19,16 +19,33 @@
  */
 package cn.edu.tsinghua.iginx.resource;
 
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 public class QueryResourceManager {
 
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
   private final ConcurrentMap<Long, RequestContext> queries;
 
+  private final ConcurrentMap<Long, QueryMemoryContext> memoryContexts;
+
+  private final MemoryPool memoryPool;
+
   private QueryResourceManager() {
     this.queries = new ConcurrentHashMap<>();
+    this.memoryContexts = new ConcurrentHashMap<>();
+    long poolSize = config.getQueryMemoryPoolSize();
+    if (poolSize == 0) {
+      poolSize = Runtime.getRuntime().maxMemory() / 2;
+    }
+    this.memoryPool = new MemoryPool(poolSize);
   }
 
   public static QueryResourceManager getInstance() {
@@ -45,6 +62,42 @@ public class QueryResourceManager {
 
   public void releaseQuery(long queryId) {
     queries.remove(queryId);
+    releaseMemory(queryId);
+  }
+
+  public QueryMemoryContext getMemoryContext(RequestContext context) {
+    return memoryContexts.computeIfAbsent(
+        context.getId(),
+        id ->
+            new QueryMemoryContext(
+                id,
+                context.getSessionId(),
+                config.getQueryMemoryLimit(),
+                config.getQueryMemoryWaitTimeout(),
+                memoryPool));
+  }
+
+  /** 查询结束后归还其尚未释放的内存 */
+  public void releaseMemory(long queryId) {
+    QueryMemoryContext memoryContext = memoryContexts.remove(queryId);
+    if (memoryContext != null) {
+      memoryContext.close();
+    }
+  }
+
+  public List<QueryMemoryContext> getMemoryContexts() {
+    List<QueryMemoryContext> contexts = new ArrayList<>(memoryContexts.values());
+    contexts.sort(Comparator.comparingLong(QueryMemoryContext::getQueryId));
+    return contexts;
+  }
+
+  /** 查询内存池已被占满时拒绝新的查询，避免与正在执行的查询争抢内存；写入不使用查询内存池，不受影响 */
+  public boolean isMemoryPoolExhausted() {
+    return memoryPool.getCapacity() > 0 && memoryPool.getUsed() >= memoryPool.getCapacity();
+  }
+
+  public MemoryPool getMemoryPool() {
+    return memoryPool;
   }
 
   private static class QueryManagerHolder {
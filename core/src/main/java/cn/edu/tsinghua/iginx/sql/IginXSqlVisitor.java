@@ -130,6 +130,7 @@ import cn.edu.tsinghua.iginx.sql.SqlParser.ShowColumnsStatementContext;
 import cn.edu.tsinghua.iginx.sql.SqlParser.ShowConfigStatementContext;
 import cn.edu.tsinghua.iginx.sql.SqlParser.ShowEligibleJobStatementContext;
 import cn.edu.tsinghua.iginx.sql.SqlParser.ShowJobStatusStatementContext;
+import cn.edu.tsinghua.iginx.sql.SqlParser.ShowQueriesStatementContext;
 import cn.edu.tsinghua.iginx.sql.SqlParser.ShowRegisterTaskStatementContext;
 import cn.edu.tsinghua.iginx.sql.SqlParser.ShowReplicationStatementContext;
 import cn.edu.tsinghua.iginx.sql.SqlParser.ShowRulesStatementContext;
@@ -367,6 +368,8 @@ public class IginXSqlVisitor extends SqlBaseVisitor<Statement> {
     if (ctx.EXPLAIN() != null) {
       if (ctx.PHYSICAL() != null) {
         selectStatement.setNeedPhysicalExplain(true);
+      } else if (ctx.ANALYZE() != null) {
+        selectStatement.setNeedAnalyzeExplain(true);
       } else {
         selectStatement.setNeedLogicalExplain(true);
       }
@@ -964,6 +967,11 @@ public class IginXSqlVisitor extends SqlBaseVisitor<Statement> {
     return new ShowSessionIDStatement();
   }
 
+  @Override
+  public Statement visitShowQueriesStatement(ShowQueriesStatementContext ctx) {
+    return new ShowQueriesStatement();
+  }
+
   @Override
   public Statement visitSetRulesStatement(SetRulesStatementContext ctx) {
     Map<String, Boolean> rulesChange = new HashMap<>();
@@ -2128,7 +2136,7 @@ public class IginXSqlVisitor extends SqlBaseVisitor<Statement> {
 
     int size = insertMultiValues.size();
     int vSize = insertMultiValues.get(0).constant().size();
-    Long[] times = new Long[size];
+    long[] times = new long[size];
     Object[][] values = new Object[vSize][size];
     DataType[] types = new DataType[vSize];
 
@@ -2159,7 +2167,7 @@ public class IginXSqlVisitor extends SqlBaseVisitor<Statement> {
       }
     }
 
-    insertStatement.setKeys(new ArrayList<>(Arrays.asList(times)));
+    insertStatement.setKeys(times);
     insertStatement.setValues(values);
     insertStatement.setTypes(new ArrayList<>(Arrays.asList(types)));
   }
@@ -34,7 +34,7 @@ public class InsertStatement extends DataStatement {
   private List<String> paths; // full paths, prefixed by the above prefixPath
   private Map<String, String> globalTags;
   private List<Map<String, String>> tagsList;
-  private List<Long> keys;
+  private long[] keys;
   private Object[] values; // 按列组织，每个元数是一列
   private List<DataType> types;
   private List<Bitmap> bitmaps;
@@ -51,7 +51,7 @@ public class InsertStatement extends DataStatement {
   public InsertStatement(
       RawDataType rawDataType,
       List<String> paths,
-      List<Long> keys,
+      long[] keys,
       Object[] values,
       List<DataType> types,
       List<Bitmap> bitmaps,
@@ -66,6 +66,10 @@ public class InsertStatement extends DataStatement {
     this.tagsList = tagsList;
   }
 
+  public RawDataType getRawDataType() {
+    return rawDataType;
+  }
+
   public String getPrefixPath() {
     return prefixPath;
   }
@@ -111,11 +115,11 @@ public class InsertStatement extends DataStatement {
     this.tagsList = tagsList;
   }
 
-  public List<Long> getKeys() {
+  public long[] getKeys() {
     return keys;
   }
 
-  public void setKeys(List<Long> keys) {
+  public void setKeys(long[] keys) {
     this.keys = keys;
   }
 
@@ -144,29 +148,32 @@ public class InsertStatement extends DataStatement {
   }
 
   public long getStartKey() {
-    return keys.get(0);
+    return keys[0];
   }
 
   public long getEndKey() {
-    return keys.get(keys.size() - 1);
+    return keys[keys.length - 1];
   }
 
   public void sortData() {
-    Integer[] index = new Integer[keys.size()];
-    for (int i = 0; i < keys.size(); i++) {
-      index[i] = i;
-    }
-    Arrays.sort(index, Comparator.comparingLong(keys::get));
-    Collections.sort(keys);
-    for (int i = 0; i < values.length; i++) {
-      Object[] tmpValues = new Object[index.length];
-      for (int j = 0; j < index.length; j++) {
-        tmpValues[j] = ((Object[]) values[i])[index[j]];
+    if (!isSorted(keys)) {
+      Integer[] index = new Integer[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+        index[i] = i;
+      }
+      long[] unsortedKeys = keys;
+      Arrays.sort(index, Comparator.comparingLong(i -> unsortedKeys[i]));
+      Arrays.sort(keys);
+      for (int i = 0; i < values.length; i++) {
+        Object[] tmpValues = new Object[index.length];
+        for (int j = 0; j < index.length; j++) {
+          tmpValues[j] = ((Object[]) values[i])[index[j]];
+        }
+        values[i] = tmpValues;
       }
-      values[i] = tmpValues;
     }
 
-    index = new Integer[paths.size()];
+    Integer[] index = new Integer[paths.size()];
     for (int i = 0; i < paths.size(); i++) {
       index[i] = i;
     }
@@ -185,8 +192,8 @@ public class InsertStatement extends DataStatement {
 
     for (int i = 0; i < sortedValuesList.length; i++) {
       Object[] values = (Object[]) sortedValuesList[i];
-      Bitmap bitmap = new Bitmap(keys.size());
-      for (int j = 0; j < keys.size(); j++) {
+      Bitmap bitmap = new Bitmap(keys.length);
+      for (int j = 0; j < keys.length; j++) {
         if (values[j] != null) {
           bitmap.mark(j);
         }
@@ -199,6 +206,15 @@ public class InsertStatement extends DataStatement {
     tagsList = sortedTagsList;
   }
 
+  private static boolean isSorted(long[] keys) {
+    for (int i = 1; i < keys.length; i++) {
+      if (keys[i - 1] > keys[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public RawData getRawData() {
     List<Map<String, String>> tagsList = this.tagsList;
     if (globalTags != null) {
@@ -0,0 +1,101 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.sql.statement;
+
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.engine.shared.Result;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.exception.StatementExecutionException;
+import cn.edu.tsinghua.iginx.resource.QueryMemoryContext;
+import cn.edu.tsinghua.iginx.resource.QueryResourceManager;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.Bitmap;
+import cn.edu.tsinghua.iginx.utils.ByteUtils;
+import cn.edu.tsinghua.iginx.utils.RpcUtils;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** 展示当前正在执行的查询及其内存占用 */
+public class ShowQueriesStatement extends SystemStatement {
+
+  private static final List<String> COLUMNS =
+      Arrays.asList("QueryID", "SessionID", "MemoryUsed", "PeakMemory", "MemoryLimit");
+
+  public ShowQueriesStatement() {
+    this.statementType = StatementType.SHOW_QUERIES;
+  }
+
+  @Override
+  public void execute(RequestContext ctx) throws StatementExecutionException {
+    List<Field> fields = new ArrayList<>();
+    COLUMNS.forEach(column -> fields.add(new Field(column, DataType.LONG)));
+    Header header = new Header(fields);
+    List<DataType> types = Collections.nCopies(COLUMNS.size(), DataType.LONG);
+
+    List<Row> rowList = new ArrayList<>();
+    for (QueryMemoryContext query : QueryResourceManager.getInstance().getMemoryContexts()) {
+      if (query.getQueryId() == ctx.getId()) {
+        continue;
+      }
+      rowList.add(
+          new Row(
+              header,
+              new Object[] {
+                query.getQueryId(),
+                query.getSessionId(),
+                query.getUsed(),
+                query.getPeak(),
+                query.getLimit()
+              }));
+    }
+
+    Result result = new Result(RpcUtils.SUCCESS);
+    if (ctx.isUseStream()) {
+      result.setResultStream(new Table(header, rowList));
+    } else {
+      List<ByteBuffer> valuesList = new ArrayList<>();
+      List<ByteBuffer> bitmapList = new ArrayList<>();
+      for (Row row : rowList) {
+        valuesList.add(ByteUtils.getRowByteBuffer(row.getValues(), types));
+        Bitmap bitmap = new Bitmap(COLUMNS.size());
+        for (int i = 0; i < COLUMNS.size(); i++) {
+          bitmap.mark(i);
+        }
+        bitmapList.add(ByteBuffer.wrap(bitmap.getBytes()));
+      }
+      List<Map<String, String>> tagsList = new ArrayList<>();
+      COLUMNS.forEach(column -> tagsList.add(new HashMap<>()));
+      result.setPaths(COLUMNS);
+      result.setTagsList(tagsList);
+      result.setDataTypes(types);
+      result.setValuesList(valuesList);
+      result.setBitmapList(bitmapList);
+    }
+    ctx.setResult(result);
+  }
+}
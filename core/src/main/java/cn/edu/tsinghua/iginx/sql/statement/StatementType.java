@@ -52,6 +52,7 @@ public enum StatementType {
   SET_CONFIG,
   SHOW_CONFIG,
   SHOW_SESSION_ID,
+  SHOW_QUERIES,
   COMPACT,
   SHOW_RULES,
   SET_RULES
@@ -62,7 +62,7 @@ public class ExecuteStatisticsCollector extends AbstractStageStatisticsCollector
     detailInfo.v += statistics.getEndTime() - statistics.getStartTime();
     if (statement.getType() == StatementType.INSERT) {
       InsertStatement insertStatement = (InsertStatement) statement;
-      insertPoints += (long) insertStatement.getKeys().size() * insertStatement.getPaths().size();
+      insertPoints += (long) insertStatement.getKeys().length * insertStatement.getPaths().size();
     }
     if (statement.getType() == StatementType.SELECT) {
       Result result = statistics.getContext().getResult();
@@ -0,0 +1,132 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CsvBatchLoaderTest {
+
+  private ExecutorService pool;
+
+  @Before
+  public void setUp() {
+    pool = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  public void testNextBatch() {
+    Iterator<Integer> iterator = Arrays.asList(1, 2, 3, 4, 5, 6, 7).iterator();
+    assertEquals(Arrays.asList(1, 2, 3), CsvBatchLoader.nextBatch(iterator, 3));
+    assertEquals(Arrays.asList(4, 5, 6), CsvBatchLoader.nextBatch(iterator, 3));
+    assertEquals(Collections.singletonList(7), CsvBatchLoader.nextBatch(iterator, 3));
+    assertTrue(CsvBatchLoader.nextBatch(iterator, 3).isEmpty());
+  }
+
+  @Test
+  public void testOverlappingBatchesKeepFileOrder() throws Exception {
+    CsvBatchLoader loader = new CsvBatchLoader(pool, 4);
+    List<Integer> written = new CopyOnWriteArrayList<>();
+    CountDownLatch secondStarted = new CountDownLatch(1);
+    // 第一批等待第二批开始后才写完，key 范围不重叠的批次可以并发写入
+    assertTrue(
+        loader.submit(
+            0,
+            10,
+            () -> {
+              boolean concurrent = secondStarted.await(10, TimeUnit.SECONDS);
+              written.add(1);
+              return concurrent;
+            }));
+    assertTrue(
+        loader.submit(
+            20,
+            30,
+            () -> {
+              secondStarted.countDown();
+              written.add(2);
+              return true;
+            }));
+    // 与第一批 key 范围重叠，必须在第一批写完之后写入
+    assertTrue(
+        loader.submit(
+            5,
+            6,
+            () -> {
+              written.add(3);
+              return true;
+            }));
+    assertTrue(loader.await());
+    assertEquals(3, written.size());
+    assertTrue(written.indexOf(1) < written.indexOf(3));
+    assertTrue(written.indexOf(2) < written.indexOf(1));
+  }
+
+  @Test
+  public void testFailedBatchStopsLoading() throws Exception {
+    CsvBatchLoader loader = new CsvBatchLoader(pool, 1);
+    assertTrue(loader.submit(0, 0, () -> false));
+    // 并发额度为 1，提交第二批时第一批已经写完并失败
+    assertFalse(loader.submit(1, 1, () -> true));
+    assertTrue(loader.hasFailed());
+    assertFalse(loader.await());
+  }
+
+  @Test
+  public void testExceptionPropagates() throws Exception {
+    CsvBatchLoader loader = new CsvBatchLoader(pool, 2);
+    IllegalStateException cause = new IllegalStateException("bad batch");
+    assertTrue(
+        loader.submit(
+            0,
+            0,
+            () -> {
+              throw cause;
+            }));
+    try {
+      loader.await();
+      fail();
+    } catch (ExecutionException e) {
+      assertEquals(cause, e.getCause());
+    }
+    assertTrue(loader.hasFailed());
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.write.RawDataType;
+import cn.edu.tsinghua.iginx.sql.statement.InsertStatement;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.Bitmap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class InsertCoalescerTest {
+
+  private static Bitmap bitmap(int size, int... marks) {
+    Bitmap bitmap = new Bitmap(size);
+    for (int mark : marks) {
+      bitmap.mark(mark);
+    }
+    return bitmap;
+  }
+
+  @Test
+  public void testMergeRowAndColumnInserts() {
+    // a.b 在 key=1,2 上有值，a.c 只在 key=2 上有值
+    InsertStatement row =
+        new InsertStatement(
+            RawDataType.Row,
+            Arrays.asList("a.b", "a.c"),
+            new long[] {1L, 2L},
+            new Object[] {new Object[] {1L}, new Object[] {2L, 2.5}},
+            Arrays.asList(DataType.LONG, DataType.DOUBLE),
+            Arrays.asList(bitmap(2, 0), bitmap(2, 0, 1)),
+            null);
+    // a.a 在 key=3 上有值，a.b 覆盖 key=2 上的值
+    InsertStatement column =
+        new InsertStatement(
+            RawDataType.Column,
+            Arrays.asList("a.a", "a.b"),
+            new long[] {2L, 3L},
+            new Object[] {new Object[] {true}, new Object[] {20L}},
+            Arrays.asList(DataType.BOOLEAN, DataType.LONG),
+            Arrays.asList(bitmap(2, 1), bitmap(2, 0)),
+            new ArrayList<>());
+
+    InsertCoalescer.Buffer buffer = new InsertCoalescer.Buffer();
+    assertTrue(buffer.add(row));
+    assertTrue(buffer.add(column));
+    assertEquals(4, buffer.getPoints());
+
+    InsertStatement merged = buffer.toStatement();
+    assertEquals(RawDataType.NonAlignedColumn, merged.getRawDataType());
+    assertEquals(Arrays.asList("a.a", "a.b", "a.c"), merged.getPaths());
+    assertArrayEquals(new long[] {1L, 2L, 3L}, merged.getKeys());
+    assertEquals(
+        Arrays.asList(DataType.BOOLEAN, DataType.LONG, DataType.DOUBLE), merged.getTypes());
+    assertArrayEquals(new Object[] {true}, (Object[]) merged.getValues()[0]);
+    assertArrayEquals(new Object[] {1L, 20L}, (Object[]) merged.getValues()[1]);
+    assertArrayEquals(new Object[] {2.5}, (Object[]) merged.getValues()[2]);
+    assertTrue(merged.getBitmaps().get(0).get(2));
+    assertFalse(merged.getBitmaps().get(0).get(0));
+    assertTrue(merged.getBitmaps().get(2).get(1));
+  }
+
+  @Test
+  public void testRejectTypeConflict() {
+    InsertCoalescer.Buffer buffer = new InsertCoalescer.Buffer();
+    List<Bitmap> bitmaps = Collections.singletonList(bitmap(1, 0));
+    assertTrue(
+        buffer.add(
+            new InsertStatement(
+                RawDataType.NonAlignedColumn,
+                Collections.singletonList("a.b"),
+                new long[] {1L},
+                new Object[] {new Object[] {1L}},
+                Collections.singletonList(DataType.LONG),
+                bitmaps,
+                null)));
+    assertFalse(
+        buffer.add(
+            new InsertStatement(
+                RawDataType.NonAlignedColumn,
+                Collections.singletonList("a.b"),
+                new long[] {2L},
+                new Object[] {new Object[] {"x".getBytes()}},
+                Collections.singletonList(DataType.BINARY),
+                bitmaps,
+                null)));
+    assertEquals(1, buffer.getPoints());
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.engine.shared.source.FragmentSource;
+import cn.edu.tsinghua.iginx.metadata.IMetaManager;
+import cn.edu.tsinghua.iginx.metadata.MetaManagerMock;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import cn.edu.tsinghua.iginx.metadata.hook.PyFunctionChangeHook;
+import cn.edu.tsinghua.iginx.sql.TestUtils;
+import cn.edu.tsinghua.iginx.sql.statement.Statement;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class PlanCacheTest {
+
+  private static final Operator ROOT =
+      new Project(
+          new FragmentSource(new FragmentMeta(null, null, 0, 0)),
+          Collections.singletonList("a.b"),
+          null);
+
+  @Test
+  public void testNormalize() {
+    assertEquals(
+        "SELECT a FROM b WHERE c = \"x  y\"",
+        PlanCache.normalize("  SELECT a\n  FROM\tb WHERE c = \"x  y\" ;  "));
+    assertEquals("SELECT a FROM b", PlanCache.normalize("SELECT a FROM b;"));
+  }
+
+  @Test
+  public void testCacheable() {
+    String select = "SELECT a FROM b;";
+    assertTrue(PlanCache.isCacheable(select, TestUtils.buildStatement(select)));
+    String explain = "EXPLAIN SELECT a FROM b;";
+    assertFalse(PlanCache.isCacheable(explain, TestUtils.buildStatement(explain)));
+    String analyze = "EXPLAIN ANALYZE SELECT a FROM b;";
+    assertFalse(PlanCache.isCacheable(analyze, TestUtils.buildStatement(analyze)));
+    String insert = "INSERT INTO a (key, b) VALUES (1, 1);";
+    assertFalse(PlanCache.isCacheable(insert, TestUtils.buildStatement(insert)));
+  }
+
+  @Test
+  public void testPutAndInvalidate() {
+    PlanCache cache = new PlanCache(MetaManagerMock.getInstance(), 2);
+    String sql = "SELECT a FROM b;";
+    Statement statement = TestUtils.buildStatement(sql);
+
+    long version = cache.getVersion();
+    cache.put(sql, version, statement, ROOT);
+    PlanCache.CachedPlan plan = cache.get("SELECT  a FROM b");
+    assertNotNull(plan);
+    assertNotSame(plan.copyRoot(), plan.copyRoot());
+
+    // 生成计划期间缓存被清空，得到的计划不再放入缓存
+    cache.invalidate();
+    assertNull(cache.get(sql));
+    cache.put(sql, version, statement, ROOT);
+    assertNull(cache.get(sql));
+
+    // 超过容量时淘汰最久未使用的计划
+    version = cache.getVersion();
+    cache.put("SELECT a FROM c;", version, statement, ROOT);
+    cache.put("SELECT a FROM d;", version, statement, ROOT);
+    cache.put("SELECT a FROM e;", version, statement, ROOT);
+    assertEquals(2, cache.size());
+    assertNull(cache.get("SELECT a FROM c;"));
+  }
+
+  @Test
+  public void testInvalidateOnPyFunctionChange() {
+    List<PyFunctionChangeHook> hooks = new ArrayList<>();
+    IMetaManager metaManager =
+        (IMetaManager)
+            Proxy.newProxyInstance(
+                IMetaManager.class.getClassLoader(),
+                new Class<?>[] {IMetaManager.class},
+                (proxy, method, args) -> {
+                  if (method.getName().equals("registerPyFunctionChangeHook")) {
+                    hooks.add((PyFunctionChangeHook) args[0]);
+                  }
+                  return null;
+                });
+    PlanCache cache = new PlanCache(metaManager, 2);
+    assertEquals(1, hooks.size());
+
+    String sql = "SELECT a FROM b;";
+    cache.put(sql, cache.getVersion(), TestUtils.buildStatement(sql), ROOT);
+    assertNotNull(cache.get(sql));
+
+    // 删除或重新定义 Python 函数后，缓存的计划不能继续使用旧的函数
+    hooks.get(0).onChange("udf", null);
+    assertNull(cache.get(sql));
+  }
+}
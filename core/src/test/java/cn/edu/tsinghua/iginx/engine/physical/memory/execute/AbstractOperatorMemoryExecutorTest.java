@@ -39,8 +39,12 @@ import cn.edu.tsinghua.iginx.engine.shared.expr.KeyExpression;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.Avg;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.FirstValue;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.Last;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.LastValue;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
 import cn.edu.tsinghua.iginx.engine.shared.operator.CrossJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Except;
@@ -56,6 +60,7 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SingleJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.TopN;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Union;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.BoolFilter;
@@ -2255,6 +2260,29 @@ public abstract class AbstractOperatorMemoryExecutorTest {
     assertFalse(stream.hasNext());
   }
 
+  @Test
+  public void testTopN() throws PhysicalException {
+    Table table = generateTableForUnaryOperator(true);
+    Table copyTable = generateTableForUnaryOperator(true);
+    TopN topN =
+        new TopN(
+            EmptySource.EMPTY_SOURCE,
+            Collections.singletonList(new BaseExpression("a.a.b")),
+            Collections.singletonList(Sort.SortType.DESC),
+            3,
+            2);
+    RowStream stream = getExecutor().executeUnaryOperator(topN, copyTable, null);
+    assertEquals(table.getHeader(), stream.getHeader());
+    int index = 7;
+    while (stream.hasNext()) {
+      Row targetRow = stream.next();
+      Row row = table.getRow(index);
+      assertEquals(row, targetRow);
+      index--;
+    }
+    assertEquals(4, index);
+  }
+
   @Test
   public void testDownsample() throws PhysicalException {
     Table table = generateTableForUnaryOperator(true);
@@ -2294,6 +2322,70 @@ public abstract class AbstractOperatorMemoryExecutorTest {
     assertEquals(table.getRowSize(), index);
   }
 
+  @Test
+  public void testSlidingDownsample() throws PhysicalException {
+    Table table = generateTableForUnaryOperator(true);
+
+    FunctionParams params =
+        new FunctionParams(Collections.singletonList(new BaseExpression("a.a.b")));
+
+    Downsample downsample =
+        new Downsample(
+            EmptySource.EMPTY_SOURCE,
+            4,
+            2,
+            Collections.singletonList(new FunctionCall(Avg.getInstance(), params)),
+            new KeyRange(0, 10));
+    RowStream stream = getExecutor().executeUnaryOperator(downsample, table, null);
+
+    // 窗口 [0, 3], [2, 5], [4, 7], [6, 9]
+    long windowStart = 0;
+    while (stream.hasNext()) {
+      Row targetRow = stream.next();
+      assertEquals(windowStart, targetRow.getKey());
+      assertEquals(windowStart + 3, (long) targetRow.getValue(1));
+      assertEquals(windowStart + 1.5, (double) targetRow.getValue(2), 0.01);
+      windowStart += 2;
+    }
+    assertEquals(8, windowStart);
+  }
+
+  @Test
+  public void testSlidingDownsampleWithMultipleFunctions() throws PhysicalException {
+    Table table = generateTableForUnaryOperator(true);
+
+    FunctionParams params =
+        new FunctionParams(Collections.singletonList(new BaseExpression("a.a.b")));
+
+    Downsample downsample =
+        new Downsample(
+            EmptySource.EMPTY_SOURCE,
+            4,
+            3,
+            Arrays.asList(
+                new FunctionCall(Sum.getInstance(), params),
+                new FunctionCall(Count.getInstance(), params),
+                new FunctionCall(FirstValue.getInstance(), params),
+                new FunctionCall(LastValue.getInstance(), params)),
+            new KeyRange(0, 10));
+    RowStream stream = getExecutor().executeUnaryOperator(downsample, table, null);
+
+    // 窗口 [0, 3], [3, 6], [6, 9]
+    long windowStart = 0;
+    while (stream.hasNext()) {
+      Row targetRow = stream.next();
+      long windowEnd = windowStart + 3;
+      assertEquals(windowStart, targetRow.getKey());
+      assertEquals(windowEnd, (long) targetRow.getValue(1));
+      assertEquals((windowStart + windowEnd) * 2, ((Number) targetRow.getValue(2)).longValue());
+      assertEquals(4L, ((Number) targetRow.getValue(3)).longValue());
+      assertEquals((int) windowStart, targetRow.getValue(4));
+      assertEquals((int) windowEnd, targetRow.getValue(5));
+      windowStart += 3;
+    }
+    assertEquals(9, windowStart);
+  }
+
   @Test(expected = InvalidOperatorParameterException.class)
   public void testDownsampleWithoutTimestamp() throws PhysicalException {
     Table table = generateTableForUnaryOperator(false);
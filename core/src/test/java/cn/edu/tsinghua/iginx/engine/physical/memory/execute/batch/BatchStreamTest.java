@@ -0,0 +1,153 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.engine.shared.source.EmptySource;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class BatchStreamTest {
+
+  private Table generateTable() {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(new Field("a.a", DataType.LONG), new Field("a.b", DataType.DOUBLE)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Double b = i % 2 == 0 ? null : i * 0.5;
+      rows.add(new Row(header, i, new Object[] {(long) i, b}));
+    }
+    return new Table(header, rows);
+  }
+
+  @Test
+  public void testRoundTrip() throws PhysicalException {
+    Table table = generateTable();
+    RowStream stream = new BatchToRowStream(new RowToBatchStream(generateTable(), 7));
+    assertEquals(table.getHeader(), stream.getHeader());
+    int index = 0;
+    while (stream.hasNext()) {
+      assertEquals(table.getRow(index), stream.next());
+      index++;
+    }
+    assertEquals(table.getRowSize(), index);
+  }
+
+  @Test
+  public void testSelect() throws PhysicalException {
+    Table table = generateTable();
+    Select select =
+        new Select(
+            EmptySource.EMPTY_SOURCE,
+            new AndFilter(
+                Arrays.asList(
+                    new KeyFilter(Op.GE, 10), new ValueFilter("a.a", Op.L, new Value(20.0D)))),
+            null);
+    RowStream stream =
+        new BatchToRowStream(new SelectBatchStream(select, new RowToBatchStream(table, 16)));
+    int index = 10;
+    while (stream.hasNext()) {
+      assertEquals(table.getRow(index), stream.next());
+      index++;
+    }
+    assertEquals(20, index);
+  }
+
+  @Test
+  public void testFloatFilterMatchesRowPath() throws PhysicalException {
+    Header header =
+        new Header(Field.KEY, Collections.singletonList(new Field("a.f", DataType.FLOAT)));
+    float[] values = {0.1f, 0.2f, -0.0f, 0.0f, 1.5f, 16777217f, -3.3f, 0.30000001f};
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < values.length; i++) {
+      rows.add(new Row(header, i, new Object[] {values[i]}));
+    }
+    rows.add(new Row(header, values.length, new Object[] {null}));
+    ColumnBatch batch = ColumnBatch.fromRows(header, rows);
+
+    double[] targets = {0.1, 0.2, 0.0, -0.0, 1.5, 16777216.0, -3.3, 0.3};
+    for (double target : targets) {
+      for (Op op : Arrays.asList(Op.E, Op.NE, Op.L, Op.LE, Op.G, Op.GE)) {
+        ValueFilter filter = new ValueFilter("a.f", op, new Value(target));
+        boolean[] mask = BatchFilterUtils.evaluate(filter, batch);
+        for (int i = 0; i < rows.size(); i++) {
+          assertEquals(
+              filter + " on " + rows.get(i), FilterUtils.validate(filter, rows.get(i)), mask[i]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testProjectSkipsEmptyRows() throws PhysicalException {
+    Table table = generateTable();
+    Project project = new Project(EmptySource.EMPTY_SOURCE, Collections.singletonList("a.b"), null);
+    BatchStream batchStream = new ProjectBatchStream(project, new RowToBatchStream(table, 10));
+    assertEquals(1, batchStream.getHeader().getFieldSize());
+
+    int count = 0;
+    while (batchStream.hasNext()) {
+      ColumnBatch batch = batchStream.next();
+      for (int i = 0; i < batch.getSize(); i++) {
+        assertEquals(1, batch.getKey(i) % 2);
+        assertEquals(batch.getKey(i) * 0.5, batch.getColumn(0).getDouble(i), 0);
+        count++;
+      }
+    }
+    assertEquals(50, count);
+    assertFalse(batchStream.hasNext());
+  }
+
+  @Test
+  public void testSelectionKeepsNulls() {
+    Table table = generateTable();
+    ColumnBatch batch = ColumnBatch.fromRows(table.getHeader(), table.getRows());
+    ColumnBatch selected = batch.select(new int[] {2, 3}, 2);
+    assertArrayEquals(new long[] {2, 3}, selected.getKeys());
+    assertNull(selected.getColumn(1).getObject(0));
+    assertEquals(1.5, (Double) selected.getColumn(1).getObject(1), 0);
+    assertSame(batch, batch.select(new int[0], batch.getSize()));
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Expression;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.operator.GroupBy;
+import cn.edu.tsinghua.iginx.engine.shared.source.EmptySource;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GroupBySpillTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  private String spillDir;
+
+  private int parallelThreshold;
+
+  @Before
+  public void setUp() {
+    spillDir = config.getSpillDir();
+    parallelThreshold = config.getParallelGroupByRowsThreshold();
+    config.setSpillDir(folder.getRoot().getAbsolutePath());
+  }
+
+  @After
+  public void tearDown() {
+    config.setSpillDir(spillDir);
+    config.setParallelGroupByRowsThreshold(parallelThreshold);
+  }
+
+  private Table generateTable() {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(new Field("b.g", DataType.BINARY), new Field("a.v", DataType.INTEGER)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      Integer v = i % 7 == 0 ? null : i % 13;
+      rows.add(new Row(header, i, new Object[] {("g" + i % 37).getBytes(), v}));
+    }
+    return new Table(header, rows);
+  }
+
+  /** distinct 不支持增量计算，需要缓存每个分组的原始行 */
+  private GroupBy generateGroupBy() {
+    List<FunctionCall> functionCalls = new ArrayList<>();
+    List<Expression> expressions = Collections.singletonList(new BaseExpression("a.v"));
+    functionCalls.add(
+        new FunctionCall(Sum.getInstance(), new FunctionParams(expressions, null, null, true)));
+    functionCalls.add(
+        new FunctionCall(Count.getInstance(), new FunctionParams(expressions, null, null, true)));
+    return new GroupBy(
+        EmptySource.EMPTY_SOURCE,
+        Collections.singletonList(new BaseExpression("b.g")),
+        functionCalls);
+  }
+
+  private List<Row> collect(RowStream stream) throws PhysicalException {
+    List<Row> rows = new ArrayList<>();
+    while (stream.hasNext()) {
+      rows.add(stream.next());
+    }
+    stream.close();
+    rows.sort(Comparator.comparing(row -> new String((byte[]) row.getValue(0))));
+    return rows;
+  }
+
+  private void assertSameResult(List<Row> expected, List<Row> actual) {
+    assertEquals(37, expected.size());
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertArrayEquals((byte[]) expected.get(i).getValue(0), (byte[]) actual.get(i).getValue(0));
+      assertEquals(expected.get(i).getValue(1), actual.get(i).getValue(1));
+      assertEquals(expected.get(i).getValue(2), actual.get(i).getValue(2));
+    }
+    File[] remaining = folder.getRoot().listFiles();
+    assertEquals(0, remaining == null ? 0 : remaining.length);
+  }
+
+  @Test
+  public void testSpillMatchesInMemoryGroupBy() throws PhysicalException {
+    GroupBy groupBy = generateGroupBy();
+    List<Row> expected = collect(new GroupByLazyStream(groupBy, generateTable(), 0));
+    List<Row> actual = collect(new GroupByLazyStream(groupBy, generateTable(), 4096));
+    assertSameResult(expected, actual);
+  }
+
+  @Test
+  public void testSpillDuringParallelGroupBy() throws PhysicalException {
+    GroupBy groupBy = generateGroupBy();
+    List<Row> expected = collect(new GroupByLazyStream(groupBy, generateTable(), 0));
+    // 超过并行阈值后，由并行读取的 worker 发现超出预算
+    config.setParallelGroupByRowsThreshold(100);
+    List<Row> actual = collect(new GroupByLazyStream(groupBy, generateTable(), 64 * 1024));
+    assertSameResult(expected, actual);
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.InnerJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.OuterJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.PathFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.JoinAlgType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OuterJoinType;
+import cn.edu.tsinghua.iginx.engine.shared.source.EmptySource;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HashJoinSpillTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  private String spillDir;
+
+  @Before
+  public void setUp() {
+    spillDir = config.getSpillDir();
+    config.setSpillDir(folder.getRoot().getAbsolutePath());
+  }
+
+  @After
+  public void tearDown() {
+    config.setSpillDir(spillDir);
+  }
+
+  private Table generateTableA() {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(new Field("a.a", DataType.INTEGER), new Field("a.b", DataType.DOUBLE)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      Integer a = i % 50 == 0 ? null : i % 120;
+      rows.add(new Row(header, i, new Object[] {a, i * 0.5}));
+    }
+    return new Table(header, rows);
+  }
+
+  private Table generateTableB() {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(new Field("b.k", DataType.LONG), new Field("b.c", DataType.BINARY)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 400; i++) {
+      rows.add(new Row(header, i, new Object[] {(long) (i % 150), ("v" + i).getBytes()}));
+    }
+    return new Table(header, rows);
+  }
+
+  private List<String> collect(RowStream stream) throws PhysicalException {
+    List<String> rows = new ArrayList<>();
+    while (stream.hasNext()) {
+      Row row = stream.next();
+      StringBuilder builder = new StringBuilder().append(row.getKey());
+      for (Object value : row.getValues()) {
+        builder.append(',');
+        builder.append(value instanceof byte[] ? new String((byte[]) value) : value);
+      }
+      rows.add(builder.toString());
+    }
+    stream.close();
+    Collections.sort(rows);
+    return rows;
+  }
+
+  private void assertNoSpillFileLeft() {
+    File[] remaining = folder.getRoot().listFiles();
+    assertEquals(0, remaining == null ? 0 : remaining.length);
+  }
+
+  @Test
+  public void testInnerJoin() throws PhysicalException {
+    InnerJoin innerJoin =
+        new InnerJoin(
+            EmptySource.EMPTY_SOURCE,
+            EmptySource.EMPTY_SOURCE,
+            "a",
+            "b",
+            new PathFilter("a.a", Op.E, "b.k"),
+            Collections.emptyList(),
+            false,
+            JoinAlgType.HashJoin);
+    List<String> expected =
+        collect(new HashInnerJoinLazyStream(innerJoin, generateTableA(), generateTableB(), 0));
+    List<String> actual =
+        collect(new HashInnerJoinLazyStream(innerJoin, generateTableA(), generateTableB(), 1024));
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, actual);
+    assertNoSpillFileLeft();
+  }
+
+  @Test
+  public void testOuterJoin() throws PhysicalException {
+    for (OuterJoinType type : OuterJoinType.values()) {
+      OuterJoin outerJoin =
+          new OuterJoin(
+              EmptySource.EMPTY_SOURCE,
+              EmptySource.EMPTY_SOURCE,
+              "a",
+              "b",
+              type,
+              new PathFilter("a.a", Op.E, "b.k"),
+              Collections.emptyList(),
+              false,
+              JoinAlgType.HashJoin);
+      List<String> expected =
+          collect(new HashOuterJoinLazyStream(outerJoin, generateTableA(), generateTableB(), 0));
+      List<String> actual =
+          collect(new HashOuterJoinLazyStream(outerJoin, generateTableA(), generateTableB(), 1024));
+      assertFalse(expected.isEmpty());
+      assertEquals(expected, actual);
+      assertNoSpillFileLeft();
+    }
+  }
+}
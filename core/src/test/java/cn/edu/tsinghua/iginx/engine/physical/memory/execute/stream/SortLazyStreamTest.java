@@ -0,0 +1,178 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.source.EmptySource;
+import cn.edu.tsinghua.iginx.resource.MemoryPool;
+import cn.edu.tsinghua.iginx.resource.QueryResourceManager;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.SnowFlakeUtils;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SortLazyStreamTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  private String spillDir;
+
+  @Before
+  public void setUp() {
+    spillDir = config.getSpillDir();
+    config.setSpillDir(folder.getRoot().getAbsolutePath());
+  }
+
+  @After
+  public void tearDown() {
+    config.setSpillDir(spillDir);
+  }
+
+  private Table generateTable() {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(
+                new Field("a.a", DataType.INTEGER),
+                new Field("a.b", DataType.BINARY),
+                new Field("a.c", DataType.DOUBLE)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      Double c = i % 3 == 0 ? null : i * 0.5;
+      rows.add(new Row(header, i, new Object[] {(i * 7919) % 37, ("v" + i % 11).getBytes(), c}));
+    }
+    return new Table(header, rows);
+  }
+
+  private List<Row> collect(RowStream stream) throws PhysicalException {
+    List<Row> rows = new ArrayList<>();
+    while (stream.hasNext()) {
+      rows.add(stream.next());
+    }
+    stream.close();
+    return rows;
+  }
+
+  @Test
+  public void testSpillMatchesInMemorySort() throws PhysicalException {
+    Sort sort =
+        new Sort(
+            EmptySource.EMPTY_SOURCE,
+            Arrays.asList(new BaseExpression("a.a"), new BaseExpression("a.b")),
+            Arrays.asList(Sort.SortType.ASC, Sort.SortType.DESC));
+    List<Row> expected = collect(new SortLazyStream(sort, generateTable(), 0));
+    List<Row> actual = collect(new SortLazyStream(sort, generateTable(), 4096));
+
+    assertEquals(1000, expected.size());
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      // 比较 key 以确认相等的行保持了原有的先后顺序
+      assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+      assertEquals(expected.get(i).getValue(0), actual.get(i).getValue(0));
+      assertArrayEquals((byte[]) expected.get(i).getValue(1), (byte[]) actual.get(i).getValue(1));
+      assertEquals(expected.get(i).getValue(2), actual.get(i).getValue(2));
+    }
+    File[] remaining = folder.getRoot().listFiles();
+    assertEquals(0, remaining == null ? 0 : remaining.length);
+  }
+
+  @Test
+  public void testWaitForMemoryBeforeMinRunSize() throws Exception {
+    Sort sort =
+        new Sort(
+            EmptySource.EMPTY_SOURCE,
+            Collections.singletonList(new BaseExpression("a.a")),
+            Collections.singletonList(Sort.SortType.ASC));
+    SnowFlakeUtils.init(0);
+    RequestContext context = new RequestContext();
+    MemoryPool pool = QueryResourceManager.getInstance().getMemoryPool();
+    long exhausted = pool.getCapacity() - pool.getUsed();
+    assertTrue(pool.tryReserve(exhausted));
+    Thread releaser =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(100);
+              } catch (InterruptedException ignored) {
+              }
+              pool.release(exhausted);
+            });
+    releaser.start();
+    try {
+      RowStream stream = new SortLazyStream(sort, generateTable(), 1024 * 1024 * 1024L);
+      stream.setContext(context);
+      assertTrue(stream.hasNext());
+      // 内存池耗尽时不会为每一行单独产生一个有序段
+      File[] spilled = folder.getRoot().listFiles();
+      assertEquals(0, spilled == null ? 0 : spilled.length);
+      assertEquals(1000, collect(stream).size());
+    } finally {
+      releaser.join();
+      QueryResourceManager.getInstance().releaseMemory(context.getId());
+    }
+  }
+
+  @Test
+  public void testSpillEveryRow() throws PhysicalException {
+    Sort sort =
+        new Sort(
+            EmptySource.EMPTY_SOURCE,
+            Collections.singletonList(new BaseExpression("a.a")),
+            Collections.singletonList(Sort.SortType.DESC));
+    RowStream stream = new SortLazyStream(sort, generateTable(), 1);
+    Row prev = null;
+    int count = 0;
+    while (stream.hasNext()) {
+      Row row = stream.next();
+      if (prev != null) {
+        assertFalse((int) prev.getValue(0) < (int) row.getValue(0));
+      }
+      prev = row;
+      count++;
+    }
+    stream.close();
+    assertEquals(1000, count);
+  }
+}
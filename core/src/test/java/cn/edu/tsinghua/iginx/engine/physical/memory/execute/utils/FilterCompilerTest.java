@@ -0,0 +1,162 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BinaryExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BracketExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.ConstantExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Expression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.KeyExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.expr.UnaryExpression;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.BoolFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ExprFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.InFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.NotFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.PathFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class FilterCompilerTest {
+
+  private static final Header HEADER =
+      new Header(
+          Field.KEY,
+          Arrays.asList(
+              new Field("a.i", DataType.INTEGER),
+              new Field("a.l", DataType.LONG),
+              new Field("a.f", DataType.FLOAT),
+              new Field("a.d", DataType.DOUBLE),
+              new Field("a.s", DataType.BINARY)));
+
+  private List<Row> generateRows() {
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      rows.add(
+          new Row(
+              HEADER,
+              i,
+              new Object[] {
+                i % 5 == 0 ? null : i,
+                (long) (i * 2),
+                i % 7 == 0 ? null : i * 1.1f,
+                i * 0.5,
+                ("v" + i % 10).getBytes()
+              }));
+    }
+    return rows;
+  }
+
+  private List<Filter> generateFilters() {
+    return Arrays.asList(
+        new BoolFilter(true),
+        new KeyFilter(Op.GE, 10),
+        new ValueFilter("a.i", Op.L, new Value(20)),
+        new ValueFilter("a.i", Op.GE, new Value(20.5D)),
+        new ValueFilter("a.f", Op.E, new Value(2.2D)),
+        new ValueFilter("a.f", Op.LE, new Value(11.0F)),
+        new ValueFilter("a.s", Op.E, new Value("v3".getBytes())),
+        new ValueFilter("a.s", Op.LIKE, new Value("v[1-3]".getBytes())),
+        new ValueFilter("a.s", Op.E, new Value(3L)),
+        new ValueFilter("a.*", Op.G, new Value(3)),
+        new ValueFilter("a.*", Op.G_AND, new Value(3)),
+        new ValueFilter("b.x", Op.E, new Value(3)),
+        new PathFilter("a.i", Op.NE, "a.l"),
+        new PathFilter("a.l", Op.G, "a.d"),
+        new PathFilter("a.s", Op.E, "a.s"),
+        new InFilter("a.l", InFilter.InOp.IN_OR, Arrays.asList(new Value(4L), new Value(8L))),
+        new InFilter("a.l", InFilter.InOp.NOT_IN_AND, Arrays.asList(new Value(4L))),
+        new ExprFilter(
+            new BinaryExpression(
+                new BaseExpression("a.i"), new BaseExpression("a.d"), Operator.PLUS),
+            Op.G,
+            new ConstantExpression(30.0D)),
+        new OrFilter(
+            Arrays.asList(
+                new NotFilter(new KeyFilter(Op.L, 40)),
+                new AndFilter(
+                    Arrays.asList(
+                        new ValueFilter("a.d", Op.L, new Value(5L)), new KeyFilter(Op.NE, 3))))));
+  }
+
+  @Test
+  public void testSameResultAsFilterUtils() throws PhysicalException {
+    List<Row> rows = generateRows();
+    for (Filter filter : generateFilters()) {
+      FilterCompiler.RowPredicate predicate = FilterCompiler.compile(filter, HEADER);
+      for (Row row : rows) {
+        assertEquals(filter + " on " + row, FilterUtils.validate(filter, row), predicate.test(row));
+      }
+    }
+  }
+
+  @Test
+  public void testFallbackOnOtherHeader() throws PhysicalException {
+    Filter filter = new ValueFilter("a.l", Op.GE, new Value(10L));
+    FilterCompiler.RowPredicate predicate = FilterCompiler.compile(filter, HEADER);
+    Header other =
+        new Header(
+            Field.KEY,
+            Arrays.asList(new Field("a.s", DataType.BINARY), new Field("a.l", DataType.LONG)));
+    assertTrue(predicate.test(new Row(other, 1, new Object[] {null, 12L})));
+    assertFalse(predicate.test(new Row(other, 1, new Object[] {null, 2L})));
+  }
+
+  @Test
+  public void testExprSameResultAsExprUtils() throws PhysicalException {
+    List<Expression> exprList =
+        Arrays.asList(
+            new BinaryExpression(
+                new BaseExpression("a.l"), new ConstantExpression(3L), Operator.STAR),
+            new BinaryExpression(
+                new BaseExpression("a.i"), new BaseExpression("a.f"), Operator.DIV),
+            new UnaryExpression(
+                Operator.MINUS,
+                new BracketExpression(
+                    new BinaryExpression(
+                        new BaseExpression("a.d"), new KeyExpression("key"), Operator.MINUS))),
+            new BaseExpression("b.x"));
+    for (Expression expr : exprList) {
+      ExprCompiler.RowEvaluator evaluator = ExprCompiler.compile(expr, HEADER);
+      for (Row row : generateRows()) {
+        assertEquals(ExprUtils.calculateExpr(row, expr), evaluator.evaluate(row));
+      }
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.IncrementalAggregator.AggregateState;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.expr.Expression;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Avg;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.FirstValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.LastValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.operator.GroupBy;
+import cn.edu.tsinghua.iginx.engine.shared.source.EmptySource;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class IncrementalAggregatorTest {
+
+  private Table generateTable() {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(
+                new Field("b.g", DataType.BINARY),
+                new Field("a.v", DataType.INTEGER),
+                new Field("a.d", DataType.DOUBLE)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      Integer v = i % 7 == 0 ? null : i;
+      rows.add(
+          new Row(
+              header, i, new Object[] {("g" + i % 5).getBytes(), v, i % 3 == 0 ? null : i * 0.5}));
+    }
+    return new Table(header, rows);
+  }
+
+  private GroupBy generateGroupBy(boolean distinct) {
+    List<FunctionCall> functionCalls = new ArrayList<>();
+    List<SetMappingFunction> functions =
+        Arrays.asList(
+            Sum.getInstance(),
+            Count.getInstance(),
+            Avg.getInstance(),
+            Min.getInstance(),
+            Max.getInstance(),
+            FirstValue.getInstance(),
+            LastValue.getInstance());
+    for (SetMappingFunction function : functions) {
+      List<Expression> expressions = Collections.singletonList(new BaseExpression("a.*"));
+      functionCalls.add(
+          new FunctionCall(function, new FunctionParams(expressions, null, null, distinct)));
+    }
+    return new GroupBy(
+        EmptySource.EMPTY_SOURCE,
+        Collections.singletonList(new BaseExpression("b.g")),
+        functionCalls);
+  }
+
+  @Test
+  public void testSameAsCachedGroupBy() throws PhysicalException {
+    Table table = generateTable();
+    GroupBy groupBy = generateGroupBy(false);
+    List<Row> expected = RowUtils.cacheGroupByResult(groupBy, table);
+
+    IncrementalAggregator aggregator = IncrementalAggregator.tryCreate(groupBy, table.getHeader());
+    assertNotNull(aggregator);
+    Map<GroupByKey, AggregateState[]> groups = aggregator.newGroups();
+    // 模拟并行时的分段聚合与合并
+    Map<GroupByKey, AggregateState[]> partial = aggregator.newGroups();
+    for (int i = 0; i < table.getRowSize(); i++) {
+      aggregator.update(i % 2 == 0 ? groups : partial, table.getRow(i), i);
+    }
+    aggregator.merge(groups, partial);
+    List<Row> actual = aggregator.getResult(groups);
+
+    assertEquals(expected.get(0).getHeader(), actual.get(0).getHeader());
+    assertEquals(expected.size(), actual.size());
+    Comparator<Row> comparator = Comparator.comparing(row -> new String((byte[]) row.getValue(0)));
+    expected.sort(comparator);
+    actual.sort(comparator);
+    for (int i = 0; i < expected.size(); i++) {
+      Object[] expectedValues = expected.get(i).getValues();
+      Object[] actualValues = actual.get(i).getValues();
+      assertArrayEquals((byte[]) expectedValues[0], (byte[]) actualValues[0]);
+      for (int j = 1; j < expectedValues.length; j++) {
+        if (expectedValues[j] instanceof Double) {
+          assertEquals((double) expectedValues[j], (double) actualValues[j], 1e-9);
+        } else {
+          assertEquals(expectedValues[j], actualValues[j]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testUnsupported() throws PhysicalException {
+    Table table = generateTable();
+    assertNull(IncrementalAggregator.tryCreate(generateGroupBy(true), table.getHeader()));
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.storage.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.source.FragmentSource;
+import cn.edu.tsinghua.iginx.metadata.MetaManagerMock;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import cn.edu.tsinghua.iginx.metadata.entity.IginxMeta;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StorageResultCacheTest {
+
+  private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
+  private static final FragmentMeta HISTORICAL = new FragmentMeta(null, null, 0, 100, "unit0");
+
+  private static final FragmentMeta LATEST =
+      new FragmentMeta(null, null, 100, Long.MAX_VALUE, "unit1");
+
+  private boolean enableResultCache;
+
+  @Before
+  public void setUp() {
+    enableResultCache = config.isEnableResultCache();
+    config.setEnableResultCache(true);
+  }
+
+  @After
+  public void tearDown() {
+    config.setEnableResultCache(enableResultCache);
+  }
+
+  private static List<Operator> operators(FragmentMeta fragment, long beginKey, long endKey) {
+    Project project =
+        new Project(new FragmentSource(fragment), Collections.singletonList("a.a"), null);
+    Select select =
+        new Select(
+            new FragmentSource(fragment),
+            new AndFilter(
+                Arrays.asList(new KeyFilter(Op.GE, beginKey), new KeyFilter(Op.L, endKey))),
+            null);
+    return Arrays.asList(project, select);
+  }
+
+  private static Table generateTable(int size) {
+    Header header =
+        new Header(Field.KEY, Collections.singletonList(new Field("a.a", DataType.LONG)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      rows.add(new Row(header, i, new Object[] {(long) i}));
+    }
+    return new Table(header, rows);
+  }
+
+  private static int drain(RowStream stream) throws PhysicalException {
+    int count = 0;
+    while (stream.hasNext()) {
+      stream.next();
+      count++;
+    }
+    stream.close();
+    return count;
+  }
+
+  @Test
+  public void testKey() {
+    StorageResultCache cache = new StorageResultCache(MetaManagerMock.getInstance(), 1 << 20);
+    assertNull(cache.getKey(LATEST, false, operators(LATEST, 0, 200)));
+    assertNull(cache.getKey(HISTORICAL, true, operators(HISTORICAL, 0, 200)));
+    // 滑动窗口完整覆盖历史分片时，不同的窗口得到相同的键
+    assertEquals(
+        cache.getKey(HISTORICAL, false, operators(HISTORICAL, 0, 200)),
+        cache.getKey(HISTORICAL, false, operators(HISTORICAL, -10, 150)));
+    assertFalse(
+        cache
+            .getKey(HISTORICAL, false, operators(HISTORICAL, 0, 200))
+            .equals(cache.getKey(HISTORICAL, false, operators(HISTORICAL, 50, 200))));
+  }
+
+  @Test
+  public void testCacheAndInvalidate() throws PhysicalException {
+    StorageResultCache cache = new StorageResultCache(MetaManagerMock.getInstance(), 1 << 20);
+    String key = cache.getKey(HISTORICAL, false, operators(HISTORICAL, 0, 200));
+    assertNotNull(key);
+
+    long stamp = cache.getStamp(HISTORICAL);
+    assertEquals(10, drain(cache.cache(key, HISTORICAL, stamp, generateTable(10))));
+    RowStream cached = cache.get(key);
+    assertNotNull(cached);
+    assertEquals(10, drain(cached));
+
+    cache.invalidate(HISTORICAL);
+    assertNull(cache.get(key));
+    assertEquals(0, cache.getUsedMemory());
+
+    // 查询期间分片上发生过写入，结果不放入缓存
+    RowStream stream = cache.cache(key, HISTORICAL, stamp, generateTable(10));
+    assertEquals(10, drain(stream));
+    assertNull(cache.get(key));
+  }
+
+  @Test
+  public void testMemoryBudget() throws PhysicalException {
+    StorageResultCache cache = new StorageResultCache(MetaManagerMock.getInstance(), 1 << 16);
+    String key = cache.getKey(HISTORICAL, false, operators(HISTORICAL, 0, 200));
+    long stamp = cache.getStamp(HISTORICAL);
+    // 超过单条缓存上限的结果不缓存
+    assertEquals(10000, drain(cache.cache(key, HISTORICAL, stamp, generateTable(10000))));
+    assertNull(cache.get(key));
+
+    for (int i = 0; i < 20; i++) {
+      FragmentMeta fragment = new FragmentMeta(null, null, i * 100, i * 100 + 100, "unit0");
+      String fragmentKey = cache.getKey(fragment, false, operators(fragment, 0, 10000));
+      drain(cache.cache(fragmentKey, fragment, cache.getStamp(fragment), generateTable(100)));
+    }
+    assertTrue(cache.getUsedMemory() <= 1 << 16);
+    assertTrue(cache.size() < 20);
+  }
+
+  @Test
+  public void testDisabledWithMultipleNodes() throws PhysicalException {
+    MetaManagerMock metaManager = MetaManagerMock.getInstance();
+    StorageResultCache cache = new StorageResultCache(metaManager, 1 << 20);
+    String key = cache.getKey(HISTORICAL, false, operators(HISTORICAL, 0, 200));
+    drain(cache.cache(key, HISTORICAL, cache.getStamp(HISTORICAL), generateTable(10)));
+    assertEquals(1, cache.size());
+
+    // 其他节点上的写入无法使本节点的缓存失效，发现其他节点后清空缓存且不再缓存
+    metaManager.setIginxList(
+        Arrays.asList(
+            new IginxMeta(0, "127.0.0.1", 6888, null), new IginxMeta(1, "127.0.0.1", 6889, null)));
+    try {
+      assertNull(cache.getKey(HISTORICAL, false, operators(HISTORICAL, 0, 200)));
+      assertEquals(0, cache.size());
+    } finally {
+      metaManager.setIginxList(null);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.storage.queue;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.physical.task.StoragePhysicalTask;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.utils.SnowFlakeUtils;
+import java.util.Collections;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class StoragePhysicalTaskQueueTest {
+
+  @BeforeClass
+  public static void setUp() {
+    SnowFlakeUtils.init(0);
+  }
+
+  private StoragePhysicalTask createTask(RequestContext context) {
+    return new StoragePhysicalTask(Collections.emptyList(), null, true, false, context);
+  }
+
+  @Test
+  public void testForegroundTaskFirst() {
+    StoragePhysicalTaskQueue queue = new StoragePhysicalTaskQueue(1, false);
+    StoragePhysicalTask background1 = createTask(new RequestContext());
+    StoragePhysicalTask foreground1 = createTask(new RequestContext(1));
+    StoragePhysicalTask background2 = createTask(null);
+    StoragePhysicalTask foreground2 = createTask(new RequestContext(2));
+    queue.addTask(background1);
+    queue.addTask(foreground1);
+    queue.addTask(background2);
+    queue.addTask(foreground2);
+    assertTrue(foreground1.getQueuedTime() > 0);
+
+    assertSame(foreground1, queue.pollTask());
+    // 重新放回的任务仍然位于同优先级任务之前
+    queue.addTaskFirst(foreground1);
+    assertSame(foreground1, queue.pollTask());
+    assertSame(foreground2, queue.pollTask());
+    assertSame(background1, queue.pollTask());
+    assertSame(background2, queue.pollTask());
+    assertNull(queue.pollTask());
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void testSchedule() {
+    StoragePhysicalTaskQueue queue = new StoragePhysicalTaskQueue(1, true);
+    assertTrue(queue.trySchedule());
+    assertFalse(queue.trySchedule());
+    queue.finishSchedule();
+    assertTrue(queue.trySchedule());
+  }
+
+  @Test
+  public void testParkAndUnpark() {
+    StoragePhysicalTaskQueue queue = new StoragePhysicalTaskQueue(1, false);
+    assertTrue(queue.trySchedule());
+    assertFalse(queue.unpark());
+    queue.park(false);
+    assertFalse(queue.isParkedForBackground());
+    // 引擎归还额度与排队超时可能同时唤醒，只能有一方恢复调度
+    assertTrue(queue.unpark());
+    assertFalse(queue.unpark());
+    // 暂停期间仍保留调度权
+    assertFalse(queue.trySchedule());
+  }
+
+  @Test
+  public void testUserTaskBypassesBlockedBackgroundTask() {
+    StoragePhysicalTaskQueue queue = new StoragePhysicalTaskQueue(1, false);
+    StoragePhysicalTask background = createTask(null);
+    StoragePhysicalTask foreground = createTask(new RequestContext(1));
+    queue.addTask(background);
+    assertSame(background, queue.pollTask());
+    // 后台任务等待额度时放回队首，之后到达的用户任务仍可出队
+    queue.addTaskFirst(background);
+    assertNull(queue.pollUserTask());
+    queue.park(true);
+    assertTrue(queue.isParkedForBackground());
+    queue.addTask(foreground);
+    assertTrue(queue.unpark());
+    assertFalse(queue.isParkedForBackground());
+    assertSame(foreground, queue.pollUserTask());
+    assertSame(background, queue.pollTask());
+  }
+
+  @Test
+  public void testSingleTimeout() {
+    StoragePhysicalTaskQueue queue = new StoragePhysicalTaskQueue(1, false);
+    assertTrue(queue.tryScheduleTimeout());
+    // 反复暂停时不重复登记超时检查
+    assertFalse(queue.tryScheduleTimeout());
+    queue.finishTimeout();
+    assertTrue(queue.tryScheduleTimeout());
+  }
+}
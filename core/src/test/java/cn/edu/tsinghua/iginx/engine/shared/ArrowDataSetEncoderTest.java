@@ -0,0 +1,87 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.shared;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.junit.Test;
+
+public class ArrowDataSetEncoderTest {
+
+  @Test
+  public void testEncodeInBatches() throws PhysicalException, IOException {
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(new Field("a.a", DataType.DOUBLE), new Field("a.b", DataType.BINARY)));
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      Double a = i % 3 == 0 ? null : i * 1.5;
+      rows.add(new Row(header, i, new Object[] {a, ("v" + i).getBytes()}));
+    }
+    Table table = new Table(header, rows);
+
+    int key = 0;
+    while (table.hasNext()) {
+      ArrowDataSetEncoder.EncodedBatch batch = ArrowDataSetEncoder.encode(table, 4, 1 << 20);
+      try (RootAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+          ArrowStreamReader reader =
+              new ArrowStreamReader(new ByteArrayInputStream(batch.arrowData.array()), allocator)) {
+        assertTrue(reader.loadNextBatch());
+        VectorSchemaRoot root = reader.getVectorSchemaRoot();
+        assertEquals(batch.rowCount, root.getRowCount());
+        assertEquals(Field.KEY.getFullName(), root.getVector(0).getName());
+        assertEquals("a.a", root.getVector(1).getName());
+        for (int i = 0; i < root.getRowCount(); i++, key++) {
+          assertEquals(key, ((BigIntVector) root.getVector(0)).get(i));
+          Float8Vector a = (Float8Vector) root.getVector(1);
+          if (key % 3 == 0) {
+            assertTrue(a.isNull(i));
+          } else {
+            assertEquals(key * 1.5, a.get(i), 0);
+          }
+          assertArrayEquals(("v" + key).getBytes(), ((VarCharVector) root.getVector(2)).get(i));
+        }
+        assertFalse(reader.loadNextBatch());
+      }
+    }
+    assertEquals(10, key);
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.data.write;
+
+import static org.junit.Assert.assertEquals;
+
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.Bitmap;
+import java.util.Collections;
+import org.junit.Test;
+
+public class DataViewTest {
+
+  private static DataView buildView(long[] keys, int startKeyIndex, int endKeyIndex) {
+    Bitmap bitmap = new Bitmap(keys.length);
+    Object[] values = new Object[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      bitmap.mark(i);
+      values[i] = (long) i;
+    }
+    RawData data =
+        new RawData(
+            Collections.singletonList("a.b"),
+            Collections.emptyList(),
+            keys,
+            new Object[] {values},
+            Collections.singletonList(DataType.LONG),
+            Collections.singletonList(bitmap),
+            RawDataType.Column);
+    return new ColumnDataView(data, 0, 1, startKeyIndex, endKeyIndex);
+  }
+
+  @Test
+  public void testGetKeyIndex() {
+    DataView view = buildView(new long[] {1, 3, 5, 7, 9}, 1, 4);
+    assertEquals(0, view.getKeyIndex(3));
+    assertEquals(2, view.getKeyIndex(7));
+    assertEquals(-1, view.getKeyIndex(1));
+    assertEquals(-1, view.getKeyIndex(9));
+    assertEquals(-1, view.getKeyIndex(4));
+  }
+
+  @Test
+  public void testGetKeyIndexWithDuplicateKeys() {
+    // 重复的 key 返回第一个位置，与 indexOf 一致
+    long[] keys = {1, 2, 2, 2, 2, 2, 2, 3, 3};
+    DataView view = buildView(keys, 0, keys.length);
+    assertEquals(1, view.getKeyIndex(2));
+    assertEquals(7, view.getKeyIndex(3));
+
+    // 视图从重复的 key 中间开始时，不越过视图的起点
+    view = buildView(keys, 3, keys.length);
+    assertEquals(0, view.getKeyIndex(2));
+    assertEquals(4, view.getKeyIndex(3));
+  }
+}
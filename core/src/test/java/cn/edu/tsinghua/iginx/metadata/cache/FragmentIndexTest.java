@@ -0,0 +1,146 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.metadata.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.metadata.entity.ColumnsInterval;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
+import cn.edu.tsinghua.iginx.utils.Pair;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+
+public class FragmentIndexTest {
+
+  private final Random random = new Random(20240101L);
+
+  private String randomColumn(boolean nullable) {
+    if (nullable && random.nextInt(10) == 0) {
+      return null;
+    }
+    return "root.sg" + random.nextInt(30) + ".d" + random.nextInt(10);
+  }
+
+  private List<Pair<ColumnsInterval, List<FragmentMeta>>> generateFragments(int size) {
+    TreeSet<ColumnsInterval> columnsIntervals = new TreeSet<>();
+    while (columnsIntervals.size() < size) {
+      String start = randomColumn(true);
+      String end = randomColumn(true);
+      if (start != null && end != null && start.compareTo(end) >= 0) {
+        continue;
+      }
+      columnsIntervals.add(new ColumnsInterval(start, end));
+    }
+    List<Pair<ColumnsInterval, List<FragmentMeta>>> sortedLists = new ArrayList<>();
+    for (ColumnsInterval columnsInterval : columnsIntervals) {
+      List<FragmentMeta> fragments = new ArrayList<>();
+      long startKey = random.nextInt(100);
+      for (int i = random.nextInt(4); i >= 0; i--) {
+        long endKey = i == 0 ? Long.MAX_VALUE : startKey + 1 + random.nextInt(100);
+        fragments.add(
+            new FragmentMeta(
+                columnsInterval.getStartColumn(),
+                columnsInterval.getEndColumn(),
+                startKey,
+                endKey));
+        startKey = endKey;
+      }
+      sortedLists.add(new Pair<>(columnsInterval, fragments));
+    }
+    return sortedLists;
+  }
+
+  private static List<ColumnsInterval> keys(List<Pair<ColumnsInterval, List<FragmentMeta>>> lists) {
+    List<ColumnsInterval> keys = new ArrayList<>();
+    lists.forEach(e -> keys.add(e.k));
+    return keys;
+  }
+
+  @Test
+  public void testSameResultAsLinearScan() {
+    List<Pair<ColumnsInterval, List<FragmentMeta>>> sortedLists = generateFragments(200);
+    FragmentIndex index = FragmentIndex.of(sortedLists);
+    for (int i = 0; i < 2000; i++) {
+      String start = randomColumn(true);
+      String end = randomColumn(true);
+      if (start != null && random.nextInt(5) == 0) {
+        start = start.substring(0, start.indexOf('.', 5) + 1) + "*";
+      }
+      ColumnsInterval query = new ColumnsInterval(start, end);
+      KeyInterval keyInterval = new KeyInterval(random.nextInt(200), 100 + random.nextInt(200));
+      String column = random.nextInt(5) == 0 ? "*" : randomColumn(false);
+
+      List<ColumnsInterval> expected = new ArrayList<>();
+      List<Pair<ColumnsInterval, List<FragmentMeta>>> expectedWithKey = new ArrayList<>();
+      List<ColumnsInterval> expectedByName = new ArrayList<>();
+      for (Pair<ColumnsInterval, List<FragmentMeta>> pair : sortedLists) {
+        if (!pair.k.isCompletelyAfter(query) && pair.k.isIntersect(query)) {
+          expected.add(pair.k);
+          List<FragmentMeta> fragments = new ArrayList<>();
+          for (FragmentMeta fragment : pair.v) {
+            if (fragment.getKeyInterval().isIntersect(keyInterval)) {
+              fragments.add(fragment);
+            }
+          }
+          if (!fragments.isEmpty()) {
+            expectedWithKey.add(new Pair<>(pair.k, fragments));
+          }
+        }
+        if (!pair.k.isAfter(column) && pair.k.isContain(column)) {
+          expectedByName.add(pair.k);
+        }
+      }
+
+      assertEquals(query.toString(), expected, keys(index.search(query)));
+      List<Pair<ColumnsInterval, List<FragmentMeta>>> actualWithKey =
+          index.search(query, keyInterval);
+      assertEquals(keys(expectedWithKey), keys(actualWithKey));
+      for (int j = 0; j < actualWithKey.size(); j++) {
+        assertEquals(expectedWithKey.get(j).v, actualWithKey.get(j).v);
+      }
+      assertEquals(column, expectedByName, keys(index.search(column)));
+    }
+  }
+
+  @Test
+  public void testSnapshotIsolation() {
+    ColumnsInterval columnsInterval = new ColumnsInterval("a", "b");
+    List<FragmentMeta> fragments = new ArrayList<>();
+    fragments.add(new FragmentMeta("a", "b", 0, Long.MAX_VALUE));
+    FragmentIndex index =
+        FragmentIndex.of(Collections.singletonList(new Pair<>(columnsInterval, fragments)));
+
+    fragments.add(new FragmentMeta("a", "b", 100, Long.MAX_VALUE));
+    assertEquals(1, index.search("a.c").get(0).v.size());
+
+    FragmentIndex updated = index.withFragmentList(columnsInterval, fragments);
+    assertEquals(2, updated.search("a.c").get(0).v.size());
+    assertEquals(1, index.search("a.c").get(0).v.size());
+    assertNull(index.withFragmentList(new ColumnsInterval("b", "c"), fragments));
+    assertTrue(FragmentIndex.EMPTY.search("a.c").isEmpty());
+  }
+}
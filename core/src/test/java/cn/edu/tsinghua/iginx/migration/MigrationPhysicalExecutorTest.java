@@ -0,0 +1,85 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.migration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.write.ColumnDataView;
+import cn.edu.tsinghua.iginx.engine.shared.data.write.RawData;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class MigrationPhysicalExecutorTest {
+
+  @Test
+  public void testSplitColumnGroups() {
+    List<String> paths = Arrays.asList("a.a", "a.b", "a.c", "a.d", "a.e");
+    List<List<String>> groups = MigrationPhysicalExecutor.splitColumnGroups(paths, 2);
+    assertEquals(
+        Arrays.asList(Arrays.asList("a.a", "a.b", "a.c"), Arrays.asList("a.d", "a.e")), groups);
+
+    assertEquals(5, MigrationPhysicalExecutor.splitColumnGroups(paths, 8).size());
+    assertEquals(
+        Collections.singletonList(paths), MigrationPhysicalExecutor.splitColumnGroups(paths, 1));
+    assertEquals(
+        Collections.singletonList(Collections.emptyList()),
+        MigrationPhysicalExecutor.splitColumnGroups(Collections.emptyList(), 4));
+  }
+
+  @Test
+  public void testColumnBatchBuilder() {
+    List<String> paths = Arrays.asList("a.a", "a.b");
+    List<DataType> types = Arrays.asList(DataType.LONG, DataType.BINARY);
+    Header header =
+        new Header(
+            Field.KEY,
+            Arrays.asList(new Field("a.a", types.get(0)), new Field("a.b", types.get(1))));
+
+    MigrationPhysicalExecutor.ColumnBatchBuilder builder =
+        new MigrationPhysicalExecutor.ColumnBatchBuilder(2, 4);
+    builder.append(new Row(header, 1, new Object[] {1L, null}));
+    builder.append(new Row(header, 3, new Object[] {null, "x".getBytes()}));
+    builder.append(new Row(header, 5, new Object[] {5L, "y".getBytes()}));
+    assertEquals(3, builder.size());
+    assertEquals(4, builder.points());
+
+    RawData data = builder.build(paths, types);
+    assertTrue(data.isColumnData());
+    assertArrayEquals(new long[] {1, 3, 5}, data.getKeys());
+    assertEquals(3, data.getBitmaps().get(0).getSize());
+
+    ColumnDataView view = new ColumnDataView(data, 0, 2, 0, data.getKeySize());
+    assertTrue(view.getBitmapView(0).get(0));
+    assertFalse(view.getBitmapView(0).get(1));
+    assertEquals(1L, view.getValue(0, 0));
+    assertEquals(5L, view.getValue(0, 1));
+    assertFalse(view.getBitmapView(1).get(0));
+    assertArrayEquals("y".getBytes(), (byte[]) view.getValue(1, 1));
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.MemoryLimitExceededException;
+import org.junit.Test;
+
+public class QueryMemoryContextTest {
+
+  @Test
+  public void testQueryLimit() throws MemoryLimitExceededException {
+    MemoryPool pool = new MemoryPool(1000);
+    QueryMemoryContext context = new QueryMemoryContext(1, 1, 300, 0, pool);
+    context.reserve(200);
+    assertFalse(context.tryReserve(200));
+    try {
+      context.reserve(200);
+      fail();
+    } catch (MemoryLimitExceededException e) {
+      assertTrue(e.getMessage().contains("memory limit"));
+    }
+    assertEquals(200, pool.getUsed());
+    context.release(150);
+    assertEquals(50, context.getUsed());
+    assertEquals(200, context.getPeak());
+    context.close();
+    assertEquals(0, pool.getUsed());
+    // 关闭后的预留不再计入内存池
+    context.reserve(100);
+    assertEquals(0, pool.getUsed());
+  }
+
+  @Test
+  public void testGlobalPool() throws Exception {
+    MemoryPool pool = new MemoryPool(1000);
+    QueryMemoryContext first = new QueryMemoryContext(1, 1, 0, 0, pool);
+    QueryMemoryContext second = new QueryMemoryContext(2, 1, 0, 5000, pool);
+    first.reserve(800);
+    assertFalse(second.tryReserve(300));
+
+    // 内存池不足时等待其他查询释放
+    Thread releaser =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(100);
+              } catch (InterruptedException ignored) {
+              }
+              first.close();
+            });
+    releaser.start();
+    second.reserve(300);
+    releaser.join();
+    assertEquals(300, pool.getUsed());
+
+    QueryMemoryContext third = new QueryMemoryContext(3, 1, 0, 10, pool);
+    try {
+      third.reserve(800);
+      fail();
+    } catch (MemoryLimitExceededException e) {
+      assertTrue(e.getMessage().contains("exhausted"));
+    }
+  }
+
+  @Test
+  public void testConcurrentReserveRespectsLimit() throws Exception {
+    MemoryPool pool = new MemoryPool(1000);
+    QueryMemoryContext other = new QueryMemoryContext(1, 1, 0, 0, pool);
+    QueryMemoryContext context = new QueryMemoryContext(2, 1, 500, 5000, pool);
+    other.reserve(1000);
+
+    Thread waiter =
+        new Thread(
+            () -> {
+              try {
+                context.reserve(300);
+              } catch (MemoryLimitExceededException e) {
+                fail();
+              }
+            });
+    waiter.start();
+    while (context.getUsed() == 0) {
+      Thread.sleep(10);
+    }
+    // 等待内存池的预留已经计入单查询上限
+    try {
+      context.reserve(300);
+      fail();
+    } catch (MemoryLimitExceededException e) {
+      assertTrue(e.getMessage().contains("memory limit"));
+    }
+    other.close();
+    waiter.join();
+    assertEquals(300, context.getUsed());
+    assertEquals(300, pool.getUsed());
+    context.close();
+    assertEquals(0, pool.getUsed());
+  }
+}
@@ -56,7 +56,7 @@ public class ParseTest {
     List<String> paths = Arrays.asList("a.b.c.hardware", "a.b.c.num", "a.b.c.status");
     assertEquals(paths, statement.getPaths());
 
-    assertEquals(2, statement.getKeys().size());
+    assertEquals(2, statement.getKeys().length);
   }
 
   @Test
@@ -108,6 +108,24 @@ public class ParseTest {
     assertEquals(10, statement.getPrecision());
   }
 
+  @Test
+  public void testParseExplain() {
+    UnarySelectStatement statement =
+        (UnarySelectStatement) TestUtils.buildStatement("EXPLAIN SELECT a FROM b;");
+    assertTrue(statement.isNeedLogicalExplain());
+    assertFalse(statement.isNeedAnalyzeExplain());
+
+    statement =
+        (UnarySelectStatement) TestUtils.buildStatement("EXPLAIN PHYSICAL SELECT a FROM b;");
+    assertTrue(statement.isNeedPhysicalExplain());
+    assertFalse(statement.isNeedAnalyzeExplain());
+
+    statement = (UnarySelectStatement) TestUtils.buildStatement("EXPLAIN ANALYZE SELECT a FROM b;");
+    assertTrue(statement.isNeedAnalyzeExplain());
+    assertFalse(statement.isNeedLogicalExplain());
+    assertFalse(statement.isNeedPhysicalExplain());
+  }
+
   @Test
   public void testFilter() {
     String selectStr = "SELECT a FROM root WHERE a > 100;";
@@ -276,6 +294,18 @@ public class ParseTest {
     assertEquals(StatementType.SHOW_REPLICATION, statement.statementType);
   }
 
+  @Test
+  public void testParseShowQueries() {
+    Statement statement = TestUtils.buildStatement("SHOW QUERIES;");
+    assertTrue(statement instanceof ShowQueriesStatement);
+    assertEquals(StatementType.SHOW_QUERIES, statement.getType());
+
+    // queries 仍然可以作为路径名使用
+    UnarySelectStatement selectStatement =
+        (UnarySelectStatement) TestUtils.buildStatement("SELECT queries FROM a;");
+    assertTrue(selectStatement.getPathSet().contains("a.queries"));
+  }
+
   /**
    * 测试 ADD STORAGEENGINE 语句的解析功能
    *
@@ -372,8 +402,8 @@ public class ParseTest {
             + "(5s, 5);";
     InsertStatement insertStatement = (InsertStatement) TestUtils.buildStatement(insertStr);
 
-    List<Long> expectedTimes = Arrays.asList(1L, 2L, 3000L, 4000000L, 5000000000L);
-    assertEquals(expectedTimes, insertStatement.getKeys());
+    long[] expectedTimes = new long[] {1L, 2L, 3000L, 4000000L, 5000000000L};
+    assertArrayEquals(expectedTimes, insertStatement.getKeys());
 
     String queryStr =
         "SELECT AVG(c) FROM a.b WHERE c > 10 AND c < 1ms OVER WINDOW (size 10 IN [1s, 2s));";
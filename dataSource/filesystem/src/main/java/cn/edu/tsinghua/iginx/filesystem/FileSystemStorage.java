@@ -82,6 +82,16 @@ public class FileSystemStorage implements IStorage {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(FileSystemStorage.class);
 
+  private static final Map<String, AggregateType> PUSH_DOWN_AGGREGATES = new HashMap<>();
+
+  static {
+    PUSH_DOWN_AGGREGATES.put("count", AggregateType.COUNT);
+    PUSH_DOWN_AGGREGATES.put("sum", AggregateType.SUM);
+    PUSH_DOWN_AGGREGATES.put("avg", AggregateType.AVG);
+    PUSH_DOWN_AGGREGATES.put("max", AggregateType.MAX);
+    PUSH_DOWN_AGGREGATES.put("min", AggregateType.MIN);
+  }
+
   private final FileSystemService service;
 
   private final FileSystemConfig fileSystemConfig;
@@ -247,8 +257,14 @@ public class FileSystemStorage implements IStorage {
     DataArea reshapedDataArea =
         new DataArea(dataArea.getStorageUnit(), KeyInterval.getDefaultKeyInterval());
 
-    return executeQuery(
-        unitOf(dataArea), getDataTargetOf(project, reshapedDataArea), AggregateType.COUNT);
+    FunctionCall functionCall = ((SetTransform) agg).getFunctionCallList().get(0);
+    String identifier = functionCall.getFunction().getIdentifier();
+    DataTarget target =
+        new DataTarget(
+            Filters.toFilter(reshapedDataArea.getKeyInterval()),
+            functionCall.getParams().getPaths(),
+            project.getTagFilter());
+    return executeQuery(unitOf(dataArea), target, PUSH_DOWN_AGGREGATES.get(identifier));
   }
 
   @Override
@@ -270,7 +286,7 @@ public class FileSystemStorage implements IStorage {
       return false;
     }
 
-    // just push down count(*) for now
+    // count, sum, avg, max and min can be answered by the statistics of the storage
     List<FunctionCall> functionCalls = setTransform.getFunctionCallList();
     if (functionCalls.size() != 1) {
       return false;
@@ -281,14 +297,13 @@ public class FileSystemStorage implements IStorage {
     if (function.getFunctionType() != FunctionType.System) {
       return false;
     }
-    if (!function.getIdentifier().equals("count")) {
+    if (!PUSH_DOWN_AGGREGATES.containsKey(function.getIdentifier())) {
       return false;
     }
-    if (params.getPaths().size() != 1) {
+    if (params.isDistinct()) {
       return false;
     }
-    String path = params.getPaths().get(0);
-    return path.equals("*") || path.equals("*.*");
+    return params.getPaths().size() == 1;
   }
 
   @Override
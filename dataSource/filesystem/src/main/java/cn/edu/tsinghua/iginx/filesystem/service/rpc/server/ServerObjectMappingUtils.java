@@ -328,9 +328,7 @@ public class ServerObjectMappingUtils {
 
     List<String> paths = rawInserted.getPatterns();
     List<Map<String, String>> tags = rawInserted.getTagsList();
-    long[] timeArray = ByteUtils.getLongArrayFromByteArray(rawInserted.getKeys());
-    List<Long> times = new ArrayList<>();
-    Arrays.stream(timeArray).forEach(times::add);
+    long[] times = ByteUtils.getLongArrayFromByteArray(rawInserted.getKeys());
 
     List<ByteBuffer> valueList = rawInserted.getValuesList();
     List<ByteBuffer> bitmapList = rawInserted.getBitmapList();
@@ -350,20 +348,18 @@ public class ServerObjectMappingUtils {
     } else {
       bitmaps =
           bitmapList.stream()
-              .map(x -> new Bitmap(times.size(), x.array()))
+              .map(x -> new Bitmap(times.length, x.array()))
               .collect(Collectors.toList());
-      values = ByteUtils.getColumnValuesByDataType(valueList, types, bitmapList, times.size());
+      values = ByteUtils.getColumnValuesByDataType(valueList, types, bitmapList, times.length);
     }
 
     RawData rawData = new RawData(paths, tags, times, values, types, bitmaps, rawDataType);
 
     DataView dataView;
     if (rawDataType == RawDataType.Row || rawDataType == RawDataType.NonAlignedRow) {
-      dataView =
-          new RowDataView(rawData, 0, rawData.getPaths().size(), 0, rawData.getKeys().size());
+      dataView = new RowDataView(rawData, 0, rawData.getPaths().size(), 0, rawData.getKeySize());
     } else {
-      dataView =
-          new ColumnDataView(rawData, 0, rawData.getPaths().size(), 0, rawData.getKeys().size());
+      dataView = new ColumnDataView(rawData, 0, rawData.getPaths().size(), 0, rawData.getKeySize());
     }
 
     return dataView;
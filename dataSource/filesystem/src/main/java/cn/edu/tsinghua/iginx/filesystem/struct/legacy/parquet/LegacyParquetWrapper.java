@@ -129,7 +129,7 @@ public class LegacyParquetWrapper implements FileManager {
         if (!Filters.isTrue(filter)) {
           throw new UnsupportedOperationException("Filter is not supported for aggregation");
         }
-        return delegate.aggregation(patterns, tagFilter, null);
+        return delegate.aggregation(patterns, tagFilter, aggregate);
       } else {
         if (Filters.isFalse(target.getFilter())) {
           List<Column> columns = delegate.getColumns(patterns, tagFilter);
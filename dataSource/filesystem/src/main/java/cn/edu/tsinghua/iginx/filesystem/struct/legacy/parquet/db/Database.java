@@ -21,8 +21,10 @@ package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db;
 
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.FieldStatistics;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageException;
+import cn.edu.tsinghua.iginx.thrift.AggregateType;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import com.google.common.collect.RangeSet;
 import java.io.IOException;
@@ -35,8 +37,8 @@ public interface Database extends AutoCloseable {
   Scanner<Long, Scanner<String, Object>> query(
       Set<Field> fields, RangeSet<Long> ranges, Filter filter) throws StorageException, IOException;
 
-  Map<String, Long> count(Set<Field> strings)
-      throws InterruptedException, IOException, StorageException;
+  Map<String, FieldStatistics> statistics(Set<Field> fields, AggregateType aggregate)
+      throws IOException, StorageException;
 
   Set<Field> schema() throws StorageException;
 
@@ -28,25 +28,34 @@ import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.buffer.chun
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.compact.Flusher;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.table.TableStorage;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.FieldStatistics;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.WriteBatches;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.BatchPlaneScanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.ListenCloseScanner;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.RowUnionScanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.manager.utils.TagKVUtils;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.NoexceptAutoCloseable;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.NoexceptAutoCloseables;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Shared;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.arrow.ArrowFields;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.arrow.ArrowTypes;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageException;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageRuntimeException;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.TypeConflictedException;
+import cn.edu.tsinghua.iginx.thrift.AggregateType;
 import cn.edu.tsinghua.iginx.thrift.DataType;
+import com.google.common.collect.ImmutableRangeSet;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
@@ -68,6 +77,11 @@ public class OneTierDB implements Database {
   private final MemTableQueue memTableQueue;
   private final Flusher flusher;
 
+  // the scanner of a query opens its tables lazily, so the tables and tombstones it found must not
+  // be deleted or cleared until the scanner is closed
+  private final Object openQueriesMonitor = new Object();
+  private int openQueries = 0;
+
   public OneTierDB(String name, Shared shared, ReadWriter readerWriter) throws IOException {
     this.name = name;
     this.shared = shared;
@@ -88,36 +102,102 @@ public class OneTierDB implements Database {
 
     lock.readLock().lock();
     try {
-      List<Scanner<Long, Scanner<String, Object>>> inMemories =
+      List<Scanner<Long, Scanner<String, Object>>> scanners =
           memTableQueue.scan(new ArrayList<>(fields), ranges, allocator);
-      try (AutoCloseable c = AutoCloseables.all(inMemories)) {
-        DataBuffer<Long, String, Object> readBuffer =
-            tableStorage.query(innerFields, ranges, filter);
-        for (Scanner<Long, Scanner<String, Object>> scanner : inMemories) {
-          readBuffer.putRows(scanner);
+      try {
+        // newer data comes first, the union keeps the first value of the same key and field
+        Collections.reverse(scanners);
+        scanners.add(tableStorage.query(innerFields, ranges));
+        return new ListenCloseScanner<>(new RowUnionScanner<>(scanners), pinQuery());
+      } catch (IOException | StorageException | RuntimeException e) {
+        try {
+          AutoCloseables.close(scanners);
+        } catch (Exception ex) {
+          e.addSuppressed(ex);
         }
-        return readBuffer.scanRows(innerFields, Range.all());
-      } catch (Exception e) {
-        throw new IllegalStateException(e);
+        throw e;
       }
     } finally {
       lock.readLock().unlock();
     }
   }
 
+  /**
+   * register an open query, must be called with the read lock held.
+   *
+   * @return the callback to unregister the query, which can be called more than once
+   */
+  private Runnable pinQuery() {
+    synchronized (openQueriesMonitor) {
+      openQueries++;
+    }
+    AtomicBoolean released = new AtomicBoolean(false);
+    return () -> {
+      if (released.compareAndSet(false, true)) {
+        synchronized (openQueriesMonitor) {
+          openQueries--;
+          openQueriesMonitor.notifyAll();
+        }
+      }
+    };
+  }
+
+  /** wait for all open queries to be closed, must be called with the write lock held. */
+  private void awaitOpenQueries() throws StorageException {
+    synchronized (openQueriesMonitor) {
+      while (openQueries > 0) {
+        try {
+          openQueriesMonitor.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new StorageException("interrupted while waiting for open queries of " + name, e);
+        }
+      }
+    }
+  }
+
   @Override
-  public Map<String, Long> count(Set<Field> fields)
-      throws InterruptedException, IOException, StorageException {
+  public Map<String, FieldStatistics> statistics(Set<Field> fields, AggregateType aggregate)
+      throws IOException, StorageException {
     lock.readLock().lock();
     try {
-      // to simplify the implementation, we flush the memTableQueue before counting
-      memTableQueue.compact();
-      memTableQueue.flush();
-      Set<String> innerFields =
-          fields.stream()
-              .map(field -> TagKVUtils.toFullName(ArrowFields.toColumnKey(field)))
-              .collect(Collectors.toSet());
-      return tableStorage.count(innerFields);
+      // data in memory is newer than the tables and shadows the values of the same keys in tables
+      DataBuffer<Long, String, Object> memBuffer = new DataBuffer<>();
+      List<Scanner<Long, Scanner<String, Object>>> inMemories =
+          memTableQueue.scan(new ArrayList<>(fields), ImmutableRangeSet.of(Range.all()), allocator);
+      try (AutoCloseable c = AutoCloseables.all(inMemories)) {
+        for (Scanner<Long, Scanner<String, Object>> scanner : inMemories) {
+          memBuffer.putRows(scanner);
+        }
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+      Map<String, Range<Long>> memRanges = memBuffer.ranges();
+
+      Map<String, FieldStatistics> result = new HashMap<>();
+      for (Field field : fields) {
+        String innerField = TagKVUtils.toFullName(ArrowFields.toColumnKey(field));
+        DataType type = ArrowTypes.toIginxType(field.getType());
+        FieldStatistics statistics =
+            tableStorage.statistics(
+                innerField,
+                type,
+                aggregate,
+                memRanges.get(innerField),
+                key -> memBuffer.contains(innerField, key));
+        try (Scanner<String, Scanner<Long, Object>> columns =
+            memBuffer.scanColumns(Collections.singleton(innerField), Range.all())) {
+          while (columns.iterate()) {
+            Scanner<Long, Object> column = columns.value();
+            while (column.iterate()) {
+              statistics.update(column.value());
+            }
+          }
+        }
+        result.put(innerField, statistics);
+      }
+      memBuffer.close();
+      return result;
     } finally {
       lock.readLock().unlock();
     }
@@ -181,6 +261,7 @@ public class OneTierDB implements Database {
     AreaSet<Long, String> innerAreas = ArrowFields.toInnerAreas(range);
     lock.writeLock().lock();
     try {
+      awaitOpenQueries();
       LOGGER.debug("start to delete {} in {}", range, name);
       memTableQueue.delete(range);
       tableStorage.delete(innerAreas);
@@ -195,6 +276,7 @@ public class OneTierDB implements Database {
   public void clear() throws StorageException {
     lock.writeLock().lock();
     try {
+      awaitOpenQueries();
       LOGGER.debug("start to clear {}", name);
       flusher.stop();
       memTableQueue.clear();
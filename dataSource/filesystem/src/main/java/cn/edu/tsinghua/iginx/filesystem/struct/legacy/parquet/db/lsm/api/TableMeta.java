@@ -19,6 +19,7 @@
  */
 package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api;
 
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.FieldStatistics;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import com.google.common.collect.Range;
 import java.util.Map;
@@ -29,19 +30,29 @@ public interface TableMeta {
 
   Range<Long> getRange(String field);
 
+  /** span of the ranges of the fields in this table, empty if none of the fields is in the table */
   default Range<Long> getRange(Iterable<String> fields) {
     Range<Long> range = null;
     for (String field : fields) {
+      if (!getSchema().containsKey(field)) {
+        continue;
+      }
       Range<Long> fieldRange = getRange(field);
       if (range == null) {
-        range = getRange(field);
+        range = fieldRange;
       } else {
         range = range.span(fieldRange);
       }
     }
-    return range;
+    return range == null ? Range.closedOpen(0L, 0L) : range;
   }
 
   @Nullable
   Long getValueCount(String field);
+
+  /** statistics recorded in the metadata, null if they are unknown */
+  @Nullable
+  default FieldStatistics getStatistics(String field) {
+    return null;
+  }
 }
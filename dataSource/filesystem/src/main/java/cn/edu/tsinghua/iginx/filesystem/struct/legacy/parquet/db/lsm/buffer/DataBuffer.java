@@ -171,4 +171,9 @@ public class DataBuffer<K extends Comparable<K>, F, V> {
     NavigableMap<K, V> column = data.get(field);
     return column == null ? 0 : column.size();
   }
+
+  public boolean contains(F field, K key) {
+    NavigableMap<K, V> column = data.get(field);
+    return column != null && column.containsKey(key);
+  }
 }
@@ -21,6 +21,7 @@ package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.table;
 
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api.TableMeta;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.FieldStatistics;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
@@ -35,12 +36,14 @@ public class DeletedTableMeta implements TableMeta {
   private final Map<String, DataType> schema;
   private final Map<String, Range<Long>> ranges;
   private final Map<String, Long> counts;
+  private final Map<String, FieldStatistics> statistics;
 
   public DeletedTableMeta(TableMeta tableMeta, AreaSet<Long, String> tombstone) {
     this.schema = new HashMap<>(tableMeta.getSchema());
     schema.keySet().removeAll(tombstone.getFields());
 
     this.counts = new HashMap<>();
+    this.statistics = new HashMap<>();
 
     Map<String, RangeSet<Long>> rangeSetMap = new HashMap<>();
     for (Map.Entry<String, DataType> entry : schema.entrySet()) {
@@ -51,11 +54,16 @@ public class DeletedTableMeta implements TableMeta {
       if (count != null) {
         counts.put(field, count);
       }
+      FieldStatistics fieldStatistics = tableMeta.getStatistics(field);
+      if (fieldStatistics != null) {
+        statistics.put(field, fieldStatistics);
+      }
     }
 
     RangeSet<Long> deletedKeys = tombstone.getKeys();
     if (!deletedKeys.isEmpty()) {
       counts.clear();
+      statistics.clear();
       rangeSetMap.values().forEach(rangeSet -> rangeSet.removeAll(deletedKeys));
     }
 
@@ -67,6 +75,7 @@ public class DeletedTableMeta implements TableMeta {
         rangeSet.removeAll(rangeSetDeleted);
       }
       counts.remove(field);
+      statistics.remove(field);
     }
 
     this.ranges = new HashMap<>();
@@ -102,4 +111,13 @@ public class DeletedTableMeta implements TableMeta {
     }
     return counts.get(field);
   }
+
+  @Override
+  @Nullable
+  public FieldStatistics getStatistics(String field) {
+    if (!schema.containsKey(field)) {
+      throw new NoSuchElementException();
+    }
+    return statistics.get(field);
+  }
 }
@@ -19,11 +19,10 @@
  */
 package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.table;
 
-import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api.ReadWriter;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api.TableMeta;
-import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.buffer.DataBuffer;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.FieldStatistics;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.ConcatScanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.EmtpyHeadRowScanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.RowUnionScanner;
@@ -32,13 +31,16 @@ import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Shared;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.arrow.ArrowFields;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageException;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.TypeConflictedException;
+import cn.edu.tsinghua.iginx.thrift.AggregateType;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import com.google.common.collect.*;
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.StreamSupport;
+import javax.annotation.Nullable;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -146,25 +148,20 @@ public class TableStorage implements AutoCloseable {
     tableIndex.declareFields(schema);
   }
 
-  public DataBuffer<Long, String, Object> query(
-      Set<String> fields, RangeSet<Long> ranges, Filter filter)
+  /**
+   * scan the tables lazily. tables are opened only when the merged scanner reaches their ranges,
+   * and the newer table wins if the same key and field is in multiple tables.
+   */
+  public Scanner<Long, Scanner<String, Object>> query(Set<String> fields, RangeSet<Long> ranges)
       throws StorageException, IOException {
-
     AreaSet<Long, String> areas = new AreaSet<>();
     areas.add(fields, ranges);
-    DataBuffer<Long, String, Object> buffer = new DataBuffer<>();
 
     Set<String> tables = tableIndex.find(areas);
     List<String> sortedTableNames = new ArrayList<>(tables);
     sortedTableNames.sort(Comparator.naturalOrder());
 
-    for (String tableName : sortedTableNames) {
-      try (Scanner<Long, Scanner<String, Object>> scanner = scan(tableName, fields, ranges)) {
-        buffer.putRows(scanner);
-      }
-    }
-
-    return buffer;
+    return scan(sortedTableNames, fields, ranges);
   }
 
   private Scanner<Long, Scanner<String, Object>> scan(
@@ -172,35 +169,42 @@ public class TableStorage implements AutoCloseable {
     return new FileTable(tableName, readWriter).scan(fields, ranges);
   }
 
-  public Map<String, Long> count(Set<String> innerFields) throws StorageException, IOException {
-    Map<String, Long> counts = new HashMap<>();
-
-    for (String field : innerFields) {
-      long count = count(field);
-      counts.put(field, count);
-    }
-
-    return counts;
-  }
-
-  public long count(String field) throws StorageException, IOException {
+  /**
+   * collect statistics of the field in the tables. a region owned by a single table is answered by
+   * the metadata if possible, otherwise the tables of the region are scanned.
+   *
+   * @param shadowRange the key range of newer data of the field, null if there is none
+   * @param shadowed whether the value of the key is replaced by newer data
+   */
+  public FieldStatistics statistics(
+      String field,
+      DataType type,
+      AggregateType aggregate,
+      @Nullable Range<Long> shadowRange,
+      Predicate<Long> shadowed)
+      throws StorageException, IOException {
     RangeMap<Long, List<String>> regionTableLists = getTablesGroupByRegion(field);
 
-    long totalCount = 0;
-    for (List<String> tables : regionTableLists.asMapOfRanges().values()) {
+    FieldStatistics statistics = new FieldStatistics(type);
+    for (Map.Entry<Range<Long>, List<String>> entry : regionTableLists.asMapOfRanges().entrySet()) {
+      List<String> tables = entry.getValue();
       if (tables.isEmpty()) {
         continue;
-      } else if (tables.size() == 1) {
+      } else if (tables.size() == 1 && !overlaps(entry.getKey(), shadowRange)) {
         TableMeta meta = readWriter.readMeta(tables.get(0));
-        Long regionCount = meta.getValueCount(field);
-        if (regionCount != null) {
-          totalCount += regionCount;
+        FieldStatistics regionStatistics = meta.getStatistics(field);
+        if (regionStatistics != null && regionStatistics.supports(aggregate)) {
+          statistics.merge(regionStatistics);
           continue;
         }
       }
-      totalCount += getOverlapCount(field, tables);
+      scanStatistics(field, tables, shadowed, statistics);
     }
-    return totalCount;
+    return statistics;
+  }
+
+  private static boolean overlaps(Range<Long> range, @Nullable Range<Long> other) {
+    return other != null && range.isConnected(other) && !range.intersection(other).isEmpty();
   }
 
   private static Range<Long> normalize(Range<Long> range) {
@@ -248,42 +252,50 @@ public class TableStorage implements AutoCloseable {
     return regionTableLists;
   }
 
-  private long getOverlapCount(String field, List<String> sortedTableNames)
+  private void scanStatistics(
+      String field,
+      List<String> sortedTableNames,
+      Predicate<Long> shadowed,
+      FieldStatistics statistics)
       throws IOException, StorageException {
     Set<String> fields = Collections.singleton(field);
 
-    long count = 0;
-    try (Scanner<Long, Scanner<String, Object>> scanner = scan(sortedTableNames, fields)) {
+    try (Scanner<Long, Scanner<String, Object>> scanner =
+        scan(sortedTableNames, fields, ImmutableRangeSet.of(Range.all()))) {
       while (scanner.iterate()) {
+        if (shadowed.test(scanner.key())) {
+          continue;
+        }
         Scanner<String, Object> row = scanner.value();
         while (row.iterate()) {
           assert row.value() != null;
-          count++;
+          statistics.update(row.value());
         }
       }
     }
-    return count;
   }
 
-  private Scanner<Long, Scanner<String, Object>> scan(List<String> tableNames, Set<String> fields)
+  private Scanner<Long, Scanner<String, Object>> scan(
+      List<String> tableNames, Set<String> fields, RangeSet<Long> ranges)
       throws IOException, StorageException {
     List<FileTable> tables = new ArrayList<>();
     for (String tableName : tableNames) {
       tables.add(new FileTable(tableName, readWriter));
     }
-    List<Scanner<Long, Scanner<String, Object>>> overlaps = getOverlapScannerList(fields, tables);
+    List<Scanner<Long, Scanner<String, Object>>> overlaps =
+        getOverlapScannerList(fields, ranges, tables);
 
     Collections.reverse(overlaps);
     return new RowUnionScanner<>(overlaps);
   }
 
   private static List<Scanner<Long, Scanner<String, Object>>> getOverlapScannerList(
-      Set<String> fields, List<FileTable> tables) throws IOException {
-    RangeSet<Long> ranges = ImmutableRangeSet.of(Range.all());
+      Set<String> fields, RangeSet<Long> ranges, List<FileTable> tables) throws IOException {
     List<Scanner<Long, Scanner<String, Object>>> overlaps = new ArrayList<>();
 
     RangeSet<Long> tableRanges = TreeRangeSet.create();
-    List<Scanner<Long, Scanner<String, Object>>> noOverlaps = new ArrayList<>();
+    // tables without overlap are concatenated in the order of their keys
+    NavigableMap<Long, Scanner<Long, Scanner<String, Object>>> noOverlaps = new TreeMap<>();
     for (FileTable table : tables) {
       TableMeta meta = table.getMeta();
       Range<Long> range = normalize(meta.getRange(fields));
@@ -291,8 +303,8 @@ public class TableStorage implements AutoCloseable {
         continue;
       }
       if (tableRanges.intersects(range)) {
-        overlaps.add(new ConcatScanner<>(noOverlaps.iterator()));
-        noOverlaps = new ArrayList<>();
+        overlaps.add(new ConcatScanner<>(noOverlaps.values().iterator()));
+        noOverlaps = new TreeMap<>();
         tableRanges = TreeRangeSet.create();
       }
       long head = range.lowerEndpoint();
@@ -300,11 +312,11 @@ public class TableStorage implements AutoCloseable {
       Scanner<Long, Scanner<String, Object>> emptyHead = new EmtpyHeadRowScanner<>(head);
       Scanner<Long, Scanner<String, Object>> concat =
           new ConcatScanner<>(Iterators.forArray(emptyHead, lazy));
-      noOverlaps.add(concat);
+      noOverlaps.put(head, concat);
       tableRanges.add(range);
     }
     if (!noOverlaps.isEmpty()) {
-      overlaps.add(new ConcatScanner<>(noOverlaps.iterator()));
+      overlaps.add(new ConcatScanner<>(noOverlaps.values().iterator()));
     }
 
     return overlaps;
@@ -0,0 +1,206 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util;
+
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.thrift.AggregateType;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.DataTypeUtils;
+import java.util.StringJoiner;
+import javax.annotation.Nullable;
+
+/** statistics of the non-null values of a single field, used to answer aggregations */
+public class FieldStatistics {
+  private final DataType type;
+  private boolean sumAvailable;
+  private long count;
+  @Nullable private Object min;
+  @Nullable private Object max;
+  private long longSum;
+  private double doubleSum;
+
+  public FieldStatistics(DataType type) {
+    this(type, true);
+  }
+
+  private FieldStatistics(DataType type, boolean sumAvailable) {
+    this.type = type;
+    this.sumAvailable = sumAvailable;
+  }
+
+  /**
+   * statistics read from file metadata, which only record count, min and max
+   *
+   * @param min null if the metadata does not record min and max
+   * @param max null if the metadata does not record min and max
+   */
+  public static FieldStatistics of(
+      DataType type, long count, @Nullable Object min, @Nullable Object max) {
+    FieldStatistics statistics = new FieldStatistics(type, false);
+    statistics.count = count;
+    if (min != null && max != null) {
+      statistics.min = min;
+      statistics.max = max;
+    }
+    return statistics;
+  }
+
+  public DataType getType() {
+    return type;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public void update(Object value) {
+    count++;
+    if (min == null || ValueUtils.compare(value, min, type) < 0) {
+      min = value;
+    }
+    if (max == null || ValueUtils.compare(value, max, type) > 0) {
+      max = value;
+    }
+    switch (type) {
+      case INTEGER:
+        longSum += (Integer) value;
+        break;
+      case LONG:
+        longSum += (Long) value;
+        break;
+      case FLOAT:
+        doubleSum += (Float) value;
+        break;
+      case DOUBLE:
+        doubleSum += (Double) value;
+        break;
+      default:
+        break;
+    }
+  }
+
+  public void merge(FieldStatistics other) {
+    if (other.type != type) {
+      throw new IllegalArgumentException("can't merge " + other.type + " into " + type);
+    }
+    sumAvailable &= other.sumAvailable;
+    if (other.count == 0) {
+      return;
+    }
+    if (!other.hasMinMax()) {
+      min = null;
+      max = null;
+    } else if (hasMinMax()) {
+      if (min == null || ValueUtils.compare(other.min, min, type) < 0) {
+        min = other.min;
+      }
+      if (max == null || ValueUtils.compare(other.max, max, type) > 0) {
+        max = other.max;
+      }
+    }
+    count += other.count;
+    longSum += other.longSum;
+    doubleSum += other.doubleSum;
+  }
+
+  private boolean hasMinMax() {
+    return count == 0 || (min != null && max != null);
+  }
+
+  /** whether the value of the aggregation can be answered by this statistics */
+  public boolean supports(AggregateType aggregate) {
+    switch (aggregate) {
+      case COUNT:
+        return true;
+      case MIN:
+      case MAX:
+        return hasMinMax();
+      case SUM:
+      case AVG:
+        return sumAvailable;
+      default:
+        return false;
+    }
+  }
+
+  /** the result of the aggregation, which is consistent with the system function of core */
+  @Nullable
+  public Object get(AggregateType aggregate) {
+    if (!supports(aggregate)) {
+      throw new IllegalStateException(aggregate + " is not supported by " + this);
+    }
+    switch (aggregate) {
+      case COUNT:
+        return count;
+      case MIN:
+        return min;
+      case MAX:
+        return max;
+      case SUM:
+        checkNumber(aggregate);
+        if (count == 0) {
+          return null;
+        }
+        return DataTypeUtils.isWholeNumber(type) ? (Object) longSum : (Object) doubleSum;
+      case AVG:
+        checkNumber(aggregate);
+        if (count == 0) {
+          return null;
+        }
+        return (DataTypeUtils.isWholeNumber(type) ? (double) longSum : doubleSum) / count;
+      default:
+        throw new UnsupportedOperationException("unsupported aggregate type: " + aggregate);
+    }
+  }
+
+  private void checkNumber(AggregateType aggregate) {
+    if (!DataTypeUtils.isNumber(type)) {
+      throw new IllegalArgumentException(
+          "only number can calculate " + aggregate.toString().toLowerCase());
+    }
+  }
+
+  public static DataType getResultType(AggregateType aggregate, DataType type) {
+    switch (aggregate) {
+      case COUNT:
+        return DataType.LONG;
+      case MIN:
+      case MAX:
+        return type;
+      case SUM:
+        return DataTypeUtils.isWholeNumber(type) ? DataType.LONG : DataType.DOUBLE;
+      case AVG:
+        return DataType.DOUBLE;
+      default:
+        throw new UnsupportedOperationException("unsupported aggregate type: " + aggregate);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", FieldStatistics.class.getSimpleName() + "{", "}")
+        .add("type=" + type)
+        .add("count=" + count)
+        .add("min=" + min)
+        .add("max=" + max)
+        .add("sumAvailable=" + sumAvailable)
+        .toString();
+  }
+}
@@ -32,7 +32,10 @@ public class ListenCloseScanner<K, V> extends DelegateScanner<K, V> {
 
   @Override
   public void close() throws StorageException {
-    super.close();
-    callback.run();
+    try {
+      super.close();
+    } finally {
+      callback.run();
+    }
   }
 }
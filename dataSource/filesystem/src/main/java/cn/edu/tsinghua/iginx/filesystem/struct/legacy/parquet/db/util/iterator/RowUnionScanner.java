@@ -93,6 +93,8 @@ public class RowUnionScanner<K extends Comparable<K>, F, V> implements Scanner<K
       }
       if (entry.getKey().iterate()) {
         queue.add(entry);
+      } else {
+        entry.getKey().close();
       }
     }
     currentRow =
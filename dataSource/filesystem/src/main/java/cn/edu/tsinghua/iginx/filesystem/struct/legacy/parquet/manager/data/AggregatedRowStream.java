@@ -24,6 +24,8 @@ import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.FieldStatistics;
+import cn.edu.tsinghua.iginx.thrift.AggregateType;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import java.util.ArrayList;
 import java.util.List;
@@ -34,12 +36,13 @@ public class AggregatedRowStream implements RowStream {
   private final Row row;
   private boolean hasNext = true;
 
-  public AggregatedRowStream(Map<String, ?> values, String functionName) {
-    List<Field> fieldList = new ArrayList<>(values.size());
-    List<Object> valuesList = new ArrayList<>(values.size());
-    for (Map.Entry<String, ?> entry : values.entrySet()) {
-      Object value = entry.getValue();
-      valuesList.add(value);
+  public AggregatedRowStream(Map<String, FieldStatistics> statistics, AggregateType aggregate) {
+    String functionName = aggregate.toString().toLowerCase();
+    List<Field> fieldList = new ArrayList<>(statistics.size());
+    List<Object> valuesList = new ArrayList<>(statistics.size());
+    for (Map.Entry<String, FieldStatistics> entry : statistics.entrySet()) {
+      FieldStatistics fieldStatistics = entry.getValue();
+      valuesList.add(fieldStatistics.get(aggregate));
 
       Map.Entry<String, Map<String, String>> pathWithTags =
           DataViewWrapper.parseFieldName(entry.getKey());
@@ -47,21 +50,13 @@ public class AggregatedRowStream implements RowStream {
       Map<String, String> tags = pathWithTags.getValue();
       String pathWithFunctionName = functionName + "(" + path + ")";
 
-      DataType dataType = typeFromValue(value);
+      DataType dataType = FieldStatistics.getResultType(aggregate, fieldStatistics.getType());
       Field field = new Field(pathWithFunctionName, dataType, tags);
       fieldList.add(field);
     }
     row = new Row(new Header(fieldList), valuesList.toArray());
   }
 
-  private static DataType typeFromValue(Object value) {
-    if (value instanceof Long) {
-      return DataType.LONG;
-    } else {
-      throw new UnsupportedOperationException("Unsupported type: " + value.getClass().getName());
-    }
-  }
-
   @Override
   public Header getHeader() throws PhysicalException {
     return row.getHeader();
@@ -25,13 +25,13 @@ import cn.edu.tsinghua.iginx.engine.physical.storage.domain.ColumnKey;
 import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
-import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.Database;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.OneTierDB;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api.ReadWriter;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.FieldStatistics;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.manager.Manager;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.manager.utils.TagKVUtils;
@@ -39,6 +39,7 @@ import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Constants;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.Shared;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.arrow.ArrowFields;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageException;
+import cn.edu.tsinghua.iginx.thrift.AggregateType;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import com.google.common.collect.RangeSet;
 import java.io.IOException;
@@ -85,17 +86,17 @@ public class DataManager implements Manager {
     }
   }
 
-  public RowStream aggregation(List<String> patterns, TagFilter tagFilter, List<FunctionCall> calls)
+  public RowStream aggregation(List<String> patterns, TagFilter tagFilter, AggregateType aggregate)
       throws PhysicalException {
     Map<String, DataType> schema = ArrowFields.toIginxSchema(db.schema());
     Map<String, DataType> schemaMatchTags = ProjectUtils.project(schema, tagFilter);
     Map<String, DataType> projectedSchema = ProjectUtils.project(schemaMatchTags, patterns);
 
     try {
-      // TODO: just support count now
-      Map<String, Long> counts = db.count(ArrowFields.of(projectedSchema));
-      return new AggregatedRowStream(counts, "count");
-    } catch (InterruptedException | IOException e) {
+      Map<String, FieldStatistics> statistics =
+          db.statistics(ArrowFields.of(projectedSchema), aggregate);
+      return new AggregatedRowStream(statistics, aggregate);
+    } catch (IOException e) {
       throw new StorageException(e);
     }
   }
@@ -28,6 +28,7 @@ import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api.ReadWri
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.api.TableMeta;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.lsm.table.DeletedTableMeta;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.AreaSet;
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.FieldStatistics;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.AreaFilterScanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.IteratorScanner;
 import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator.Scanner;
@@ -46,6 +47,9 @@ import java.util.*;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import shaded.iginx.org.apache.parquet.column.statistics.Statistics;
+import shaded.iginx.org.apache.parquet.hadoop.metadata.BlockMetaData;
+import shaded.iginx.org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
 import shaded.iginx.org.apache.parquet.hadoop.metadata.ColumnPath;
 import shaded.iginx.org.apache.parquet.hadoop.metadata.ParquetMetadata;
 import shaded.iginx.org.apache.parquet.schema.MessageType;
@@ -339,6 +343,7 @@ public class ParquetReadWriter implements ReadWriter {
     private final Map<String, DataType> schemaDst;
     private final Map<String, Range<Long>> rangeMap;
     private final Map<String, Long> countMap;
+    private final Map<String, FieldStatistics> statisticsMap;
     private final ParquetMetadata meta;
 
     public static ParquetTableMeta of(ParquetMetadata meta) {
@@ -370,17 +375,49 @@ public class ParquetReadWriter implements ReadWriter {
             countMap.put(name, count);
           });
 
-      return new ParquetTableMeta(schemaDst, rangeMap, countMap, meta);
+      Map<String, FieldStatistics> statisticsMap = getStatisticsOf(meta, schemaDst);
+
+      return new ParquetTableMeta(schemaDst, rangeMap, countMap, statisticsMap, meta);
+    }
+
+    private static Map<String, FieldStatistics> getStatisticsOf(
+        ParquetMetadata meta, Map<String, DataType> schema) {
+      Map<String, FieldStatistics> statisticsMap = new HashMap<>();
+      for (BlockMetaData block : meta.getBlocks()) {
+        for (ColumnChunkMetaData column : block.getColumns()) {
+          String[] columnPath = column.getPath().toArray();
+          if (columnPath.length != 1 || !schema.containsKey(columnPath[0])) {
+            continue;
+          }
+          DataType type = schema.get(columnPath[0]);
+          Statistics<?> statistics = column.getStatistics();
+          long count = column.getValueCount() - statistics.getNumNulls();
+          Object min = null;
+          Object max = null;
+          // binary statistics are ordered by unsigned bytes, which is different from iginx
+          if (type != DataType.BINARY && statistics.hasNonNullValue()) {
+            min = statistics.genericGetMin();
+            max = statistics.genericGetMax();
+          }
+          FieldStatistics chunkStatistics = FieldStatistics.of(type, count, min, max);
+          statisticsMap
+              .computeIfAbsent(columnPath[0], k -> FieldStatistics.of(type, 0, null, null))
+              .merge(chunkStatistics);
+        }
+      }
+      return statisticsMap;
     }
 
     ParquetTableMeta(
         Map<String, DataType> schemaDst,
         Map<String, Range<Long>> rangeMap,
         Map<String, Long> countMap,
+        Map<String, FieldStatistics> statisticsMap,
         ParquetMetadata meta) {
       this.schemaDst = schemaDst;
       this.rangeMap = rangeMap;
       this.countMap = countMap;
+      this.statisticsMap = statisticsMap;
       this.meta = meta;
     }
 
@@ -406,6 +443,15 @@ public class ParquetReadWriter implements ReadWriter {
       return countMap.get(field);
     }
 
+    @Nullable
+    @Override
+    public FieldStatistics getStatistics(String field) {
+      if (!schemaDst.containsKey(field)) {
+        throw new NoSuchElementException();
+      }
+      return statisticsMap.get(field);
+    }
+
     public ParquetMetadata getMeta() {
       return meta;
     }
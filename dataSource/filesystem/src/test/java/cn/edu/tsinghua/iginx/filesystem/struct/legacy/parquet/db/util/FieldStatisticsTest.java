@@ -0,0 +1,73 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util;
+
+import static org.junit.Assert.*;
+
+import cn.edu.tsinghua.iginx.thrift.AggregateType;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import org.junit.Test;
+
+public class FieldStatisticsTest {
+
+  @Test
+  public void testUpdate() {
+    FieldStatistics statistics = new FieldStatistics(DataType.INTEGER);
+    for (int i = 1; i <= 10; i++) {
+      statistics.update(i);
+    }
+    assertEquals(10L, statistics.get(AggregateType.COUNT));
+    assertEquals(1, statistics.get(AggregateType.MIN));
+    assertEquals(10, statistics.get(AggregateType.MAX));
+    assertEquals(55L, statistics.get(AggregateType.SUM));
+    assertEquals(5.5, (Double) statistics.get(AggregateType.AVG), 0);
+  }
+
+  @Test
+  public void testEmpty() {
+    FieldStatistics statistics = new FieldStatistics(DataType.DOUBLE);
+    assertEquals(0L, statistics.get(AggregateType.COUNT));
+    assertNull(statistics.get(AggregateType.MAX));
+    assertNull(statistics.get(AggregateType.SUM));
+    assertNull(statistics.get(AggregateType.AVG));
+  }
+
+  @Test
+  public void testMergeMeta() {
+    FieldStatistics statistics = new FieldStatistics(DataType.LONG);
+    statistics.update(5L);
+    statistics.merge(FieldStatistics.of(DataType.LONG, 3, 1L, 9L));
+    assertEquals(4L, statistics.get(AggregateType.COUNT));
+    assertEquals(1L, statistics.get(AggregateType.MIN));
+    assertEquals(9L, statistics.get(AggregateType.MAX));
+    assertFalse(statistics.supports(AggregateType.SUM));
+
+    statistics.merge(FieldStatistics.of(DataType.LONG, 2, null, null));
+    assertEquals(6L, statistics.get(AggregateType.COUNT));
+    assertFalse(statistics.supports(AggregateType.MAX));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSumOfBinary() {
+    FieldStatistics statistics = new FieldStatistics(DataType.BINARY);
+    statistics.update("a".getBytes());
+    statistics.get(AggregateType.SUM);
+  }
+}
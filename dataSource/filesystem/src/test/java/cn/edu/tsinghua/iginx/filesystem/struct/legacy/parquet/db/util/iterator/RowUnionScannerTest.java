@@ -0,0 +1,94 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.db.util.iterator;
+
+import static org.junit.Assert.*;
+
+import cn.edu.tsinghua.iginx.filesystem.struct.legacy.parquet.util.exception.StorageException;
+import com.google.common.collect.Iterators;
+import java.util.*;
+import org.junit.Test;
+
+public class RowUnionScannerTest {
+
+  private static Scanner<Long, Scanner<String, Object>> rows(String field, long... keysAndValues) {
+    Map<Long, Object> column = new TreeMap<>();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      column.put(keysAndValues[i], keysAndValues[i + 1]);
+    }
+    Map<String, Scanner<Long, Object>> columns = new HashMap<>();
+    columns.put(field, new IteratorScanner<>(column.entrySet().iterator()));
+    return new ColumnUnionRowScanner<>(columns);
+  }
+
+  private static Map<Long, Map<String, Object>> collect(
+      Scanner<Long, Scanner<String, Object>> scanner) throws StorageException {
+    Map<Long, Map<String, Object>> result = new LinkedHashMap<>();
+    while (scanner.iterate()) {
+      Map<String, Object> row = new HashMap<>();
+      Scanner<String, Object> values = scanner.value();
+      while (values.iterate()) {
+        row.put(values.key(), values.value());
+      }
+      result.put(scanner.key(), row);
+    }
+    scanner.close();
+    return result;
+  }
+
+  @Test
+  public void testFormerScannerWins() throws StorageException {
+    Scanner<Long, Scanner<String, Object>> newer = rows("a", 2, 20, 4, 40);
+    Scanner<Long, Scanner<String, Object>> older = rows("a", 1, 1, 2, 2, 3, 3);
+    Scanner<Long, Scanner<String, Object>> other = rows("b", 3, 300);
+
+    Map<Long, Map<String, Object>> result =
+        collect(new RowUnionScanner<>(Arrays.asList(newer, older, other)));
+
+    assertEquals(Arrays.asList(1L, 2L, 3L, 4L), new ArrayList<>(result.keySet()));
+    assertEquals(20L, result.get(2L).get("a"));
+    assertEquals(3L, result.get(3L).get("a"));
+    assertEquals(300L, result.get(3L).get("b"));
+  }
+
+  @Test
+  public void testLazyConcat() throws StorageException {
+    List<String> opened = new ArrayList<>();
+    Scanner<Long, Scanner<String, Object>> lazy =
+        new LazyRowScanner<>(
+            () -> {
+              opened.add("lazy");
+              return rows("a", 10, 10, 11, 11);
+            });
+    Scanner<Long, Scanner<String, Object>> concat =
+        new ConcatScanner<>(Iterators.forArray(new EmtpyHeadRowScanner<>(10L), lazy));
+    Scanner<Long, Scanner<String, Object>> union =
+        new RowUnionScanner<>(Arrays.asList(rows("a", 1, 1), concat));
+
+    assertTrue(union.iterate());
+    assertEquals(1L, (long) union.key());
+    assertTrue(opened.isEmpty());
+
+    Map<Long, Map<String, Object>> result = collect(union);
+    assertEquals(Arrays.asList(10L, 11L), new ArrayList<>(result.keySet()));
+    assertTrue(result.get(10L).containsKey("a"));
+    assertEquals(Collections.singletonList("lazy"), opened);
+  }
+}
@@ -19,12 +19,15 @@
  */
 package cn.edu.tsinghua.iginx.influxdb;
 
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_END_COL;
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_START_COL;
 import static cn.edu.tsinghua.iginx.influxdb.tools.TimeUtils.instantToNs;
 import static com.influxdb.client.domain.WritePrecision.NS;
 
 import cn.edu.tsinghua.iginx.engine.logical.utils.LogicalFilterUtils;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.StorageInitializationException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutorFactory;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
@@ -33,6 +36,7 @@ import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
 import cn.edu.tsinghua.iginx.engine.physical.storage.utils.TagKVUtils;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.BitmapView;
@@ -40,15 +44,28 @@ import cn.edu.tsinghua.iginx.engine.shared.data.write.ColumnDataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.RowDataView;
 import cn.edu.tsinghua.iginx.engine.shared.expr.*;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionUtils;
+import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Avg;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.FirstValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.LastValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
 import cn.edu.tsinghua.iginx.engine.shared.operator.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilterType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.influxdb.exception.InfluxDBException;
 import cn.edu.tsinghua.iginx.influxdb.exception.InfluxDBTaskExecuteFailureException;
 import cn.edu.tsinghua.iginx.influxdb.query.entity.InfluxDBQueryRowStream;
 import cn.edu.tsinghua.iginx.influxdb.query.entity.InfluxDBSchema;
+import cn.edu.tsinghua.iginx.influxdb.query.entity.InfluxDBStreamRowStream;
 import cn.edu.tsinghua.iginx.influxdb.tools.FilterTransformer;
 import cn.edu.tsinghua.iginx.influxdb.tools.FluxUtils;
 import cn.edu.tsinghua.iginx.influxdb.tools.SchemaTransformer;
@@ -67,6 +84,7 @@ import com.influxdb.client.domain.Bucket;
 import com.influxdb.client.domain.Organization;
 import com.influxdb.client.domain.WritePrecision;
 import com.influxdb.client.write.Point;
+import com.influxdb.exceptions.InfluxException;
 import com.influxdb.query.FluxColumn;
 import com.influxdb.query.FluxRecord;
 import com.influxdb.query.FluxTable;
@@ -75,13 +93,18 @@ import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -113,6 +136,34 @@ public class InfluxDBStorage implements IStorage {
   private static final String SHOW_TIME_SERIES_BY_PATTERN =
       "from(bucket:\"%s\") |> range(start: time(v: 0), stop: time(v: 9223372036854775807)) |> filter(fn: (r) => (r._measurement =~ /%s/ and r._field =~ /%s/)) |> first()";
 
+  private static final String AGGREGATE_WINDOW =
+      " |> aggregateWindow(every: %dns, offset: %dns, fn: %s, createEmpty: false, timeSrc: \"_start\")";
+
+  // IGinX 聚合函数到 Flux 聚合函数的映射
+  private static final Map<String, String> AGGREGATE_FUNCTIONS = new HashMap<>();
+
+  // Flux 结果中除 tag 以外的列
+  // 不同类型的序列合并到同一张表前需要将值转换为字符串，合并后按时间排序以便逐行读取
+  private static final String STREAM_ORDER_BY_TIME =
+      " |> map(fn: (r) => ({r with _value: string(v: r._value)}))"
+          + " |> group()"
+          + " |> sort(columns: [\"_time\"], desc: false)";
+
+  private static final Set<String> RESERVED_COLUMNS =
+      new HashSet<>(
+          Arrays.asList(
+              "result", "table", "_start", "_stop", "_time", "_value", "_field", "_measurement"));
+
+  static {
+    AGGREGATE_FUNCTIONS.put(Count.COUNT, "count");
+    AGGREGATE_FUNCTIONS.put(Sum.SUM, "sum");
+    AGGREGATE_FUNCTIONS.put(Avg.AVG, "mean");
+    AGGREGATE_FUNCTIONS.put(Max.MAX, "max");
+    AGGREGATE_FUNCTIONS.put(Min.MIN, "min");
+    AGGREGATE_FUNCTIONS.put(FirstValue.FIRST_VALUE, "first");
+    AGGREGATE_FUNCTIONS.put(LastValue.LAST_VALUE, "last");
+  }
+
   private final StorageEngineMeta meta;
 
   private final InfluxDBClient client;
@@ -125,6 +176,9 @@ public class InfluxDBStorage implements IStorage {
 
   private final Map<String, Bucket> historyBucketMap = new ConcurrentHashMap<>();
 
+  // 流式读取查询结果的后台线程
+  private final ExecutorService streamExecutor = Executors.newCachedThreadPool();
+
   public InfluxDBStorage(StorageEngineMeta meta) throws StorageInitializationException {
     this.meta = meta;
     if (!meta.getStorageEngine().equals(StorageEngineType.influxdb)) {
@@ -408,6 +462,7 @@ public class InfluxDBStorage implements IStorage {
 
   @Override
   public void release() {
+    streamExecutor.shutdownNow();
     client.close();
   }
 
@@ -475,10 +530,73 @@ public class InfluxDBStorage implements IStorage {
     return buildQueryResult(tables, project, filter, BucketNames);
   }
 
+  @Override
+  public boolean isSupportProjectWithAgg(Operator agg, DataArea dataArea, boolean isDummy) {
+    if (isDummy) {
+      return false;
+    }
+    List<FunctionCall> functionCalls;
+    switch (agg.getType()) {
+      case SetTransform:
+        functionCalls = ((SetTransform) agg).getFunctionCallList();
+        break;
+      case Downsample:
+        Downsample downsample = (Downsample) agg;
+        // aggregateWindow 只支持滚动窗口
+        if (downsample.notSetInterval()
+            || downsample.getPrecision() != downsample.getSlideDistance()) {
+          return false;
+        }
+        functionCalls = downsample.getFunctionCallList();
+        break;
+      default:
+        return false;
+    }
+    for (FunctionCall functionCall : functionCalls) {
+      if (!AGGREGATE_FUNCTIONS.containsKey(functionCall.getFunction().getIdentifier())) {
+        return false;
+      }
+      FunctionParams params = functionCall.getParams();
+      if (params.isDistinct()
+          || params.getExpressions().size() != 1
+          || !(params.getExpression(0) instanceof BaseExpression)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isSupportProjectWithAggSelect(
+      Operator agg, Select select, DataArea dataArea, boolean isDummy) {
+    // 只下推仅包含 key 条件的过滤，key 条件可以直接合并到 range 中
+    return select.getTagFilter() == null
+        && isKeyOnly(select.getFilter())
+        && isSupportProjectWithAgg(agg, dataArea, isDummy);
+  }
+
+  @Override
+  public boolean isPreferProjectWithAggSelect() {
+    return true;
+  }
+
+  private static boolean isKeyOnly(Filter filter) {
+    switch (filter.getType()) {
+      case Key:
+        return true;
+      case And:
+        return ((AndFilter) filter).getChildren().stream().allMatch(InfluxDBStorage::isKeyOnly);
+      case Or:
+        return ((OrFilter) filter).getChildren().stream().allMatch(InfluxDBStorage::isKeyOnly);
+      default:
+        return false;
+    }
+  }
+
   @Override
   public TaskExecuteResult executeProjectWithAggSelect(
       Project project, Select select, Operator agg, DataArea dataArea) {
-    return null;
+    return executeProjectWithAggAndRange(project, select, agg, dataArea);
   }
 
   @Override
@@ -489,7 +607,7 @@ public class InfluxDBStorage implements IStorage {
 
   @Override
   public TaskExecuteResult executeProjectWithAgg(Project project, Operator agg, DataArea dataArea) {
-    return null;
+    return executeProjectWithAggAndRange(project, null, agg, dataArea);
   }
 
   @Override
@@ -498,6 +616,223 @@ public class InfluxDBStorage implements IStorage {
     return null;
   }
 
+  /**
+   * 将聚合翻译为 Flux 聚合管道执行，结果以回调的方式逐条读取，不在内存中物化原始数据。无法下推的情况（key 条件不连续、bucket 不存在、Flux
+   * 不支持该数据类型等）回退为查询原始数据后在内存中聚合
+   */
+  private TaskExecuteResult executeProjectWithAggAndRange(
+      Project project, Select select, Operator agg, DataArea dataArea) {
+    String storageUnit = dataArea.getStorageUnit();
+    KeyInterval keyInterval = dataArea.getKeyInterval();
+    long startKey = keyInterval.getStartKey();
+    long endKey = keyInterval.getEndKey();
+    if (select != null) {
+      List<KeyRange> keyRanges = LogicalFilterUtils.getKeyRangesFromFilter(select.getFilter());
+      if (keyRanges.size() != 1) {
+        return executeAggInMemory(project, select, agg, dataArea);
+      }
+      startKey = Math.max(startKey, keyRanges.get(0).getActualBeginKey());
+      endKey = Math.min(endKey, toExclusiveEnd(keyRanges.get(0).getActualEndKey()));
+    }
+    boolean isDownsample = agg.getType() == OperatorType.Downsample;
+    long precision = 0;
+    long offset = 0;
+    List<FunctionCall> functionCalls;
+    if (isDownsample) {
+      Downsample downsample = (Downsample) agg;
+      precision = downsample.getPrecision();
+      offset = Math.floorMod(downsample.getKeyRange().getActualBeginKey(), precision);
+      startKey = Math.max(startKey, downsample.getKeyRange().getActualBeginKey());
+      endKey = Math.min(endKey, toExclusiveEnd(downsample.getKeyRange().getActualEndKey()));
+      functionCalls = downsample.getFunctionCallList();
+    } else {
+      functionCalls = ((SetTransform) agg).getFunctionCallList();
+    }
+    if (startKey >= endKey || client.getBucketsApi().findBucketByName(storageUnit) == null) {
+      return executeAggInMemory(project, select, agg, dataArea);
+    }
+
+    String baseStatement =
+        generateQueryStatement(
+            storageUnit,
+            project.getPatterns(),
+            project.getTagFilter(),
+            null,
+            startKey,
+            endKey,
+            false);
+    List<Field> fields = new ArrayList<>();
+    List<Map<Long, Object>> columns = new ArrayList<>(); // 每个输出列中 窗口起点 -> 聚合结果
+    try {
+      for (FunctionCall functionCall : functionCalls) {
+        String function = AGGREGATE_FUNCTIONS.get(functionCall.getFunction().getIdentifier());
+        String statement =
+            isDownsample
+                ? baseStatement + String.format(AGGREGATE_WINDOW, precision, offset, function)
+                : baseStatement + " |> " + function + "()";
+        LOGGER.info("execute query: {}", statement);
+
+        Map<Integer, Field> seriesFields = new LinkedHashMap<>();
+        Map<Integer, Map<Long, Object>> seriesValues = new HashMap<>();
+        long windowPrecision = precision;
+        long windowOffset = offset;
+        client
+            .getQueryApi()
+            .query(
+                statement,
+                organization.getId(),
+                (cancellable, record) -> {
+                  Map<Long, Object> values =
+                      seriesValues.computeIfAbsent(
+                          record.getTable(),
+                          k -> {
+                            seriesFields.put(k, getFieldFromRecord(record));
+                            return new HashMap<>();
+                          });
+                  long key = 0;
+                  if (isDownsample) {
+                    long time = instantToNs(record.getTime());
+                    key =
+                        windowOffset
+                            + Math.floorDiv(time - windowOffset, windowPrecision) * windowPrecision;
+                  }
+                  Object value = record.getValue();
+                  values.put(key, value instanceof String ? ((String) value).getBytes() : value);
+                });
+
+        // 与内存中的计算使用相同的方式确定参与计算的列和结果列名
+        List<Integer> tables = new ArrayList<>();
+        List<Field> rawFields = new ArrayList<>();
+        for (Map.Entry<Integer, Field> entry : seriesFields.entrySet()) {
+          Field field = entry.getValue();
+          if (project.getTagFilter() == null
+              || TagFilterUtils.match(field.getTags(), project.getTagFilter())) {
+            tables.add(entry.getKey());
+            rawFields.add(field);
+          }
+        }
+        Pair<List<Field>, List<Integer>> pair =
+            FunctionUtils.getFieldAndIndices(
+                new Table(new Header(rawFields), Collections.emptyList()),
+                functionCall.getParams(),
+                (SetMappingFunction) functionCall.getFunction());
+        for (int i = 0; i < pair.k.size(); i++) {
+          fields.add(pair.k.get(i));
+          columns.add(seriesValues.get(tables.get(pair.v.get(i))));
+        }
+      }
+    } catch (InfluxException | IllegalArgumentException e) {
+      LOGGER.warn("failed to push down aggregation to influxdb, execute it in memory: ", e);
+      return executeAggInMemory(project, select, agg, dataArea);
+    }
+
+    TreeSet<Long> keys = new TreeSet<>();
+    columns.forEach(column -> keys.addAll(column.keySet()));
+    List<Row> rows = new ArrayList<>();
+    if (isDownsample) {
+      List<Field> headerFields = new ArrayList<>();
+      headerFields.add(new Field(WINDOW_START_COL, DataType.LONG));
+      headerFields.add(new Field(WINDOW_END_COL, DataType.LONG));
+      headerFields.addAll(fields);
+      Header header = new Header(Field.KEY, headerFields);
+      for (long key : keys) {
+        Object[] values = new Object[headerFields.size()];
+        values[0] = key;
+        values[1] = key + precision - 1;
+        for (int i = 0; i < columns.size(); i++) {
+          values[i + 2] = convertAggregateValue(columns.get(i).get(key), fields.get(i));
+        }
+        rows.add(new Row(header, key, values));
+      }
+      return new TaskExecuteResult(new Table(header, rows));
+    }
+    Header header = new Header(fields);
+    if (!fields.isEmpty()) {
+      Object[] values = new Object[fields.size()];
+      for (int i = 0; i < columns.size(); i++) {
+        values[i] = convertAggregateValue(columns.get(i).get(0L), fields.get(i));
+      }
+      rows.add(new Row(header, values));
+    }
+    return new TaskExecuteResult(new Table(header, rows));
+  }
+
+  private static long toExclusiveEnd(long inclusiveEnd) {
+    return inclusiveEnd == Long.MAX_VALUE ? Long.MAX_VALUE : inclusiveEnd + 1;
+  }
+
+  /** 与 InfluxDBQueryRowStream 相同的方式由 Flux 结果确定序列名和 tag */
+  private static Field getFieldFromRecord(FluxRecord record) {
+    Map<String, String> tags = new HashMap<>();
+    for (Map.Entry<String, Object> entry : record.getValues().entrySet()) {
+      if (!RESERVED_COLUMNS.contains(entry.getKey()) && entry.getValue() instanceof String) {
+        tags.put(entry.getKey(), (String) entry.getValue());
+      }
+    }
+    String path;
+    if (record.getValueByKey(InfluxDBSchema.TAG) == null) {
+      path = record.getMeasurement() + "." + record.getField();
+    } else {
+      path =
+          record.getMeasurement()
+              + "."
+              + record.getValueByKey(InfluxDBSchema.TAG)
+              + "."
+              + record.getField();
+    }
+    DataType dataType;
+    Object value = record.getValue();
+    if (value instanceof Boolean) {
+      dataType = DataType.BOOLEAN;
+    } else if (value instanceof Long) {
+      dataType = DataType.LONG;
+    } else if (value instanceof Double) {
+      dataType = DataType.DOUBLE;
+    } else {
+      dataType = DataType.BINARY;
+    }
+    return new Field(path, dataType, tags);
+  }
+
+  /** Flux 的整数结果总是 long，浮点结果总是 double，需要转换为与内存中计算一致的类型 */
+  private static Object convertAggregateValue(Object value, Field field) {
+    if (!(value instanceof Number)) {
+      return value;
+    }
+    Number number = (Number) value;
+    switch (field.getType()) {
+      case INTEGER:
+        return number.intValue();
+      case LONG:
+        return number.longValue();
+      case FLOAT:
+        return number.floatValue();
+      case DOUBLE:
+        return number.doubleValue();
+      default:
+        return value;
+    }
+  }
+
+  private TaskExecuteResult executeAggInMemory(
+      Project project, Select select, Operator agg, DataArea dataArea) {
+    TaskExecuteResult result =
+        select == null
+            ? executeProject(project, dataArea)
+            : executeProjectWithSelect(project, select, dataArea);
+    if (result.getException() != null) {
+      return result;
+    }
+    try {
+      return new TaskExecuteResult(
+          OperatorMemoryExecutorFactory.getInstance()
+              .getMemoryExecutor()
+              .executeUnaryOperator((UnaryOperator) agg, result.getRowStream(), null));
+    } catch (PhysicalException e) {
+      return new TaskExecuteResult(e);
+    }
+  }
+
   @Override
   public TaskExecuteResult executeProject(Project project, DataArea dataArea) {
     String storageUnit = dataArea.getStorageUnit();
@@ -519,8 +854,22 @@ public class InfluxDBStorage implements IStorage {
             keyInterval.getEndKey(),
             false);
 
-    List<FluxTable> tables = client.getQueryApi().query(statement, organization.getId());
-    return buildQueryResult(tables, project, null, new ArrayList<>());
+    // 先读取每个序列的第一条记录确定表头，再以流的方式读取全部数据
+    List<FluxTable> firstTables =
+        client.getQueryApi().query(statement + " |> first()", organization.getId());
+    InfluxDBQueryRowStream schema = new InfluxDBQueryRowStream(firstTables, project, null);
+    if (schema.getHeader().getFieldSize() == 0) {
+      return new TaskExecuteResult(schema);
+    }
+    LOGGER.info("execute query: {}", statement + STREAM_ORDER_BY_TIME);
+    return new TaskExecuteResult(
+        new InfluxDBStreamRowStream(
+            client.getQueryApi(),
+            statement + STREAM_ORDER_BY_TIME,
+            organization.getId(),
+            schema.getHeader(),
+            InfluxDBStorage::getFieldFromRecord,
+            streamExecutor));
   }
 
   @Override
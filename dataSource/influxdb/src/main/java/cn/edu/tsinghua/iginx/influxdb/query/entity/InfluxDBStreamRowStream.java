@@ -0,0 +1,211 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.influxdb.query.entity;
+
+import static cn.edu.tsinghua.iginx.influxdb.tools.TimeUtils.instantToNs;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.RowFetchException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import com.influxdb.client.QueryApi;
+import com.influxdb.query.FluxRecord;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 以流的方式读取 Flux 查询结果：后台线程通过 QueryApi 的回调逐条接收记录并放入有界队列，读取方按 key 将同一时刻的记录合并为一行，内存占用与查询的数据量无关。
+ *
+ * <p>查询结果需要已经按时间排序，且值已转换为字符串（不同类型的序列才能合并到同一张表中），由 header 中的类型还原。
+ */
+public class InfluxDBStreamRowStream implements RowStream {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InfluxDBStreamRowStream.class);
+
+  private static final int QUEUE_CAPACITY = 1024;
+
+  private static final Object END = new Object();
+
+  private final Header header;
+
+  private final Function<FluxRecord, Field> fieldOfRecord;
+
+  private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+  private final Future<?> producer;
+
+  private volatile boolean closed = false;
+
+  private volatile Throwable error;
+
+  private FluxRecord pendingRecord;
+
+  private boolean finished = false;
+
+  private Row cachedRow;
+
+  /** @param fieldOfRecord 由记录确定所属序列，返回的序列不在 header 中时忽略该记录 */
+  public InfluxDBStreamRowStream(
+      QueryApi queryApi,
+      String statement,
+      String organizationId,
+      Header header,
+      Function<FluxRecord, Field> fieldOfRecord,
+      ExecutorService executor) {
+    this.header = header;
+    this.fieldOfRecord = fieldOfRecord;
+    this.producer =
+        executor.submit(
+            () -> {
+              try {
+                queryApi.query(
+                    statement,
+                    organizationId,
+                    (cancellable, record) -> {
+                      if (closed) {
+                        cancellable.cancel();
+                        return;
+                      }
+                      try {
+                        queue.put(record);
+                      } catch (InterruptedException e) {
+                        cancellable.cancel();
+                        Thread.currentThread().interrupt();
+                      }
+                    });
+              } catch (Throwable e) {
+                if (!closed) {
+                  LOGGER.error("failed to stream influxdb query {}: ", statement, e);
+                  error = e;
+                }
+              } finally {
+                putEnd();
+              }
+            });
+  }
+
+  private void putEnd() {
+    try {
+      while (!closed && !queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+        // 读取方尚未消费，等待队列空出位置
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public Header getHeader() {
+    return header;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    producer.cancel(true);
+    queue.clear();
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    if (cachedRow == null) {
+      cachedRow = fetchRow();
+    }
+    return cachedRow != null;
+  }
+
+  @Override
+  public Row next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("row stream doesn't have more data!");
+    }
+    Row row = cachedRow;
+    cachedRow = null;
+    return row;
+  }
+
+  private Row fetchRow() throws PhysicalException {
+    while (true) {
+      if (pendingRecord == null) {
+        pendingRecord = takeRecord();
+        if (pendingRecord == null) {
+          return null;
+        }
+      }
+      long key = instantToNs(pendingRecord.getTime());
+      Object[] values = new Object[header.getFieldSize()];
+      boolean isEmpty = true;
+      // 同一时刻的记录连续出现，合并为一行
+      while (pendingRecord != null && instantToNs(pendingRecord.getTime()) == key) {
+        int index = header.indexOf(fieldOfRecord.apply(pendingRecord));
+        if (index != -1 && pendingRecord.getValue() != null) {
+          values[index] = parseValue((String) pendingRecord.getValue(), header.getField(index));
+          isEmpty = false;
+        }
+        pendingRecord = takeRecord();
+      }
+      if (!isEmpty) {
+        return new Row(header, key, values);
+      }
+    }
+  }
+
+  private FluxRecord takeRecord() throws PhysicalException {
+    if (finished) {
+      return null;
+    }
+    Object item;
+    try {
+      item = queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RowFetchException(e);
+    }
+    if (item == END) {
+      finished = true;
+      if (error != null) {
+        throw new RowFetchException(error);
+      }
+      return null;
+    }
+    return (FluxRecord) item;
+  }
+
+  private static Object parseValue(String value, Field field) {
+    switch (field.getType()) {
+      case BOOLEAN:
+        return Boolean.parseBoolean(value);
+      case LONG:
+        return Long.parseLong(value);
+      case DOUBLE:
+        return Double.parseDouble(value);
+      default:
+        return value.getBytes();
+    }
+  }
+}
@@ -24,24 +24,44 @@ import static cn.edu.tsinghua.iginx.thrift.DataType.BINARY;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.StorageInitializationException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutorFactory;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.EmptyRowStream;
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.Column;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
+import cn.edu.tsinghua.iginx.engine.physical.storage.utils.LimitUtils;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.ClearEmptyRowStreamWrapper;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.BitmapView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.ColumnDataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.RowDataView;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionUtils;
+import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Avg;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.FirstValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.LastValue;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
 import cn.edu.tsinghua.iginx.engine.shared.operator.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.iotdb.exception.IoTDBException;
 import cn.edu.tsinghua.iginx.iotdb.exception.IoTDBTaskExecuteFailureException;
+import cn.edu.tsinghua.iginx.iotdb.query.entity.IoTDBAggregateRowStream;
 import cn.edu.tsinghua.iginx.iotdb.query.entity.IoTDBQueryRowStream;
+import cn.edu.tsinghua.iginx.iotdb.tools.DataTypeTransformer;
 import cn.edu.tsinghua.iginx.iotdb.tools.DataViewWrapper;
 import cn.edu.tsinghua.iginx.iotdb.tools.FilterTransformer;
 import cn.edu.tsinghua.iginx.iotdb.tools.TagKVUtils;
@@ -59,6 +79,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -93,6 +114,10 @@ public class IoTDBStorage implements IStorage {
 
   private static final String DEFAULT_SESSION_POOL_SIZE = "100";
 
+  private static final String TIME_PRECISION = "time_precision";
+
+  private static final String DEFAULT_TIME_PRECISION = "ms";
+
   private static final String PREFIX = "root.";
 
   private static final String QUERY_DATA = "SELECT %s FROM " + PREFIX + "%s";
@@ -101,6 +126,25 @@ public class IoTDBStorage implements IStorage {
 
   private static final String QUERY_WHERE = " WHERE %s";
 
+  private static final String QUERY_ORDER_BY_TIME_DESC = " ORDER BY TIME DESC";
+
+  private static final String QUERY_LIMIT = " LIMIT %d";
+
+  private static final String QUERY_GROUP_BY_TIME = " GROUP BY ([%d, %d), %d%s)";
+
+  // IGinX 聚合函数到 IoTDB 聚合函数的映射
+  private static final Map<String, String> AGGREGATE_FUNCTIONS = new HashMap<>();
+
+  static {
+    AGGREGATE_FUNCTIONS.put(Count.COUNT, "count");
+    AGGREGATE_FUNCTIONS.put(Sum.SUM, "sum");
+    AGGREGATE_FUNCTIONS.put(Avg.AVG, "avg");
+    AGGREGATE_FUNCTIONS.put(Max.MAX, "max_value");
+    AGGREGATE_FUNCTIONS.put(Min.MIN, "min_value");
+    AGGREGATE_FUNCTIONS.put(FirstValue.FIRST_VALUE, "first_value");
+    AGGREGATE_FUNCTIONS.put(LastValue.LAST_VALUE, "last_value");
+  }
+
   private static final String DELETE_STORAGE_GROUP_CLAUSE = "DELETE STORAGE GROUP " + PREFIX + "%s";
 
   private static final String DELETE_TIMESERIES_CLAUSE = "DELETE TIMESERIES %s";
@@ -337,6 +381,37 @@ public class IoTDBStorage implements IStorage {
     return executeProjectWithFilter(project, filter, storageUnit);
   }
 
+  /** IoTDBQueryRowStream 会在内存中再次校验谓词，因此只对仅含 key 条件的谓词下推 Limit */
+  @Override
+  public boolean isSupportProjectWithLimit(Operator limit, DataArea dataArea, boolean isDummy) {
+    return !isDummy && LimitUtils.isSupportLimit(limit);
+  }
+
+  @Override
+  public boolean isSupportProjectWithSelectLimit(
+      Operator limit, Select select, DataArea dataArea, boolean isDummy) {
+    return LimitUtils.isKeyOnlySelect(select)
+        && isSupportProjectWithLimit(limit, dataArea, isDummy);
+  }
+
+  @Override
+  public TaskExecuteResult executeProjectWithLimit(
+      Project project, Operator limit, DataArea dataArea) {
+    KeyInterval keyInterval = dataArea.getKeyInterval();
+    Filter filter =
+        new AndFilter(
+            Arrays.asList(
+                new KeyFilter(Op.GE, keyInterval.getStartKey()),
+                new KeyFilter(Op.L, keyInterval.getEndKey())));
+    return executeProjectWithFilter(project, filter, dataArea.getStorageUnit(), limit);
+  }
+
+  @Override
+  public TaskExecuteResult executeProjectWithSelectLimit(
+      Project project, Select select, Operator limit, DataArea dataArea) {
+    return executeProjectWithFilter(project, select.getFilter(), dataArea.getStorageUnit(), limit);
+  }
+
   private boolean isContainWildcard(List<String> paths) {
     for (String path : paths) {
       if (path.contains("*")) {
@@ -348,6 +423,11 @@ public class IoTDBStorage implements IStorage {
 
   private TaskExecuteResult executeProjectWithFilter(
       Project project, Filter filter, String storageUnit) {
+    return executeProjectWithFilter(project, filter, storageUnit, null);
+  }
+
+  private TaskExecuteResult executeProjectWithFilter(
+      Project project, Filter filter, String storageUnit, Operator limit) {
     try {
       StringBuilder builder = new StringBuilder();
       boolean containWildcard = isContainWildcard(project.getPatterns());
@@ -370,6 +450,12 @@ public class IoTDBStorage implements IStorage {
       if (!filterStr.isEmpty()) {
         statement += String.format(QUERY_WHERE, filterStr);
       }
+      if (limit != null) {
+        if (LimitUtils.isDescending(limit)) {
+          statement += QUERY_ORDER_BY_TIME_DESC;
+        }
+        statement += String.format(QUERY_LIMIT, LimitUtils.getFetchSize(limit));
+      }
 
       LOGGER.info("[Query] execute query: {}", statement);
       RowStream rowStream =
@@ -400,10 +486,64 @@ public class IoTDBStorage implements IStorage {
     return executeProjectDummyWithFilter(project, select.getFilter());
   }
 
+  @Override
+  public boolean isSupportProjectWithAgg(Operator agg, DataArea dataArea, boolean isDummy) {
+    if (isDummy) {
+      return false;
+    }
+    List<FunctionCall> functionCalls;
+    switch (agg.getType()) {
+      case SetTransform:
+        functionCalls = ((SetTransform) agg).getFunctionCallList();
+        break;
+      case Downsample:
+        Downsample downsample = (Downsample) agg;
+        // 只下推指定了查询区间的滚动窗口，IoTDB 的滑动窗口会被查询区间截断，与 IGinX 的语义不同
+        if (downsample.notSetInterval()
+            || downsample.getPrecision() != downsample.getSlideDistance()) {
+          return false;
+        }
+        functionCalls = downsample.getFunctionCallList();
+        break;
+      default:
+        return false;
+    }
+    for (FunctionCall functionCall : functionCalls) {
+      if (!AGGREGATE_FUNCTIONS.containsKey(functionCall.getFunction().getIdentifier())) {
+        return false;
+      }
+      FunctionParams params = functionCall.getParams();
+      if (params.isDistinct()
+          || params.getExpressions().size() != 1
+          || !(params.getExpression(0) instanceof BaseExpression)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isSupportProjectWithAggSelect(
+      Operator agg, Select select, DataArea dataArea, boolean isDummy) {
+    return select.getTagFilter() == null && isSupportProjectWithAgg(agg, dataArea, isDummy);
+  }
+
+  @Override
+  public boolean isPreferProjectWithAggSelect() {
+    return true;
+  }
+
   @Override
   public TaskExecuteResult executeProjectWithAggSelect(
       Project project, Select select, Operator agg, DataArea dataArea) {
-    return null;
+    KeyInterval keyInterval = dataArea.getKeyInterval();
+    Filter filter =
+        new AndFilter(
+            Arrays.asList(
+                select.getFilter().copy(),
+                new KeyFilter(Op.GE, keyInterval.getStartKey()),
+                new KeyFilter(Op.L, keyInterval.getEndKey())));
+    return executeProjectWithAggFilter(project, filter, agg, dataArea.getStorageUnit());
   }
 
   @Override
@@ -414,7 +554,167 @@ public class IoTDBStorage implements IStorage {
 
   @Override
   public TaskExecuteResult executeProjectWithAgg(Project project, Operator agg, DataArea dataArea) {
-    return null;
+    KeyInterval keyInterval = dataArea.getKeyInterval();
+    Filter filter =
+        new AndFilter(
+            Arrays.asList(
+                new KeyFilter(Op.GE, keyInterval.getStartKey()),
+                new KeyFilter(Op.L, keyInterval.getEndKey())));
+    return executeProjectWithAggFilter(project, filter, agg, dataArea.getStorageUnit());
+  }
+
+  /** 将聚合函数翻译为 IoTDB 的聚合查询，遇到 IoTDB 不支持的数据类型时回退为查询原始数据后在内存中聚合 */
+  private TaskExecuteResult executeProjectWithAggFilter(
+      Project project, Filter filter, Operator agg, String storageUnit) {
+    try {
+      // 存储单元中与 project 匹配的序列，键为去掉 root.<storageUnit>. 前缀的路径
+      Map<String, Field> columns = getColumnsOfStorageUnit(storageUnit, project);
+      if (columns.isEmpty()) {
+        return new TaskExecuteResult(new EmptyRowStream());
+      }
+      List<String> paths = new ArrayList<>(columns.keySet());
+      Table table =
+          new Table(new Header(new ArrayList<>(columns.values())), Collections.emptyList());
+
+      boolean isDownsample = agg.getType() == OperatorType.Downsample;
+      List<FunctionCall> functionCalls =
+          isDownsample
+              ? ((Downsample) agg).getFunctionCallList()
+              : ((SetTransform) agg).getFunctionCallList();
+      List<Field> fields = new ArrayList<>();
+      List<String> columnNames = new ArrayList<>();
+      List<Boolean> countColumns = new ArrayList<>();
+      StringBuilder builder = new StringBuilder();
+      for (FunctionCall functionCall : functionCalls) {
+        String identifier = functionCall.getFunction().getIdentifier();
+        String function = AGGREGATE_FUNCTIONS.get(identifier);
+        // 与内存中的计算使用相同的方式确定参与计算的列和结果列名
+        Pair<List<Field>, List<Integer>> pair =
+            FunctionUtils.getFieldAndIndices(
+                table, functionCall.getParams(), (SetMappingFunction) functionCall.getFunction());
+        for (int i = 0; i < pair.k.size(); i++) {
+          int index = pair.v.get(i);
+          DataType dataType = table.getHeader().getField(index).getType();
+          if (!isSupportAggregateType(identifier, dataType)) {
+            return executeAggInMemory(project, filter, agg, storageUnit);
+          }
+          String path = paths.get(index);
+          builder.append(function).append('(').append(path).append("),");
+          fields.add(pair.k.get(i));
+          columnNames.add(function + "(" + PREFIX + storageUnit + "." + path + ")");
+          countColumns.add(identifier.equals(Count.COUNT));
+        }
+      }
+      if (fields.isEmpty()) {
+        return new TaskExecuteResult(new EmptyRowStream());
+      }
+
+      String statement =
+          String.format(QUERY_DATA, builder.deleteCharAt(builder.length() - 1), storageUnit);
+      String filterStr = getFilterString(filter, storageUnit);
+      if (!filterStr.isEmpty()) {
+        statement += String.format(QUERY_WHERE, filterStr);
+      }
+      long precision = -1;
+      if (isDownsample) {
+        Downsample downsample = (Downsample) agg;
+        precision = downsample.getPrecision();
+        statement +=
+            String.format(
+                QUERY_GROUP_BY_TIME,
+                downsample.getKeyRange().getActualBeginKey(),
+                downsample.getKeyRange().getActualEndKey() + 1,
+                precision,
+                meta.getExtraParams().getOrDefault(TIME_PRECISION, DEFAULT_TIME_PRECISION));
+      }
+
+      boolean[] isCount = new boolean[countColumns.size()];
+      for (int i = 0; i < isCount.length; i++) {
+        isCount[i] = countColumns.get(i);
+      }
+      LOGGER.info("[Query] execute query: {}", statement);
+      RowStream rowStream =
+          new IoTDBAggregateRowStream(
+              sessionPool.executeQueryStatement(statement),
+              fields,
+              columnNames,
+              isCount,
+              precision);
+      return new TaskExecuteResult(rowStream);
+    } catch (IoTDBConnectionException | StatementExecutionException | PhysicalException e) {
+      return new TaskExecuteResult(
+          new IoTDBTaskExecuteFailureException(
+              "execute project with agg task in iotdb12 failure", e));
+    }
+  }
+
+  private static boolean isSupportAggregateType(String identifier, DataType dataType) {
+    switch (identifier) {
+      case Count.COUNT:
+      case FirstValue.FIRST_VALUE:
+      case LastValue.LAST_VALUE:
+        return true;
+      case Sum.SUM:
+        // IoTDB 的 sum 结果总是 DOUBLE，整数求和超过 2^53 时会丢失精度，整数列在内存中精确求和
+        return dataType == DataType.FLOAT || dataType == DataType.DOUBLE;
+      default:
+        return dataType == DataType.INTEGER
+            || dataType == DataType.LONG
+            || dataType == DataType.FLOAT
+            || dataType == DataType.DOUBLE;
+    }
+  }
+
+  private TaskExecuteResult executeAggInMemory(
+      Project project, Filter filter, Operator agg, String storageUnit) {
+    TaskExecuteResult result = executeProjectWithFilter(project, filter, storageUnit);
+    if (result.getException() != null) {
+      return result;
+    }
+    try {
+      return new TaskExecuteResult(
+          OperatorMemoryExecutorFactory.getInstance()
+              .getMemoryExecutor()
+              .executeUnaryOperator((UnaryOperator) agg, result.getRowStream(), null));
+    } catch (PhysicalException e) {
+      return new TaskExecuteResult(e);
+    }
+  }
+
+  private Map<String, Field> getColumnsOfStorageUnit(String storageUnit, Project project)
+      throws IoTDBConnectionException, StatementExecutionException {
+    Map<String, Field> columns = new LinkedHashMap<>();
+    String unitPrefix = PREFIX + storageUnit + ".";
+    SessionDataSetWrapper dataSet =
+        sessionPool.executeQueryStatement(SHOW_TIMESERIES_ALL + " " + PREFIX + storageUnit);
+    while (dataSet.hasNext()) {
+      RowRecord record = dataSet.next();
+      if (record == null || record.getFields().size() < 4) {
+        continue;
+      }
+      String path = record.getFields().get(0).getStringValue();
+      if (!path.startsWith(unitPrefix)) {
+        continue;
+      }
+      path = path.substring(unitPrefix.length());
+      if (containsIllegalChar(path)) {
+        continue;
+      }
+      Pair<String, Map<String, String>> pair = TagKVUtils.splitFullName(path);
+      if (project.getTagFilter() != null && !TagKVUtils.match(pair.v, project.getTagFilter())) {
+        continue;
+      }
+      for (String pattern : project.getPatterns()) {
+        if (match(pair.k, pattern)) {
+          DataType dataType =
+              DataTypeTransformer.strFromIoTDB(record.getFields().get(3).getStringValue());
+          columns.put(path, new Field(pair.k, dataType, pair.v));
+          break;
+        }
+      }
+    }
+    dataSet.close();
+    return columns;
   }
 
   @Override
@@ -0,0 +1,195 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.iotdb.query.entity;
+
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_END_COL;
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.WINDOW_START_COL;
+import static org.apache.iotdb.tsfile.file.metadata.enums.TSDataType.TEXT;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.RowFetchException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.iotdb.rpc.IoTDBConnectionException;
+import org.apache.iotdb.rpc.StatementExecutionException;
+import org.apache.iotdb.session.pool.SessionDataSetWrapper;
+import org.apache.iotdb.tsfile.read.common.RowRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 下推到 IoTDB 的聚合查询结果。不带时间分组时只有一行且不含 key；带时间分组时每个窗口一行，key 为窗口起点，与内存中 Downsample 的输出一致，不含任何数据的窗口被跳过
+ */
+public class IoTDBAggregateRowStream implements RowStream {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IoTDBAggregateRowStream.class);
+
+  private static final String TIME = "Time";
+
+  private final SessionDataSetWrapper dataset;
+
+  private final Header header;
+
+  private final boolean isDownsample;
+
+  private final long precision;
+
+  private final int[] columnIndexes; // 每个输出列在 IoTDB 结果中的位置，不含 Time 列
+
+  private final boolean[] isCount;
+
+  private final int valueOffset; // 输出行中聚合结果之前的列数
+
+  private Row cachedRow;
+
+  private boolean hasCachedRow = false;
+
+  /**
+   * @param fields 输出的聚合结果列
+   * @param columnNames 与 fields 一一对应的 IoTDB 结果列名
+   * @param countColumns fields 中哪些列是 count 的结果
+   * @param precision 时间分组的窗口长度，不带时间分组时为 -1
+   */
+  public IoTDBAggregateRowStream(
+      SessionDataSetWrapper dataset,
+      List<Field> fields,
+      List<String> columnNames,
+      boolean[] countColumns,
+      long precision) {
+    this.dataset = dataset;
+    this.isDownsample = precision > 0;
+    this.precision = precision;
+    this.isCount = countColumns;
+
+    List<String> names = new ArrayList<>(dataset.getColumnNames());
+    if (!names.isEmpty() && names.get(0).equals(TIME)) {
+      names.remove(0);
+    }
+    this.columnIndexes = new int[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      int index = names.indexOf(columnNames.get(i));
+      // 列名无法对应时按 SELECT 子句中的顺序对应
+      columnIndexes[i] = index == -1 ? i : index;
+    }
+
+    List<Field> headerFields = new ArrayList<>();
+    if (isDownsample) {
+      headerFields.add(new Field(WINDOW_START_COL, DataType.LONG));
+      headerFields.add(new Field(WINDOW_END_COL, DataType.LONG));
+    }
+    this.valueOffset = headerFields.size();
+    headerFields.addAll(fields);
+    this.header = isDownsample ? new Header(Field.KEY, headerFields) : new Header(headerFields);
+  }
+
+  @Override
+  public Header getHeader() {
+    return header;
+  }
+
+  @Override
+  public void close() {
+    dataset.close();
+  }
+
+  @Override
+  public boolean hasNext() throws PhysicalException {
+    if (!hasCachedRow) {
+      cachedRow = fetchRow();
+      hasCachedRow = true;
+    }
+    return cachedRow != null;
+  }
+
+  @Override
+  public Row next() throws PhysicalException {
+    if (!hasNext()) {
+      throw new IllegalStateException("row stream doesn't have more data!");
+    }
+    Row row = cachedRow;
+    cachedRow = null;
+    hasCachedRow = false;
+    return row;
+  }
+
+  private Row fetchRow() throws PhysicalException {
+    try {
+      while (dataset.hasNext()) {
+        RowRecord record = dataset.next();
+        Object[] values = new Object[header.getFieldSize()];
+        boolean isEmpty = true;
+        for (int i = 0; i < columnIndexes.length; i++) {
+          Object value = getValue(record, columnIndexes[i], header.getField(valueOffset + i));
+          values[valueOffset + i] = value;
+          if (value != null && !(isCount[i] && (long) value == 0)) {
+            isEmpty = false;
+          }
+        }
+        if (!isDownsample) {
+          return new Row(header, values);
+        }
+        if (isEmpty) {
+          continue;
+        }
+        long windowStartKey = record.getTimestamp();
+        values[0] = windowStartKey;
+        values[1] = windowStartKey + precision - 1;
+        return new Row(header, windowStartKey, values);
+      }
+      return null;
+    } catch (StatementExecutionException | IoTDBConnectionException e) {
+      LOGGER.error("unexpected error: ", e);
+      throw new RowFetchException(e);
+    }
+  }
+
+  private static Object getValue(RowRecord record, int index, Field field) {
+    org.apache.iotdb.tsfile.read.common.Field value = record.getFields().get(index);
+    if (value == null || value.getDataType() == null) {
+      return null;
+    }
+    if (value.getDataType() == TEXT) {
+      return value.getBinaryV().getValues();
+    }
+    Object object = value.getObjectValue(value.getDataType());
+    // IoTDB 的 sum 结果总是 DOUBLE（整数列的 sum 不会下推），count 结果为 INT64，需要转换为与内存中计算一致的类型
+    if (object instanceof Number) {
+      Number number = (Number) object;
+      switch (field.getType()) {
+        case INTEGER:
+          return number.intValue();
+        case LONG:
+          return number.longValue();
+        case FLOAT:
+          return number.floatValue();
+        case DOUBLE:
+          return number.doubleValue();
+        default:
+          break;
+      }
+    }
+    return object;
+  }
+}
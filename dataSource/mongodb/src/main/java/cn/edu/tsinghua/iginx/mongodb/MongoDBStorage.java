@@ -25,6 +25,7 @@ import cn.edu.tsinghua.iginx.engine.physical.exception.StorageInitializationExce
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.Column;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
+import cn.edu.tsinghua.iginx.engine.physical.storage.utils.LimitUtils;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
@@ -185,6 +186,30 @@ public class MongoDBStorage implements IStorage {
     return query(project, area, select.getFilter());
   }
 
+  /** 按列分集合存储，每个集合各取前 offset + limit 个文档；带谓词时只支持仅含 key 条件的谓词 */
+  @Override
+  public boolean isSupportProjectWithLimit(Operator limit, DataArea dataArea, boolean isDummy) {
+    return !isDummy && LimitUtils.isSupportLimit(limit);
+  }
+
+  @Override
+  public boolean isSupportProjectWithSelectLimit(
+      Operator limit, Select select, DataArea dataArea, boolean isDummy) {
+    return LimitUtils.isKeyOnlySelect(select)
+        && isSupportProjectWithLimit(limit, dataArea, isDummy);
+  }
+
+  @Override
+  public TaskExecuteResult executeProjectWithLimit(Project project, Operator limit, DataArea area) {
+    return queryWithLimit(project, area, null, limit);
+  }
+
+  @Override
+  public TaskExecuteResult executeProjectWithSelectLimit(
+      Project project, Select select, Operator limit, DataArea area) {
+    return queryWithLimit(project, area, select.getFilter(), limit);
+  }
+
   @Override
   public TaskExecuteResult executeProjectDummy(Project project, DataArea area) {
     return queryDummy(project, area, null);
@@ -270,6 +295,46 @@ public class MongoDBStorage implements IStorage {
     return new TaskExecuteResult(result);
   }
 
+  private TaskExecuteResult queryWithLimit(
+      Project project, DataArea area, Filter filter, Operator limit) {
+    String unit = area.getStorageUnit();
+    KeyInterval range = area.getKeyInterval();
+    List<String> patterns = project.getPatterns();
+    TagFilter tagFilter = project.getTagFilter();
+
+    MongoDatabase db = this.getDatabase(unit);
+    List<Field> fieldList = NameUtils.match(getFields(db), patterns, tagFilter);
+
+    RowStream result;
+    try {
+      Bson keyFilter =
+          filter == null
+              ? FilterUtils.interval(range)
+              : FilterUtils.getPreFilter(rangeUnionWithFilter(range, filter));
+      result =
+          new ColumnQuery(db)
+              .query(
+                  fieldList,
+                  keyFilter,
+                  LimitUtils.isDescending(limit),
+                  LimitUtils.getFetchSize(limit));
+      if (filter != null) {
+        result = new FilterRowStreamWrapper(result, filter);
+      }
+    } catch (MongoException e) {
+      LOGGER.error(
+          "project {} where {} and range [{},{}) with {} failed",
+          patterns,
+          filter,
+          range.getStartKey(),
+          range.getEndKey(),
+          limit.getInfo(),
+          e);
+      return new TaskExecuteResult(new PhysicalException(e));
+    }
+    return new TaskExecuteResult(result);
+  }
+
   private static Filter rangeUnionWithFilter(KeyInterval range, Filter filter) {
     List<Filter> filters = new ArrayList<>();
     filters.add(new KeyFilter(Op.GE, range.getStartKey()));
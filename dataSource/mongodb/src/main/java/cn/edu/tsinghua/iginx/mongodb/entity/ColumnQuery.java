@@ -28,9 +28,12 @@ import cn.edu.tsinghua.iginx.mongodb.MongoDBStorage;
 import cn.edu.tsinghua.iginx.mongodb.tools.FilterUtils;
 import cn.edu.tsinghua.iginx.mongodb.tools.NameUtils;
 import cn.edu.tsinghua.iginx.mongodb.tools.TypeUtils;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Sorts;
 import java.util.*;
+import java.util.function.UnaryOperator;
 import org.bson.BsonDocument;
 import org.bson.conversions.Bson;
 
@@ -42,14 +45,26 @@ public class ColumnQuery {
   }
 
   public RowStream query(List<Field> fieldList, KeyInterval range) {
-    Bson columnFilter = FilterUtils.interval(range);
+    return query(fieldList, FilterUtils.interval(range), find -> find);
+  }
+
+  /** 每个集合只取按 _id 排序后的前 limit 个文档，结果仍按 key 升序返回 */
+  public RowStream query(List<Field> fieldList, Bson filter, boolean descending, int limit) {
+    Bson sort = descending ? Sorts.descending("_id") : Sorts.ascending("_id");
+    return query(fieldList, filter, find -> find.sort(sort).limit(limit));
+  }
+
+  private RowStream query(
+      List<Field> fieldList,
+      Bson columnFilter,
+      UnaryOperator<FindIterable<BsonDocument>> findDecorator) {
     QueryRowStream.Builder builder = QueryRowStream.builder(fieldList.size());
     for (Field field : fieldList) {
       builder.add(field);
       String collName = NameUtils.getCollectionName(field);
       MongoCollection<BsonDocument> coll =
           this.database.getCollection(collName, BsonDocument.class);
-      for (BsonDocument document : coll.find(columnFilter)) {
+      for (BsonDocument document : findDecorator.apply(coll.find(columnFilter))) {
         long key = document.get("_id").asInt64().getValue();
         Object value = TypeUtils.toObject(document.get(MongoDBStorage.VALUE_FIELD));
         builder.put(key, value);
@@ -62,7 +62,7 @@ public class DataViewWrapper {
     return dataView.getDataType(index);
   }
 
-  public Long getTimestamp(int index) {
+  public long getTimestamp(int index) {
     return dataView.getKey(index);
   }
 
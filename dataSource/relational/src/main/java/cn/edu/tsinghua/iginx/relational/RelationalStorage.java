@@ -33,6 +33,7 @@ import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.Column;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
+import cn.edu.tsinghua.iginx.engine.physical.storage.utils.LimitUtils;
 import cn.edu.tsinghua.iginx.engine.physical.storage.utils.TagKVUtils;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
@@ -67,6 +68,7 @@ import cn.edu.tsinghua.iginx.relational.tools.FilterTransformer;
 import cn.edu.tsinghua.iginx.relational.tools.QuoteBaseExpressionDecorator;
 import cn.edu.tsinghua.iginx.relational.tools.RelationSchema;
 import cn.edu.tsinghua.iginx.relational.tools.SqlStringUtils;
+import cn.edu.tsinghua.iginx.relational.tools.TableInsertBatch;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
 import cn.edu.tsinghua.iginx.utils.StringUtils;
@@ -79,7 +81,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.sql.*;
@@ -121,6 +122,10 @@ public class RelationalStorage implements IStorage {
 
   private final int maxColumnNumLimit;
 
+  // 已知的表结构：数据库名 -> 逻辑表名 -> 列名 -> 物理表名，写入的列都已存在时无需再查询元数据
+  private final Map<String, Map<String, Map<String, String>>> columnToPhysicalTableCache =
+      new ConcurrentHashMap<>();
+
   public RelationalStorage(StorageEngineMeta meta)
       throws StorageInitializationException, SQLException {
     this.meta = meta;
@@ -569,6 +574,39 @@ public class RelationalStorage implements IStorage {
     return executeProjectWithFilter(project, select.getFilter(), dataArea);
   }
 
+  /** RelationQueryRowStream 按 key 升序归并各表结果，因此只支持升序的 Limit */
+  @Override
+  public boolean isSupportProjectWithLimit(Operator limit, DataArea dataArea, boolean isDummy) {
+    return !isDummy
+        && relationalMeta.getLimitClause() != null
+        && LimitUtils.isSupportLimit(limit)
+        && !LimitUtils.isDescending(limit);
+  }
+
+  @Override
+  public boolean isSupportProjectWithSelectLimit(
+      Operator limit, Select select, DataArea dataArea, boolean isDummy) {
+    return isSupportProjectWithLimit(limit, dataArea, isDummy);
+  }
+
+  @Override
+  public TaskExecuteResult executeProjectWithLimit(
+      Project project, Operator limit, DataArea dataArea) {
+    KeyInterval keyInterval = dataArea.getKeyInterval();
+    Filter filter =
+        new AndFilter(
+            Arrays.asList(
+                new KeyFilter(Op.GE, keyInterval.getStartKey()),
+                new KeyFilter(Op.L, keyInterval.getEndKey())));
+    return executeProjectWithFilter(project, filter, dataArea, limit);
+  }
+
+  @Override
+  public TaskExecuteResult executeProjectWithSelectLimit(
+      Project project, Select select, Operator limit, DataArea dataArea) {
+    return executeProjectWithFilter(project, select.getFilter(), dataArea, limit);
+  }
+
   // TODO: getProjectWithFilterSQL 存在bug，多表 full-join 时，key可能为 null，造成结果不完整
 
   /** 获取ProjectWithFilter中将所有table join到一起进行查询的SQL语句 */
@@ -755,6 +793,12 @@ public class RelationalStorage implements IStorage {
 
   private TaskExecuteResult executeProjectWithFilter(
       Project project, Filter filter, DataArea dataArea) {
+    return executeProjectWithFilter(project, filter, dataArea, null);
+  }
+
+  /** @param limit 不为空时，逐表查询只取按 key 排序后的前 offset + limit 行；需要跨表 join 的查询不做截断 */
+  private TaskExecuteResult executeProjectWithFilter(
+      Project project, Filter filter, DataArea dataArea, Operator limit) {
     try {
       String databaseName = dataArea.getStorageUnit();
       Connection conn = dbStrategy.getConnection(databaseName);
@@ -802,6 +846,16 @@ public class RelationalStorage implements IStorage {
           }
 
           String filterStr = filterTransformer.toString(expandFilter);
+          String orderByKey = getQuotName(KEY_NAME);
+          if (limit != null) {
+            // 所查列全为空的行会在上层被丢弃，需在截断之前过滤掉，否则结果可能少于 offset + limit 行
+            String notNullStr = getNotNullFilterStr(entry.getValue());
+            filterStr = filterStr.isEmpty() ? notNullStr : "(" + filterStr + ") AND " + notNullStr;
+            orderByKey +=
+                " "
+                    + String.format(
+                        relationalMeta.getLimitClause(), LimitUtils.getFetchSize(limit), 0);
+          }
           statement =
               String.format(
                   relationalMeta.getQueryTableStatement(),
@@ -809,7 +863,7 @@ public class RelationalStorage implements IStorage {
                   quotColumnNames,
                   getQuotName(physicalTableName) + " " + getQuotName(logicalTableName),
                   filterStr.isEmpty() ? "" : "WHERE " + filterStr,
-                  getQuotName(KEY_NAME));
+                  orderByKey);
 
           ResultSet rs = null;
           try {
@@ -2348,6 +2402,8 @@ public class RelationalStorage implements IStorage {
       List<String> tables;
 
       if (delete.getKeyRanges() == null || delete.getKeyRanges().isEmpty()) {
+        // 删除表或列会改变表结构，清除该数据库的表结构缓存
+        columnToPhysicalTableCache.remove(databaseName);
         if (paths.size() == 1 && paths.get(0).equals("*") && delete.getTagFilter() == null) {
           if (relationalMeta.isSupportCreateDatabase()) {
             // 删除整个数据库
@@ -2495,16 +2551,10 @@ public class RelationalStorage implements IStorage {
           new RelationalTaskExecuteFailureException(
               String.format("cannot connect to database %s", databaseName)));
     }
-    Exception e = null;
-    switch (dataView.getRawDataType()) {
-      case Row:
-      case NonAlignedRow:
-        e = insertNonAlignedRowRecords(conn, databaseName, (RowDataView) dataView);
-        break;
-      case Column:
-      case NonAlignedColumn:
-        e = insertNonAlignedColumnRecords(conn, databaseName, (ColumnDataView) dataView);
-        break;
+    Exception e = insertRecords(conn, databaseName, dataView);
+    if (e != null && columnToPhysicalTableCache.remove(databaseName) != null) {
+      // 缓存的表结构可能已经过期（例如表被删除），刷新后重试一次
+      e = insertRecords(conn, databaseName, dataView);
     }
     try {
       conn.close();
@@ -2520,6 +2570,19 @@ public class RelationalStorage implements IStorage {
     return new TaskExecuteResult(null, null);
   }
 
+  private Exception insertRecords(Connection conn, String databaseName, DataView dataView) {
+    switch (dataView.getRawDataType()) {
+      case Row:
+      case NonAlignedRow:
+        return insertNonAlignedRowRecords(conn, databaseName, (RowDataView) dataView);
+      case Column:
+      case NonAlignedColumn:
+        return insertNonAlignedColumnRecords(conn, databaseName, (ColumnDataView) dataView);
+      default:
+        return null;
+    }
+  }
+
   @Override
   public Pair<ColumnsInterval, KeyInterval> getBoundaryOfStorage(String dataPrefix)
       throws PhysicalException {
@@ -2973,6 +3036,10 @@ public class RelationalStorage implements IStorage {
       List<String> paths,
       List<Map<String, String>> tagsList,
       List<DataType> dataTypeList) {
+    Map<String, Map<String, String>> cached = columnToPhysicalTableCache.get(databseName);
+    if (cached != null && containsAllColumns(cached, paths, tagsList)) {
+      return cached;
+    }
     // 对每个路径，重构为<tableName, LinkedHashSet<Pair<String, DataType> columns>>的形式
     Map<String, List<Pair<String, DataType>>> tableToColumns = new ConcurrentHashMap<>();
     // 建立已有逻辑表到列名和物理表的映射
@@ -3022,6 +3089,7 @@ public class RelationalStorage implements IStorage {
           .computeIfAbsent(tableName, k -> new ArrayList<>())
           .add(new Pair<>(columnName, dataType));
     }
+    boolean ddlFailed = false;
     for (Map.Entry<String, List<Pair<String, DataType>>> entry : tableToColumns.entrySet()) {
       String tableName = entry.getKey();
       List<Pair<String, DataType>> columns = entry.getValue();
@@ -3086,130 +3154,102 @@ public class RelationalStorage implements IStorage {
         stmt.close();
       } catch (SQLException e) {
         LOGGER.error("create or alter table {} error: ", tableName, e);
+        ddlFailed = true;
       }
     }
+    if (!ddlFailed) {
+      Map<String, Map<String, String>> cache =
+          columnToPhysicalTableCache.computeIfAbsent(databseName, k -> new ConcurrentHashMap<>());
+      columnToPhysicalTableMap.forEach(
+          (tableName, columns) ->
+              cache.computeIfAbsent(tableName, k -> new ConcurrentHashMap<>()).putAll(columns));
+    }
     return columnToPhysicalTableMap;
   }
 
+  private boolean containsAllColumns(
+      Map<String, Map<String, String>> columnToPhysicalTableMap,
+      List<String> paths,
+      List<Map<String, String>> tagsList) {
+    for (int i = 0; i < paths.size(); i++) {
+      RelationSchema schema = new RelationSchema(paths.get(i), quote);
+      Map<String, String> tags =
+          tagsList != null && !tagsList.isEmpty() ? tagsList.get(i) : new HashMap<>();
+      Map<String, String> columnToPhysicalTable =
+          columnToPhysicalTableMap.get(schema.getTableName());
+      if (columnToPhysicalTable == null
+          || !columnToPhysicalTable.containsKey(toFullName(schema.getColumnName(), tags))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** 为每条路径确定其所在物理表的写入批次，以及该列在批次行中的下标 */
+  private Map<String, TableInsertBatch> buildInsertBatches(
+      DataView data,
+      Map<String, Map<String, String>> logicalToPhysicalTableMapForColumn,
+      TableInsertBatch[] pathToBatch,
+      int[] pathToColumn)
+      throws SQLException {
+    Map<String, TableInsertBatch> batches = new LinkedHashMap<>(); // <物理表名, 待写入数据>
+    for (int i = 0; i < data.getPathNum(); i++) {
+      RelationSchema schema = new RelationSchema(data.getPath(i), quote);
+      String columnName = toFullName(schema.getColumnName(), data.getTags(i));
+      // 获取该列应该插入的物理表名
+      Map<String, String> columnToPhysicalTable =
+          logicalToPhysicalTableMapForColumn.get(schema.getTableName());
+      String physicalTableName =
+          columnToPhysicalTable == null ? null : columnToPhysicalTable.get(columnName);
+      if (physicalTableName == null) {
+        throw new SQLException("physical table name is null");
+      }
+      TableInsertBatch batch = batches.computeIfAbsent(physicalTableName, TableInsertBatch::new);
+      pathToBatch[i] = batch;
+      pathToColumn[i] = batch.addColumn(columnName, data.getDataType(i));
+    }
+    return batches;
+  }
+
   private Exception insertNonAlignedRowRecords(
       Connection conn, String databaseName, RowDataView data) {
     int batchSize = Math.min(data.getKeySize(), BATCH_SIZE);
     try {
-      Statement stmt = conn.createStatement();
-
       // 创建表，同时建立逻辑表到列名和物理表的映射
       Map<String, Map<String, String>> logicalToPhysicalTableMapForColumn =
           createOrAlterTables(
               conn, databaseName, data.getPaths(), data.getTagsList(), data.getDataTypeList());
 
-      // 插入数据
-      Map<String, Pair<String, List<String>>> tableToColumnEntries =
-          new HashMap<>(); // <表名, <列名，值列表>>
+      TableInsertBatch[] pathToBatch = new TableInsertBatch[data.getPathNum()];
+      int[] pathToColumn = new int[data.getPathNum()];
+      Map<String, TableInsertBatch> batches =
+          buildInsertBatches(data, logicalToPhysicalTableMapForColumn, pathToBatch, pathToColumn);
 
+      // 插入数据
       int cnt = 0;
-      boolean firstRound = true;
       while (cnt < data.getKeySize()) {
         int size = Math.min(data.getKeySize() - cnt, batchSize);
-        Map<String, boolean[]> tableHasData = new HashMap<>(); // 记录每一张表的每一行是否有数据点
         for (int i = cnt; i < cnt + size; i++) {
           BitmapView bitmapView = data.getBitmapView(i);
+          long key = data.getKey(i);
+          // 只有在某张物理表中存在数据点的行才写入该表
+          Map<TableInsertBatch, Object[]> rows = new HashMap<>();
           int index = 0;
           for (int j = 0; j < data.getPathNum(); j++) {
-            String path = data.getPath(j);
-            DataType dataType = data.getDataType(j);
-            RelationSchema schema = new RelationSchema(path, quote);
-            String logicalTableName = schema.getTableName();
-
-            // 获取该列应该插入的物理表名
-            String physicalTableName =
-                logicalToPhysicalTableMapForColumn
-                    .get(logicalTableName)
-                    .get(toFullName(schema.getColumnName(), data.getTags(j)));
-            if (physicalTableName == null) {
-              throw new SQLException("physical table name is null");
-            }
-
-            // 直接取已有 entry，避免频繁 new
-            Pair<String, List<String>> entry = tableToColumnEntries.get(physicalTableName);
-            StringBuilder columnKeys;
-            List<String> columnValues;
-
-            if (entry != null) {
-              columnKeys = new StringBuilder(entry.k);
-              columnValues = entry.v;
-            } else {
-              columnKeys = new StringBuilder();
-              columnValues = new ArrayList<>();
-            }
-
-            String value = "null";
             if (bitmapView.get(j)) {
-              Object rawValue = data.getValue(i, index);
-              if (rawValue != null) {
-                if (dataType == DataType.BINARY) {
-                  value =
-                      "'"
-                          + SqlStringUtils.escapeSqlSingleQuotedLiteral(
-                              new String((byte[]) rawValue, StandardCharsets.UTF_8),
-                              relationalMeta.isStringLiteralBackslashEscape())
-                          + "'";
-                } else {
-                  value = rawValue.toString();
-                }
-              }
+              rows.computeIfAbsent(pathToBatch[j], batch -> batch.newRow(key))[pathToColumn[j]] =
+                  data.getValue(i, index);
               index++;
-
-              // 简化成一行
-              tableHasData.computeIfAbsent(physicalTableName, k -> new boolean[size])[i - cnt] =
-                  true;
             }
-
-            if (firstRound) {
-              columnKeys.append(toFullName(schema.getColumnName(), data.getTags(j))).append(", ");
-            }
-
-            if (i - cnt < columnValues.size()) {
-              columnValues.set(i - cnt, columnValues.get(i - cnt) + value + ", ");
-            } else {
-              columnValues.add(data.getKey(i) + ", " + value + ", "); // 添加 key 列
-            }
-
-            // 更新 entry
-            tableToColumnEntries.put(
-                physicalTableName, new Pair<>(columnKeys.toString(), columnValues));
-          }
-
-          firstRound = false;
-        }
-
-        // 过滤无效行
-        for (Map.Entry<String, boolean[]> entry : tableHasData.entrySet()) {
-          String physicalTableName = entry.getKey();
-          boolean[] hasData = entry.getValue();
-          Pair<String, List<String>> pair = tableToColumnEntries.get(physicalTableName);
-
-          List<String> filteredValues = new ArrayList<>();
-          boolean needToInsert = false;
-          for (int k = 0; k < hasData.length; k++) {
-            if (hasData[k]) {
-              filteredValues.add(pair.v.get(k));
-              needToInsert = true;
-            }
-          }
-
-          if (needToInsert) {
-            tableToColumnEntries.put(physicalTableName, new Pair<>(pair.k, filteredValues));
           }
+          rows.forEach(TableInsertBatch::addRow);
         }
 
-        dbStrategy.executeBatchInsert(conn, databaseName, stmt, tableToColumnEntries, quote);
-        for (Pair<String, List<String>> columnEntries : tableToColumnEntries.values()) {
-          columnEntries.v.clear();
-        }
+        dbStrategy.executeBatchInsert(conn, databaseName, batches.values());
+        batches.values().forEach(TableInsertBatch::clearRows);
 
         cnt += size;
       }
-      stmt.close();
     } catch (SQLException e) {
       LOGGER.error("unexpected error: ", e);
       return e;
@@ -3222,130 +3262,53 @@ public class RelationalStorage implements IStorage {
       Connection conn, String databaseName, ColumnDataView data) {
     int batchSize = Math.min(data.getKeySize(), BATCH_SIZE);
     try {
-      Statement stmt = conn.createStatement();
-
       // 创建表，同时建立逻辑表到列名和物理表的映射
       Map<String, Map<String, String>> logicalToPhysicalTableMapForColumn =
           createOrAlterTables(
               conn, databaseName, data.getPaths(), data.getTagsList(), data.getDataTypeList());
 
-      // 插入数据
-      Map<String, Pair<String, List<String>>> tableToColumnEntries =
-          new HashMap<>(); // <物理表名, <列名，值列表>>
+      TableInsertBatch[] pathToBatch = new TableInsertBatch[data.getPathNum()];
+      int[] pathToColumn = new int[data.getPathNum()];
+      Map<String, TableInsertBatch> batches =
+          buildInsertBatches(data, logicalToPhysicalTableMapForColumn, pathToBatch, pathToColumn);
 
-      Map<Integer, Integer> pathIndexToBitmapIndex = new HashMap<>();
+      // 插入数据
+      int[] pathIndexToBitmapIndex = new int[data.getPathNum()];
       int cnt = 0;
-      boolean firstRound = true;
       while (cnt < data.getKeySize()) {
         int size = Math.min(data.getKeySize() - cnt, batchSize);
-        Map<String, boolean[]> tableHasData = new HashMap<>(); // 记录每一张物理表的每一行是否有数据点
+        // 记录每一张物理表在本批次中的各行，没有数据点的行为 null
+        Map<TableInsertBatch, Object[][]> tableRows = new LinkedHashMap<>();
 
         for (int i = 0; i < data.getPathNum(); i++) {
-          String path = data.getPath(i);
-          DataType dataType = data.getDataType(i);
-          RelationSchema schema = new RelationSchema(path, quote);
-          String logicalTableName = schema.getTableName();
           BitmapView bitmapView = data.getBitmapView(i);
-
-          // 获取该列应该插入的物理表名
-          String physicalTableName =
-              logicalToPhysicalTableMapForColumn
-                  .get(logicalTableName)
-                  .get(toFullName(schema.getColumnName(), data.getTags(i)));
-          if (physicalTableName == null) {
-            throw new SQLException("physical table name is null");
-          }
-
-          Pair<String, List<String>> entry = tableToColumnEntries.get(physicalTableName);
-          StringBuilder columnKeys;
-          List<StringBuilder> columnValues;
-
-          if (entry != null) {
-            // 取出已有的
-            columnKeys = new StringBuilder(entry.k);
-            columnValues =
-                entry.v.stream()
-                    .map(StringBuilder::new) // 转换成 StringBuilder 方便拼接
-                    .collect(Collectors.toList());
-          } else {
-            columnKeys = new StringBuilder();
-            columnValues = new ArrayList<>();
-          }
-
-          int index = pathIndexToBitmapIndex.getOrDefault(i, 0);
-
+          TableInsertBatch batch = pathToBatch[i];
+          Object[][] rows = tableRows.computeIfAbsent(batch, k -> new Object[size][]);
+          int index = pathIndexToBitmapIndex[i];
           for (int j = cnt; j < cnt + size; j++) {
-            String value = "null";
             if (bitmapView.get(j)) {
-              Object rawValue = data.getValue(i, index);
-              if (rawValue != null) {
-                if (dataType == DataType.BINARY) {
-                  value =
-                      "'"
-                          + SqlStringUtils.escapeSqlSingleQuotedLiteral(
-                              new String((byte[]) rawValue, StandardCharsets.UTF_8),
-                              relationalMeta.isStringLiteralBackslashEscape())
-                          + "'";
-                } else {
-                  value = rawValue.toString();
-                }
+              if (rows[j - cnt] == null) {
+                rows[j - cnt] = batch.newRow(data.getKey(j));
               }
+              rows[j - cnt][pathToColumn[i]] = data.getValue(i, index);
               index++;
-
-              tableHasData.computeIfAbsent(physicalTableName, k -> new boolean[size])[j - cnt] =
-                  true;
-            }
-
-            if (j - cnt < columnValues.size()) {
-              columnValues.get(j - cnt).append(value).append(", ");
-            } else {
-              StringBuilder sb = new StringBuilder();
-              sb.append(data.getKey(j)).append(", ").append(value).append(", ");
-              columnValues.add(sb);
             }
           }
-          pathIndexToBitmapIndex.put(i, index);
-
-          if (firstRound) {
-            columnKeys.append(toFullName(schema.getColumnName(), data.getTags(i))).append(", ");
-          }
-
-          // 先存成 StringBuilder，最后再转成 String
-          tableToColumnEntries.put(
-              physicalTableName,
-              new Pair<>(
-                  columnKeys.toString(),
-                  columnValues.stream().map(StringBuilder::toString).collect(Collectors.toList())));
+          pathIndexToBitmapIndex[i] = index;
         }
 
-        // 第二轮过滤无效数据
-        for (Map.Entry<String, boolean[]> entry : tableHasData.entrySet()) {
-          String physicalTableName = entry.getKey();
-          boolean[] hasData = entry.getValue();
-          Pair<String, List<String>> pair = tableToColumnEntries.get(physicalTableName);
-
-          List<String> filteredValues = new ArrayList<>();
-          boolean needToInsert = false;
-          for (int i = 0; i < hasData.length; i++) {
-            if (hasData[i]) {
-              filteredValues.add(pair.v.get(i));
-              needToInsert = true;
+        for (Map.Entry<TableInsertBatch, Object[][]> entry : tableRows.entrySet()) {
+          for (Object[] row : entry.getValue()) {
+            if (row != null) {
+              entry.getKey().addRow(row);
             }
           }
-          if (needToInsert) {
-            tableToColumnEntries.put(physicalTableName, new Pair<>(pair.k, filteredValues));
-          }
-        }
-        dbStrategy.executeBatchInsert(conn, databaseName, stmt, tableToColumnEntries, quote);
-        for (Map.Entry<String, Pair<String, List<String>>> entry :
-            tableToColumnEntries.entrySet()) {
-          entry.getValue().v.clear();
         }
+        dbStrategy.executeBatchInsert(conn, databaseName, batches.values());
+        batches.values().forEach(TableInsertBatch::clearRows);
 
-        firstRound = false;
         cnt += size;
       }
-      stmt.close();
     } catch (SQLException e) {
       LOGGER.error("unexpected error: ", e);
       return e;
@@ -3447,6 +3410,18 @@ public class RelationalStorage implements IStorage {
     return fullColumnNames.substring(0, fullColumnNames.length() - 2);
   }
 
+  private String getNotNullFilterStr(String columnNames) {
+    String[] parts = columnNames.split(", ");
+    StringBuilder notNullFilter = new StringBuilder("(");
+    for (int i = 0; i < parts.length; i++) {
+      if (i != 0) {
+        notNullFilter.append(" OR ");
+      }
+      notNullFilter.append(getQuotName(parts[i])).append(" IS NOT NULL");
+    }
+    return notNullFilter.append(")").toString();
+  }
+
   private String getQuotTableAndColumnNames(String tableName, String columnNames) {
     String[] parts = columnNames.split(", ");
     StringBuilder fullColumnNames = new StringBuilder();
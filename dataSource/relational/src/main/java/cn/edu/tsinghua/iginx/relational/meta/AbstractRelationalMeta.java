@@ -126,6 +126,9 @@ public abstract class AbstractRelationalMeta {
 
   public abstract String getQueryTableStatement();
 
+  /** 取排序后前若干行的子句，参数依次为 limit 与 offset */
+  public abstract String getLimitClause();
+
   public abstract String getQueryTableWithoutKeyStatement();
 
   public abstract String getInsertTableStatement();
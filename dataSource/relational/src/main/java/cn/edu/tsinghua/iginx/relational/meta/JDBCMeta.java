@@ -71,6 +71,8 @@ public class JDBCMeta extends AbstractRelationalMeta {
 
   private final String queryTableStatement;
 
+  private final String limitClause;
+
   private final String queryTableWithoutKeyStatement;
 
   private final String insertTableStatement;
@@ -146,6 +148,7 @@ public class JDBCMeta extends AbstractRelationalMeta {
     alterTableAddColumnStatement = properties.getProperty("alter_table_add_column_statement");
     alterTableDropColumnStatement = properties.getProperty("alter_table_drop_column_statement");
     queryTableStatement = properties.getProperty("query_table_statement");
+    limitClause = properties.getProperty("limit_clause");
     queryTableWithoutKeyStatement = properties.getProperty("query_table_without_key_statement");
     insertTableStatement = properties.getProperty("insert_table_statement");
     updateTableStatement = properties.getProperty("update_table_statement");
@@ -280,6 +283,11 @@ public class JDBCMeta extends AbstractRelationalMeta {
     return queryTableStatement;
   }
 
+  @Override
+  public String getLimitClause() {
+    return limitClause;
+  }
+
   @Override
   public String getQueryTableWithoutKeyStatement() {
     return queryTableWithoutKeyStatement;
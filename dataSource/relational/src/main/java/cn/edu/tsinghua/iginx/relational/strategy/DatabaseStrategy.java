@@ -24,11 +24,11 @@ import cn.edu.tsinghua.iginx.engine.physical.exception.StorageInitializationExce
 import cn.edu.tsinghua.iginx.engine.shared.expr.Expression;
 import cn.edu.tsinghua.iginx.metadata.entity.ColumnsInterval;
 import cn.edu.tsinghua.iginx.metadata.entity.StorageEngineMeta;
-import cn.edu.tsinghua.iginx.utils.Pair;
+import cn.edu.tsinghua.iginx.relational.tools.TableInsertBatch;
 import com.zaxxer.hikari.HikariConfig;
 import java.sql.*;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 public interface DatabaseStrategy {
   /**
@@ -114,21 +114,15 @@ public interface DatabaseStrategy {
   String formatConcatStatement(List<String> columns);
 
   /**
-   * 执行批量数据插入操作（Upsert）
+   * 执行批量数据插入操作（Upsert），数据以占位符方式绑定
    *
    * @param conn 数据库连接对象
    * @param databaseName 目标数据库名称
-   * @param stmt SQL语句对象
-   * @param tableToColumnEntries 表名到列信息的映射，包含表名、主键和列名列表
-   * @param quote 标识符引用字符
+   * @param batches 每张物理表的待写入数据，其中没有数据行的表会被跳过
    * @throws SQLException 如果执行批量插入时发生SQL异常
    */
   void executeBatchInsert(
-      Connection conn,
-      String databaseName,
-      Statement stmt,
-      Map<String, Pair<String, List<String>>> tableToColumnEntries,
-      char quote)
+      Connection conn, String databaseName, Collection<TableInsertBatch> batches)
       throws SQLException;
 
   /**
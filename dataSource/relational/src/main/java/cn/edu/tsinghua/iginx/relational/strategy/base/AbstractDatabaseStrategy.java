@@ -53,6 +53,9 @@ public abstract class AbstractDatabaseStrategy implements DatabaseStrategy {
 
   private final Map<String, HikariDataSource> connectionPoolMap = new ConcurrentHashMap<>();
 
+  // 已经执行过建库语句的数据库，避免每次获取连接都执行一次 CREATE DATABASE
+  private final Set<String> createdDatabases = ConcurrentHashMap.newKeySet();
+
   private Connection connection;
 
   private final IDataTypeTransformer dataTypeTransformer;
@@ -88,10 +91,14 @@ public abstract class AbstractDatabaseStrategy implements DatabaseStrategy {
     }
 
     if (relationalMeta.isSupportCreateDatabase()) {
-      try (Statement stmt = connection.createStatement()) {
-        stmt.execute(
-            String.format(relationalMeta.getCreateDatabaseStatement(), getQuotName(databaseName)));
-      } catch (SQLException ignored) {
+      if (!createdDatabases.contains(databaseName)) {
+        try (Statement stmt = connection.createStatement()) {
+          stmt.execute(
+              String.format(
+                  relationalMeta.getCreateDatabaseStatement(), getQuotName(databaseName)));
+        } catch (SQLException ignored) {
+        }
+        createdDatabases.add(databaseName);
       }
     } else {
       if (databaseName.equals(relationalMeta.getDefaultDatabaseName())
@@ -143,12 +150,14 @@ public abstract class AbstractDatabaseStrategy implements DatabaseStrategy {
       return newDataSource.getConnection();
     } catch (SQLException | HikariPool.PoolInitializationException e) {
       LOGGER.error("Cannot get connection for database {}", databaseName, e);
+      createdDatabases.remove(databaseName);
       return null;
     }
   }
 
   @Override
   public void closeConnection(String databaseName) {
+    createdDatabases.remove(databaseName);
     HikariDataSource dataSource = connectionPoolMap.get(databaseName);
     if (dataSource != null) {
       dataSource.close();
@@ -32,16 +32,17 @@ import cn.edu.tsinghua.iginx.relational.exception.RelationalTaskExecuteFailureEx
 import cn.edu.tsinghua.iginx.relational.meta.AbstractRelationalMeta;
 import cn.edu.tsinghua.iginx.relational.tools.ColumnField;
 import cn.edu.tsinghua.iginx.relational.tools.SqlStringUtils;
+import cn.edu.tsinghua.iginx.relational.tools.TableInsertBatch;
 import cn.edu.tsinghua.iginx.thrift.DataType;
-import cn.edu.tsinghua.iginx.utils.Pair;
 import cn.edu.tsinghua.iginx.utils.StringUtils;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.slf4j.Logger;
@@ -67,27 +68,20 @@ public abstract class AbstractDatabaseStrategyWithoutUpsert extends AbstractData
 
   @Override
   public void executeBatchInsert(
-      Connection conn,
-      String databaseName,
-      Statement stmt,
-      Map<String, Pair<String, List<String>>> tableToColumnEntries,
-      char quote)
+      Connection conn, String databaseName, Collection<TableInsertBatch> batches)
       throws SQLException {
-    for (Map.Entry<String, Pair<String, List<String>>> entry : tableToColumnEntries.entrySet()) {
-      String tableName = entry.getKey();
-      String columnNames = entry.getValue().k.substring(0, entry.getValue().k.length() - 2);
-      List<String> values = entry.getValue().v;
-      String[] parts = columnNames.split(", ");
-
+    for (TableInsertBatch batch : batches) {
+      if (batch.isEmpty()) {
+        continue;
+      }
       // 获取用于 SQL 执行的完整表名
-      String fullTableName = getFullTableName(databaseName, tableName);
+      String fullTableName = getFullTableName(databaseName, batch.getTableName());
 
       // 获取元数据映射 (委托给子类处理特定的 Schema 逻辑)
-      Map<String, ColumnField> columnMap = getColumnMap(conn, databaseName, tableName);
+      Map<String, ColumnField> columnMap = getColumnMap(conn, databaseName, batch.getTableName());
 
-      this.doManualUpsert(conn, fullTableName, columnMap, parts, values);
+      this.doManualUpsert(conn, fullTableName, columnMap, batch);
     }
-    stmt.executeBatch();
   }
 
   /** 模拟 Upsert 的核心逻辑： 1. 查询哪些 Key 已经存在。 2. 批量插入 (Insert) 不存在的 Key。 3. 批量更新 (Update) 已存在的 Key。 */
@@ -95,19 +89,18 @@ public abstract class AbstractDatabaseStrategyWithoutUpsert extends AbstractData
       Connection conn,
       String fullTableName,
       Map<String, ColumnField> columnMap,
-      String[] parts,
-      List<String> values)
+      TableInsertBatch batch)
       throws SQLException {
+    List<String> parts = batch.getColumnNames();
 
-    // 将所有原始值字符串解析为数组
-    Map<String, String[]> valueMap =
-        values.stream()
-            .map(value -> value.substring(0, value.length() - 2))
-            .map(AbstractDatabaseStrategyWithoutUpsert::splitByCommaWithQuotes)
-            .collect(Collectors.toMap(arr -> arr[0], arr -> arr));
+    // 按 key 索引待写入的行
+    Map<Long, Object[]> valueMap = new LinkedHashMap<>();
+    for (Object[] row : batch.getRows()) {
+      valueMap.put((Long) row[0], row);
+    }
 
-    List<String> allKeys = new ArrayList<>(valueMap.keySet());
-    List<String> updateKeys = new ArrayList<>();
+    List<Long> allKeys = new ArrayList<>(valueMap.keySet());
+    Set<Long> updateKeySet = new HashSet<>();
 
     // 步骤 1: 查询已存在的 Key
     StringBuilder placeHolder = new StringBuilder();
@@ -133,11 +126,11 @@ public abstract class AbstractDatabaseStrategyWithoutUpsert extends AbstractData
 
       try (PreparedStatement selectStmt = conn.prepareStatement(querySql)) {
         for (int i = 0; i < end - start; i++) {
-          selectStmt.setString(i + 1, allKeys.get(start + i));
+          selectStmt.setLong(i + 1, allKeys.get(start + i));
         }
         try (ResultSet resultSet = selectStmt.executeQuery()) {
           while (resultSet.next()) {
-            updateKeys.add(resultSet.getString(1));
+            updateKeySet.add(resultSet.getLong(1));
           }
         }
       }
@@ -145,8 +138,24 @@ public abstract class AbstractDatabaseStrategyWithoutUpsert extends AbstractData
       placeHolder.setLength(0);
     }
 
-    List<String> insertKeys =
-        allKeys.stream().filter(item -> !updateKeys.contains(item)).collect(Collectors.toList());
+    List<Long> updateKeys =
+        allKeys.stream().filter(updateKeySet::contains).collect(Collectors.toList());
+    List<Long> insertKeys =
+        allKeys.stream().filter(item -> !updateKeySet.contains(item)).collect(Collectors.toList());
+
+    // 列在目标库中的实际类型，缺失的列及其之后的列不写入
+    List<DataType> columnTypes = new ArrayList<>();
+    for (String part : parts) {
+      ColumnField columnField = columnMap.get(part);
+      if (columnField == null) {
+        break;
+      }
+      columnTypes.add(
+          dataTypeTransformer.fromEngineType(
+              columnField.getColumnType(),
+              columnField.getColumnSize(),
+              columnField.getDecimalDigits()));
+    }
 
     boolean autoCommit = conn.getAutoCommit();
     conn.setAutoCommit(false); // 关闭自动提交以进行批处理
@@ -155,11 +164,10 @@ public abstract class AbstractDatabaseStrategyWithoutUpsert extends AbstractData
       // 步骤 2: 批量插入 (Insert)
       if (!insertKeys.isEmpty()) {
         placeHolder.setLength(0);
-        Arrays.stream(parts).forEach(part -> placeHolder.append("?,"));
+        parts.forEach(part -> placeHolder.append("?,"));
         placeHolder.append("?"); // 为 Key 占位
 
-        String partStr =
-            Arrays.stream(parts).map(this::getQuotName).collect(Collectors.joining(","));
+        String partStr = parts.stream().map(this::getQuotName).collect(Collectors.joining(","));
         String insertSql =
             String.format(
                 relationalMeta.getInsertTableStatement(),
@@ -169,20 +177,10 @@ public abstract class AbstractDatabaseStrategyWithoutUpsert extends AbstractData
 
         try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
           for (int i = 0; i < insertKeys.size(); i++) {
-            String[] vals = valueMap.get(insertKeys.get(i));
-            insertStmt.setString(1, vals[0]); // Key
-
-            for (int j = 0; j < parts.length; j++) {
-              if (!columnMap.containsKey(parts[j])) {
-                break;
-              }
-              ColumnField columnField = columnMap.get(parts[j]);
-              DataType dataType =
-                  dataTypeTransformer.fromEngineType(
-                      columnField.getColumnType(),
-                      columnField.getColumnSize(),
-                      columnField.getDecimalDigits());
-              setValue(insertStmt, j + 2, vals[j + 1], dataType);
+            Object[] vals = valueMap.get(insertKeys.get(i));
+            insertStmt.setLong(1, (Long) vals[0]); // Key
+            for (int j = 0; j < columnTypes.size(); j++) {
+              setValue(insertStmt, j + 2, vals[j + 1], columnTypes.get(j));
             }
             insertStmt.addBatch();
             if (i > 0 && i % 500 == 0) {
@@ -198,7 +196,7 @@ public abstract class AbstractDatabaseStrategyWithoutUpsert extends AbstractData
       // 步骤 3: 批量更新 (Update)
       if (!updateKeys.isEmpty()) {
         placeHolder.setLength(0);
-        Arrays.stream(parts).forEach(part -> placeHolder.append(getQuotName(part)).append("=?,"));
+        parts.forEach(part -> placeHolder.append(getQuotName(part)).append("=?,"));
 
         String updateSql =
             String.format(
@@ -210,20 +208,11 @@ public abstract class AbstractDatabaseStrategyWithoutUpsert extends AbstractData
 
         try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
           for (int i = 0; i < updateKeys.size(); i++) {
-            String[] vals = valueMap.get(updateKeys.get(i));
-            for (int j = 0; j < parts.length; j++) {
-              if (!columnMap.containsKey(parts[j])) {
-                break;
-              }
-              ColumnField columnField = columnMap.get(parts[j]);
-              DataType dataType =
-                  dataTypeTransformer.fromEngineType(
-                      columnField.getColumnType(),
-                      columnField.getColumnSize(),
-                      columnField.getDecimalDigits());
-              setValue(updateStmt, j + 1, vals[j + 1], dataType);
+            Object[] vals = valueMap.get(updateKeys.get(i));
+            for (int j = 0; j < columnTypes.size(); j++) {
+              setValue(updateStmt, j + 1, vals[j + 1], columnTypes.get(j));
             }
-            updateStmt.setString(parts.length + 1, vals[0]); // Where Key = ?
+            updateStmt.setLong(parts.size() + 1, (Long) vals[0]); // Where Key = ?
             updateStmt.addBatch();
             if (i > 0 && i % 500 == 0) {
               updateStmt.executeBatch();
@@ -251,99 +240,22 @@ public abstract class AbstractDatabaseStrategyWithoutUpsert extends AbstractData
     return getQuotName(databaseName + GlobalConstant.DOT + tableName);
   }
 
-  protected void setValue(PreparedStatement stmt, int index, String value, DataType type)
+  protected void setValue(PreparedStatement stmt, int index, Object value, DataType type)
       throws SQLException {
-    boolean isNull = value.equals("null");
-    switch (type) {
-      case BOOLEAN:
-        if (isNull) {
-          stmt.setNull(index, Types.INTEGER);
-        } else {
-          stmt.setInt(index, value.equalsIgnoreCase("true") ? 1 : 0);
-        }
-        break;
-      case INTEGER:
-        if (isNull) {
-          stmt.setNull(index, Types.INTEGER);
-        } else {
-          stmt.setInt(index, Integer.parseInt(value));
-        }
-        break;
-      case LONG:
-        if (isNull) {
-          stmt.setNull(index, Types.BIGINT);
-        } else {
-          stmt.setLong(index, Long.parseLong(value));
-        }
-        break;
-      case FLOAT:
-        if (isNull) {
-          stmt.setNull(index, Types.FLOAT);
-        } else {
-          stmt.setFloat(index, Float.parseFloat(value));
-        }
-        break;
-      case DOUBLE:
-        if (isNull) {
-          stmt.setNull(index, Types.DOUBLE);
-        } else {
-          stmt.setDouble(index, Double.parseDouble(value));
-        }
-        break;
-      case BINARY:
-        if (isNull) {
-          stmt.setNull(index, Types.VARCHAR);
-        } else if (value.startsWith("'") && value.endsWith("'")) {
-          String literal = value.substring(1, value.length() - 1);
-          // 在Dameng和Oracle中，insert采用的是PreparedStatement占位符插入的方式，不需要进行转义，把转义预处理去掉
-          if (relationalMeta.isStringLiteralBackslashEscape()) {
-            literal = literal.replace("\\\\", "\\");
-          }
-          literal = literal.replace("''", "'");
-          stmt.setString(index, literal);
-        } else {
-          stmt.setString(index, value);
-        }
-        break;
-      default:
-        throw new IllegalArgumentException("Unsupported data type: " + type);
-    }
-  }
-
-  protected static String[] splitByCommaWithQuotes(String input) {
-    String regex = "(['\"])(.*?)\\1";
-    Pattern pattern = Pattern.compile(regex);
-    Matcher matcher = pattern.matcher(input);
-    boolean containsCommaWithQuotes = false;
-    while (matcher.find()) {
-      if (matcher.group().contains(",")) {
-        containsCommaWithQuotes = true;
-        break;
-      }
-    }
-    if (!containsCommaWithQuotes) {
-      return Arrays.stream(input.split(",")).map(String::trim).toArray(String[]::new);
-    }
-
-    List<String> resultList = new ArrayList<>();
-    StringBuilder currentPart = new StringBuilder();
-    boolean insideQuotes = false;
-    for (int i = 0; i < input.length(); i++) {
-      char c = input.charAt(i);
-      if (c == ',' && !insideQuotes) {
-        resultList.add(currentPart.toString().trim());
-        currentPart.setLength(0);
-      } else if (c == '\'' || c == '\"') {
-        insideQuotes = !insideQuotes;
-        currentPart.append(c);
+    if (type == DataType.BOOLEAN) {
+      // 布尔值以 0/1 的整数形式存储
+      if (value == null) {
+        stmt.setNull(index, Types.INTEGER);
       } else {
-        currentPart.append(c);
+        boolean b =
+            value instanceof Boolean
+                ? (Boolean) value
+                : TableInsertBatch.toString(value).equalsIgnoreCase("true");
+        stmt.setInt(index, b ? 1 : 0);
       }
+      return;
     }
-    if (currentPart.length() > 0) {
-      resultList.add(currentPart.toString().trim());
-    }
-    return resultList.toArray(new String[0]);
+    TableInsertBatch.bindValue(stmt, index, value, type);
   }
 
   public List<ColumnField> getColumns(
@@ -29,12 +29,14 @@ import cn.edu.tsinghua.iginx.relational.exception.RelationalTaskExecuteFailureEx
 import cn.edu.tsinghua.iginx.relational.meta.AbstractRelationalMeta;
 import cn.edu.tsinghua.iginx.relational.strategy.base.AbstractDatabaseStrategy;
 import cn.edu.tsinghua.iginx.relational.tools.SqlStringUtils;
-import cn.edu.tsinghua.iginx.utils.Pair;
+import cn.edu.tsinghua.iginx.relational.tools.TableInsertBatch;
+import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.StringUtils;
+import com.zaxxer.hikari.HikariConfig;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -219,56 +221,69 @@ public class MySQLPGDatabaseStrategy extends AbstractDatabaseStrategy {
     return super.formatConcatStatement(columns);
   }
 
+  @Override
+  public void configureDataSource(
+      HikariConfig config, String databaseName, StorageEngineMeta meta) {
+    // 让驱动把同一 PreparedStatement 的批量参数改写为多行 INSERT，减少网络往返
+    String engine = meta.getExtraParams().getOrDefault("engine", "").toLowerCase();
+    if (engine.contains("postgresql")) {
+      config.addDataSourceProperty("reWriteBatchedInserts", "true");
+    } else if (engine.contains("mysql") || engine.contains("oceanbase")) {
+      config.addDataSourceProperty("rewriteBatchedStatements", "true");
+    }
+  }
+
   @Override
   public void executeBatchInsert(
-      Connection conn,
-      String databaseName,
-      Statement stmt,
-      Map<String, Pair<String, List<String>>> tableToColumnEntries,
-      char quote)
+      Connection conn, String databaseName, Collection<TableInsertBatch> batches)
       throws SQLException {
-    for (Map.Entry<String, Pair<String, List<String>>> entry : tableToColumnEntries.entrySet()) {
-      String tableName = entry.getKey();
-      String columnNames = entry.getValue().k.substring(0, entry.getValue().k.length() - 2);
-      List<String> values = entry.getValue().v;
+    for (TableInsertBatch batch : batches) {
+      if (batch.isEmpty()) {
+        continue;
+      }
+      List<String> columnNames = batch.getColumnNames();
+      List<DataType> dataTypes = batch.getDataTypes();
 
       StringBuilder statement = new StringBuilder();
       statement.append("INSERT INTO ");
-      statement.append(getQuotName(tableName));
+      statement.append(getQuotName(batch.getTableName()));
       statement.append(" (");
       statement.append(getQuotName(KEY_NAME));
-      statement.append(", ");
-
-      // 处理列名
-      String[] parts = columnNames.split(", ");
-      StringBuilder columnNamesBuilder = new StringBuilder();
-      for (String part : parts) {
-        columnNamesBuilder.append(getQuotName(part)).append(", ");
+      for (String columnName : columnNames) {
+        statement.append(", ").append(getQuotName(columnName));
       }
-      statement.append(columnNamesBuilder.substring(0, columnNamesBuilder.length() - 2));
-
-      statement.append(") VALUES ");
-      for (String value : values) {
-        statement.append("(");
-        statement.append(value, 0, value.length() - 2);
-        statement.append("), ");
+      statement.append(") VALUES (?");
+      for (int i = 0; i < columnNames.size(); i++) {
+        statement.append(", ?");
       }
-      statement.delete(statement.length() - 2, statement.length());
+      statement.append(")");
 
       // 处理冲突
       statement.append(relationalMeta.getUpsertStatement());
-      for (String part : parts) {
-        if (part.equals(KEY_NAME)) continue;
+      boolean first = true;
+      for (String columnName : columnNames) {
+        if (columnName.equals(KEY_NAME)) continue;
+        if (!first) {
+          statement.append(", ");
+        }
         statement.append(
             String.format(
-                relationalMeta.getUpsertConflictStatement(), getQuotName(part), getQuotName(part)));
-        statement.append(", ");
+                relationalMeta.getUpsertConflictStatement(),
+                getQuotName(columnName),
+                getQuotName(columnName)));
+        first = false;
       }
-      statement.delete(statement.length() - 2, statement.length());
-      statement.append(";");
 
-      stmt.addBatch(statement.toString());
+      try (PreparedStatement stmt = conn.prepareStatement(statement.toString())) {
+        for (Object[] row : batch.getRows()) {
+          stmt.setLong(1, (Long) row[0]);
+          for (int i = 0; i < columnNames.size(); i++) {
+            TableInsertBatch.bindValue(stmt, i + 2, row[i + 1], dataTypes.get(i));
+          }
+          stmt.addBatch();
+        }
+        stmt.executeBatch();
+      }
     }
-    stmt.executeBatch();
   }
 }
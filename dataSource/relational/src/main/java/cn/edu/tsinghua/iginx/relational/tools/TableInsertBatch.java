@@ -0,0 +1,154 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.relational.tools;
+
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/** 一张物理表的待写入数据，每行为 [key, 列值...]，值保持原始类型，写入时通过占位符绑定 */
+public class TableInsertBatch {
+  private final String tableName;
+  private final List<String> columnNames = new ArrayList<>();
+  private final List<DataType> dataTypes = new ArrayList<>();
+  private final List<Object[]> rows = new ArrayList<>();
+
+  public TableInsertBatch(String tableName) {
+    this.tableName = tableName;
+  }
+
+  /** 添加一列，返回该列在行数组中的下标（第 0 位为 key） */
+  public int addColumn(String columnName, DataType dataType) {
+    columnNames.add(columnName);
+    dataTypes.add(dataType);
+    return columnNames.size();
+  }
+
+  public Object[] newRow(long key) {
+    Object[] row = new Object[columnNames.size() + 1];
+    row[0] = key;
+    return row;
+  }
+
+  public void addRow(Object[] row) {
+    rows.add(row);
+  }
+
+  public void clearRows() {
+    rows.clear();
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  public List<String> getColumnNames() {
+    return columnNames;
+  }
+
+  public List<DataType> getDataTypes() {
+    return dataTypes;
+  }
+
+  public List<Object[]> getRows() {
+    return rows;
+  }
+
+  public boolean isEmpty() {
+    return rows.isEmpty();
+  }
+
+  /** 按 IGinX 类型绑定参数，值的实际类型与列类型不一致时做数值或字符串转换 */
+  public static void bindValue(PreparedStatement stmt, int index, Object value, DataType type)
+      throws SQLException {
+    if (value == null) {
+      stmt.setNull(index, toSqlType(type));
+      return;
+    }
+    switch (type) {
+      case BOOLEAN:
+        stmt.setBoolean(
+            index,
+            value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(toString(value)));
+        break;
+      case INTEGER:
+        stmt.setInt(
+            index,
+            value instanceof Number
+                ? ((Number) value).intValue()
+                : Integer.parseInt(toString(value)));
+        break;
+      case LONG:
+        stmt.setLong(
+            index,
+            value instanceof Number
+                ? ((Number) value).longValue()
+                : Long.parseLong(toString(value)));
+        break;
+      case FLOAT:
+        stmt.setFloat(
+            index,
+            value instanceof Number
+                ? ((Number) value).floatValue()
+                : Float.parseFloat(toString(value)));
+        break;
+      case DOUBLE:
+        stmt.setDouble(
+            index,
+            value instanceof Number
+                ? ((Number) value).doubleValue()
+                : Double.parseDouble(toString(value)));
+        break;
+      case BINARY:
+        stmt.setString(index, toString(value));
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported data type: " + type);
+    }
+  }
+
+  public static int toSqlType(DataType type) {
+    switch (type) {
+      case BOOLEAN:
+        return Types.BOOLEAN;
+      case INTEGER:
+        return Types.INTEGER;
+      case LONG:
+        return Types.BIGINT;
+      case FLOAT:
+        return Types.FLOAT;
+      case DOUBLE:
+        return Types.DOUBLE;
+      default:
+        return Types.VARCHAR;
+    }
+  }
+
+  public static String toString(Object value) {
+    if (value instanceof byte[]) {
+      return new String((byte[]) value, StandardCharsets.UTF_8);
+    }
+    return value.toString();
+  }
+}
@@ -165,10 +165,14 @@ public class ColumnPruningRule extends Rule {
       } else if (operator.getType() == OperatorType.Downsample) {
         Downsample downsample = (Downsample) operator;
         functionCallList = downsample.getFunctionCallList();
-      } else if (operator.getType() == OperatorType.Sort) {
-        Sort sort = (Sort) operator;
+      } else if (operator.getType() == OperatorType.Sort
+          || operator.getType() == OperatorType.TopN) {
+        List<Expression> sortByExpressions =
+            operator.getType() == OperatorType.Sort
+                ? ((Sort) operator).getSortByExpressions()
+                : ((TopN) operator).getSortByExpressions();
         functionCallList = new ArrayList<>();
-        for (Expression sortByExpr : sort.getSortByExpressions()) {
+        for (Expression sortByExpr : sortByExpressions) {
           if (!(sortByExpr instanceof KeyExpression)) {
             functionCallList.add(
                 new FunctionCall(
@@ -0,0 +1,208 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.logical.optimizer.rules;
+
+import cn.edu.tsinghua.iginx.engine.physical.storage.utils.LimitUtils;
+import cn.edu.tsinghua.iginx.engine.shared.Constants;
+import cn.edu.tsinghua.iginx.engine.shared.operator.*;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import cn.edu.tsinghua.iginx.logical.optimizer.core.RuleCall;
+import com.google.auto.service.AutoService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 将 Limit 与按 key 排序的 TopN 复制到各个分片查询之上。Join(key)/PathUnion 的结果按 key 有序，每个分片只需返回按序的前 offset + limit
+ * 行，原算子保留在根部以得到最终结果。
+ */
+@AutoService(Rule.class)
+public class LimitPushDownRule extends Rule {
+
+  public LimitPushDownRule() {
+    /*
+     * we want to match the topology like:
+     *         Limit/TopN(key)
+     *           |
+     *          Project/AddSchemaPrefix/Join(key)/PathUnion
+     *           |
+     *          Project(Fragment) or Select + Project(Fragment)
+     */
+    super("LimitPushDownRule", operand(AbstractUnaryOperator.class, any()), 2);
+  }
+
+  @Override
+  public boolean matches(RuleCall call) {
+    AbstractUnaryOperator root = (AbstractUnaryOperator) call.getMatchedRoot();
+    if (!LimitUtils.isSupportLimit(root) || !isBounded(root)) {
+      return false;
+    }
+    Source source = root.getSource();
+    if (source.getType() != SourceType.Operator) {
+      return false;
+    }
+    Operator child = ((OperatorSource) source).getOperator();
+    // 根节点直接位于分片查询之上时，由物理优化器将其下推到存储层
+    if (isLeaf(child)) {
+      return false;
+    }
+    List<Project> leaves = new ArrayList<>();
+    if (!collectLeaves(child, new ArrayList<>(), leaves)) {
+      return false;
+    }
+    return !leaves.isEmpty();
+  }
+
+  private static boolean isBounded(Operator operator) {
+    int limit, offset;
+    if (operator.getType() == OperatorType.Limit) {
+      limit = ((Limit) operator).getLimit();
+      offset = ((Limit) operator).getOffset();
+    } else {
+      limit = ((TopN) operator).getLimit();
+      offset = ((TopN) operator).getOffset();
+    }
+    return limit != Integer.MAX_VALUE && (long) limit + offset <= Integer.MAX_VALUE;
+  }
+
+  /**
+   * 自上而下检查算子树，只允许不会丢弃或重排行的算子；上层 Project 必须保留分片查询的全部列，否则可能因为整行为空而丢弃已被截断的行
+   *
+   * @return 是否可以安全下推
+   */
+  private static boolean collectLeaves(
+      Operator operator, List<Project> upperProjects, List<Project> leaves) {
+    if (isLeaf(operator)) {
+      Project leaf = getLeafProject(operator);
+      for (Project upperProject : upperProjects) {
+        if (!upperProject.getPatterns().containsAll(leaf.getPatterns())) {
+          return false;
+        }
+      }
+      leaves.add(leaf);
+      return true;
+    }
+    switch (operator.getType()) {
+      case Project:
+        Project project = (Project) operator;
+        if (project.getTagFilter() != null
+            || project.getSource().getType() != SourceType.Operator) {
+          return false;
+        }
+        List<Project> projects = new ArrayList<>(upperProjects);
+        projects.add(project);
+        return collectLeaves(
+            ((OperatorSource) project.getSource()).getOperator(), projects, leaves);
+      case AddSchemaPrefix:
+        // AddSchemaPrefix 会改变列名，其上方的 Project 无法与分片查询的列比较
+        Source source = ((AddSchemaPrefix) operator).getSource();
+        if (source.getType() != SourceType.Operator || !upperProjects.isEmpty()) {
+          return false;
+        }
+        return collectLeaves(((OperatorSource) source).getOperator(), upperProjects, leaves);
+      case Join:
+        if (!Constants.KEY.equals(((Join) operator).getJoinBy())) {
+          return false;
+        }
+        // fall through
+      case PathUnion:
+        AbstractBinaryOperator binaryOperator = (AbstractBinaryOperator) operator;
+        if (binaryOperator.getSourceA().getType() != SourceType.Operator
+            || binaryOperator.getSourceB().getType() != SourceType.Operator) {
+          return false;
+        }
+        return collectLeaves(
+                ((OperatorSource) binaryOperator.getSourceA()).getOperator(), upperProjects, leaves)
+            && collectLeaves(
+                ((OperatorSource) binaryOperator.getSourceB()).getOperator(),
+                upperProjects,
+                leaves);
+      default:
+        return false;
+    }
+  }
+
+  /** 分片查询：Project(Fragment) 或 Select + Project(Fragment) */
+  private static boolean isLeaf(Operator operator) {
+    return getLeafProject(operator) != null;
+  }
+
+  private static Project getLeafProject(Operator operator) {
+    if (operator.getType() == OperatorType.Select) {
+      Select select = (Select) operator;
+      if (select.getTagFilter() != null || select.getSource().getType() != SourceType.Operator) {
+        return null;
+      }
+      operator = ((OperatorSource) select.getSource()).getOperator();
+    }
+    if (operator.getType() == OperatorType.Project
+        && ((Project) operator).getSource().getType() == SourceType.Fragment) {
+      return (Project) operator;
+    }
+    return null;
+  }
+
+  @Override
+  public void onMatch(RuleCall call) {
+    AbstractUnaryOperator root = (AbstractUnaryOperator) call.getMatchedRoot();
+    pushDown(((OperatorSource) root.getSource()).getOperator(), root);
+    call.transformTo(root);
+  }
+
+  private static void pushDown(Operator operator, Operator root) {
+    if (operator instanceof AbstractUnaryOperator) {
+      AbstractUnaryOperator unaryOperator = (AbstractUnaryOperator) operator;
+      unaryOperator.setSource(pushDown(unaryOperator.getSource(), root));
+    } else {
+      AbstractBinaryOperator binaryOperator = (AbstractBinaryOperator) operator;
+      binaryOperator.setSourceA(pushDown(binaryOperator.getSourceA(), root));
+      binaryOperator.setSourceB(pushDown(binaryOperator.getSourceB(), root));
+    }
+  }
+
+  private static Source pushDown(Source source, Operator root) {
+    Operator child = ((OperatorSource) source).getOperator();
+    if (!isLeaf(child)) {
+      pushDown(child, root);
+      return source;
+    }
+    int fetchSize = LimitUtils.getFetchSize(root);
+    if (!LimitUtils.isDescending(root)) {
+      return new OperatorSource(new Limit(source, fetchSize, 0));
+    }
+    // 取 key 最大的若干行后需恢复升序，Join 与 PathUnion 均假设输入按 key 升序
+    TopN topN = (TopN) root;
+    TopN partialTopN =
+        new TopN(
+            source,
+            topN.getSortByExpressions(),
+            new ArrayList<>(topN.getSortTypes()),
+            fetchSize,
+            0);
+    return new OperatorSource(
+        new Sort(
+            new OperatorSource(partialTopN),
+            topN.getSortByExpressions(),
+            Collections.singletonList(Sort.SortType.ASC)));
+  }
+}
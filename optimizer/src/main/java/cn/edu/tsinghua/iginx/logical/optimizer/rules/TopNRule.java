@@ -0,0 +1,73 @@
+/*
+ * IGinX - the polystore system with high performance
+ * Copyright (C) Tsinghua University
+ * TSIGinX@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package cn.edu.tsinghua.iginx.logical.optimizer.rules;
+
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Limit;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.TopN;
+import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
+import cn.edu.tsinghua.iginx.logical.optimizer.core.RuleCall;
+import com.google.auto.service.AutoService;
+import java.util.ArrayList;
+
+/**
+ * 将 Limit 和其下方的 Sort 合并为 TopN，执行时只需保留 offset + limit 行，而不必对全部数据排序。
+ *
+ * <p>TopN 的堆无法落盘，offset + limit 超过 topNMaxSize 或未指定 limit（只有 OFFSET）时不合并，仍使用 Sort。
+ */
+@AutoService(Rule.class)
+public class TopNRule extends Rule {
+
+  public TopNRule() {
+    /*
+     * we want to match the topology like:
+     *         Limit
+     *           |
+     *          Sort
+     */
+    super("TopNRule", operand(Limit.class, operand(Sort.class, any())), 1);
+  }
+
+  @Override
+  public boolean matches(RuleCall call) {
+    Limit limit = (Limit) call.getMatchedRoot();
+    if (limit.getLimit() == Integer.MAX_VALUE) {
+      return false;
+    }
+    long topNMaxSize = ConfigDescriptor.getInstance().getConfig().getTopNMaxSize();
+    return (long) limit.getOffset() + limit.getLimit() <= topNMaxSize;
+  }
+
+  @Override
+  public void onMatch(RuleCall call) {
+    Limit limit = (Limit) call.getMatchedRoot();
+    Sort sort = (Sort) ((OperatorSource) limit.getSource()).getOperator();
+
+    TopN topN =
+        new TopN(
+            sort.getSource(),
+            sort.getSortByExpressions(),
+            new ArrayList<>(sort.getSortTypes()),
+            limit.getLimit(),
+            limit.getOffset());
+    call.transformTo(topN);
+  }
+}
@@ -107,13 +107,19 @@ public class NaivePhysicalOptimizer implements PhysicalOptimizer {
                 break;
               case SetTransform:
               case GroupBy:
+              case Downsample:
+              case Limit:
+              case TopN:
                 sourceTask.getOperators().add(operator);
                 return sourceTask;
               default:
                 break;
             }
           } else if ((operator.getType() == OperatorType.GroupBy
-                  || operator.getType() == OperatorType.SetTransform)
+                  || operator.getType() == OperatorType.SetTransform
+                  || operator.getType() == OperatorType.Downsample
+                  || operator.getType() == OperatorType.Limit
+                  || operator.getType() == OperatorType.TopN)
               && sourceOperator.getType() == OperatorType.Select
               && OperatorUtils.getUnaryChild(sourceOperator) != null
               && OperatorUtils.getUnaryChild(sourceOperator).getType() == OperatorType.Project
@@ -19,6 +19,7 @@
  */
 package cn.edu.tsinghua.iginx.optimizer;
 
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
 import cn.edu.tsinghua.iginx.logical.optimizer.rbo.RuleBasedOptimizer;
 import cn.edu.tsinghua.iginx.logical.optimizer.rules.RuleCollection;
@@ -48,6 +49,80 @@ public class RBOTest {
     ruleCollection.unbanRulesByName(bannedRules);
   }
 
+  @Test
+  public void testTopNRule() {
+    List<String> bannedRules = RBOTestUtils.banRuleExceptGivenRule("TopNRule");
+    Operator root = TreeBuilder.buildTopNTree();
+    String expected =
+        "[Limit] Limit: 10, Offset: 5\n"
+            + "  [Sort] SortBy: test.a, SortType: DESC\n"
+            + "    [Project] Patterns: test.a, Target DU: fakeUnit0\n";
+    String actual = TreePrinter.getTreeInfo(root);
+    Assert.assertEquals(expected, actual);
+
+    Operator rootAfterRBO = rbo.optimize(root);
+    expected =
+        "[TopN] SortBy: test.a, SortType: DESC, Limit: 10, Offset: 5\n"
+            + "  [Project] Patterns: test.a, Target DU: fakeUnit0\n";
+    actual = TreePrinter.getTreeInfo(rootAfterRBO);
+    Assert.assertEquals(expected, actual);
+
+    ruleCollection.unbanRulesByName(bannedRules);
+  }
+
+  @Test
+  public void testTopNRuleWithOffsetOnly() {
+    List<String> bannedRules = RBOTestUtils.banRuleExceptGivenRule("TopNRule");
+    // ORDER BY ... OFFSET 5 生成 limit 为 Integer.MAX_VALUE 的 Limit，不能合并为 TopN
+    Operator root = TreeBuilder.buildTopNTree(Integer.MAX_VALUE, 5);
+    Operator rootAfterRBO = rbo.optimize(root);
+    String expected =
+        "[Limit] Limit: 2147483647, Offset: 5\n"
+            + "  [Sort] SortBy: test.a, SortType: DESC\n"
+            + "    [Project] Patterns: test.a, Target DU: fakeUnit0\n";
+    String actual = TreePrinter.getTreeInfo(rootAfterRBO);
+    Assert.assertEquals(expected, actual);
+
+    ruleCollection.unbanRulesByName(bannedRules);
+  }
+
+  @Test
+  public void testTopNRuleWithLargeLimit() {
+    List<String> bannedRules = RBOTestUtils.banRuleExceptGivenRule("TopNRule");
+    long topNMaxSize = ConfigDescriptor.getInstance().getConfig().getTopNMaxSize();
+    Operator root = TreeBuilder.buildTopNTree((int) topNMaxSize, 1);
+    Operator rootAfterRBO = rbo.optimize(root);
+    String expected =
+        "[Limit] Limit: "
+            + topNMaxSize
+            + ", Offset: 1\n"
+            + "  [Sort] SortBy: test.a, SortType: DESC\n"
+            + "    [Project] Patterns: test.a, Target DU: fakeUnit0\n";
+    String actual = TreePrinter.getTreeInfo(rootAfterRBO);
+    Assert.assertEquals(expected, actual);
+
+    ruleCollection.unbanRulesByName(bannedRules);
+  }
+
+  @Test
+  public void testLimitPushDownRule() {
+    List<String> bannedRules = RBOTestUtils.banRuleExceptGivenRule("LimitPushDownRule");
+    Operator root = TreeBuilder.buildLimitPushDownTree();
+    Operator rootAfterRBO = rbo.optimize(root);
+    String expected =
+        "[Limit] Limit: 10, Offset: 5\n"
+            + "  [Project] Patterns: test.a,test.b\n"
+            + "    [Join] JoinBy: key\n"
+            + "      [Limit] Limit: 15, Offset: 0\n"
+            + "        [Project] Patterns: test.a, Target DU: fakeUnit0\n"
+            + "      [Limit] Limit: 15, Offset: 0\n"
+            + "        [Project] Patterns: test.b, Target DU: fakeUnit1\n";
+    String actual = TreePrinter.getTreeInfo(rootAfterRBO);
+    Assert.assertEquals(expected, actual);
+
+    ruleCollection.unbanRulesByName(bannedRules);
+  }
+
   @Test
   public void testFragmentPruningByFilterRule() {
     // 下面这棵树会被优化
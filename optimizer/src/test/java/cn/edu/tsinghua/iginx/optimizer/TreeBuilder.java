@@ -20,6 +20,7 @@
 package cn.edu.tsinghua.iginx.optimizer;
 
 import cn.edu.tsinghua.iginx.engine.shared.Constants;
+import cn.edu.tsinghua.iginx.engine.shared.expr.BaseExpression;
 import cn.edu.tsinghua.iginx.engine.shared.operator.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OuterJoinType;
@@ -124,6 +125,45 @@ public class TreeBuilder {
     return new Reorder(new OperatorSource(select), Collections.singletonList("*"));
   }
 
+  /*
+     limit
+       |
+     sort
+       |
+    project
+  */
+  public static Operator buildTopNTree() {
+    return buildTopNTree(10, 5);
+  }
+
+  public static Operator buildTopNTree(int limit, int offset) {
+    StorageUnitMeta storageUnitMeta = new StorageUnitMeta("fakeUnit0", 1, "fakeUnit0", false);
+    FragmentMeta fragmentMeta = new FragmentMeta("test.a", "test.b", 0, 100, storageUnitMeta);
+    Project project =
+        new Project(new FragmentSource(fragmentMeta), Collections.singletonList("test.a"), null);
+    Sort sort =
+        new Sort(
+            new OperatorSource(project),
+            Collections.singletonList(new BaseExpression("test.a")),
+            Collections.singletonList(Sort.SortType.DESC));
+    return new Limit(new OperatorSource(sort), limit, offset);
+  }
+
+  public static Operator buildLimitPushDownTree() {
+    StorageUnitMeta storageUnitMeta0 = new StorageUnitMeta("fakeUnit0", 1, "fakeUnit0", false);
+    StorageUnitMeta storageUnitMeta1 = new StorageUnitMeta("fakeUnit1", 1, "fakeUnit1", false);
+    FragmentMeta fragmentMeta0 = new FragmentMeta("test.a", "test.b", 0, 100, storageUnitMeta0);
+    FragmentMeta fragmentMeta1 = new FragmentMeta("test.b", "test.c", 0, 100, storageUnitMeta1);
+    Project projectA =
+        new Project(new FragmentSource(fragmentMeta0), Collections.singletonList("test.a"), null);
+    Project projectB =
+        new Project(new FragmentSource(fragmentMeta1), Collections.singletonList("test.b"), null);
+    Join join = new Join(new OperatorSource(projectA), new OperatorSource(projectB));
+    Project project =
+        new Project(new OperatorSource(join), Arrays.asList("test.a", "test.b"), null);
+    return new Limit(new OperatorSource(project), 10, 5);
+  }
+
   /**
    * 这棵树会被FFragmentPruningByFilterRule优化，优化前有10个Project-Fragment，优化后1个Project-Fragment。
    *
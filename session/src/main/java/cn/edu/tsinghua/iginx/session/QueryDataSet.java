@@ -28,9 +28,22 @@ import cn.edu.tsinghua.iginx.thrift.ExportCSV;
 import cn.edu.tsinghua.iginx.thrift.QueryDataSetV2;
 import cn.edu.tsinghua.iginx.utils.Bitmap;
 import cn.edu.tsinghua.iginx.utils.Pair;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
 
 public class QueryDataSet {
 
@@ -54,6 +67,15 @@ public class QueryDataSet {
 
   private List<ByteBuffer> bitmapList;
 
+  // 服务端以 Arrow 格式返回结果时，当前批次的数据保存在 arrowBatch 中
+  private RootAllocator allocator;
+
+  private ArrowStreamReader arrowReader;
+
+  private VectorSchemaRoot arrowBatch;
+
+  private VectorSchemaRoot arrowSlice;
+
   private String exportStreamDir;
 
   private ExportCSV exportCSV;
@@ -89,43 +111,136 @@ public class QueryDataSet {
     this.warningMsg = warningMsg;
   }
 
+  public QueryDataSet(
+      Session session,
+      long queryId,
+      List<String> columnList,
+      List<DataType> dataTypeList,
+      int fetchSize,
+      QueryDataSetV2 dataSet,
+      String warningMsg,
+      String exportStreamDir,
+      ExportCSV exportCSV)
+      throws SessionException {
+    this(
+        session,
+        queryId,
+        columnList,
+        dataTypeList,
+        fetchSize,
+        null,
+        null,
+        warningMsg,
+        exportStreamDir,
+        exportCSV);
+    load(dataSet);
+  }
+
   public void close() throws SessionException {
-    session.closeQuery(queryId);
+    try {
+      releaseArrowBatch();
+      if (allocator != null) {
+        allocator.close();
+        allocator = null;
+      }
+    } finally {
+      session.closeQuery(queryId);
+    }
   }
 
-  private void fetch() throws SessionException {
-    if (bitmapList != null && index != bitmapList.size()) { // 只有之前的被消费完才有可能继续取数据
+  private void load(QueryDataSetV2 dataSet) throws SessionException {
+    if (dataSet == null) {
+      return;
+    }
+    if (!dataSet.isSetArrowData()) {
+      bitmapList = dataSet.bitmapList;
+      valuesList = dataSet.valuesList;
       return;
     }
+    if (allocator == null) {
+      allocator = new RootAllocator(Long.MAX_VALUE);
+    }
+    try {
+      arrowReader =
+          new ArrowStreamReader(new ByteArrayInputStream(dataSet.getArrowData()), allocator);
+      if (arrowReader.loadNextBatch()) {
+        arrowBatch = arrowReader.getVectorSchemaRoot();
+      } else {
+        releaseArrowBatch();
+      }
+    } catch (IOException e) {
+      releaseArrowBatch();
+      throw new SessionException("fail to decode arrow batch", e);
+    }
+  }
+
+  private void releaseArrowBatch() throws SessionException {
+    arrowBatch = null;
+    if (arrowSlice != null) {
+      arrowSlice.close();
+      arrowSlice = null;
+    }
+    if (arrowReader != null) {
+      try {
+        arrowReader.close();
+      } catch (IOException e) {
+        throw new SessionException("fail to release arrow batch", e);
+      } finally {
+        arrowReader = null;
+      }
+    }
+  }
+
+  private void reset() throws SessionException {
     bitmapList = null;
     valuesList = null;
+    releaseArrowBatch();
     index = 0;
+  }
 
-    Pair<QueryDataSetV2, Boolean> pair = session.fetchResult(queryId, fetchSize);
-    if (pair.k != null) {
-      bitmapList = pair.k.bitmapList;
-      valuesList = pair.k.valuesList;
+  /** 当前批次中的行数，尚未取回数据时为 -1 */
+  private int batchSize() {
+    if (arrowBatch != null) {
+      return arrowBatch.getRowCount();
+    }
+    return valuesList != null ? valuesList.size() : -1;
+  }
+
+  private void fetch() throws SessionException {
+    int size = batchSize();
+    if (size != -1 && index != size) { // 只有之前的被消费完才有可能继续取数据
+      return;
     }
+    reset();
+
+    Pair<QueryDataSetV2, Boolean> pair = session.fetchResult(queryId, fetchSize);
+    load(pair.k);
     state = pair.v ? State.HAS_MORE : State.NO_MORE;
   }
 
   public boolean hasMore() throws SessionException {
-    if (valuesList != null && index < valuesList.size()) {
+    if (index < batchSize()) {
       return true;
     }
-    bitmapList = null;
-    valuesList = null;
-    index = 0;
+    reset();
     if (state == State.HAS_MORE || state == State.UNKNOWN) {
       fetch();
     }
-    return valuesList != null;
+    return arrowBatch != null ? arrowBatch.getRowCount() > 0 : valuesList != null;
   }
 
   public Object[] nextRow() throws SessionException {
     if (!hasMore()) {
       return null;
     }
+    if (arrowBatch != null) {
+      Object[] values = new Object[dataTypeList.size()];
+      for (int i = 0; i < dataTypeList.size(); i++) {
+        values[i] = getArrowValue(arrowBatch.getVector(i), dataTypeList.get(i), index);
+      }
+      index++;
+      return values;
+    }
     // nextRow 只会返回本地的 row，如果本地没有，在进行 hasMore 操作时候，就一定也已经取回来了
     ByteBuffer valuesBuffer = valuesList.get(index);
     ByteBuffer bitmapBuffer = bitmapList.get(index);
@@ -144,6 +259,15 @@ public class QueryDataSet {
     if (!hasMore()) {
       return null;
     }
+    if (arrowBatch != null) {
+      List<byte[]> bytesValues = new ArrayList<>(dataTypeList.size());
+      for (int i = 0; i < dataTypeList.size(); i++) {
+        DataType type = dataTypeList.get(i);
+        bytesValues.add(getArrowValueAsBytes(arrowBatch.getVector(i), type, index));
+      }
+      index++;
+      return bytesValues;
+    }
     // nextRow 只会返回本地的 row，如果本地没有，在进行 hasMore 操作时候，就一定也已经取回来了
     ByteBuffer valuesBuffer = valuesList.get(index);
     ByteBuffer bitmapBuffer = bitmapList.get(index);
@@ -160,6 +284,72 @@ public class QueryDataSet {
     return bytesValues;
   }
 
+  /**
+   * 以 Arrow 列式批次的形式取出当前批次中尚未消费的全部数据，可直接转换为 DataFrame 等列式结构。仅在服务端以 Arrow 格式返回结果时可用，其余情况返回
+   * null。返回的批次在下一次取数据或关闭结果集时失效。
+   */
+  public VectorSchemaRoot nextArrowBatch() throws SessionException {
+    if (!hasMore() || arrowBatch == null) {
+      return null;
+    }
+    VectorSchemaRoot batch = arrowBatch;
+    if (index > 0) { // 当前批次已被 nextRow 部分消费，只返回剩余的行
+      batch = arrowSlice = arrowBatch.slice(index);
+    }
+    index = arrowBatch.getRowCount();
+    return batch;
+  }
+
+  private static Object getArrowValue(FieldVector vector, DataType type, int index) {
+    if (vector.isNull(index)) {
+      return null;
+    }
+    switch (type) {
+      case BOOLEAN:
+        return ((BitVector) vector).get(index) == 1;
+      case INTEGER:
+        return ((IntVector) vector).get(index);
+      case LONG:
+        return ((BigIntVector) vector).get(index);
+      case FLOAT:
+        return ((Float4Vector) vector).get(index);
+      case DOUBLE:
+        return ((Float8Vector) vector).get(index);
+      case BINARY:
+        return ((VarCharVector) vector).get(index);
+      default:
+        throw new IllegalArgumentException("unsupported data type: " + type);
+    }
+  }
+
+  private static byte[] getArrowValueAsBytes(FieldVector vector, DataType type, int index) {
+    Object value = getArrowValue(vector, type, index);
+    if (value == null) {
+      return new byte[0];
+    }
+    // 与 ByteUtils.getBytesFromByteBufferByDataType 一致，数值均以小端序表示
+    switch (type) {
+      case BOOLEAN:
+        return new byte[] {(byte) ((boolean) value ? 0x01 : 0x00)};
+      case INTEGER:
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt((int) value).array();
+      case LONG:
+        return ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong((long) value).array();
+      case FLOAT:
+        return ByteBuffer.allocate(4)
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(Float.floatToIntBits((float) value))
+            .array();
+      case DOUBLE:
+        return ByteBuffer.allocate(8)
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .putLong(Double.doubleToRawLongBits((double) value))
+            .array();
+      default:
+        return (byte[]) value;
+    }
+  }
+
   public List<String> getColumnList() {
     return columnList;
   }
@@ -181,6 +371,6 @@ public class QueryDataSet {
   }
 
   public int getActualSize() {
-    return valuesList.size();
+    return arrowBatch != null ? arrowBatch.getRowCount() : valuesList.size();
   }
 }
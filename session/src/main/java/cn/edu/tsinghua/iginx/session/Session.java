@@ -70,6 +70,7 @@ public class Session {
   private TTransport transport;
   private boolean isClosed;
   private int redirectTimes;
+  private QueryDataSetFormat dataSetFormat = QueryDataSetFormat.ROW;
 
   private static final TimePrecision timeUnit = TimePrecision.NS;
 
@@ -107,6 +108,15 @@ public class Session {
     return isClosed;
   }
 
+  public QueryDataSetFormat getDataSetFormat() {
+    return dataSetFormat;
+  }
+
+  /** 设置 executeQuery 请求的结果编码格式。服务端不支持时仍会返回行式结果，QueryDataSet 对两种格式均可读取。 */
+  public void setDataSetFormat(QueryDataSetFormat dataSetFormat) {
+    this.dataSetFormat = dataSetFormat;
+  }
+
   private synchronized boolean checkRedirect(Status status) throws SessionException, TException {
     if (StatusUtils.verifyNoRedirect(status)) {
       redirectTimes = 0;
@@ -1031,6 +1041,7 @@ public class Session {
   public QueryDataSet executeQuery(String statement, int fetchSize) throws SessionException {
     ExecuteStatementReq req = new ExecuteStatementReq(sessionId, statement);
     req.setFetchSize(fetchSize);
+    req.setDataSetFormat(dataSetFormat);
     Reference<ExecuteStatementResp> ref = new Reference<>();
     executeWithCheck(() -> (ref.resp = client.executeStatement(req)).status);
 
@@ -1043,16 +1054,7 @@ public class Session {
     ExportCSV exportCSV = ref.resp.getExportCSV();
 
     return new QueryDataSet(
-        this,
-        queryId,
-        columns,
-        dataTypes,
-        fetchSize,
-        dataSetV2.valuesList,
-        dataSetV2.bitmapList,
-        warningMessage,
-        dir,
-        exportCSV);
+        this, queryId, columns, dataTypes, fetchSize, dataSetV2, warningMessage, dir, exportCSV);
   }
 
   Pair<QueryDataSetV2, Boolean> fetchResult(long queryId, int fetchSize) throws SessionException {
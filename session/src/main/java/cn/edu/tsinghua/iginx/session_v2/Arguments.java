@@ -80,6 +80,20 @@ public final class Arguments {
     }
   }
 
+  public static void checkPositive(final long value, final String name)
+      throws IllegalArgumentException {
+    if (value <= 0) {
+      throw new IllegalArgumentException("Expecting a positive number for " + name);
+    }
+  }
+
+  public static void checkNonNegative(final long value, final String name)
+      throws IllegalArgumentException {
+    if (value < 0) {
+      throw new IllegalArgumentException("Expecting a non-negative number for " + name);
+    }
+  }
+
   public static <T> void checkListNonEmpty(final List<T> list, final String name) {
     if (list == null || list.isEmpty()) {
       throw new IllegalArgumentException("Expecting a non-empty list for " + name);
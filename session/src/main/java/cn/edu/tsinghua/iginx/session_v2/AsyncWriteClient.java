@@ -24,36 +24,41 @@ import cn.edu.tsinghua.iginx.session_v2.write.Record;
 import cn.edu.tsinghua.iginx.session_v2.write.Table;
 import cn.edu.tsinghua.iginx.thrift.TimePrecision;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+/** 异步写入客户端：写入的数据先进入缓冲，按数据点数或停留时间合并为列式批次后发送。返回的 future 在包含该数据的批次写入成功后完成，写入失败（含重试）时以异常完成。 */
 public interface AsyncWriteClient extends AutoCloseable {
 
-  void writePoint(final Point point);
+  CompletableFuture<Void> writePoint(final Point point);
 
-  void writePoint(final Point pointm, final TimePrecision timePrecision);
+  CompletableFuture<Void> writePoint(final Point pointm, final TimePrecision timePrecision);
 
-  void writePoints(final List<Point> points);
+  CompletableFuture<Void> writePoints(final List<Point> points);
 
-  void writePoints(final List<Point> points, final TimePrecision timePrecision);
+  CompletableFuture<Void> writePoints(final List<Point> points, final TimePrecision timePrecision);
 
-  void writeRecord(final Record record);
+  CompletableFuture<Void> writeRecord(final Record record);
 
-  void writeRecord(final Record record, final TimePrecision timePrecision);
+  CompletableFuture<Void> writeRecord(final Record record, final TimePrecision timePrecision);
 
-  void writeRecords(final List<Record> records);
+  CompletableFuture<Void> writeRecords(final List<Record> records);
 
-  void writeRecords(final List<Record> records, final TimePrecision timePrecision);
+  CompletableFuture<Void> writeRecords(
+      final List<Record> records, final TimePrecision timePrecision);
 
-  <M> void writeMeasurement(final M measurement);
+  <M> CompletableFuture<Void> writeMeasurement(final M measurement);
 
-  <M> void writeMeasurement(final M measurement, final TimePrecision timePrecision);
+  <M> CompletableFuture<Void> writeMeasurement(
+      final M measurement, final TimePrecision timePrecision);
 
-  <M> void writeMeasurements(final List<M> measurements);
+  <M> CompletableFuture<Void> writeMeasurements(final List<M> measurements);
 
-  <M> void writeMeasurements(final List<M> measurements, final TimePrecision timePrecision);
+  <M> CompletableFuture<Void> writeMeasurements(
+      final List<M> measurements, final TimePrecision timePrecision);
 
-  void writeTable(final Table table);
+  CompletableFuture<Void> writeTable(final Table table);
 
-  void writeTable(final Table table, final TimePrecision timePrecision);
+  CompletableFuture<Void> writeTable(final Table table, final TimePrecision timePrecision);
 
   @Override
   void close() throws Exception;
@@ -25,6 +25,18 @@ public final class IginXClientOptions {
 
   private static final String DEFAULT_PASSWORD = "root";
 
+  private static final int DEFAULT_ASYNC_WRITE_BATCH_SIZE = 1000;
+
+  private static final long DEFAULT_ASYNC_WRITE_LINGER_MS = 100;
+
+  private static final int DEFAULT_ASYNC_WRITE_MAX_IN_FLIGHT = 1;
+
+  private static final int DEFAULT_ASYNC_WRITE_BUFFER_CAPACITY = 100000;
+
+  private static final int DEFAULT_ASYNC_WRITE_MAX_RETRIES = 0;
+
+  private static final long DEFAULT_ASYNC_WRITE_RETRY_BACKOFF_MS = 100;
+
   private final String host;
 
   private final int port;
@@ -33,11 +45,29 @@ public final class IginXClientOptions {
 
   private final String password;
 
+  private final int asyncWriteBatchSize;
+
+  private final long asyncWriteLingerMs;
+
+  private final int asyncWriteMaxInFlight;
+
+  private final int asyncWriteBufferCapacity;
+
+  private final int asyncWriteMaxRetries;
+
+  private final long asyncWriteRetryBackoffMs;
+
   private IginXClientOptions(IginXClientOptions.Builder builder) {
     this.host = builder.host;
     this.port = builder.port;
     this.username = builder.username;
     this.password = builder.password;
+    this.asyncWriteBatchSize = builder.asyncWriteBatchSize;
+    this.asyncWriteLingerMs = builder.asyncWriteLingerMs;
+    this.asyncWriteMaxInFlight = builder.asyncWriteMaxInFlight;
+    this.asyncWriteBufferCapacity = builder.asyncWriteBufferCapacity;
+    this.asyncWriteMaxRetries = builder.asyncWriteMaxRetries;
+    this.asyncWriteRetryBackoffMs = builder.asyncWriteRetryBackoffMs;
   }
 
   public static IginXClientOptions.Builder builder() {
@@ -60,6 +90,30 @@ public final class IginXClientOptions {
     return password;
   }
 
+  public int getAsyncWriteBatchSize() {
+    return asyncWriteBatchSize;
+  }
+
+  public long getAsyncWriteLingerMs() {
+    return asyncWriteLingerMs;
+  }
+
+  public int getAsyncWriteMaxInFlight() {
+    return asyncWriteMaxInFlight;
+  }
+
+  public int getAsyncWriteBufferCapacity() {
+    return asyncWriteBufferCapacity;
+  }
+
+  public int getAsyncWriteMaxRetries() {
+    return asyncWriteMaxRetries;
+  }
+
+  public long getAsyncWriteRetryBackoffMs() {
+    return asyncWriteRetryBackoffMs;
+  }
+
   public static class Builder {
 
     private String host;
@@ -70,6 +124,18 @@ public final class IginXClientOptions {
 
     private String password;
 
+    private int asyncWriteBatchSize = DEFAULT_ASYNC_WRITE_BATCH_SIZE;
+
+    private long asyncWriteLingerMs = DEFAULT_ASYNC_WRITE_LINGER_MS;
+
+    private int asyncWriteMaxInFlight = DEFAULT_ASYNC_WRITE_MAX_IN_FLIGHT;
+
+    private int asyncWriteBufferCapacity = DEFAULT_ASYNC_WRITE_BUFFER_CAPACITY;
+
+    private int asyncWriteMaxRetries = DEFAULT_ASYNC_WRITE_MAX_RETRIES;
+
+    private long asyncWriteRetryBackoffMs = DEFAULT_ASYNC_WRITE_RETRY_BACKOFF_MS;
+
     private Builder() {}
 
     public IginXClientOptions.Builder url(String url) {
@@ -109,6 +175,48 @@ public final class IginXClientOptions {
       return this;
     }
 
+    /** 异步写入时，缓冲的数据点数达到该值即发送一批 */
+    public IginXClientOptions.Builder asyncWriteBatchSize(int asyncWriteBatchSize) {
+      Arguments.checkPositive(asyncWriteBatchSize, "asyncWriteBatchSize");
+      this.asyncWriteBatchSize = asyncWriteBatchSize;
+      return this;
+    }
+
+    /** 异步写入时，数据在缓冲中最多停留的时间（毫秒） */
+    public IginXClientOptions.Builder asyncWriteLingerMs(long asyncWriteLingerMs) {
+      Arguments.checkPositive(asyncWriteLingerMs, "asyncWriteLingerMs");
+      this.asyncWriteLingerMs = asyncWriteLingerMs;
+      return this;
+    }
+
+    /** 异步写入时同时发送的请求数，大于 1 时会额外建立连接，且不同批次之间的写入顺序不再保证 */
+    public IginXClientOptions.Builder asyncWriteMaxInFlight(int asyncWriteMaxInFlight) {
+      Arguments.checkPositive(asyncWriteMaxInFlight, "asyncWriteMaxInFlight");
+      this.asyncWriteMaxInFlight = asyncWriteMaxInFlight;
+      return this;
+    }
+
+    /** 异步写入时尚未写完的数据点数上限，超过后写入调用会阻塞 */
+    public IginXClientOptions.Builder asyncWriteBufferCapacity(int asyncWriteBufferCapacity) {
+      Arguments.checkPositive(asyncWriteBufferCapacity, "asyncWriteBufferCapacity");
+      this.asyncWriteBufferCapacity = asyncWriteBufferCapacity;
+      return this;
+    }
+
+    /** 异步写入因连接错误失败后的重试次数，服务端返回的错误不会重试 */
+    public IginXClientOptions.Builder asyncWriteMaxRetries(int asyncWriteMaxRetries) {
+      Arguments.checkNonNegative(asyncWriteMaxRetries, "asyncWriteMaxRetries");
+      this.asyncWriteMaxRetries = asyncWriteMaxRetries;
+      return this;
+    }
+
+    /** 异步写入第一次重试前等待的时间（毫秒），之后每次重试等待时间翻倍 */
+    public IginXClientOptions.Builder asyncWriteRetryBackoffMs(long asyncWriteRetryBackoffMs) {
+      Arguments.checkPositive(asyncWriteRetryBackoffMs, "asyncWriteRetryBackoffMs");
+      this.asyncWriteRetryBackoffMs = asyncWriteRetryBackoffMs;
+      return this;
+    }
+
     public IginXClientOptions build() {
       if (this.host == null || this.port == 0) {
         throw new IllegalStateException("the host and port to connect to Iginx has to be defined.");
@@ -20,33 +20,73 @@
 package cn.edu.tsinghua.iginx.session_v2.internal;
 
 import cn.edu.tsinghua.iginx.session_v2.AsyncWriteClient;
-import cn.edu.tsinghua.iginx.session_v2.WriteClient;
+import cn.edu.tsinghua.iginx.session_v2.IginXClientOptions;
+import cn.edu.tsinghua.iginx.session_v2.exception.IginXException;
 import cn.edu.tsinghua.iginx.session_v2.write.Point;
 import cn.edu.tsinghua.iginx.session_v2.write.Record;
 import cn.edu.tsinghua.iginx.session_v2.write.Table;
+import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.thrift.TimePrecision;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import org.apache.thrift.transport.TTransportException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class AsyncWriteClientImpl extends AbstractFunctionClient implements AsyncWriteClient {
-  @SuppressWarnings("unused")
   private static final Logger LOGGER = LoggerFactory.getLogger(AsyncWriteClientImpl.class);
 
-  private final WriteClient syncWriteClient; // 内部执行还是使用同步客户端来执行的
+  private static final long MAX_RETRY_BACKOFF_MS = 10000;
 
   private final Collection<AutoCloseable> autoCloseables;
 
-  private final ExecutorService asyncWriteService;
-
   private final MeasurementMapper measurementMapper;
 
+  private final int batchSize;
+
+  private final long lingerMs;
+
+  private final IginXClientOptions options;
+
+  private final int maxRetries;
+
+  private final long retryBackoffMs;
+
+  private final int bufferCapacity;
+
+  private final Semaphore bufferPermits; // 尚未写完的数据点数，用于对写入方进行反压
+
+  private final List<Connection> connections = new ArrayList<>();
+
+  private final BlockingQueue<Connection> idleConnections; // 每个连接同一时刻只发送一个请求
+
+  private final ExecutorService sendService;
+
+  private final ScheduledExecutorService lingerService;
+
+  private final Object lock = new Object();
+
+  private final Map<TimePrecision, Batch> batches = new HashMap<>(); // 不同时间精度的数据不能合并
+
+  private boolean closed = false;
+
   public AsyncWriteClientImpl(
       IginXClientImpl iginXClient,
       MeasurementMapper measurementMapper,
@@ -56,155 +96,447 @@ public class AsyncWriteClientImpl extends AbstractFunctionClient implements Asyn
     this.autoCloseables = autoCloseables;
     this.measurementMapper = measurementMapper;
 
-    this.syncWriteClient = new WriteClientImpl(iginXClient, measurementMapper);
+    this.options = iginXClient.getOptions();
+    this.batchSize = options.getAsyncWriteBatchSize();
+    this.lingerMs = options.getAsyncWriteLingerMs();
+    this.maxRetries = options.getAsyncWriteMaxRetries();
+    this.retryBackoffMs = options.getAsyncWriteRetryBackoffMs();
+    this.bufferCapacity = options.getAsyncWriteBufferCapacity();
+    this.bufferPermits = new Semaphore(bufferCapacity);
+
+    int maxInFlight = options.getAsyncWriteMaxInFlight();
+    // 内部执行还是使用同步客户端来执行的，为并发发送额外建立连接
+    connections.add(new Connection(iginXClient, false));
+    for (int i = 1; i < maxInFlight; i++) {
+      connections.add(new Connection(new IginXClientImpl(options), true));
+    }
+    this.idleConnections = new LinkedBlockingQueue<>(connections);
 
-    this.asyncWriteService = Executors.newSingleThreadExecutor();
+    this.sendService = Executors.newFixedThreadPool(maxInFlight);
+    this.lingerService = Executors.newSingleThreadScheduledExecutor();
     autoCloseables.add(this);
   }
 
   @Override
-  public void writePoint(Point point) {
-    writePoints(Collections.singletonList(point), null);
+  public CompletableFuture<Void> writePoint(Point point) {
+    return writePoints(Collections.singletonList(point), null);
   }
 
   @Override
-  public void writePoint(Point point, TimePrecision timePrecision) {
-    writePoints(Collections.singletonList(point), timePrecision);
+  public CompletableFuture<Void> writePoint(Point point, TimePrecision timePrecision) {
+    return writePoints(Collections.singletonList(point), timePrecision);
   }
 
   @Override
-  public void writePoints(List<Point> points) {
-    asyncWriteService.execute(newAsyncWritePointsTask(points, null));
+  public CompletableFuture<Void> writePoints(List<Point> points) {
+    return writePoints(points, null);
   }
 
   @Override
-  public void writePoints(List<Point> points, TimePrecision timePrecision) {
-    asyncWriteService.execute(newAsyncWritePointsTask(points, timePrecision));
+  public CompletableFuture<Void> writePoints(List<Point> points, TimePrecision timePrecision) {
+    List<PointEntry> entries = new ArrayList<>(points.size());
+    for (Point point : points) {
+      entries.add(
+          new PointEntry(
+              point.getFullName(), point.getDataType(), point.getKey(), point.getValue()));
+    }
+    return submit(entries, timePrecision);
   }
 
   @Override
-  public void writeRecord(Record record) {
-    writeRecords(Collections.singletonList(record), null);
+  public CompletableFuture<Void> writeRecord(Record record) {
+    return writeRecords(Collections.singletonList(record), null);
   }
 
   @Override
-  public void writeRecord(Record record, TimePrecision timePrecision) {
-    writeRecords(Collections.singletonList(record), timePrecision);
+  public CompletableFuture<Void> writeRecord(Record record, TimePrecision timePrecision) {
+    return writeRecords(Collections.singletonList(record), timePrecision);
   }
 
   @Override
-  public void writeRecords(List<Record> records) {
-    asyncWriteService.execute(newAsyncWriteRecordsTask(records));
+  public CompletableFuture<Void> writeRecords(List<Record> records) {
+    return writeRecords(records, null);
   }
 
   @Override
-  public void writeRecords(List<Record> records, TimePrecision timePrecision) {
-    asyncWriteService.execute(newAsyncWriteRecordsTask(records, timePrecision));
+  public CompletableFuture<Void> writeRecords(List<Record> records, TimePrecision timePrecision) {
+    List<PointEntry> entries = new ArrayList<>();
+    for (Record record : records) {
+      for (int i = 0; i < record.getLength(); i++) {
+        entries.add(
+            new PointEntry(
+                record.getFullName(i), record.getDataType(i), record.getKey(), record.getValue(i)));
+      }
+    }
+    return submit(entries, timePrecision);
   }
 
   @Override
-  public <M> void writeMeasurement(M measurement) {
-    writeMeasurements(Collections.singletonList(measurement), null);
+  public <M> CompletableFuture<Void> writeMeasurement(M measurement) {
+    return writeMeasurements(Collections.singletonList(measurement), null);
   }
 
   @Override
-  public <M> void writeMeasurement(M measurement, TimePrecision timePrecision) {
-    writeMeasurements(Collections.singletonList(measurement), timePrecision);
+  public <M> CompletableFuture<Void> writeMeasurement(M measurement, TimePrecision timePrecision) {
+    return writeMeasurements(Collections.singletonList(measurement), timePrecision);
   }
 
   @Override
-  public <M> void writeMeasurements(List<M> measurements) {
-    asyncWriteService.execute(
-        newAsyncWriteRecordsTask(
-            measurements.stream().map(measurementMapper::toRecord).collect(Collectors.toList())));
+  public <M> CompletableFuture<Void> writeMeasurements(List<M> measurements) {
+    return writeMeasurements(measurements, null);
   }
 
   @Override
-  public <M> void writeMeasurements(List<M> measurements, TimePrecision timePrecision) {
-    asyncWriteService.execute(
-        newAsyncWriteRecordsTask(
-            measurements.stream().map(measurementMapper::toRecord).collect(Collectors.toList()),
-            timePrecision));
+  public <M> CompletableFuture<Void> writeMeasurements(
+      List<M> measurements, TimePrecision timePrecision) {
+    return writeRecords(
+        measurements.stream().map(measurementMapper::toRecord).collect(Collectors.toList()),
+        timePrecision);
   }
 
   @Override
-  public void writeTable(Table table) {
-    asyncWriteService.execute(newAsyncWriteTableTask(table));
+  public CompletableFuture<Void> writeTable(Table table) {
+    return writeTable(table, null);
   }
 
   @Override
-  public void writeTable(Table table, TimePrecision timePrecision) {
-    asyncWriteService.execute(newAsyncWriteTableTask(table, timePrecision));
+  public CompletableFuture<Void> writeTable(Table table, TimePrecision timePrecision) {
+    // 表格数据本身已经是成批的，不再与其他数据合并
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    int permits = acquirePermits(table.getLength() * table.getMeasurements().size(), future);
+    if (permits < 0) {
+      return future;
+    }
+    synchronized (lock) {
+      if (closed) {
+        bufferPermits.release(permits);
+        future.completeExceptionally(new IginXException("Async write client has been closed."));
+        return future;
+      }
+      sendService.execute(
+          new SendTask(
+              writeClient -> writeClient.writeTable(table, timePrecision),
+              Collections.singletonList(future),
+              permits));
+    }
+    return future;
   }
 
   @Override
   public void close() throws Exception {
     autoCloseables.remove(this);
-    asyncWriteService.shutdown();
-    if (!asyncWriteService.awaitTermination(10, TimeUnit.SECONDS)) {
-      asyncWriteService.shutdownNow();
+    List<Batch> remaining;
+    synchronized (lock) {
+      closed = true;
+      remaining = new ArrayList<>(batches.values());
+      batches.clear();
+      // 关闭前发送缓冲中剩余的数据
+      remaining.forEach(this::dispatch);
+    }
+    lingerService.shutdownNow();
+    sendService.shutdown();
+    if (!sendService.awaitTermination(10, TimeUnit.SECONDS)) {
+      // 未来得及发送的数据以异常结束，并归还其占用的缓冲空间
+      for (Runnable dropped : sendService.shutdownNow()) {
+        if (dropped instanceof SendTask) {
+          ((SendTask) dropped)
+              .abort(new IginXException("Async write client has been closed before sending."));
+        }
+      }
+    }
+    for (Connection connection : connections) {
+      connection.close();
     }
   }
 
-  private AsyncWriteTask newAsyncWritePointsTask(List<Point> points) {
-    return new AsyncWriteTask(points, null, null);
+  /** 获取缓冲空间，单次写入超过缓冲容量时只占用全部容量；被中断时以异常完成 future 并返回 -1 */
+  private int acquirePermits(int size, CompletableFuture<Void> future) {
+    int permits = Math.min(size, bufferCapacity);
+    try {
+      bufferPermits.acquire(permits);
+      return permits;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.completeExceptionally(e);
+      return -1;
+    }
   }
 
-  private AsyncWriteTask newAsyncWritePointsTask(List<Point> points, TimePrecision timePrecison) {
-    return new AsyncWriteTask(points, null, null, timePrecison);
+  private CompletableFuture<Void> submit(List<PointEntry> entries, TimePrecision timePrecision) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    // 同一次调用中同一序列的类型必须一致
+    Map<String, DataType> dataTypes = new HashMap<>();
+    for (PointEntry entry : entries) {
+      if (dataTypes.getOrDefault(entry.fullName, entry.dataType) != entry.dataType) {
+        future.completeExceptionally(
+            new IllegalArgumentException(
+                "measurement " + entry.fullName + " has multi data type, which is invalid."));
+        return future;
+      }
+      dataTypes.put(entry.fullName, entry.dataType);
+    }
+    entries = entries.stream().filter(entry -> entry.value != null).collect(Collectors.toList());
+    if (entries.isEmpty()) {
+      future.complete(null);
+      return future;
+    }
+
+    int permits = acquirePermits(entries.size(), future);
+    if (permits < 0) {
+      return future;
+    }
+    synchronized (lock) {
+      if (closed) {
+        bufferPermits.release(permits);
+        future.completeExceptionally(new IginXException("Async write client has been closed."));
+        return future;
+      }
+      Batch batch = batches.get(timePrecision);
+      if (batch != null && batch.conflicts(dataTypes)) {
+        // 与缓冲中的数据类型冲突，先发送已有数据，冲突交由服务端在各自的请求中处理
+        batches.remove(timePrecision);
+        dispatch(batch);
+        batch = null;
+      }
+      if (batch == null) {
+        Batch newBatch = new Batch(timePrecision);
+        newBatch.lingerTask =
+            lingerService.schedule(() -> flush(newBatch), lingerMs, TimeUnit.MILLISECONDS);
+        batches.put(timePrecision, newBatch);
+        batch = newBatch;
+      }
+      for (PointEntry entry : entries) {
+        batch.add(entry);
+      }
+      batch.futures.add(future);
+      batch.permits += permits;
+      if (batch.size >= batchSize) {
+        batches.remove(timePrecision);
+        dispatch(batch);
+      }
+    }
+    return future;
   }
 
-  private AsyncWriteTask newAsyncWriteRecordsTask(List<Record> records) {
-    return new AsyncWriteTask(null, records, null);
+  private void flush(Batch batch) {
+    synchronized (lock) {
+      if (batches.get(batch.timePrecision) != batch) { // 已经因为达到批次大小被发送
+        return;
+      }
+      batches.remove(batch.timePrecision);
+      dispatch(batch);
+    }
   }
 
-  private AsyncWriteTask newAsyncWriteRecordsTask(
-      List<Record> records, TimePrecision timePrecison) {
-    return new AsyncWriteTask(null, records, null, timePrecison);
+  /** 调用方需持有 lock，发送线程按提交顺序取出批次 */
+  private void dispatch(Batch batch) {
+    if (batch.lingerTask != null) {
+      batch.lingerTask.cancel(false);
+    }
+    sendService.execute(new SendTask(batch::writeTo, batch.futures, batch.permits));
   }
 
-  private AsyncWriteTask newAsyncWriteTableTask(Table table) {
-    return new AsyncWriteTask(null, null, table);
+  private void send(SendTask task) {
+    Connection connection = null;
+    try {
+      connection = idleConnections.take();
+      for (int attempt = 0; ; attempt++) {
+        try {
+          task.action.accept(connection.getWriteClient());
+          task.futures.forEach(future -> future.complete(null));
+          return;
+        } catch (RuntimeException e) {
+          if (attempt >= maxRetries || !isTransportError(e)) {
+            LOGGER.error("async write failure: ", e);
+            task.futures.forEach(future -> future.completeExceptionally(e));
+            return;
+          }
+          long backoff = Math.min(retryBackoffMs << Math.min(attempt, 20), MAX_RETRY_BACKOFF_MS);
+          LOGGER.warn(
+              "async write failure, retry {}/{} after {} ms: {}",
+              attempt + 1,
+              maxRetries,
+              backoff,
+              e.getMessage());
+          // 连接可能已经损坏，重试前重新建立连接
+          connection.markBroken();
+          Thread.sleep(backoff);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      task.futures.forEach(future -> future.completeExceptionally(e));
+    } finally {
+      if (connection != null) {
+        idleConnections.add(connection);
+      }
+      bufferPermits.release(task.permits);
+    }
   }
 
-  private AsyncWriteTask newAsyncWriteTableTask(Table table, TimePrecision timePrecison) {
-    return new AsyncWriteTask(null, null, table, timePrecison);
+  /** 只重试连接层面的错误，服务端返回的错误状态和参数错误重试后也不会成功 */
+  private static boolean isTransportError(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof TTransportException) {
+        return true;
+      }
+    }
+    return false;
   }
 
-  private class AsyncWriteTask implements Runnable {
+  /** 等待发送的一批数据 */
+  private class SendTask implements Runnable {
 
-    final List<Point> points;
+    final Consumer<WriteClientImpl> action;
 
-    final List<Record> records;
+    final List<CompletableFuture<Void>> futures;
 
-    final Table table;
+    final int permits;
 
-    final TimePrecision timePrecision;
+    SendTask(Consumer<WriteClientImpl> action, List<CompletableFuture<Void>> futures, int permits) {
+      this.action = action;
+      this.futures = futures;
+      this.permits = permits;
+    }
+
+    @Override
+    public void run() {
+      send(this);
+    }
+
+    /** 任务未执行就被丢弃时调用 */
+    void abort(Throwable cause) {
+      futures.forEach(future -> future.completeExceptionally(cause));
+      bufferPermits.release(permits);
+    }
+  }
+
+  /** 发送数据使用的连接，出现连接错误后重新建立；用户客户端的连接不由这里关闭 */
+  private class Connection {
+
+    private IginXClientImpl client;
 
-    AsyncWriteTask(List<Point> points, List<Record> records, Table table) {
-      this.points = points;
-      this.records = records;
-      this.table = table;
-      this.timePrecision = null;
+    private boolean owned;
+
+    private WriteClientImpl writeClient;
+
+    private boolean broken = false;
+
+    Connection(IginXClientImpl client, boolean owned) {
+      this.client = client;
+      this.owned = owned;
+      this.writeClient = new WriteClientImpl(client, measurementMapper);
+    }
+
+    synchronized WriteClientImpl getWriteClient() {
+      if (broken) {
+        closeOwned();
+        client = new IginXClientImpl(options);
+        owned = true;
+        writeClient = new WriteClientImpl(client, measurementMapper);
+        broken = false;
+      }
+      return writeClient;
     }
 
-    AsyncWriteTask(
-        List<Point> points, List<Record> records, Table table, TimePrecision timePrecision) {
-      this.points = points;
-      this.records = records;
-      this.table = table;
+    synchronized void markBroken() {
+      broken = true;
+    }
+
+    synchronized void close() {
+      closeOwned();
+    }
+
+    private void closeOwned() {
+      if (!owned || client.isClosed()) {
+        return;
+      }
+      try {
+        client.close();
+      } catch (RuntimeException e) {
+        LOGGER.warn("close connection of async write client failure: {}", e.getMessage());
+      }
+    }
+  }
+
+  private static class PointEntry {
+
+    final String fullName;
+
+    final DataType dataType;
+
+    final long key;
+
+    final Object value;
+
+    PointEntry(String fullName, DataType dataType, long key, Object value) {
+      this.fullName = fullName;
+      this.dataType = dataType;
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  /** 缓冲中同一时间精度的数据，按序列名组织为列，同一序列同一 key 上后写入的值覆盖先写入的值 */
+  private static class Batch {
+
+    final TimePrecision timePrecision;
+
+    final Map<String, DataType> dataTypes = new HashMap<>();
+
+    final TreeMap<String, Map<Long, Object>> columns = new TreeMap<>();
+
+    final List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+    int size = 0;
+
+    int permits = 0;
+
+    ScheduledFuture<?> lingerTask;
+
+    Batch(TimePrecision timePrecision) {
       this.timePrecision = timePrecision;
     }
 
-    @Override
-    public void run() {
-      if (points != null) {
-        AsyncWriteClientImpl.this.syncWriteClient.writePoints(points, timePrecision);
-      } else if (records != null) {
-        AsyncWriteClientImpl.this.syncWriteClient.writeRecords(records, timePrecision);
-      } else if (table != null) {
-        AsyncWriteClientImpl.this.syncWriteClient.writeTable(table, timePrecision);
+    boolean conflicts(Map<String, DataType> types) {
+      for (Map.Entry<String, DataType> entry : types.entrySet()) {
+        DataType dataType = dataTypes.get(entry.getKey());
+        if (dataType != null && dataType != entry.getValue()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void add(PointEntry entry) {
+      dataTypes.put(entry.fullName, entry.dataType);
+      columns.computeIfAbsent(entry.fullName, k -> new HashMap<>()).put(entry.key, entry.value);
+      size++;
+    }
+
+    void writeTo(WriteClientImpl writeClient) {
+      TreeSet<Long> keySet = new TreeSet<>();
+      for (Map<Long, Object> column : columns.values()) {
+        keySet.addAll(column.keySet());
+      }
+      long[] keys = keySet.stream().mapToLong(Long::longValue).toArray();
+      Map<Long, Integer> keyIndex = new HashMap<>();
+      for (int i = 0; i < keys.length; i++) {
+        keyIndex.put(keys[i], i);
+      }
+
+      List<String> fullNames = new ArrayList<>(columns.keySet());
+      List<DataType> dataTypeList = new ArrayList<>(fullNames.size());
+      Object[][] valuesList = new Object[fullNames.size()][];
+      for (int i = 0; i < fullNames.size(); i++) {
+        String fullName = fullNames.get(i);
+        dataTypeList.add(dataTypes.get(fullName));
+        valuesList[i] = new Object[keys.length];
+        for (Map.Entry<Long, Object> entry : columns.get(fullName).entrySet()) {
+          valuesList[i][keyIndex.get(entry.getKey())] = entry.getValue();
+        }
       }
+      writeClient.writeFullNameColumns(fullNames, keys, valuesList, dataTypeList, timePrecision);
     }
   }
 }
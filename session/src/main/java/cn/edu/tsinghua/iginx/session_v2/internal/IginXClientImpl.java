@@ -51,6 +51,8 @@ public class IginXClientImpl implements IginXClient {
 
   private boolean isClosed;
 
+  private final IginXClientOptions options;
+
   private final MeasurementMapper measurementMapper;
 
   private final ResultMapper resultMapper;
@@ -59,6 +61,7 @@ public class IginXClientImpl implements IginXClient {
 
   public IginXClientImpl(IginXClientOptions options) {
     Arguments.checkNotNull(options, "IginXClientOptions");
+    this.options = options;
 
     lock = new ReentrantLock();
     measurementMapper = new MeasurementMapper();
@@ -147,6 +150,10 @@ public class IginXClientImpl implements IginXClient {
     return sessionId;
   }
 
+  IginXClientOptions getOptions() {
+    return options;
+  }
+
   @Override
   public synchronized void close() {
     if (isClosed) {
@@ -112,11 +112,21 @@ public class WriteClientImpl extends AbstractFunctionClient implements WriteClie
       int timestampIndex = timestampIndexMap.get(timestamp);
       valuesList[measurementIndex][timestampIndex] = point.getValue();
     }
-    List<Map<String, String>> tagsList = new ArrayList<>();
-    for (int i = 0; i < measurements.size(); i++) {
-      String measurement = measurements.get(i);
-      Pair<String, Map<String, String>> pair = TagKVUtils.fromFullName(measurement);
-      measurements.set(i, pair.k);
+    writeFullNameColumns(measurements, timestamps, valuesList, dataTypeList, timePrecision);
+  }
+
+  /** 写入以带标签的完整序列名组织的列式数据，每列的值数组与 timestamps 等长 */
+  void writeFullNameColumns(
+      List<String> fullNames,
+      long[] timestamps,
+      Object[][] valuesList,
+      List<DataType> dataTypeList,
+      TimePrecision timePrecision) {
+    List<String> measurements = new ArrayList<>(fullNames.size());
+    List<Map<String, String>> tagsList = new ArrayList<>(fullNames.size());
+    for (String fullName : fullNames) {
+      Pair<String, Map<String, String>> pair = TagKVUtils.fromFullName(fullName);
+      measurements.add(pair.k);
       tagsList.add(pair.v);
     }
     writeColumnData(measurements, timestamps, valuesList, dataTypeList, tagsList, timePrecision);
@@ -71,11 +71,10 @@ public class MockClassGenerator {
 
     // generate bitmaps and key
     List<Bitmap> bitmapList = new ArrayList<>();
-    List<Long> keys = new ArrayList<>();
-    long keyIndex = keyStart;
-    for (Object o : valuesList) {
-      Object[] values = (Object[]) o;
-      keys.add(keyIndex++);
+    long[] keys = new long[valuesList.length];
+    for (int i = 0; i < valuesList.length; i++) {
+      Object[] values = (Object[]) valuesList[i];
+      keys[i] = keyStart + i;
       if (values.length != pathList.size()) {
         LOGGER.error("The sizes of paths and the element of valuesList should be equal.");
         return null;
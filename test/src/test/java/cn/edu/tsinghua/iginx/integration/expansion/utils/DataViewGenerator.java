@@ -96,7 +96,7 @@ public class DataViewGenerator {
         new RawData(
             sortedPaths,
             sortedTagsList,
-            keyList,
+            keyList.stream().mapToLong(Long::longValue).toArray(),
             valuesList.toArray(),
             sortedDataTypeList,
             bitmapList,
@@ -6750,6 +6750,12 @@ public class SQLSessionIT {
 
     explain = "explain physical select s1 from us.d1 where s1 > 10 and s1 < 100;";
     LOGGER.info(executor.execute(explain));
+
+    explain = "explain analyze select max(s2), min(s1) from us.d1;";
+    LOGGER.info(executor.execute(explain));
+
+    explain = "explain analyze select s1 from us.d1 where s1 > 10 and s1 < 100;";
+    LOGGER.info(executor.execute(explain));
   }
 
   @Test
@@ -7176,7 +7182,9 @@ public class SQLSessionIT {
                 "physicalOptimizer",
                 "maxAsyncRetryTimes",
                 "enableInstantCompaction",
-                "maxCachedPhysicalTaskPerStorage",
+                "storageTaskDispatcherThreadNum",
+                "maxConcurrentTaskPerStorage",
+                "physicalTaskQueueTimeout",
                 "restIp",
                 "physicalTaskThreadPoolSizePerStorage",
                 "disorderMargin",
@@ -7191,6 +7199,8 @@ public class SQLSessionIT {
                 "udfList",
                 "UDFTimeout",
                 "migrationBatchSize",
+                "migrationParallelism",
+                "migrationMaxPointsPerSecond",
                 "maxTimeseriesLoadBalanceThreshold",
                 "mqttMaxMessageSize",
                 "reshardFragmentTimeMargin",
@@ -7200,6 +7210,14 @@ public class SQLSessionIT {
                 "fragmentCompactionReadThreshold",
                 "storageEngineList",
                 "batchSizeImportCsv",
+                "parallelismImportCsv",
+                "enableInsertCoalescing",
+                "insertCoalescingWindowMs",
+                "insertCoalescingMaxPoints",
+                "enablePlanCache",
+                "planCacheCapacity",
+                "enableResultCache",
+                "resultCacheMemoryBudget",
                 "restPort",
                 "asyncRestThreadPool",
                 "fragmentCompactionWriteThreshold",
@@ -7237,7 +7255,17 @@ public class SQLSessionIT {
                 "username",
                 "initialReconnectInterval",
                 "maxReconnectInterval",
-                "reconnectBackoffMultiplier"));
+                "reconnectBackoffMultiplier",
+                "enableBatchExecution",
+                "batchExecutionSize",
+                "enableIncrementalAggregation",
+                "spillDir",
+                "sortMemoryBudget",
+                "joinMemoryBudget",
+                "hashJoinPartitionNum",
+                "queryMemoryPoolSize",
+                "queryMemoryLimit",
+                "queryMemoryWaitTimeout"));
 
     assertEquals(expectedConfigNames, configs.keySet());
   }
@@ -118,6 +118,11 @@ enum DataFlowType {
     STREAM
 }
 
+enum QueryDataSetFormat {
+    ROW,
+    ARROW
+}
+
 enum JobState {
     JOB_UNKNOWN,
     JOB_FINISHED,
@@ -484,6 +489,7 @@ struct ExecuteStatementReq {
     2: required string statement
     3: optional i32 fetchSize
     4: optional i64 timeout
+    5: optional QueryDataSetFormat dataSetFormat
 }
 
 struct ExecuteStatementResp {
@@ -512,6 +518,8 @@ struct ExportCSV {
 struct QueryDataSetV2 {
     1: required list<binary> valuesList
     2: required list<binary> bitmapList
+    // 使用 ARROW 格式时，结果以 Arrow IPC 流（schema 与一个 record batch）编码于此，valuesList 与 bitmapList 为空
+    3: optional binary arrowData
 }
 
 struct CloseStatementReq {